@@ -4,10 +4,12 @@ export interface CRDTOperation {
   docId: string;
   userId: string;
   serverId?: string;
-  operationType: 'INSERT' | 'DELETE';
+  operationType: 'INSERT' | 'INSERT_RUN' | 'DELETE' | 'DELETE_RANGE';
   character?: string;
   fractionalPosition?: string;
+  endPosition?: string; // Inclusive upper bound of a DELETE_RANGE
   serverSeqNum?: number;
+  leaseStart?: boolean; // First operation of a sequence lease that skipped ahead
   timestamp?: string;
   processed?: boolean;
 }
\ No newline at end of file
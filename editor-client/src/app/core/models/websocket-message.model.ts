@@ -9,6 +9,7 @@ export interface WebSocketMessage {
   userId?: string;
   serverId?: string;
   operation?: CRDTOperation;
+  operations?: CRDTOperation[];
   snapshot?: DocumentSnapshot[];
   versionVector?: VersionVector;
   content?: string;
@@ -30,8 +31,10 @@ export type MessageType =
   | 'OPERATION'
   | 'OPERATION_ACK'
   | 'OPERATION_BROADCAST'
+  | 'OPERATION_BATCH_BROADCAST'
   | 'SYNC_REQUEST'
   | 'SYNC_RESPONSE'
+  | 'RESYNC_REQUIRED'
   | 'USER_JOINED'
   | 'USER_LEFT'
   | 'UNSUBSCRIBE'
@@ -35,6 +35,27 @@ export class CRDTService {
         a.fractionalPosition.localeCompare(b.fractionalPosition)
       );
       
+    } else if (operation.operationType === 'INSERT_RUN' && operation.fractionalPosition) {
+      // One operation for a whole word or paste: expand into characters
+      const characters = Array.from(operation.character || '');
+      const positions = this.runPositions(operation.fractionalPosition, characters.length);
+      characters.forEach((character, i) => {
+        newSnapshot.push({
+          id: 0, // Temporary ID
+          docId: operation.docId,
+          fractionalPosition: positions[i],
+          character: character,
+          serverId: operation.serverId || '',
+          serverSeqNum: operation.serverSeqNum || 0,
+          createdAt: new Date().toISOString(),
+          active: true
+        });
+      });
+
+      newSnapshot.sort((a, b) =>
+        a.fractionalPosition.localeCompare(b.fractionalPosition)
+      );
+
     } else if (operation.operationType === 'DELETE' && operation.fractionalPosition) {
       // Remove character
       const index = newSnapshot.findIndex(
@@ -43,11 +64,47 @@ export class CRDTService {
       if (index !== -1) {
         newSnapshot.splice(index, 1);
       }
+    } else if (operation.operationType === 'DELETE_RANGE' && operation.fractionalPosition && operation.endPosition) {
+      // Remove every character between the bounds, both inclusive (plain code unit order, as on the server)
+      const from = operation.fractionalPosition;
+      const to = operation.endPosition;
+      return newSnapshot.filter(
+        item => item.fractionalPosition < from || item.fractionalPosition > to
+      );
     }
     
     return newSnapshot;
   }
   
+  /**
+   * Positions of the characters of an INSERT_RUN, derived from its base position.
+   * Must match FractionalIndexService.runPositions on the server.
+   */
+  runPositions(base: string, count: number): string[] {
+    const BASE = 26;
+    let width = 1;
+    let slots = BASE;
+    while (slots < 2 * (count + 1)) {
+      slots *= BASE;
+      width++;
+    }
+
+    const positions: string[] = [];
+    for (let i = 1; i <= count; i++) {
+      let value = Math.floor(i * slots / (count + 1));
+      if (value % BASE === 0) {
+        value++;
+      }
+      let suffix = '';
+      for (let d = 0; d < width; d++) {
+        suffix = String.fromCharCode(97 + value % BASE) + suffix;
+        value = Math.floor(value / BASE);
+      }
+      positions.push(base + suffix);
+    }
+    return positions;
+  }
+
   /**
    * Rebuild content from snapshot
    */
@@ -84,15 +141,18 @@ export class CRDTService {
   }
   
   /**
-   * Detect if there are gaps in version vector
+   * Detect if there are gaps in version vector.
+   * Servers abandon the rest of a sequence lease on restart or eviction and mark the first
+   * operation of the next lease with leaseStart, so a jump to such an operation is not a gap.
    */
   hasVersionGaps(
     clientVector: { [key: string]: number }, 
     receivedServerId: string, 
-    receivedSeq: number
+    receivedSeq: number,
+    leaseStart?: boolean
   ): boolean {
     const clientSeq = clientVector[receivedServerId] || 0;
-    return receivedSeq > clientSeq + 1;
+    return receivedSeq > clientSeq + 1 && !leaseStart;
   }
 }
 
@@ -222,7 +222,8 @@ export class EditorStateService {
       operation: {
         docId: doc,
         userId: user,
-        operationType: 'INSERT',
+        // Several characters at once (e.g. a paste) go as a single run
+        operationType: Array.from(character).length > 1 ? 'INSERT_RUN' : 'INSERT',
         character: character
       }
     });
@@ -233,9 +234,9 @@ export class EditorStateService {
   }
   
   /**
-   * Delete character at position
+   * Delete count characters starting at position; more than one goes as a single DELETE_RANGE
    */
-  deleteCharacter(position: number): void {
+  deleteCharacter(position: number, count: number = 1): void {
     const doc = this.docId();
     const user = this.userId();
 
@@ -252,6 +253,24 @@ export class EditorStateService {
       return;
     }
 
+    if (count > 1) {
+      const endPosition = this.crdtService.findDeletePosition(snap, Math.min(position + count, snap.length) - 1);
+      this.wsService.send({
+        type: 'OPERATION',
+        docId: doc,
+        operation: {
+          docId: doc,
+          userId: user,
+          operationType: 'DELETE_RANGE',
+          fractionalPosition: fractionalPosition,
+          endPosition: endPosition || fractionalPosition
+        }
+      });
+
+      this.addLog('info', `Delete range: ${fractionalPosition} - ${endPosition}`);
+      return;
+    }
+
     this.wsService.send({
       type: 'OPERATION',
       docId: doc,
@@ -292,6 +311,9 @@ export class EditorStateService {
       case 'OPERATION_BROADCAST':
         this.handleOperationBroadcast(message);
         break;
+      case 'OPERATION_BATCH_BROADCAST':
+        this.handleOperationBatchBroadcast(message);
+        break;
       case 'USER_JOINED':
         this.handleUserJoined(message);
         break;
@@ -301,6 +323,9 @@ export class EditorStateService {
       case 'SYNC_RESPONSE':
         this.handleSyncResponse(message);
         break;
+      case 'RESYNC_REQUIRED':
+        this.handleResyncRequired(message);
+        break;
       case 'ERROR':
         this.handleError(message);
         break;
@@ -385,9 +410,11 @@ export class EditorStateService {
     const newContent = this.crdtService.snapshotToContent(newSnapshot);
 
     if (op.serverId && op.serverSeqNum) {
+      // Compare against the vector before this operation moves it
+      const hasGaps = this.crdtService.hasVersionGaps(this.versionVector(), op.serverId, op.serverSeqNum, op.leaseStart);
       this.updateVersionVector(op.serverId, op.serverSeqNum);
 
-      if (this.crdtService.hasVersionGaps(this.versionVector(), op.serverId, op.serverSeqNum)) {
+      if (hasGaps) {
         this.requestSync();
       }
     }
@@ -398,6 +425,34 @@ export class EditorStateService {
     this.isProcessingRemoteOp = false;
   }
   
+  private handleOperationBatchBroadcast(message: WebSocketMessage): void {
+    if (!message.operations || message.operations.length === 0) return;
+
+    this.addLog('info', `Received ${message.operations.length} operations for ${message.docId}`);
+
+    this.isProcessingRemoteOp = true;
+
+    let snap = this.snapshot();
+    let hasGaps = false;
+    for (const op of message.operations) {
+      snap = this.crdtService.applyOperation(snap, op);
+
+      if (op.serverId && op.serverSeqNum) {
+        hasGaps = hasGaps || this.crdtService.hasVersionGaps(this.versionVector(), op.serverId, op.serverSeqNum, op.leaseStart);
+        this.updateVersionVector(op.serverId, op.serverSeqNum);
+      }
+    }
+
+    this.snapshot.set(snap);
+    this.content.set(this.crdtService.snapshotToContent(snap));
+
+    this.isProcessingRemoteOp = false;
+
+    if (hasGaps) {
+      this.requestSync();
+    }
+  }
+
   private handleUserJoined(message: WebSocketMessage): void {
     if (!message.userId) return;
     
@@ -456,6 +511,17 @@ export class EditorStateService {
     this.addLog('success', `Applied ${allOps.length} missing operations`);
   }
   
+  /**
+   * The server dropped frames queued for this session (outbound queue overflow).
+   * Whatever they carried - including the response to a sync already in flight - is lost,
+   * so catch up from the current version vector.
+   */
+  private handleResyncRequired(message: WebSocketMessage): void {
+    this.addLog('warning', `Server ${message.serverId} dropped queued messages - resyncing`);
+    this.isSyncing.set(false);
+    this.requestSync();
+  }
+
   private handleError(message: WebSocketMessage): void {
     this.addLog('error', `Error: ${message.message}`);
     this.error.set(message.message || 'Unknown error');
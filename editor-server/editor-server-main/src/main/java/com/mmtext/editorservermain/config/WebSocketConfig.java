@@ -1,6 +1,6 @@
 package com.mmtext.editorservermain.config;
 
-import com.mmtext.editorservermain.service.EditorWebSocketHandler;
+import com.mmtext.editorservermain.service.EditorProtocolRouter;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
@@ -10,15 +10,17 @@ import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
-    private final EditorWebSocketHandler webSocketHandler;
+    private final EditorProtocolRouter protocolRouter;
 
-    public WebSocketConfig(EditorWebSocketHandler webSocketHandler) {
-        this.webSocketHandler = webSocketHandler;
+    public WebSocketConfig(EditorProtocolRouter protocolRouter) {
+        this.protocolRouter = protocolRouter;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(webSocketHandler, "/ws/editor")
+        // JSON and binary sub-protocols share one endpoint; the router picks the handler
+        // based on the Sec-WebSocket-Protocol agreed during the handshake
+        registry.addHandler(protocolRouter, "/ws/editor")
                 .setAllowedOrigins("*"); // Configure based on your CORS requirements
     }
 }
@@ -0,0 +1,87 @@
+package com.mmtext.editorservermain.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One entry of an OPERATION_BATCH message.
+ *
+ * INSERT entries either name their neighbours explicitly (insertAfterPosition /
+ * insertBeforePosition) or set afterPrevious to be placed directly after the preceding
+ * INSERT of the same batch - which is how a typing burst or a paste is sent.
+ * INSERT_RUN entries are placed the same way and carry a whole string in character;
+ * an entry chained after a run goes after the run's last character.
+ * DELETE entries carry the exact fractionalPosition to remove; DELETE_RANGE entries
+ * remove everything from fractionalPosition to endPosition, both inclusive.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOperation {
+
+    private String operationType; // INSERT, INSERT_RUN, DELETE or DELETE_RANGE
+    private String character;
+    private String fractionalPosition;
+    private String endPosition;
+
+    private String insertAfterPosition;
+    private String insertBeforePosition;
+    private boolean afterPrevious;
+
+    // Default Constructor
+    public BatchOperation() {}
+
+    // Getters and Setters
+    public String getOperationType() {
+        return operationType;
+    }
+
+    public void setOperationType(String operationType) {
+        this.operationType = operationType;
+    }
+
+    public String getCharacter() {
+        return character;
+    }
+
+    public void setCharacter(String character) {
+        this.character = character;
+    }
+
+    public String getFractionalPosition() {
+        return fractionalPosition;
+    }
+
+    public void setFractionalPosition(String fractionalPosition) {
+        this.fractionalPosition = fractionalPosition;
+    }
+
+    public String getEndPosition() {
+        return endPosition;
+    }
+
+    public void setEndPosition(String endPosition) {
+        this.endPosition = endPosition;
+    }
+
+    public String getInsertAfterPosition() {
+        return insertAfterPosition;
+    }
+
+    public void setInsertAfterPosition(String insertAfterPosition) {
+        this.insertAfterPosition = insertAfterPosition;
+    }
+
+    public String getInsertBeforePosition() {
+        return insertBeforePosition;
+    }
+
+    public void setInsertBeforePosition(String insertBeforePosition) {
+        this.insertBeforePosition = insertBeforePosition;
+    }
+
+    public boolean isAfterPrevious() {
+        return afterPrevious;
+    }
+
+    public void setAfterPrevious(boolean afterPrevious) {
+        this.afterPrevious = afterPrevious;
+    }
+}
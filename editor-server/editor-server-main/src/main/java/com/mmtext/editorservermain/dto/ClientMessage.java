@@ -3,6 +3,7 @@ package com.mmtext.editorservermain.dto;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.mmtext.editorservermain.model.CRDTOperation;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,10 +13,12 @@ import java.util.Map;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class ClientMessage {
 
-    private String type; // SUBSCRIBE, OPERATION, SYNC_REQUEST, UNSUBSCRIBE
+    private String type; // SUBSCRIBE, OPERATION, OPERATION_BATCH, SYNC_REQUEST, UNSUBSCRIBE
     private String docId;
     private String userId;
     private CRDTOperation operation;
+    private List<BatchOperation> operations; // For OPERATION_BATCH, in document order
+    private Boolean streamState; // For SUBSCRIBE: stream the document state over the socket
     private Map<String, Long> versionVector;
 
     // For INSERT operations - server generates fractional position
@@ -58,6 +61,22 @@ public class ClientMessage {
         this.operation = operation;
     }
 
+    public List<BatchOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<BatchOperation> operations) {
+        this.operations = operations;
+    }
+
+    public Boolean getStreamState() {
+        return streamState;
+    }
+
+    public void setStreamState(Boolean streamState) {
+        this.streamState = streamState;
+    }
+
     public Map<String, Long> getVersionVector() {
         return versionVector;
     }
@@ -0,0 +1,70 @@
+package com.mmtext.editorservermain.dto;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+
+import java.util.List;
+
+/**
+ * Cross-server message carrying every operation of one buffer flush.
+ * Operations share one document and origin server and are ordered by sequence number.
+ */
+public class OperationBatchEnvelope {
+
+    private String docId;
+    private String serverId;
+    private Long fromSeq;
+    private Long toSeq;
+    private List<CRDTOperation> operations;
+
+    // Default Constructor
+    public OperationBatchEnvelope() {}
+
+    public OperationBatchEnvelope(String docId, String serverId, List<CRDTOperation> operations) {
+        this.docId = docId;
+        this.serverId = serverId;
+        this.operations = operations;
+        this.fromSeq = operations.get(0).getServerSeqNum();
+        this.toSeq = operations.get(operations.size() - 1).getServerSeqNum();
+    }
+
+    // Getters and Setters
+    public String getDocId() {
+        return docId;
+    }
+
+    public void setDocId(String docId) {
+        this.docId = docId;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public void setServerId(String serverId) {
+        this.serverId = serverId;
+    }
+
+    public Long getFromSeq() {
+        return fromSeq;
+    }
+
+    public void setFromSeq(Long fromSeq) {
+        this.fromSeq = fromSeq;
+    }
+
+    public Long getToSeq() {
+        return toSeq;
+    }
+
+    public void setToSeq(Long toSeq) {
+        this.toSeq = toSeq;
+    }
+
+    public List<CRDTOperation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<CRDTOperation> operations) {
+        this.operations = operations;
+    }
+}
@@ -0,0 +1,34 @@
+package com.mmtext.editorservermain.dto;
+
+/**
+ * Inclusive range of server sequence numbers for one origin server
+ */
+public class SequenceRange {
+
+    private final String serverId;
+    private final long fromSeq;
+    private final long toSeq;
+
+    public SequenceRange(String serverId, long fromSeq, long toSeq) {
+        this.serverId = serverId;
+        this.fromSeq = fromSeq;
+        this.toSeq = toSeq;
+    }
+
+    public String getServerId() {
+        return serverId;
+    }
+
+    public long getFromSeq() {
+        return fromSeq;
+    }
+
+    public long getToSeq() {
+        return toSeq;
+    }
+
+    @Override
+    public String toString() {
+        return serverId + "[" + fromSeq + "-" + toSeq + "]";
+    }
+}
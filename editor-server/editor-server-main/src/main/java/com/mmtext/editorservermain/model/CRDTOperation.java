@@ -26,17 +26,27 @@ public class CRDTOperation {
     private String serverId;
 
     @Column(nullable = false)
-    private String operationType; // "INSERT" or "DELETE"
+    private String operationType; // "INSERT", "INSERT_RUN", "DELETE" or "DELETE_RANGE"
 
-    @Column(length = 10)
+    // One character, or the whole text of an INSERT_RUN
+    @Column(columnDefinition = "TEXT")
     private String character;
 
     @Column(nullable = false, length = 500)
     private String fractionalPosition;
 
+    // Inclusive upper bound of a DELETE_RANGE; fractionalPosition is the lower bound
+    @Column(length = 500)
+    private String endPosition;
+
     @Column(nullable = false)
     private Long serverSeqNum;
 
+    // First operation of a sequence lease that does not follow on from the server's previous
+    // one: the numbers between the two leases were never handed out, so the jump is no gap
+    @Column(nullable = false)
+    private Boolean leaseStart = false;
+
     @Column(nullable = false)
     private Instant timestamp;
 
@@ -47,6 +57,9 @@ public class CRDTOperation {
     // This field is NOT persisted to database and is only used during broadcast
     private transient String originatingSessionId;
 
+    // Transient id of the write-ahead log segment holding this operation until it is persisted
+    private transient long walSegmentId = -1L;
+
     // Default Constructor
     public CRDTOperation() {
         this.timestamp = Instant.now();
@@ -125,6 +138,14 @@ public class CRDTOperation {
         this.fractionalPosition = fractionalPosition;
     }
 
+    public String getEndPosition() {
+        return endPosition;
+    }
+
+    public void setEndPosition(String endPosition) {
+        this.endPosition = endPosition;
+    }
+
     public Long getServerSeqNum() {
         return serverSeqNum;
     }
@@ -133,6 +154,14 @@ public class CRDTOperation {
         this.serverSeqNum = serverSeqNum;
     }
 
+    public Boolean getLeaseStart() {
+        return leaseStart;
+    }
+
+    public void setLeaseStart(Boolean leaseStart) {
+        this.leaseStart = leaseStart;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
@@ -164,4 +193,13 @@ public class CRDTOperation {
     public void setOriginatingSessionId(String originatingSessionId) {
         this.originatingSessionId = originatingSessionId;
     }
-}
\ No newline at end of file
+
+    @JsonIgnore
+    public long getWalSegmentId() {
+        return walSegmentId;
+    }
+
+    public void setWalSegmentId(long walSegmentId) {
+        this.walSegmentId = walSegmentId;
+    }
+}
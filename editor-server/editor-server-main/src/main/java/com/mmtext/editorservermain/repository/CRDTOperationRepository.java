@@ -9,7 +9,7 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface CRDTOperationRepository extends JpaRepository<CRDTOperation, Long> {
+public interface CRDTOperationRepository extends JpaRepository<CRDTOperation, Long>, CRDTOperationRepositoryCustom {
 
     List<CRDTOperation> findByDocIdAndServerIdAndServerSeqNumBetweenOrderByServerSeqNum(
             String docId, String serverId, Long startSeq, Long endSeq);
@@ -17,5 +17,8 @@ public interface CRDTOperationRepository extends JpaRepository<CRDTOperation, Lo
     @Query("SELECT MAX(o.serverSeqNum) FROM CRDTOperation o WHERE o.docId = :docId AND o.serverId = :serverId")
     Long findMaxServerSeqNum(@Param("docId") String docId, @Param("serverId") String serverId);
 
+    @Query("SELECT o.serverId, MAX(o.serverSeqNum) FROM CRDTOperation o WHERE o.docId = :docId GROUP BY o.serverId")
+    List<Object[]> findMaxServerSeqNumsByDocId(@Param("docId") String docId);
+
     List<CRDTOperation> findByDocIdOrderByTimestamp(String docId);
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.dto.SequenceRange;
+import com.mmtext.editorservermain.model.CRDTOperation;
+
+import java.util.List;
+
+/**
+ * Queries that Spring Data cannot derive from method names
+ */
+public interface CRDTOperationRepositoryCustom {
+
+    /**
+     * Fetch the operations of several per-server sequence ranges of one document in a single query,
+     * ordered by server and sequence number
+     */
+    List<CRDTOperation> findByDocIdAndSequenceRanges(String docId, List<SequenceRange> ranges);
+}
@@ -0,0 +1,44 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.dto.SequenceRange;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.List;
+
+public class CRDTOperationRepositoryImpl implements CRDTOperationRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CRDTOperation> findByDocIdAndSequenceRanges(String docId, List<SequenceRange> ranges) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+
+        // One OR'd predicate per range - served by idx_doc_server_seq
+        StringBuilder jpql = new StringBuilder("SELECT o FROM CRDTOperation o WHERE o.docId = :docId AND (");
+        for (int i = 0; i < ranges.size(); i++) {
+            if (i > 0) {
+                jpql.append(" OR ");
+            }
+            jpql.append("(o.serverId = :server").append(i)
+                    .append(" AND o.serverSeqNum BETWEEN :from").append(i)
+                    .append(" AND :to").append(i).append(')');
+        }
+        jpql.append(") ORDER BY o.serverId, o.serverSeqNum");
+
+        TypedQuery<CRDTOperation> query = entityManager.createQuery(jpql.toString(), CRDTOperation.class);
+        query.setParameter("docId", docId);
+        for (int i = 0; i < ranges.size(); i++) {
+            SequenceRange range = ranges.get(i);
+            query.setParameter("server" + i, range.getServerId());
+            query.setParameter("from" + i, range.getFromSeq());
+            query.setParameter("to" + i, range.getToSeq());
+        }
+        return query.getResultList();
+    }
+}
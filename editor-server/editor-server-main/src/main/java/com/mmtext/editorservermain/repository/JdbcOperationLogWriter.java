@@ -0,0 +1,95 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Writes with multi-row INSERT statements through JDBC.
+ *
+ * Ids for the whole batch are drawn from the table's identity sequence in one round trip,
+ * so callers still get ids back without per-row RETURNING. Rows are then inserted
+ * rows-per-statement at a time. The outbox trigger still fires once per row, which the
+ * snapshot consumer relies on.
+ */
+@Repository
+@ConditionalOnProperty(name = "editor.persistence.writer", havingValue = "jdbc")
+public class JdbcOperationLogWriter implements OperationLogWriter {
+
+    private static final String ID_QUERY =
+            "SELECT nextval(pg_get_serial_sequence('crdt_operations', 'id')) FROM generate_series(1, ?)";
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO crdt_operations (id, doc_id, user_id, server_id, operation_type, \"character\", " +
+            "fractional_position, end_position, server_seq_num, lease_start, \"timestamp\", processed) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 12;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Keeps each statement well below PostgreSQL's 65535 bind parameter limit
+    @Value("${editor.persistence.jdbc.rows-per-statement:500}")
+    private int rowsPerStatement;
+
+    public JdbcOperationLogWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public List<CRDTOperation> writeAll(List<CRDTOperation> operations) {
+        if (operations.isEmpty()) {
+            return operations;
+        }
+
+        List<Long> ids = jdbcTemplate.queryForList(ID_QUERY, Long.class, operations.size());
+        for (int i = 0; i < operations.size(); i++) {
+            operations.get(i).setId(ids.get(i));
+        }
+
+        for (int from = 0; from < operations.size(); from += rowsPerStatement) {
+            int to = Math.min(from + rowsPerStatement, operations.size());
+            insertRows(operations.subList(from, to));
+        }
+
+        return operations;
+    }
+
+    private void insertRows(List<CRDTOperation> rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+
+        Object[] args = new Object[rows.size() * COLUMNS];
+        int arg = 0;
+
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+
+            CRDTOperation operation = rows.get(i);
+            args[arg++] = operation.getId();
+            args[arg++] = operation.getDocId();
+            args[arg++] = operation.getUserId();
+            args[arg++] = operation.getServerId();
+            args[arg++] = operation.getOperationType();
+            args[arg++] = operation.getCharacter();
+            args[arg++] = operation.getFractionalPosition();
+            args[arg++] = operation.getEndPosition();
+            args[arg++] = operation.getServerSeqNum();
+            args[arg++] = Boolean.TRUE.equals(operation.getLeaseStart());
+            args[arg++] = Timestamp.from(operation.getTimestamp());
+            args[arg++] = operation.getProcessed() != null ? operation.getProcessed() : Boolean.FALSE;
+        }
+
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
@@ -0,0 +1,26 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Writes through Hibernate. IDENTITY ids disable insert batching, so this issues one INSERT per operation.
+ */
+@Repository
+@ConditionalOnProperty(name = "editor.persistence.writer", havingValue = "jpa", matchIfMissing = true)
+public class JpaOperationLogWriter implements OperationLogWriter {
+
+    private final CRDTOperationRepository operationRepository;
+
+    public JpaOperationLogWriter(CRDTOperationRepository operationRepository) {
+        this.operationRepository = operationRepository;
+    }
+
+    @Override
+    public List<CRDTOperation> writeAll(List<CRDTOperation> operations) {
+        return operationRepository.saveAll(operations);
+    }
+}
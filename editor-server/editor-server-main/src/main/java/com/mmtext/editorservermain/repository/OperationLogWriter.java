@@ -0,0 +1,19 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+
+import java.util.List;
+
+/**
+ * Appends flushed operations to crdt_operations.
+ * Selected with editor.persistence.writer: "jpa" (default) or "jdbc".
+ */
+public interface OperationLogWriter {
+
+    /**
+     * Persist a batch of operations in one transaction
+     *
+     * @return the persisted operations, with their generated ids set
+     */
+    List<CRDTOperation> writeAll(List<CRDTOperation> operations);
+}
@@ -0,0 +1,57 @@
+package com.mmtext.editorservermain.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Persisted sequence number leases in sequence_leases.
+ *
+ * A lease is extended with a single UPDATE ... RETURNING. Only the first lease of a
+ * (document, server) pair reads crdt_operations, to start above anything written before
+ * leases existed; the row is then created with INSERT ... ON CONFLICT so two racing
+ * first leases still get disjoint blocks.
+ */
+@Repository
+public class SequenceLeaseRepository {
+
+    private static final String EXTEND =
+            "UPDATE sequence_leases SET leased_up_to = leased_up_to + ?, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE doc_id = ? AND server_id = ? RETURNING leased_up_to";
+
+    // First block starts at the next block boundary above the highest persisted sequence number
+    private static final String CREATE =
+            "INSERT INTO sequence_leases (doc_id, server_id, leased_up_to) " +
+            "SELECT ?, ?, (CEIL(COALESCE(MAX(server_seq_num), 0) / ?::numeric) * ?) + ? " +
+            "FROM crdt_operations WHERE doc_id = ? AND server_id = ? " +
+            "ON CONFLICT (doc_id, server_id) DO UPDATE " +
+            "SET leased_up_to = sequence_leases.leased_up_to + ?, updated_at = CURRENT_TIMESTAMP " +
+            "RETURNING leased_up_to";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Lease the next blocks of sequence numbers, committed independently of the caller's transaction
+     *
+     * @return the highest sequence number now leased; the new lease is the blocks * blockSize numbers ending there
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public long lease(String docId, String serverId, long blockSize, int blocks) {
+        long size = blockSize * blocks;
+
+        List<Long> extended = jdbcTemplate.queryForList(EXTEND, Long.class, size, docId, serverId);
+        if (!extended.isEmpty()) {
+            return extended.get(0);
+        }
+
+        return jdbcTemplate.queryForObject(CREATE, Long.class,
+                docId, serverId, blockSize, blockSize, size, docId, serverId, size);
+    }
+}
@@ -0,0 +1,230 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides how large a buffer flush should be and how long operations may wait for one.
+ *
+ * With editor.buffer.adaptive.enabled off this simply hands out the static
+ * max-buffer-size and flush-interval-ms. With it on, the flusher reports every database
+ * write and the controller re-tunes once per adjustment period:
+ * - DB write latency above the target: double the batch size and the flush interval,
+ *   so PostgreSQL sees fewer, larger writes (reason "db_slow").
+ * - More operations pending than a few batches' worth: double the batch size only,
+ *   to drain the backlog in bigger chunks (reason "backlog").
+ * - DB latency well under the target: shrink both by a quarter, cutting the time
+ *   operations sit in the buffer (reason "db_fast").
+ * Batch size and interval always stay within the configured min/max; max-flush-interval-ms
+ * is the latency SLO - no operation waits longer than that for a time-based flush.
+ *
+ * Per document, a sparse document (fewer than two operations expected per interval)
+ * gains nothing from waiting, so while the database is healthy it is flushed after
+ * min-flush-interval-ms instead.
+ *
+ * Called from the flusher thread only; the current decisions are volatile so producer
+ * threads and gauges can read them.
+ */
+@Component
+public class AdaptiveFlushController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveFlushController.class);
+
+    private static final double LATENCY_SMOOTHING = 0.2;
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final int BACKLOG_BATCHES = 4;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.buffer.max-buffer-size:50}")
+    private int staticBatchSize;
+
+    @Value("${editor.buffer.flush-interval-ms:500}")
+    private long staticFlushIntervalMs;
+
+    @Value("${editor.buffer.adaptive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${editor.buffer.adaptive.min-batch-size:10}")
+    private int minBatchSize;
+
+    @Value("${editor.buffer.adaptive.max-batch-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${editor.buffer.adaptive.min-flush-interval-ms:20}")
+    private long minFlushIntervalMs;
+
+    @Value("${editor.buffer.adaptive.max-flush-interval-ms:1000}")
+    private long maxFlushIntervalMs;
+
+    @Value("${editor.buffer.adaptive.target-write-latency-ms:50}")
+    private long targetWriteLatencyMs;
+
+    @Value("${editor.buffer.adaptive.adjust-period-ms:1000}")
+    private long adjustPeriodMs;
+
+    private volatile int batchSize;
+    private volatile long flushIntervalMs;
+    private volatile double writeLatencyMs;
+
+    private long lastAdjustTime;
+    private Timer writeTimer;
+    private Counter grewForSlowWrites;
+    private Counter grewForBacklog;
+    private Counter shrankForFastWrites;
+
+    public AdaptiveFlushController(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            minBatchSize = Math.max(1, minBatchSize);
+            maxBatchSize = Math.max(minBatchSize, maxBatchSize);
+            minFlushIntervalMs = Math.max(1, minFlushIntervalMs);
+            maxFlushIntervalMs = Math.max(minFlushIntervalMs, maxFlushIntervalMs);
+            batchSize = clamp(staticBatchSize, minBatchSize, maxBatchSize);
+            flushIntervalMs = clamp(staticFlushIntervalMs, minFlushIntervalMs, maxFlushIntervalMs);
+        } else {
+            batchSize = staticBatchSize;
+            flushIntervalMs = staticFlushIntervalMs;
+        }
+
+        writeTimer = Timer.builder("editor.buffer.flush.write.time")
+                .description("Database write time of one buffer flush")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("editor.buffer.adaptive.batch.size", this, c -> c.batchSize)
+                .description("Pending operations per document that trigger a flush")
+                .register(meterRegistry);
+        Gauge.builder("editor.buffer.adaptive.flush.interval", this, c -> c.flushIntervalMs)
+                .description("Longest time in ms an operation waits for a time-based flush")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("editor.buffer.adaptive.write.latency", this, c -> c.writeLatencyMs)
+                .description("Smoothed database write latency in ms the controller is reacting to")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        grewForSlowWrites = adjustmentCounter("db_slow");
+        grewForBacklog = adjustmentCounter("backlog");
+        shrankForFastWrites = adjustmentCounter("db_fast");
+
+        logger.info("Flush controller - Adaptive: {}, Batch size: {} ({}-{}), Flush interval: {}ms ({}-{}ms), Target write latency: {}ms",
+                enabled, batchSize, minBatchSize, maxBatchSize,
+                flushIntervalMs, minFlushIntervalMs, maxFlushIntervalMs, targetWriteLatencyMs);
+    }
+
+    private Counter adjustmentCounter(String reason) {
+        return Counter.builder("editor.buffer.adaptive.adjustments")
+                .description("Batch size and flush interval changes made by the flush controller")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pending operations in one document that trigger a size-based flush
+     */
+    public int batchSize() {
+        return batchSize;
+    }
+
+    /**
+     * How long a document's oldest buffered operation may wait, given its arrival rate
+     *
+     * @param arrivalRate smoothed operations per ms for the document
+     */
+    public long flushIntervalMs(double arrivalRate) {
+        long interval = flushIntervalMs;
+        if (enabled && arrivalRate * interval < 2 && writeLatencyMs <= targetWriteLatencyMs) {
+            return minFlushIntervalMs;
+        }
+        return interval;
+    }
+
+    /**
+     * How often the flusher should look for time-based flushes
+     */
+    public long tickMs() {
+        long shortest = enabled ? minFlushIntervalMs : staticFlushIntervalMs / 5;
+        return Math.max(10, shortest);
+    }
+
+    /**
+     * Fold a document's operations since its previous flush into its smoothed arrival rate
+     */
+    public double updateArrivalRate(double previousRate, int operations, long elapsedMs) {
+        if (elapsedMs <= 0) {
+            return previousRate;
+        }
+        double observed = (double) operations / elapsedMs;
+        return previousRate + RATE_SMOOTHING * (observed - previousRate);
+    }
+
+    /**
+     * Record the database write of one flush
+     */
+    public void recordWrite(long elapsedNanos) {
+        writeTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        double elapsedMs = elapsedNanos / 1_000_000.0;
+        writeLatencyMs = writeLatencyMs + LATENCY_SMOOTHING * (elapsedMs - writeLatencyMs);
+    }
+
+    /**
+     * Re-tune batch size and interval if an adjustment period has passed
+     *
+     * @param pendingOperations operations buffered across all documents, read only when adjusting
+     */
+    public void maybeAdjust(long now, LongSupplier pendingOperations) {
+        if (!enabled || now - lastAdjustTime < adjustPeriodMs) {
+            return;
+        }
+        lastAdjustTime = now;
+
+        int batch = batchSize;
+        long interval = flushIntervalMs;
+        double latency = writeLatencyMs;
+
+        if (latency > targetWriteLatencyMs) {
+            batch = clamp(batch * 2L, minBatchSize, maxBatchSize);
+            interval = clamp(interval * 2, minFlushIntervalMs, maxFlushIntervalMs);
+            record(grewForSlowWrites, "db_slow", batch, interval, latency);
+        } else if (pendingOperations.getAsLong() > (long) batch * BACKLOG_BATCHES) {
+            batch = clamp(batch * 2L, minBatchSize, maxBatchSize);
+            record(grewForBacklog, "backlog", batch, interval, latency);
+        } else if (latency < targetWriteLatencyMs / 2.0) {
+            batch = clamp(batch - batch / 4, minBatchSize, maxBatchSize);
+            interval = clamp(interval - interval / 4, minFlushIntervalMs, maxFlushIntervalMs);
+            record(shrankForFastWrites, "db_fast", batch, interval, latency);
+        }
+    }
+
+    private void record(Counter counter, String reason, int batch, long interval, double latency) {
+        if (batch == batchSize && interval == flushIntervalMs) {
+            return;
+        }
+        counter.increment();
+        logger.debug("Flush controller {} - Batch size: {} -> {}, Flush interval: {}ms -> {}ms, Write latency: {}ms",
+                reason, batchSize, batch, flushIntervalMs, interval, String.format("%.1f", latency));
+        batchSize = batch;
+        flushIntervalMs = interval;
+    }
+
+    private static int clamp(long value, int min, int max) {
+        return (int) Math.max(min, Math.min(max, value));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
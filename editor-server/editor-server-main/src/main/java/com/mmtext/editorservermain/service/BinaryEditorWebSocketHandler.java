@@ -0,0 +1,73 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.dto.ClientMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+/**
+ * Handler for sessions that negotiated the binary sub-protocol.
+ *
+ * Binary frames carry CRDT operations and are decoded by {@link BinaryOperationCodec};
+ * text frames (SUBSCRIBE, SYNC_REQUEST, PING...) and the connection lifecycle are handled
+ * by the JSON handler, so both protocols share the same document sessions.
+ */
+@Component
+public class BinaryEditorWebSocketHandler extends BinaryWebSocketHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryEditorWebSocketHandler.class);
+
+    private final EditorWebSocketHandler editorHandler;
+    private final BinaryOperationCodec codec;
+
+    public BinaryEditorWebSocketHandler(EditorWebSocketHandler editorHandler,
+                                        BinaryOperationCodec codec) {
+        this.editorHandler = editorHandler;
+        this.codec = codec;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        editorHandler.afterConnectionEstablished(session);
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
+        try {
+            ClientMessage clientMessage = codec.decode(session, message.getPayload());
+            editorHandler.dispatch(session, clientMessage);
+        } catch (BinaryOperationCodec.InternTableFullException e) {
+            // Every later frame could reference the id it failed to define, so the session cannot go on
+            logger.warn("Closing binary session {}: {}", session.getId(), e.getMessage());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Too many interned ids"));
+        } catch (Exception e) {
+            logger.error("Error handling binary message from session: {}", session.getId(), e);
+            editorHandler.sendError(session, "Error processing binary message: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        // Control messages stay JSON on binary sessions
+        try {
+            editorHandler.handleTextMessage(session, message);
+        } catch (Exception e) {
+            logger.error("Error handling text message from binary session: {}", session.getId(), e);
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        editorHandler.handleTransportError(session, exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+        editorHandler.afterConnectionClosed(session, status);
+    }
+}
@@ -0,0 +1,398 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.dto.ClientMessage;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for CRDT operations on the "mmtext.crdt.bin.v1" sub-protocol.
+ *
+ * Only operation traffic is binary; control messages (SUBSCRIBE, SYNC_REQUEST, PING, ERROR...)
+ * keep using JSON text frames on the same connection.
+ *
+ * Frame layout (all frames):
+ *   [u8 version = 1][u8 frameType] payload...
+ *
+ * Client -> server
+ *   0x01 INSERT               [id doc][pos after][pos before][str character]
+ *   0x02 DELETE               [id doc][pos position]
+ *   0x03 INSERT_RUN           [id doc][pos after][pos before][str text]
+ *   0x04 DELETE_RANGE         [id doc][pos from][pos to]
+ *
+ * Server -> client
+ *   0x81 OPERATION_ACK        [id doc][id user][id server] op-body
+ *   0x82 OPERATION_BROADCAST  [id doc][id user][id server] op-body
+ *
+ *   op-body = [u8 opType][varint serverSeqNum][varint timestampMillis][pos position][str character]
+ *   opType  = 1 INSERT, 2 DELETE, 3 INSERT_RUN (position is the run's base, character its text),
+ *             4 DELETE_RANGE (position is the lower bound, followed by [pos endPosition]);
+ *             bit 0x80 is set on the first operation of a new sequence lease (leaseStart)
+ *
+ * Field encodings
+ *   varint - unsigned LEB128
+ *   pos    - varint (length + 1) followed by raw ASCII bytes; 0 means null
+ *   str    - varint (length + 1) followed by UTF-8 bytes; 0 means null
+ *   id     - varint reference into the per-session, per-direction intern table.
+ *            0 defines a new entry: a str follows and is assigned the next index (starting at 1).
+ *            A client may define at most editor.websocket.binary.max-inbound-ids entries; the
+ *            session is closed when it tries to define more.
+ *
+ * The op-body does not depend on the recipient, so a broadcast encodes it once and only
+ * prefixes the per-session id header for each binary subscriber.
+ *
+ * A RESYNC_REQUIRED text frame resets the server -> client intern table: the client must
+ * discard its copy, since frames carrying earlier definitions may have been dropped.
+ */
+@Component
+public class BinaryOperationCodec {
+
+    public static final String SUBPROTOCOL = "mmtext.crdt.bin.v1";
+
+    public static final byte VERSION = 1;
+
+    public static final byte FRAME_INSERT = 0x01;
+    public static final byte FRAME_DELETE = 0x02;
+    public static final byte FRAME_INSERT_RUN = 0x03;
+    public static final byte FRAME_DELETE_RANGE = 0x04;
+    public static final byte FRAME_OPERATION_ACK = (byte) 0x81;
+    public static final byte FRAME_OPERATION_BROADCAST = (byte) 0x82;
+
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_INSERT_RUN = 3;
+    private static final byte OP_DELETE_RANGE = 4;
+    private static final byte OP_LEASE_START = (byte) 0x80;
+
+    private static final String INBOUND_IDS_ATTR = "binary.inboundIds";
+    private static final String OUTBOUND_IDS_ATTR = "binary.outboundIds";
+
+    // Entries a client may define per session; the table is never pruned, so it must be bounded
+    @Value("${editor.websocket.binary.max-inbound-ids:1024}")
+    private int maxInboundIds;
+
+    public boolean isBinarySession(WebSocketSession session) {
+        return SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    /**
+     * Attach fresh intern tables to a newly connected binary session
+     */
+    public void initSession(WebSocketSession session) {
+        session.getAttributes().put(INBOUND_IDS_ATTR, new InternTable(maxInboundIds));
+        session.getAttributes().put(OUTBOUND_IDS_ATTR, new InternTable(Integer.MAX_VALUE));
+    }
+
+    /**
+     * Forget every server -> client definition; used when queued frames were discarded
+     */
+    public void resetOutbound(WebSocketSession session) {
+        session.getAttributes().put(OUTBOUND_IDS_ATTR, new InternTable(Integer.MAX_VALUE));
+    }
+
+    public InternTable outboundIds(WebSocketSession session) {
+        return (InternTable) session.getAttributes().get(OUTBOUND_IDS_ATTR);
+    }
+
+    /**
+     * Decode a client frame into the same ClientMessage the JSON path produces
+     *
+     * @throws InternTableFullException if the frame defines an id beyond the session's limit
+     */
+    public ClientMessage decode(WebSocketSession session, ByteBuffer frame) {
+        InternTable ids = (InternTable) session.getAttributes().get(INBOUND_IDS_ATTR);
+        FrameReader reader = new FrameReader(frame);
+
+        byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary frame version: " + version);
+        }
+
+        byte frameType = reader.readByte();
+        ClientMessage message = new ClientMessage();
+        message.setType("OPERATION");
+
+        CRDTOperation operation = new CRDTOperation();
+        operation.setDocId(reader.readId(ids));
+
+        switch (frameType) {
+            case FRAME_INSERT:
+                operation.setOperationType("INSERT");
+                message.setInsertAfterPosition(reader.readPosition());
+                message.setInsertBeforePosition(reader.readPosition());
+                operation.setCharacter(reader.readString());
+                break;
+
+            case FRAME_DELETE:
+                operation.setOperationType("DELETE");
+                operation.setFractionalPosition(reader.readPosition());
+                break;
+
+            case FRAME_INSERT_RUN:
+                operation.setOperationType("INSERT_RUN");
+                message.setInsertAfterPosition(reader.readPosition());
+                message.setInsertBeforePosition(reader.readPosition());
+                operation.setCharacter(reader.readString());
+                break;
+
+            case FRAME_DELETE_RANGE:
+                operation.setOperationType("DELETE_RANGE");
+                operation.setFractionalPosition(reader.readPosition());
+                operation.setEndPosition(reader.readPosition());
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown binary frame type: " + frameType);
+        }
+
+        message.setDocId(operation.getDocId());
+        message.setOperation(operation);
+        return message;
+    }
+
+    /**
+     * Encode the recipient-independent part of an operation frame
+     */
+    public byte[] encodeOperationBody(CRDTOperation operation) {
+        FrameWriter writer = new FrameWriter(32 + lengthOf(operation.getFractionalPosition())
+                + lengthOf(operation.getCharacter()) + lengthOf(operation.getEndPosition()));
+        byte opType = opTypeOf(operation.getOperationType());
+        writer.writeByte(Boolean.TRUE.equals(operation.getLeaseStart()) ? (byte) (opType | OP_LEASE_START) : opType);
+        writer.writeVarLong(operation.getServerSeqNum() != null ? operation.getServerSeqNum() : 0L);
+        writer.writeVarLong(operation.getTimestamp() != null ? operation.getTimestamp().toEpochMilli() : 0L);
+        writer.writePosition(operation.getFractionalPosition());
+        writer.writeString(operation.getCharacter());
+        if (opType == OP_DELETE_RANGE) {
+            writer.writePosition(operation.getEndPosition());
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Encode a complete operation frame for one session.
+     * Callers must hold the session's outbound send monitor until the frame is enqueued, so
+     * that an id definition is always delivered before any frame referencing it.
+     */
+    public BinaryMessage encodeOperationFrame(byte frameType, CRDTOperation operation,
+                                              byte[] body, InternTable ids) {
+        FrameWriter writer = new FrameWriter(body.length + 16);
+        writer.writeByte(VERSION);
+        writer.writeByte(frameType);
+        writer.writeId(operation.getDocId(), ids);
+        writer.writeId(operation.getUserId(), ids);
+        writer.writeId(operation.getServerId(), ids);
+        writer.writeBytes(body);
+        return new BinaryMessage(writer.toByteArray(), true);
+    }
+
+    private static byte opTypeOf(String operationType) {
+        if ("INSERT".equals(operationType)) {
+            return OP_INSERT;
+        } else if ("DELETE".equals(operationType)) {
+            return OP_DELETE;
+        } else if ("INSERT_RUN".equals(operationType)) {
+            return OP_INSERT_RUN;
+        } else if ("DELETE_RANGE".equals(operationType)) {
+            return OP_DELETE_RANGE;
+        }
+        throw new IllegalArgumentException("Operation type not supported by binary protocol: " + operationType);
+    }
+
+    private static int lengthOf(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    /**
+     * String interning table for one direction of one session.
+     * Not thread-safe; outbound tables are guarded by the session's outbound send monitor.
+     */
+    public static class InternTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final int maxEntries;
+
+        InternTable(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        Integer indexOf(String value) {
+            return indexes.get(value);
+        }
+
+        int define(String value) {
+            if (values.size() >= maxEntries) {
+                throw new InternTableFullException(maxEntries);
+            }
+            values.add(value);
+            int index = values.size();
+            indexes.put(value, index);
+            return index;
+        }
+
+        String valueAt(int index) {
+            if (index < 1 || index > values.size()) {
+                throw new IllegalArgumentException("Unknown interned id reference: " + index);
+            }
+            return values.get(index - 1);
+        }
+    }
+
+    /**
+     * A client defined more interned ids than its session allows
+     */
+    public static class InternTableFullException extends IllegalStateException {
+        InternTableFullException(int maxEntries) {
+            super("Interned id table is full (" + maxEntries + " entries)");
+        }
+    }
+
+    private static class FrameWriter {
+        private byte[] buffer;
+        private int length;
+
+        FrameWriter(int initialCapacity) {
+            this.buffer = new byte[Math.max(initialCapacity, 16)];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[length++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        void writePosition(String position) {
+            if (position == null) {
+                writeVarLong(0);
+                return;
+            }
+            writeVarLong(position.length() + 1L);
+            ensureCapacity(position.length());
+            for (int i = 0; i < position.length(); i++) {
+                buffer[length++] = (byte) position.charAt(i);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        void writeId(String value, InternTable ids) {
+            String key = value != null ? value : "";
+            Integer index = ids.indexOf(key);
+            if (index != null) {
+                writeVarLong(index);
+            } else {
+                writeVarLong(0);
+                writeString(key);
+                ids.define(key);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+            }
+        }
+    }
+
+    private static class FrameReader {
+        private final ByteBuffer buffer;
+
+        FrameReader(ByteBuffer buffer) {
+            this.buffer = buffer.slice();
+        }
+
+        byte readByte() {
+            return buffer.get();
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            while (shift < 64) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        String readPosition() {
+            int length = readLength();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        String readString() {
+            int length = readLength();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String readId(InternTable ids) {
+            int reference = (int) readVarLong();
+            if (reference != 0) {
+                return ids.valueAt(reference);
+            }
+            String value = readString();
+            if (value == null) {
+                throw new IllegalArgumentException("Interned id definition cannot be null");
+            }
+            ids.define(value);
+            return value;
+        }
+
+        private int readLength() {
+            long encoded = readVarLong();
+            if (encoded > buffer.remaining() + 1L) {
+                throw new IllegalArgumentException("Field length exceeds frame size");
+            }
+            return (int) encoded - 1;
+        }
+    }
+}
@@ -1,19 +1,33 @@
 package com.mmtext.editorservermain.service;
 
+import com.mmtext.editorservermain.dto.SequenceRange;
 import com.mmtext.editorservermain.model.CRDTOperation;
 import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.SequenceLeaseRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Core CRDT service managing operation sequence numbers and coordination
+ * Core CRDT service managing operation sequence numbers and coordination.
+ *
+ * Sequence numbers are handed out from memory, from blocks of editor.sequence.lease-block-size
+ * leased in sequence_leases. Whatever is left of a block when the server restarts or the
+ * document is evicted is never used, so a server's sequence numbers for a document can skip
+ * ahead to the next block boundary. The first operation after such a skip is marked as a lease
+ * start, which is how consumers tell the skip from lost operations.
  */
 @Service
 public class CRDTService {
@@ -21,21 +35,52 @@ public class CRDTService {
     private static final Logger logger = LoggerFactory.getLogger(CRDTService.class);
 
     private final CRDTOperationRepository operationRepository;
+    private final SequenceLeaseRepository leaseRepository;
     private final OperationBufferService bufferService;
     private final FractionalIndexService fractionalIndexService;
+    private final RecentOperationsCache recentOperations;
+    private final DocumentLifecycleManager documentLifecycle;
+    private final Counter syncFromMemory;
+    private final Counter syncFromDatabase;
+    private final Timer leaseTimer;
 
     @Value("${editor.server.id}")
     private String serverId;
 
-    // In-memory sequence number generator per document
-    private final ConcurrentHashMap<String, AtomicLong> sequenceGenerators = new ConcurrentHashMap<>();
+    @Value("${editor.sequence.lease-block-size:1000}")
+    private long leaseBlockSize;
+
+    // Current sequence number lease per document, dropped when the document goes idle
+    private final ConcurrentHashMap<String, SequenceLease> sequenceLeases = new ConcurrentHashMap<>();
 
     public CRDTService(CRDTOperationRepository operationRepository,
+                       SequenceLeaseRepository leaseRepository,
                        OperationBufferService bufferService,
-                       FractionalIndexService fractionalIndexService) {
+                       FractionalIndexService fractionalIndexService,
+                       RecentOperationsCache recentOperations,
+                       DocumentLifecycleManager documentLifecycle,
+                       MeterRegistry meterRegistry) {
         this.operationRepository = operationRepository;
+        this.leaseRepository = leaseRepository;
         this.bufferService = bufferService;
         this.fractionalIndexService = fractionalIndexService;
+        this.recentOperations = recentOperations;
+        this.documentLifecycle = documentLifecycle;
+        this.syncFromMemory = Counter.builder("editor.sync.requests")
+                .description("SYNC_REQUESTs by where the missing operations were read from")
+                .tag("source", "memory")
+                .register(meterRegistry);
+        this.syncFromDatabase = Counter.builder("editor.sync.requests")
+                .description("SYNC_REQUESTs by where the missing operations were read from")
+                .tag("source", "database")
+                .register(meterRegistry);
+        this.leaseTimer = Timer.builder("editor.sequence.lease.time")
+                .description("Round trip to lease a block of sequence numbers")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        // The rest of the lease is abandoned; the next write leases a fresh block
+        documentLifecycle.onEvict(sequenceLeases::remove);
     }
 
     /**
@@ -43,9 +88,20 @@ public class CRDTService {
      */
     @Transactional
     public CRDTOperation processOperation(CRDTOperation operation) {
+        DocumentLifecycleManager.DocumentActivity activity = documentLifecycle.enter(operation.getDocId());
+        try {
+            return bufferOperation(operation);
+        } finally {
+            documentLifecycle.exit(activity);
+        }
+    }
+
+    private CRDTOperation bufferOperation(CRDTOperation operation) {
         // Assign server ID and sequence number
+        SequenceReservation reservation = reserveSequenceNumbers(operation.getDocId(), 1);
         operation.setServerId(serverId);
-        operation.setServerSeqNum(getNextSequenceNumber(operation.getDocId()));
+        operation.setServerSeqNum(reservation.first());
+        operation.setLeaseStart(reservation.leaseStart());
 
         logger.info("Processing operation - Doc: {}, Server: {}, Seq: {}, Type: {}, Pos: {}",
                 operation.getDocId(),
@@ -61,19 +117,77 @@ public class CRDTService {
     }
 
     /**
-     * Get next sequence number for a document on this server
+     * Process a batch of operations for one document.
+     * The whole batch gets one contiguous block of sequence numbers and is buffered in one step.
      */
-    private Long getNextSequenceNumber(String docId) {
-        AtomicLong generator = sequenceGenerators.computeIfAbsent(docId, key -> {
-            // Initialize from database
-            Long maxSeq = operationRepository.findMaxServerSeqNum(docId, serverId);
-            long startSeq = (maxSeq != null) ? maxSeq : 0L;
-            logger.info("Initializing sequence generator for doc: {}, server: {}, starting at: {}",
-                    docId, serverId, startSeq);
-            return new AtomicLong(startSeq);
-        });
+    @Transactional
+    public List<CRDTOperation> processOperations(String docId, List<CRDTOperation> operations) {
+        DocumentLifecycleManager.DocumentActivity activity = documentLifecycle.enter(docId);
+        try {
+            return bufferOperations(docId, operations);
+        } finally {
+            documentLifecycle.exit(activity);
+        }
+    }
+
+    private List<CRDTOperation> bufferOperations(String docId, List<CRDTOperation> operations) {
+        SequenceReservation reservation = reserveSequenceNumbers(docId, operations.size());
+        long firstSeq = reservation.first();
+
+        for (int i = 0; i < operations.size(); i++) {
+            CRDTOperation operation = operations.get(i);
+            operation.setServerId(serverId);
+            operation.setServerSeqNum(firstSeq + i);
+            operation.setLeaseStart(i == 0 && reservation.leaseStart());
+        }
 
-        return generator.incrementAndGet();
+        logger.info("Processing operation batch - Doc: {}, Server: {}, Seq: {}-{}, Count: {}",
+                docId, serverId, firstSeq, firstSeq + operations.size() - 1, operations.size());
+
+        bufferService.addOperations(docId, operations);
+
+        return operations;
+    }
+
+    /**
+     * Reserve a contiguous block of sequence numbers.
+     * Only goes to the database when the current lease cannot cover the whole block.
+     */
+    private SequenceReservation reserveSequenceNumbers(String docId, int count) {
+        // The lease itself is taken outside computeIfAbsent, so the map bin is never held across a DB call
+        SequenceLease lease = sequenceLeases.computeIfAbsent(docId, key -> new SequenceLease());
+
+        synchronized (lease) {
+            boolean leaseStart = false;
+            if (lease.next + count - 1 > lease.end) {
+                leaseStart = !extendLease(docId, lease, count);
+            }
+            long first = lease.next;
+            lease.next += count;
+            return new SequenceReservation(first, leaseStart);
+        }
+    }
+
+    /**
+     * @return whether the new lease follows on from the current one
+     */
+    private boolean extendLease(String docId, SequenceLease lease, int count) {
+        // Enough blocks for the whole reservation even if the new lease does not follow on
+        int blocks = (int) ((count + leaseBlockSize - 1) / leaseBlockSize);
+        long start = System.nanoTime();
+        long end = leaseRepository.lease(docId, serverId, leaseBlockSize, blocks);
+        leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        long newStart = end - blocks * leaseBlockSize + 1;
+        boolean followsOn = newStart == lease.end + 1;
+        if (!followsOn) {
+            // First lease on this server, or the previous one was abandoned - skip to the new block
+            logger.info("Leased sequence numbers for doc: {}, server: {}, range: {}-{}",
+                    docId, serverId, newStart, end);
+            lease.next = newStart;
+        }
+        lease.end = end;
+        return followsOn;
     }
 
     /**
@@ -90,6 +204,78 @@ public class CRDTService {
                         docId, serverId, fromSeq, toSeq);
     }
 
+    /**
+     * Compute every operation a client with the given version vector is missing, per origin server.
+     * Served from the recent operations ring; the database is only read for the first sync of a
+     * document on this server (seeding) and for ranges the ring has already overwritten.
+     * Rings only exist for documents with local subscribers - for any other document the whole
+     * gap is read from the database without creating one.
+     */
+    public Map<String, List<CRDTOperation>> computeMissingOperations(String docId, Map<String, Long> clientVector) {
+        if (!recentOperations.isTracked(docId)) {
+            syncFromDatabase.increment();
+            return readMissingFromDatabase(docId, clientVector, persistedMaxSeqs(docId));
+        }
+
+        if (!recentOperations.isSeeded(docId)) {
+            recentOperations.seed(docId, persistedMaxSeqs(docId));
+        }
+
+        RecentOperationsCache.CatchUp catchUp = recentOperations.collect(docId, clientVector);
+        Map<String, List<CRDTOperation>> missing = catchUp.getFromMemory();
+        List<SequenceRange> databaseRanges = catchUp.getDatabaseRanges();
+
+        if (databaseRanges.isEmpty()) {
+            syncFromMemory.increment();
+            return missing;
+        }
+
+        syncFromDatabase.increment();
+        logger.info("Ring overrun - fetching missing operations from database - Doc: {}, Ranges: {}",
+                docId, databaseRanges);
+
+        // Database ranges always precede what the ring holds for the same server
+        Map<String, List<CRDTOperation>> merged = new HashMap<>();
+        for (CRDTOperation operation : operationRepository.findByDocIdAndSequenceRanges(docId, databaseRanges)) {
+            merged.computeIfAbsent(operation.getServerId(), k -> new ArrayList<>()).add(operation);
+        }
+        missing.forEach((server, operations) ->
+                merged.computeIfAbsent(server, k -> new ArrayList<>()).addAll(operations));
+        return merged;
+    }
+
+    private Map<String, Long> persistedMaxSeqs(String docId) {
+        Map<String, Long> persistedMaxSeqs = new HashMap<>();
+        for (Object[] row : operationRepository.findMaxServerSeqNumsByDocId(docId)) {
+            persistedMaxSeqs.put((String) row[0], (Long) row[1]);
+        }
+        return persistedMaxSeqs;
+    }
+
+    /**
+     * Read everything above the client's vector up to the highest persisted sequence number per server
+     */
+    private Map<String, List<CRDTOperation>> readMissingFromDatabase(String docId,
+                                                                     Map<String, Long> clientVector,
+                                                                     Map<String, Long> persistedMaxSeqs) {
+        List<SequenceRange> ranges = new ArrayList<>();
+        persistedMaxSeqs.forEach((server, maxSeq) -> {
+            long clientSeq = clientVector.getOrDefault(server, 0L);
+            if (maxSeq > clientSeq) {
+                ranges.add(new SequenceRange(server, clientSeq + 1, maxSeq));
+            }
+        });
+
+        Map<String, List<CRDTOperation>> missing = new HashMap<>();
+        if (ranges.isEmpty()) {
+            return missing;
+        }
+        for (CRDTOperation operation : operationRepository.findByDocIdAndSequenceRanges(docId, ranges)) {
+            missing.computeIfAbsent(operation.getServerId(), k -> new ArrayList<>()).add(operation);
+        }
+        return missing;
+    }
+
     /**
      * Get all operations for a document (for initial load)
      */
@@ -103,4 +289,18 @@ public class CRDTService {
     public String generatePosition(String before, String after) {
         return fractionalIndexService.generateIndexBetween(before, after);
     }
+
+    /**
+     * First of a block of reserved sequence numbers; leaseStart if the server skipped to a new lease for it
+     */
+    private record SequenceReservation(long first, boolean leaseStart) {
+    }
+
+    /**
+     * Sequence numbers [next, end] are leased and not handed out yet; empty until the first lease
+     */
+    private static class SequenceLease {
+        private long next = 1;
+        private long end = 0;
+    }
 }
\ No newline at end of file
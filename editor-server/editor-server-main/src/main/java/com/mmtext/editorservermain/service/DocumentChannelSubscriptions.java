@@ -0,0 +1,133 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Interest-based Redis subscriptions: this server only receives the operations of
+ * documents that have local sessions.
+ *
+ * A document's channel (pub/sub topic or stream, depending on the transport) is added when its first local session subscribes and removed
+ * once the last one has been gone for the grace period, so a reconnecting client does not
+ * cause an unsubscribe/subscribe round trip. The document's recent operations ring is
+ * released together with the channel, since it stops being fed at that point.
+ */
+@Component
+public class DocumentChannelSubscriptions {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentChannelSubscriptions.class);
+
+    private final OperationTransport transport;
+    private final SessionRegistry sessionRegistry;
+    private final RecentOperationsCache recentOperations;
+    private final TaskScheduler taskScheduler;
+    private final Counter uninterestingMessages;
+
+    @Value("${editor.redis.subscription-grace-ms:30000}")
+    private long graceMs;
+
+    // docId -> channel state; present while the channel is subscribed
+    private final Map<String, ChannelState> channels = new ConcurrentHashMap<>();
+
+    public DocumentChannelSubscriptions(OperationTransport transport,
+                                        SessionRegistry sessionRegistry,
+                                        RecentOperationsCache recentOperations,
+                                        TaskScheduler taskScheduler,
+                                        MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.sessionRegistry = sessionRegistry;
+        this.recentOperations = recentOperations;
+        this.taskScheduler = taskScheduler;
+
+        Gauge.builder("editor.redis.subscribed.channels", channels, Map::size)
+                .description("Document channels this server is subscribed to")
+                .register(meterRegistry);
+        this.uninterestingMessages = Counter.builder("editor.redis.messages.dropped")
+                .description("Redis messages dropped because no local session watches the document")
+                .tag("reason", "uninteresting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A local session subscribed to the document: make sure its channel is subscribed
+     */
+    public void acquire(String docId) {
+        boolean[] added = {false};
+        channels.compute(docId, (k, state) -> {
+            if (state == null) {
+                added[0] = true;
+                return new ChannelState();
+            }
+            if (state.pendingRemoval != null) {
+                state.pendingRemoval.cancel(false);
+                state.pendingRemoval = null;
+            }
+            return state;
+        });
+
+        // Registered before subscribing, so replayed history is not dropped as uninteresting
+        if (added[0]) {
+            transport.subscribe(docId);
+            logger.info("Subscribed to Redis channel for doc: {}", docId);
+        }
+    }
+
+    /**
+     * The last local session left the document: drop its channel after the grace period
+     */
+    public void release(String docId) {
+        channels.computeIfPresent(docId, (k, state) -> {
+            if (state.pendingRemoval == null) {
+                state.pendingRemoval = taskScheduler.schedule(
+                        () -> removeIfIdle(docId), Instant.now().plus(Duration.ofMillis(graceMs)));
+            }
+            return state;
+        });
+    }
+
+    /**
+     * Check whether operations for a document are of interest to this server.
+     * Counts the message as dropped if not.
+     */
+    public boolean isInterested(String docId) {
+        if (channels.containsKey(docId)) {
+            return true;
+        }
+        uninterestingMessages.increment();
+        return false;
+    }
+
+    public int getSubscribedChannelCount() {
+        return channels.size();
+    }
+
+    private void removeIfIdle(String docId) {
+        channels.computeIfPresent(docId, (k, state) -> {
+            state.pendingRemoval = null;
+            if (sessionRegistry.hasSubscribers(docId)) {
+                return state;
+            }
+
+            transport.unsubscribe(docId);
+            recentOperations.release(docId);
+            logger.info("Unsubscribed from Redis channel for idle doc: {}", docId);
+            return null;
+        });
+    }
+
+    private static class ChannelState {
+        private ScheduledFuture<?> pendingRemoval;
+    }
+}
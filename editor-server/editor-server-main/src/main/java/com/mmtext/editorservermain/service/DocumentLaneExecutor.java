@@ -0,0 +1,142 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Striped executor for inbound operation delivery.
+ *
+ * Every document is pinned to one of a fixed number of single-threaded lanes (by docId hash),
+ * so a document's messages are handled strictly in arrival order while different documents
+ * are spread across cores - one heavy document only delays the documents sharing its lane.
+ *
+ * Lane queues are bounded. When a lane is full the submitting thread (the Redis listener or
+ * stream reader) waits for room rather than dropping or reordering, which pushes back on the
+ * transport instead of growing memory.
+ */
+@Component
+public class DocumentLaneExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentLaneExecutor.class);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.redis.dispatch.lanes:0}")
+    private int laneCount;
+
+    @Value("${editor.redis.dispatch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private Lane[] lanes;
+    private Timer laneLag;
+    private Counter blockedSubmissions;
+
+    public DocumentLaneExecutor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+
+        laneLag = Timer.builder("editor.redis.dispatch.lag")
+                .description("Time a received message waits in its document lane before being handled")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        blockedSubmissions = Counter.builder("editor.redis.dispatch.blocked")
+                .description("Submissions that had to wait because their lane queue was full")
+                .register(meterRegistry);
+
+        lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+            Gauge.builder("editor.redis.dispatch.lane.depth", lanes[i].queue, BlockingQueue::size)
+                    .description("Messages queued in a document lane")
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+            lanes[i].thread.start();
+        }
+
+        logger.info("Document lanes started - Lanes: {}, Queue capacity: {}", count, queueCapacity);
+    }
+
+    /**
+     * Run a task on the document's lane, after every task previously submitted for it
+     */
+    public void execute(String docId, Runnable task) {
+        Lane lane = lanes[Math.floorMod(docId != null ? docId.hashCode() : 0, lanes.length)];
+        LaneTask laneTask = new LaneTask(task, System.nanoTime());
+
+        if (!lane.queue.offer(laneTask)) {
+            blockedSubmissions.increment();
+            try {
+                lane.queue.put(laneTask);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while waiting for lane {} - message for doc {} dropped", lane.index, docId);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    private class Lane {
+        private final int index;
+        private final BlockingQueue<LaneTask> queue;
+        private final Thread thread;
+
+        Lane(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = Thread.ofPlatform()
+                    .name("doc-lane-" + index)
+                    .daemon(true)
+                    .unstarted(this::run);
+        }
+
+        private void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                LaneTask laneTask;
+                try {
+                    laneTask = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                laneLag.record(System.nanoTime() - laneTask.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+                try {
+                    laneTask.task.run();
+                } catch (Exception e) {
+                    logger.error("Error in document lane {}", index, e);
+                }
+            }
+        }
+    }
+
+    private static class LaneTask {
+        private final Runnable task;
+        private final long enqueuedAtNanos;
+
+        LaneTask(Runnable task, long enqueuedAtNanos) {
+            this.task = task;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
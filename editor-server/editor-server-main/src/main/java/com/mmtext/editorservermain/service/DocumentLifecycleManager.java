@@ -0,0 +1,268 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Tracks when each document was last written on this server and evicts the per-document
+ * state of documents that have gone idle (sequence generator, operation buffer).
+ *
+ * Writers bracket their work with {@link #enter(String)} / {@link #exit(DocumentActivity)}.
+ * Each tracked document has exactly one entry in an expiry queue, due idle-timeout after its
+ * last activity as of when it was queued. Touching a document only updates a timestamp; when
+ * the entry comes due and the document has been active since, it is simply re-queued for
+ * the new deadline. Scheduled work therefore scales with the documents written within one
+ * idle period, not with every document this node has ever seen.
+ *
+ * Eviction of an idle document without local subscribers:
+ * 1. New writers are held back and eviction is abandoned if one is already in flight.
+ * 2. The buffer is flushed on the flusher thread and dropped once empty. If the flush fails
+ *    the document stays tracked and is retried after the next idle period. If it has not
+ *    started within the eviction timeout it is withdrawn; if it has, writers stay held back
+ *    until it finishes, so a buffer is never dropped after they were let back in.
+ * 3. Only then are the eviction listeners run - everything handed out from the document's
+ *    sequence lease is in crdt_operations by now, so the lease can be dropped.
+ */
+@Component
+public class DocumentLifecycleManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentLifecycleManager.class);
+
+    private final OperationBufferService bufferService;
+    private final SessionRegistry sessionRegistry;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.lifecycle.idle-timeout-ms:600000}")
+    private long idleTimeoutMs;
+
+    @Value("${editor.lifecycle.eviction-timeout-ms:10000}")
+    private long evictionTimeoutMs;
+
+    private final Map<String, DocumentActivity> documents = new ConcurrentHashMap<>();
+    private final DelayQueue<DocumentActivity> expiryQueue = new DelayQueue<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private Counter evictedDocuments;
+    private Counter deferredEvictions;
+    private volatile boolean running;
+    private Thread reaperThread;
+
+    public DocumentLifecycleManager(OperationBufferService bufferService,
+                                    SessionRegistry sessionRegistry,
+                                    MeterRegistry meterRegistry) {
+        this.bufferService = bufferService;
+        this.sessionRegistry = sessionRegistry;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("editor.documents.tracked", documents, Map::size)
+                .description("Documents with in-memory write state on this server")
+                .register(meterRegistry);
+        evictedDocuments = Counter.builder("editor.documents.evicted")
+                .description("Idle documents whose in-memory write state was released")
+                .register(meterRegistry);
+        deferredEvictions = Counter.builder("editor.documents.eviction.deferred")
+                .description("Evictions put off because of a concurrent write or a failed flush")
+                .register(meterRegistry);
+
+        running = true;
+        reaperThread = Thread.ofPlatform()
+                .name("document-reaper")
+                .daemon(true)
+                .start(this::reapLoop);
+        logger.info("Document lifecycle manager started - Idle timeout: {}ms", idleTimeoutMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (reaperThread != null) {
+            reaperThread.interrupt();
+        }
+    }
+
+    /**
+     * Run a callback with the docId of every evicted document
+     */
+    public void onEvict(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * Mark the start of a write to a document. Waits while the document is being evicted.
+     * Must be paired with {@link #exit(DocumentActivity)}.
+     */
+    public DocumentActivity enter(String docId) {
+        while (true) {
+            DocumentActivity activity = documents.computeIfAbsent(docId, this::track);
+            activity.inFlight.incrementAndGet();
+            CompletableFuture<Void> eviction = activity.eviction;
+            if (eviction == null) {
+                activity.lastActive = System.currentTimeMillis();
+                return activity;
+            }
+
+            // Being evicted: wait it out, then retry against whichever entry is current
+            activity.inFlight.decrementAndGet();
+            eviction.join();
+        }
+    }
+
+    public void exit(DocumentActivity activity) {
+        activity.lastActive = System.currentTimeMillis();
+        activity.inFlight.decrementAndGet();
+    }
+
+    public int getTrackedDocumentCount() {
+        return documents.size();
+    }
+
+    private DocumentActivity track(String docId) {
+        DocumentActivity activity = new DocumentActivity(docId);
+        activity.lastActive = System.currentTimeMillis();
+        activity.dueAt = activity.lastActive + idleTimeoutMs;
+        expiryQueue.put(activity);
+        return activity;
+    }
+
+    private void reapLoop() {
+        while (running) {
+            DocumentActivity activity;
+            try {
+                activity = expiryQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                reap(activity);
+            } catch (Exception e) {
+                logger.error("Error evicting doc: {}", activity.docId, e);
+                requeue(activity, System.currentTimeMillis() + idleTimeoutMs);
+            }
+        }
+    }
+
+    private void reap(DocumentActivity activity) {
+        long idleUntil = activity.lastActive + idleTimeoutMs;
+        long now = System.currentTimeMillis();
+        if (idleUntil > now) {
+            requeue(activity, idleUntil);
+            return;
+        }
+        if (sessionRegistry.hasSubscribers(activity.docId)) {
+            requeue(activity, now + idleTimeoutMs);
+            return;
+        }
+
+        CompletableFuture<Void> eviction = new CompletableFuture<>();
+        activity.eviction = eviction;
+        boolean evicted = false;
+        try {
+            // A writer that entered before the flag was set is still running; leave the document alone
+            if (activity.inFlight.get() > 0) {
+                deferredEvictions.increment();
+                requeue(activity, now + idleTimeoutMs);
+                return;
+            }
+
+            if (!awaitFlush(bufferService.evict(activity.docId))) {
+                deferredEvictions.increment();
+                logger.warn("Could not flush idle doc: {} - keeping its state", activity.docId);
+                requeue(activity, now + idleTimeoutMs);
+                return;
+            }
+
+            for (Consumer<String> listener : evictionListeners) {
+                listener.accept(activity.docId);
+            }
+            documents.remove(activity.docId, activity);
+            evicted = true;
+            evictedDocuments.increment();
+            logger.info("Evicted idle doc: {}", activity.docId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requeue(activity, now + idleTimeoutMs);
+        } catch (Exception e) {
+            deferredEvictions.increment();
+            logger.warn("Eviction of idle doc: {} failed - keeping its state", activity.docId, e);
+            requeue(activity, now + idleTimeoutMs);
+        } finally {
+            if (!evicted) {
+                activity.eviction = null;
+            }
+            eviction.complete(null);
+        }
+    }
+
+    /**
+     * Wait for an eviction flush. One that is still queued after the timeout is withdrawn and
+     * counts as failed; one the flusher is already running is waited out.
+     */
+    private boolean awaitFlush(CompletableFuture<Boolean> flushed) throws InterruptedException, ExecutionException {
+        try {
+            return flushed.get(evictionTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (flushed.cancel(false)) {
+                return false;
+            }
+            logger.warn("Eviction flush is taking longer than {}ms - writers wait for it", evictionTimeoutMs);
+            return flushed.get();
+        }
+    }
+
+    private void requeue(DocumentActivity activity, long dueAt) {
+        activity.dueAt = dueAt;
+        expiryQueue.put(activity);
+    }
+
+    /**
+     * Expiry queue entry and write gate of one document
+     */
+    public static class DocumentActivity implements Delayed {
+        private final String docId;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastActive;
+        private volatile CompletableFuture<Void> eviction;
+
+        // Only touched while the entry is out of the queue
+        private long dueAt;
+
+        DocumentActivity(String docId) {
+            this.docId = docId;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((DocumentActivity) other).dueAt);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.mmtext.editorservermain.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+
+/**
+ * Entry point for /ws/editor that routes each session by the sub-protocol agreed at the handshake.
+ *
+ * - "mmtext.crdt.bin.v1": binary operation frames, see {@link BinaryOperationCodec}
+ * - "mmtext.crdt.json" or no sub-protocol: the original JSON protocol
+ */
+@Component
+public class EditorProtocolRouter implements WebSocketHandler, SubProtocolCapable {
+
+    public static final String JSON_SUBPROTOCOL = "mmtext.crdt.json";
+
+    private final EditorWebSocketHandler jsonHandler;
+    private final BinaryEditorWebSocketHandler binaryHandler;
+
+    public EditorProtocolRouter(EditorWebSocketHandler jsonHandler,
+                                BinaryEditorWebSocketHandler binaryHandler) {
+        this.jsonHandler = jsonHandler;
+        this.binaryHandler = binaryHandler;
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        // Preference order when a client offers both
+        return List.of(BinaryOperationCodec.SUBPROTOCOL, JSON_SUBPROTOCOL);
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        handlerFor(session).afterConnectionEstablished(session);
+    }
+
+    @Override
+    public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+        handlerFor(session).handleMessage(session, message);
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+        handlerFor(session).handleTransportError(session, exception);
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        handlerFor(session).afterConnectionClosed(session, closeStatus);
+    }
+
+    @Override
+    public boolean supportsPartialMessages() {
+        return false;
+    }
+
+    private WebSocketHandler handlerFor(WebSocketSession session) {
+        return BinaryOperationCodec.SUBPROTOCOL.equals(session.getAcceptedProtocol())
+                ? binaryHandler
+                : jsonHandler;
+    }
+}
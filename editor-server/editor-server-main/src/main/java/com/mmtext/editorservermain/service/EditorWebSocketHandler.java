@@ -1,25 +1,35 @@
 package com.mmtext.editorservermain.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.dto.BatchOperation;
 import com.mmtext.editorservermain.dto.ClientMessage;
 import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Complete WebSocket handler with:
@@ -27,31 +37,91 @@ import java.util.concurrent.ConcurrentHashMap;
  * - Document loading from snapshot
  * - Version vector synchronization
  * - Missing operation detection and fetching
+ *
+ * Serves the JSON protocol directly; binary sessions are decoded by
+ * {@link BinaryEditorWebSocketHandler} and dispatched through here as well.
  */
 @Component
 public class EditorWebSocketHandler extends TextWebSocketHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(EditorWebSocketHandler.class);
 
+    // Frames that may be evicted from a full outbound queue without losing document state
+    private static final Set<String> DROPPABLE_TYPES = Set.of("USER_JOINED", "USER_LEFT", "PONG");
+
     private final CRDTService crdtService;
     private final FractionalIndexService fractionalIndexService;
     private final ObjectMapper objectMapper;
+    private final SessionOutboundQueueFactory outboundQueueFactory;
+    private final BinaryOperationCodec binaryCodec;
+    private final RecentOperationsCache recentOperations;
+    private final SnapshotStateStreamer stateStreamer;
+    private final Counter broadcastBytesEncoded;
+    private final MeterRegistry meterRegistry;
+    private Timer localDeliveryLatency;
+    private Timer redisDeliveryLatency;
 
     @Value("${editor.server.id}")
     private String serverId;
 
-    // Document-based session tracking
-    private final Map<String, Map<String, WebSocketSession>> documentSessions = new ConcurrentHashMap<>();
+    @Value("${editor.websocket.batch.max-operations:10000}")
+    private int maxBatchOperations;
+
+    // Broadcast to local subscribers as soon as the sequence number is assigned,
+    // instead of after the buffer flush and the Redis round trip
+    @Value("${editor.delivery.local-first:false}")
+    private boolean localFirst;
+
+    // Connected sessions, their subscriptions and outbound queues - all sends go through these
+    private final SessionRegistry sessionRegistry;
 
-    // Session metadata
-    private final Map<String, SessionMetadata> sessionMetadata = new ConcurrentHashMap<>();
+    // Redis channels of the documents with local sessions
+    private final DocumentChannelSubscriptions channelSubscriptions;
 
     public EditorWebSocketHandler(CRDTService crdtService,
                                   FractionalIndexService fractionalIndexService,
-                                  ObjectMapper objectMapper) {
+                                  ObjectMapper objectMapper,
+                                  SessionOutboundQueueFactory outboundQueueFactory,
+                                  BinaryOperationCodec binaryCodec,
+                                  RecentOperationsCache recentOperations,
+                                  SnapshotStateStreamer stateStreamer,
+                                  SessionRegistry sessionRegistry,
+                                  DocumentChannelSubscriptions channelSubscriptions,
+                                  MeterRegistry meterRegistry) {
         this.crdtService = crdtService;
         this.fractionalIndexService = fractionalIndexService;
         this.objectMapper = objectMapper;
+        this.outboundQueueFactory = outboundQueueFactory;
+        this.binaryCodec = binaryCodec;
+        this.recentOperations = recentOperations;
+        this.stateStreamer = stateStreamer;
+        this.sessionRegistry = sessionRegistry;
+        this.channelSubscriptions = channelSubscriptions;
+        this.meterRegistry = meterRegistry;
+        this.broadcastBytesEncoded = Counter.builder("editor.websocket.broadcast.bytes.encoded")
+                .description("Bytes encoded for outbound broadcast frames (once per broadcast, not per recipient)")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initMetrics() {
+        String mode = localFirst ? "local-first" : "flush-first";
+        localDeliveryLatency = deliveryLatencyTimer(mode, "local");
+        redisDeliveryLatency = deliveryLatencyTimer(mode, "redis");
+        logger.info("Operation delivery mode: {}", mode);
+    }
+
+    /**
+     * Keystroke-to-peer latency: from operation creation on the server to hand-off to the peers' queues
+     */
+    private Timer deliveryLatencyTimer(String mode, String path) {
+        return Timer.builder("editor.delivery.latency")
+                .description("Time from operation creation to enqueueing its broadcast for peers")
+                .tag("mode", mode)
+                .tag("path", path)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
@@ -66,9 +136,17 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         String documentId = queryParams.get("doc");
         String preferredServer = queryParams.get("preferred");
 
+        SessionOutboundQueue outboundQueue = outboundQueueFactory.create(session);
+        if (binaryCodec.isBinarySession(session)) {
+            binaryCodec.initSession(session);
+            outboundQueue.setBacklogDiscardHook(() -> binaryCodec.resetOutbound(session));
+        }
+        sessionRegistry.register(session, outboundQueue);
+
         // Log routing information
-        logger.info("WebSocket connection established - Session: {}, Remote: {}, Server: {}",
-                sessionId, remoteAddress, serverId);
+        logger.info("WebSocket connection established - Session: {}, Remote: {}, Server: {}, Protocol: {}",
+                sessionId, remoteAddress, serverId,
+                session.getAcceptedProtocol() != null ? session.getAcceptedProtocol() : "json");
 
         if (preferredServer != null) {
             if (serverId.equals(preferredServer)) {
@@ -109,37 +187,49 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
             logger.debug("Received message from session {}: {}", sessionId, payload);
 
             ClientMessage clientMessage = objectMapper.readValue(payload, ClientMessage.class);
-            String messageType = clientMessage.getType();
+            dispatch(session, clientMessage);
 
-            switch (messageType) {
-                case "SUBSCRIBE":
-                    handleSubscribe(session, clientMessage);
-                    break;
+        } catch (Exception e) {
+            logger.error("Error handling WebSocket message from session: {}", sessionId, e);
+            sendError(session, "Error processing message: " + e.getMessage());
+        }
+    }
 
-                case "OPERATION":
-                    handleOperation(session, clientMessage);
-                    break;
+    /**
+     * Route a decoded client message - shared by the JSON and binary protocols
+     */
+    void dispatch(WebSocketSession session, ClientMessage clientMessage) throws IOException {
+        String sessionId = session.getId();
+        String messageType = clientMessage.getType();
 
-                case "SYNC_REQUEST":
-                    handleSyncRequest(session, clientMessage);
-                    break;
+        switch (messageType) {
+            case "SUBSCRIBE":
+                handleSubscribe(session, clientMessage);
+                break;
 
-                case "UNSUBSCRIBE":
-                    handleUnsubscribe(session, clientMessage);
-                    break;
+            case "OPERATION":
+                handleOperation(session, clientMessage);
+                break;
 
-                case "PING":
-                    handlePing(session);
-                    break;
+            case "OPERATION_BATCH":
+                handleOperationBatch(session, clientMessage);
+                break;
 
-                default:
-                    logger.warn("Unknown message type: {} from session: {}", messageType, sessionId);
-                    sendError(session, "Unknown message type: " + messageType);
-            }
+            case "SYNC_REQUEST":
+                handleSyncRequest(session, clientMessage);
+                break;
 
-        } catch (Exception e) {
-            logger.error("Error handling WebSocket message from session: {}", sessionId, e);
-            sendError(session, "Error processing message: " + e.getMessage());
+            case "UNSUBSCRIBE":
+                handleUnsubscribe(session, clientMessage);
+                break;
+
+            case "PING":
+                handlePing(session);
+                break;
+
+            default:
+                logger.warn("Unknown message type: {} from session: {}", messageType, sessionId);
+                sendError(session, "Unknown message type: " + messageType);
         }
     }
 
@@ -160,27 +250,42 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         logger.info("Processing SUBSCRIBE - Session: {}, Doc: {}, User: {}",
                 sessionId, docId, userId);
 
-        // Add session to document subscribers
-        documentSessions.computeIfAbsent(docId, k -> new ConcurrentHashMap<>())
-                .put(sessionId, session);
-
-        // Store session metadata
-        SessionMetadata metadata = new SessionMetadata(docId, userId, System.currentTimeMillis());
-        sessionMetadata.put(sessionId, metadata);
+        // Add session to document subscribers, leaving any document it was subscribed to before
+        SessionRegistry.SessionEntry current = sessionRegistry.get(sessionId);
+        String previousDocId = current != null ? current.getDocId() : null;
+        SessionRegistry.SessionEntry entry = sessionRegistry.subscribe(sessionId, docId, userId);
+        if (entry == null) {
+            sendError(session, "Session is not registered");
+            return;
+        }
+        recentOperations.track(docId);
+        channelSubscriptions.acquire(docId);
+        if (previousDocId != null && !previousDocId.equals(docId)) {
+            releaseIfUnwatched(previousDocId);
+        }
 
         // ===================================================================
         // CRITICAL: Load document from snapshot database
         // This shows user all edits already made by others
         // ===================================================================
 
+        boolean streamState = Boolean.TRUE.equals(message.getStreamState());
+
         // Send subscription acknowledgment WITH DOCUMENT DATA
         sendMessage(session, Map.of(
                 "type", "SUBSCRIBED",
                 "docId", docId,
                 "serverId", serverId,
+                "stateStreaming", streamState,
                 "message", "Successfully subscribed to document"
         ));
 
+        // Opt-in: stream the snapshot as STATE_CHUNK frames, then the operations applied since
+        if (streamState) {
+            stateStreamer.stream(session, entry.getOutboundQueue(), docId,
+                    (streamedSession, versionVector) -> sendCatchUp(streamedSession, docId, versionVector));
+        }
+
         // Notify other subscribers about new participant
         broadcastToDocument(docId, Map.of(
                 "type", "USER_JOINED",
@@ -198,9 +303,9 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
      */
     private void handleOperation(WebSocketSession session, ClientMessage message) throws IOException {
         String sessionId = session.getId();
-        SessionMetadata metadata = sessionMetadata.get(sessionId);
+        SessionRegistry.SessionEntry sessionEntry = sessionRegistry.get(sessionId);
 
-        if (metadata == null) {
+        if (sessionEntry == null || sessionEntry.getState() != SessionRegistry.State.SUBSCRIBED) {
             sendError(session, "Not subscribed to any document");
             return;
         }
@@ -213,7 +318,7 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         }
 
         // Validate operation
-        if (operation.getDocId() == null || !operation.getDocId().equals(metadata.getDocId())) {
+        if (operation.getDocId() == null || !operation.getDocId().equals(sessionEntry.getDocId())) {
             sendError(session, "Invalid document ID in operation");
             return;
         }
@@ -243,6 +348,21 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
             logger.debug("Generated fractional position - After: {}, Before: {}, Result: {}",
                     afterPosition, beforePosition, fractionalPosition);
 
+        } else if ("INSERT_RUN".equals(operationType)) {
+            // A typed word or a paste: one operation carrying the whole text. Only the run's
+            // base position is stored; character i sits at FractionalIndexService.runPositions(base, n)[i]
+            String error = validateRun(operation.getCharacter());
+            if (error != null) {
+                sendError(session, error);
+                return;
+            }
+
+            String basePosition = fractionalIndexService.generateRunBase(
+                    message.getInsertAfterPosition(),
+                    message.getInsertBeforePosition()
+            );
+            operation.setFractionalPosition(basePosition);
+
         } else if ("DELETE".equals(operationType)) {
             // For delete, client sends the exact position to delete
             // Position is already set in operation
@@ -250,13 +370,21 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
                 sendError(session, "Delete operation requires fractionalPosition");
                 return;
             }
+        } else if ("DELETE_RANGE".equals(operationType)) {
+            // A selection or cut: everything from fractionalPosition to endPosition, both inclusive,
+            // including characters others inserted in between concurrently
+            String error = validateRange(operation.getFractionalPosition(), operation.getEndPosition());
+            if (error != null) {
+                sendError(session, error);
+                return;
+            }
         } else {
             sendError(session, "Unknown operation type: " + operationType);
             return;
         }
 
         // Set user ID from session
-        operation.setUserId(metadata.getUserId());
+        operation.setUserId(sessionEntry.getUserId());
 
         // Set the originating session ID BEFORE processing
         operation.setOriginatingSessionId(sessionId);
@@ -280,12 +408,223 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
                 processed.getServerSeqNum(),
                 processed.getOriginatingSessionId());
 
+        // Local-first: same-server collaborators get it now; Redis only feeds remote servers
+        if (localFirst) {
+            broadcastLocally(processed, sessionId);
+        }
+
         // Send acknowledgment back to sender
-        sendMessage(session, Map.of(
-                "type", "OPERATION_ACK",
-                "operation", processed,
-                "serverId", serverId
-        ));
+        sendOperation(session, "OPERATION_ACK", processed);
+    }
+
+    /**
+     * Handle an ordered batch of operations for one document (typing bursts, pastes).
+     * Positions are generated in a single pass - each run of chained INSERTs gets evenly
+     * spaced positions from one call - the batch gets one contiguous block of sequence
+     * numbers, and the sender receives one ranged OPERATION_BATCH_ACK.
+     */
+    private void handleOperationBatch(WebSocketSession session, ClientMessage message) throws IOException {
+        String sessionId = session.getId();
+        SessionRegistry.SessionEntry sessionEntry = sessionRegistry.get(sessionId);
+
+        if (sessionEntry == null || sessionEntry.getState() != SessionRegistry.State.SUBSCRIBED) {
+            sendError(session, "Not subscribed to any document");
+            return;
+        }
+
+        String docId = message.getDocId();
+        List<BatchOperation> entries = message.getOperations();
+
+        if (docId == null || !docId.equals(sessionEntry.getDocId())) {
+            sendError(session, "Invalid document ID in operation batch");
+            return;
+        }
+
+        if (entries == null || entries.isEmpty()) {
+            sendError(session, "Operation batch is empty");
+            return;
+        }
+
+        if (entries.size() > maxBatchOperations) {
+            sendError(session, "Operation batch exceeds " + maxBatchOperations + " operations");
+            return;
+        }
+
+        List<CRDTOperation> operations = new ArrayList<>(entries.size());
+        List<String> positions = new ArrayList<>(entries.size());
+
+        // Bounds of the previous INSERT, so chained inserts land directly after it
+        String previousPosition = null;
+        String previousBefore = null;
+        boolean hasPreviousInsert = false;
+
+        // Positions of the current run of chained INSERTs, allocated in one call
+        List<String> runPositions = List.of();
+        int runIndex = 0;
+
+        for (int i = 0; i < entries.size(); i++) {
+            BatchOperation entry = entries.get(i);
+            String operationType = entry.getOperationType();
+
+            CRDTOperation operation = new CRDTOperation();
+            operation.setDocId(docId);
+            operation.setUserId(sessionEntry.getUserId());
+            operation.setOperationType(operationType);
+            operation.setOriginatingSessionId(sessionId);
+
+            if ("INSERT".equals(operationType)) {
+                String afterPosition;
+                String beforePosition;
+
+                if (entry.isAfterPrevious()) {
+                    if (!hasPreviousInsert) {
+                        sendError(session, "Batch entry " + i + " is chained but no INSERT precedes it");
+                        return;
+                    }
+                    afterPosition = previousPosition;
+                    beforePosition = previousBefore;
+                } else {
+                    afterPosition = entry.getInsertAfterPosition();
+                    beforePosition = entry.getInsertBeforePosition();
+                }
+
+                if (!entry.isAfterPrevious() || runIndex >= runPositions.size()) {
+                    // Start of a run: this INSERT and every chained INSERT directly after it
+                    int runLength = 1;
+                    while (i + runLength < entries.size()
+                            && "INSERT".equals(entries.get(i + runLength).getOperationType())
+                            && entries.get(i + runLength).isAfterPrevious()) {
+                        runLength++;
+                    }
+                    runPositions = fractionalIndexService.generateIndicesBetween(
+                            afterPosition,
+                            beforePosition,
+                            runLength
+                    );
+                    runIndex = 0;
+                }
+
+                String fractionalPosition = runPositions.get(runIndex++);
+
+                operation.setFractionalPosition(fractionalPosition);
+                operation.setCharacter(entry.getCharacter());
+
+                previousPosition = fractionalPosition;
+                previousBefore = beforePosition;
+                hasPreviousInsert = true;
+
+            } else if ("INSERT_RUN".equals(operationType)) {
+                String error = validateRun(entry.getCharacter());
+                if (error != null) {
+                    sendError(session, "Batch entry " + i + ": " + error);
+                    return;
+                }
+
+                String afterPosition;
+                String beforePosition;
+                if (entry.isAfterPrevious()) {
+                    if (!hasPreviousInsert) {
+                        sendError(session, "Batch entry " + i + " is chained but no INSERT precedes it");
+                        return;
+                    }
+                    afterPosition = previousPosition;
+                    beforePosition = previousBefore;
+                } else {
+                    afterPosition = entry.getInsertAfterPosition();
+                    beforePosition = entry.getInsertBeforePosition();
+                }
+
+                String basePosition = fractionalIndexService.generateRunBase(afterPosition, beforePosition);
+                operation.setFractionalPosition(basePosition);
+                operation.setCharacter(entry.getCharacter());
+
+                // Whatever is chained next goes after the run's last character
+                List<String> runCharacters = FractionalIndexService.runPositions(
+                        basePosition, runLength(entry.getCharacter()));
+                previousPosition = runCharacters.get(runCharacters.size() - 1);
+                previousBefore = beforePosition;
+                hasPreviousInsert = true;
+
+            } else if ("DELETE".equals(operationType)) {
+                if (entry.getFractionalPosition() == null) {
+                    sendError(session, "Batch entry " + i + " is a DELETE without fractionalPosition");
+                    return;
+                }
+                operation.setFractionalPosition(entry.getFractionalPosition());
+            } else if ("DELETE_RANGE".equals(operationType)) {
+                String error = validateRange(entry.getFractionalPosition(), entry.getEndPosition());
+                if (error != null) {
+                    sendError(session, "Batch entry " + i + ": " + error);
+                    return;
+                }
+                operation.setFractionalPosition(entry.getFractionalPosition());
+                operation.setEndPosition(entry.getEndPosition());
+            } else {
+                sendError(session, "Unknown operation type in batch entry " + i + ": " + operationType);
+                return;
+            }
+
+            operations.add(operation);
+            positions.add(operation.getFractionalPosition());
+        }
+
+        List<CRDTOperation> processed = crdtService.processOperations(docId, operations);
+
+        if (localFirst && fanOutBatch(docId, processed) > 0) {
+            for (CRDTOperation operation : processed) {
+                recordDeliveryLatency(localDeliveryLatency, operation);
+            }
+        }
+
+        long fromSeq = processed.get(0).getServerSeqNum();
+        long toSeq = processed.get(processed.size() - 1).getServerSeqNum();
+
+        logger.info("Processed operation batch - Session: {}, Doc: {}, User: {}, Count: {}, Seq: {}-{}",
+                sessionId, docId, sessionEntry.getUserId(), processed.size(), fromSeq, toSeq);
+
+        // One ranged acknowledgment: entry i was assigned fromSeq + i and positions[i]
+        Map<String, Object> ack = new HashMap<>();
+        ack.put("type", "OPERATION_BATCH_ACK");
+        ack.put("docId", docId);
+        ack.put("serverId", serverId);
+        ack.put("userId", sessionEntry.getUserId());
+        ack.put("fromSeq", fromSeq);
+        ack.put("toSeq", toSeq);
+        ack.put("positions", positions);
+        sendMessage(session, ack);
+    }
+
+    /**
+     * Reason an INSERT_RUN text is rejected, or null if it is acceptable
+     */
+    String validateRun(String text) {
+        if (text == null || text.isEmpty()) {
+            return "INSERT_RUN requires a non-empty character string";
+        }
+        if (runLength(text) > maxBatchOperations) {
+            return "INSERT_RUN exceeds " + maxBatchOperations + " characters";
+        }
+        return null;
+    }
+
+    /**
+     * Reason a DELETE_RANGE is rejected, or null if it is acceptable
+     */
+    static String validateRange(String fromPosition, String toPosition) {
+        if (fromPosition == null || toPosition == null) {
+            return "DELETE_RANGE requires fractionalPosition and endPosition";
+        }
+        if (fromPosition.compareTo(toPosition) > 0) {
+            return "DELETE_RANGE fractionalPosition is after endPosition";
+        }
+        return null;
+    }
+
+    /**
+     * Characters in a run are code points, matching Array.from(text) on the client
+     */
+    private static int runLength(String text) {
+        return text.codePointCount(0, text.length());
     }
 
     /**
@@ -304,29 +643,60 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         logger.info("Sync request - Session: {}, Doc: {}, Client vector: {}",
                 session.getId(), docId, clientVector);
 
+        sendSyncResponse(session, docId, clientVector);
+    }
+
+    /**
+     * Send the operations applied after a streamed snapshot; runs on the stream's thread
+     */
+    private void sendCatchUp(WebSocketSession session, String docId, Map<String, Long> versionVector) {
+        try {
+            sendSyncResponse(session, docId, versionVector);
+        } catch (Exception e) {
+            logger.error("Error sending catch-up after state stream - Session: {}, Doc: {}",
+                    session.getId(), docId, e);
+        }
+    }
+
+    private void sendSyncResponse(WebSocketSession session, String docId, Map<String, Long> clientVector)
+            throws IOException {
         // ===================================================================
         // CRITICAL: Detect missing operations based on version vector
+        // Served from the in-memory recent operations ring; the primary
+        // database is only read for ranges the ring no longer holds
         // ===================================================================
+        Map<String, List<CRDTOperation>> missingOps = crdtService.computeMissingOperations(docId, clientVector);
 
-
-        // Fetch missing operations from PRIMARY database
-        Map<String, List<CRDTOperation>> missingOps = new ConcurrentHashMap<>();
         int totalMissing = 0;
+        Map<String, Long> currentVector = new HashMap<>(clientVector);
+        for (Map.Entry<String, List<CRDTOperation>> entry : missingOps.entrySet()) {
+            List<CRDTOperation> ops = entry.getValue();
+            totalMissing += ops.size();
+            currentVector.merge(entry.getKey(), ops.get(ops.size() - 1).getServerSeqNum(), Math::max);
+        }
 
+        logger.info("Sync response - Session: {}, Doc: {}, Missing: {}, Current vector: {}",
+                session.getId(), docId, totalMissing, currentVector);
 
         // Send sync response with missing operations
         sendMessage(session, Map.of(
                 "type", "SYNC_RESPONSE",
-                "docId", docId
+                "docId", docId,
+                "serverId", serverId,
+                "missingOperations", missingOps,
+                "totalMissing", totalMissing,
+                "currentVersionVector", currentVector
         ));
-
     }
 
     private void handleUnsubscribe(WebSocketSession session, ClientMessage message) {
         String sessionId = session.getId();
         String docId = message.getDocId();
 
-        removeSession(docId, sessionId);
+        String leftDocId = sessionRegistry.unsubscribe(sessionId);
+        if (leftDocId != null) {
+            releaseIfUnwatched(leftDocId);
+        }
 
         logger.info("Client unsubscribed - Session: {}, Doc: {}", sessionId, docId);
 
@@ -352,13 +722,13 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         String sessionId = session.getId();
-        SessionMetadata metadata = sessionMetadata.get(sessionId);
+        SessionRegistry.SessionEntry entry = sessionRegistry.remove(sessionId);
 
-        if (metadata != null) {
-            String docId = metadata.getDocId();
-            String userId = metadata.getUserId();
+        if (entry != null && entry.getDocId() != null) {
+            String docId = entry.getDocId();
+            String userId = entry.getUserId();
 
-            removeSession(docId, sessionId);
+            releaseIfUnwatched(docId);
 
             broadcastToDocument(docId, Map.of(
                     "type", "USER_LEFT",
@@ -372,7 +742,9 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
             logger.info("WebSocket connection closed - Session: {}, Status: {}", sessionId, status);
         }
 
-        sessionMetadata.remove(sessionId);
+        if (entry != null) {
+            entry.getOutboundQueue().close();
+        }
     }
 
     @Override
@@ -391,42 +763,238 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
      * Broadcast operation to all clients subscribed to a document
      */
     public void broadcastToDocument(String docId, CRDTOperation operation) {
-        Map<String, Object> message = Map.of(
-                "type", "OPERATION_BROADCAST",
-                "operation", operation,
-                "serverId", serverId
-        );
-
-        broadcastToDocument(docId, message, null);
+        broadcastToDocument(docId, operation, null);
     }
 
     /**
      * Broadcast operation to all clients subscribed to a document, excluding specified session
      * This prevents sending the operation back to the original sender session only
+     * Used for operations delivered through Redis.
      */
     public void broadcastToDocument(String docId, CRDTOperation operation, String excludeSessionId) {
-        Map<String, Object> message = Map.of(
-                "type", "OPERATION_BROADCAST",
-                "operation", operation,
+        if (fanOut(docId, operation, excludeSessionId) > 0) {
+            recordDeliveryLatency(redisDeliveryLatency, operation);
+        }
+    }
+
+    /**
+     * Local-first delivery of an operation that was just sequenced on this server
+     */
+    private void broadcastLocally(CRDTOperation operation, String originatingSessionId) {
+        if (fanOut(operation.getDocId(), operation, originatingSessionId) > 0) {
+            recordDeliveryLatency(localDeliveryLatency, operation);
+        }
+    }
+
+    /**
+     * Broadcast a batch of operations received through Redis
+     */
+    public void broadcastBatchToDocument(String docId, List<CRDTOperation> operations) {
+        if (fanOutBatch(docId, operations) > 0) {
+            for (CRDTOperation operation : operations) {
+                recordDeliveryLatency(redisDeliveryLatency, operation);
+            }
+        }
+    }
+
+    /**
+     * Deliver a batch as one OPERATION_BATCH_BROADCAST frame per JSON recipient.
+     * A recipient never receives the operations it originated; only such recipients
+     * get a separately encoded, filtered frame. Binary sessions receive one frame per operation.
+     *
+     * @return the number of sessions the batch was queued for
+     */
+    private int fanOutBatch(String docId, List<CRDTOperation> operations) {
+        SessionRegistry.SessionEntry[] sessions = sessionRegistry.sessionsOf(docId);
+
+        if (sessions.length == 0) {
+            return 0;
+        }
+
+        Set<String> originators = new HashSet<>();
+        for (CRDTOperation operation : operations) {
+            if (operation.getOriginatingSessionId() != null) {
+                originators.add(operation.getOriginatingSessionId());
+            }
+        }
+
+        TextMessage sharedFrame = null;
+        byte[][] binaryBodies = null;
+        int successCount = 0;
+        int failCount = 0;
+
+        for (SessionRegistry.SessionEntry entry : sessions) {
+            String sessionId = entry.getSessionId();
+
+            List<CRDTOperation> visible = operations;
+            if (originators.contains(sessionId)) {
+                visible = new ArrayList<>(operations.size());
+                for (CRDTOperation operation : operations) {
+                    if (!sessionId.equals(operation.getOriginatingSessionId())) {
+                        visible.add(operation);
+                    }
+                }
+                if (visible.isEmpty()) {
+                    continue;
+                }
+            }
+
+            try {
+                boolean sent = true;
+                if (binaryCodec.isBinarySession(entry.getSession())) {
+                    if (binaryBodies == null) {
+                        binaryBodies = new byte[operations.size()][];
+                    }
+                    for (int i = 0; i < operations.size(); i++) {
+                        CRDTOperation operation = operations.get(i);
+                        if (sessionId.equals(operation.getOriginatingSessionId())) {
+                            continue;
+                        }
+                        if (binaryBodies[i] == null) {
+                            binaryBodies[i] = binaryCodec.encodeOperationBody(operation);
+                            broadcastBytesEncoded.increment(binaryBodies[i].length);
+                        }
+                        sent &= sendBinaryOperation(entry, BinaryOperationCodec.FRAME_OPERATION_BROADCAST,
+                                operation, binaryBodies[i]);
+                    }
+                } else {
+                    TextMessage frame;
+                    if (visible == operations) {
+                        if (sharedFrame == null) {
+                            sharedFrame = encodeBatchFrame(docId, operations);
+                        }
+                        frame = sharedFrame;
+                    } else {
+                        frame = encodeBatchFrame(docId, visible);
+                    }
+                    sent = entry.getOutboundQueue().enqueue(frame, false);
+                }
+
+                if (sent) {
+                    successCount++;
+                } else {
+                    failCount++;
+                }
+            } catch (Exception e) {
+                logger.error("Error broadcasting batch to session: {}", sessionId, e);
+                failCount++;
+            }
+        }
+
+        logger.debug("Operation batch broadcast complete - Doc: {}, Operations: {}, Success: {}, Failed: {}",
+                docId, operations.size(), successCount, failCount);
+        return successCount;
+    }
+
+    private TextMessage encodeBatchFrame(String docId, List<CRDTOperation> operations) throws IOException {
+        TextMessage frame = encodeFrame(Map.of(
+                "type", "OPERATION_BATCH_BROADCAST",
+                "docId", docId,
+                "operations", operations,
                 "serverId", serverId
-        );
+        ));
+        broadcastBytesEncoded.increment(frame.getPayloadLength());
+        return frame;
+    }
 
-        broadcastToDocument(docId, message, excludeSessionId);
+    private void recordDeliveryLatency(Timer timer, CRDTOperation operation) {
+        if (operation.getTimestamp() != null) {
+            long latencyMs = System.currentTimeMillis() - operation.getTimestamp().toEpochMilli();
+            timer.record(Math.max(latencyMs, 0L), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return the number of sessions the operation was queued for
+     */
+    private int fanOut(String docId, CRDTOperation operation, String excludeSessionId) {
+        SessionRegistry.SessionEntry[] sessions = sessionRegistry.sessionsOf(docId);
+
+        if (sessions.length == 0) {
+            return 0;
+        }
+
+        // Each protocol's encoding is produced lazily, at most once per broadcast
+        TextMessage jsonFrame = null;
+        byte[] binaryBody = null;
+        int successCount = 0;
+        int failCount = 0;
+
+        for (SessionRegistry.SessionEntry entry : sessions) {
+            String sessionId = entry.getSessionId();
+            WebSocketSession session = entry.getSession();
+
+            // Skip only the specific session that originated the operation
+            if (excludeSessionId != null && sessionId.equals(excludeSessionId)) {
+                logger.debug("Excluding originating session {} from broadcast", sessionId);
+                continue;
+            }
+
+            try {
+                boolean sent;
+                if (binaryCodec.isBinarySession(session)) {
+                    if (binaryBody == null) {
+                        binaryBody = binaryCodec.encodeOperationBody(operation);
+                        broadcastBytesEncoded.increment(binaryBody.length);
+                    }
+                    sent = sendBinaryOperation(entry, BinaryOperationCodec.FRAME_OPERATION_BROADCAST,
+                            operation, binaryBody);
+                } else {
+                    if (jsonFrame == null) {
+                        jsonFrame = encodeFrame(Map.of(
+                                "type", "OPERATION_BROADCAST",
+                                "operation", operation,
+                                "serverId", serverId
+                        ));
+                        broadcastBytesEncoded.increment(jsonFrame.getPayloadLength());
+                    }
+                    sent = entry.getOutboundQueue().enqueue(jsonFrame, false);
+                }
+
+                if (sent) {
+                    successCount++;
+                } else {
+                    failCount++;
+                }
+            } catch (Exception e) {
+                logger.error("Error broadcasting to session: {}", sessionId, e);
+                failCount++;
+            }
+        }
+
+        logger.debug("Operation broadcast complete - Doc: {}, Success: {}, Failed: {}, Excluded Session: {}",
+                docId, successCount, failCount, excludeSessionId);
+        return successCount;
     }
 
     private void broadcastToDocument(String docId, Map<String, Object> message, String excludeSessionId) {
-        Map<String, WebSocketSession> sessions = documentSessions.get(docId);
+        SessionRegistry.SessionEntry[] sessions = sessionRegistry.sessionsOf(docId);
 
-        if (sessions == null || sessions.isEmpty()) {
+        if (sessions.length == 0) {
             return;
         }
 
+        // Nobody to deliver to besides the sender - skip encoding entirely
+        if (excludeSessionId != null && sessions.length == 1 && sessions[0].getSessionId().equals(excludeSessionId)) {
+            return;
+        }
+
+        // Encode once; the same immutable frame is handed to every recipient
+        TextMessage frame;
+        try {
+            frame = encodeFrame(message);
+        } catch (IOException e) {
+            logger.error("Error encoding broadcast for doc: {}", docId, e);
+            return;
+        }
+        broadcastBytesEncoded.increment(frame.getPayloadLength());
+        boolean droppable = DROPPABLE_TYPES.contains(String.valueOf(message.get("type")));
+
         int successCount = 0;
         int failCount = 0;
 
-        for (Map.Entry<String, WebSocketSession> entry : sessions.entrySet()) {
-            String sessionId = entry.getKey();
-            WebSocketSession session = entry.getValue();
+        for (SessionRegistry.SessionEntry entry : sessions) {
+            String sessionId = entry.getSessionId();
 
             logger.debug("Checking session for broadcast - Session: {}, Excluding Session: {}",
                     sessionId, excludeSessionId);
@@ -438,8 +1006,11 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
             }
 
             try {
-                sendMessage(session, message);
-                successCount++;
+                if (entry.getOutboundQueue().enqueue(frame, droppable)) {
+                    successCount++;
+                } else {
+                    failCount++;
+                }
             } catch (Exception e) {
                 logger.error("Error broadcasting to session: {}", sessionId, e);
                 failCount++;
@@ -452,16 +1023,70 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
 
     private void sendMessage(WebSocketSession session, Object message) throws IOException {
         if (session.isOpen()) {
-            String json = objectMapper.writeValueAsString(message);
-            synchronized (session) {
-                session.sendMessage(new TextMessage(json));
-            }
+            boolean droppable = message instanceof Map<?, ?> map && DROPPABLE_TYPES.contains(String.valueOf(map.get("type")));
+            sendFrame(session, encodeFrame(message), droppable);
         } else {
             logger.warn("Attempted to send message to closed session: {}", session.getId());
         }
     }
 
-    private void sendError(WebSocketSession session, String error) throws IOException {
+    /**
+     * Serialize a message into a reusable frame. TextMessage built from bytes keeps
+     * both the UTF-8 payload and the decoded string, so it is never re-encoded per recipient.
+     */
+    private TextMessage encodeFrame(Object message) throws IOException {
+        return new TextMessage(objectMapper.writeValueAsBytes(message));
+    }
+
+    /**
+     * Hand a frame to the session's outbound queue. Never blocks on socket I/O;
+     * the queue's writer delivers it and applies the overflow policy if the client falls behind.
+     */
+    private boolean sendFrame(WebSocketSession session, WebSocketMessage<?> frame, boolean droppable) {
+        SessionRegistry.SessionEntry entry = sessionRegistry.get(session.getId());
+        if (entry == null) {
+            logger.warn("Attempted to send message to unregistered session: {}", session.getId());
+            return false;
+        }
+        return entry.getOutboundQueue().enqueue(frame, droppable);
+    }
+
+    /**
+     * Send an operation-bearing message in the session's negotiated protocol
+     */
+    private void sendOperation(WebSocketSession session, String type, CRDTOperation operation) throws IOException {
+        if (binaryCodec.isBinarySession(session)) {
+            byte frameType = "OPERATION_ACK".equals(type)
+                    ? BinaryOperationCodec.FRAME_OPERATION_ACK
+                    : BinaryOperationCodec.FRAME_OPERATION_BROADCAST;
+            SessionRegistry.SessionEntry entry = sessionRegistry.get(session.getId());
+            if (entry == null) {
+                logger.warn("Attempted to send message to unregistered session: {}", session.getId());
+                return;
+            }
+            sendBinaryOperation(entry, frameType, operation, binaryCodec.encodeOperationBody(operation));
+        } else {
+            sendMessage(session, Map.of(
+                    "type", type,
+                    "operation", operation,
+                    "serverId", serverId
+            ));
+        }
+    }
+
+    private boolean sendBinaryOperation(SessionRegistry.SessionEntry entry, byte frameType,
+                                        CRDTOperation operation, byte[] body) {
+        SessionOutboundQueue outboundQueue = entry.getOutboundQueue();
+
+        // Id definitions must reach the queue in the order they were assigned
+        synchronized (outboundQueue.getSendMonitor()) {
+            BinaryMessage frame = binaryCodec.encodeOperationFrame(
+                    frameType, operation, body, binaryCodec.outboundIds(entry.getSession()));
+            return outboundQueue.enqueue(frame, false);
+        }
+    }
+
+    void sendError(WebSocketSession session, String error) throws IOException {
         sendMessage(session, Map.of(
                 "type", "ERROR",
                 "message", error,
@@ -469,35 +1094,29 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         ));
     }
 
-    private void removeSession(String docId, String sessionId) {
-        Map<String, WebSocketSession> sessions = documentSessions.get(docId);
-        if (sessions != null) {
-            sessions.remove(sessionId);
-            if (sessions.isEmpty()) {
-                documentSessions.remove(docId);
-            }
+    /**
+     * Once no local session watches a document, let its Redis channel (and with it the
+     * recent operations ring) go after the grace period
+     */
+    private void releaseIfUnwatched(String docId) {
+        if (!sessionRegistry.hasSubscribers(docId)) {
+            channelSubscriptions.release(docId);
         }
     }
 
     public int getActiveSessionCount(String docId) {
-        Map<String, WebSocketSession> sessions = documentSessions.get(docId);
-        return sessions != null ? sessions.size() : 0;
+        return sessionRegistry.getActiveSessionCount(docId);
     }
 
     public java.util.Set<String> getActiveDocuments() {
-        return documentSessions.keySet();
+        return sessionRegistry.getActiveDocuments();
     }
 
     /**
      * Check if a specific session exists on this server
      */
     public boolean hasSession(String sessionId) {
-        for (java.util.Map<String, WebSocketSession> sessions : documentSessions.values()) {
-            if (sessions.containsKey(sessionId)) {
-                return true;
-            }
-        }
-        return false;
+        return sessionRegistry.contains(sessionId);
     }
 
     private Map<String, String> parseQueryParams(String query) {
@@ -517,28 +1136,4 @@ public class EditorWebSocketHandler extends TextWebSocketHandler {
         }
         return params;
     }
-
-    private static class SessionMetadata {
-        private final String docId;
-        private final String userId;
-        private final long connectedAt;
-
-        public SessionMetadata(String docId, String userId, long connectedAt) {
-            this.docId = docId;
-            this.userId = userId;
-            this.connectedAt = connectedAt;
-        }
-
-        public String getDocId() {
-            return docId;
-        }
-
-        public String getUserId() {
-            return userId;
-        }
-
-        public long getConnectedAt() {
-            return connectedAt;
-        }
-    }
-}
\ No newline at end of file
+}
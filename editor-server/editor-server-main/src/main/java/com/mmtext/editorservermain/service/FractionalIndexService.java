@@ -1,6 +1,11 @@
 package com.mmtext.editorservermain.service;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Service
 public class FractionalIndexService {
 
@@ -10,54 +15,159 @@ public class FractionalIndexService {
     private static final String START_INDEX = "a";
     private static final String END_INDEX = "z";
 
+    // Reused by generate() on each thread; keys rarely get longer than a few dozen characters
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[64]);
+
+    private final DistributionSummary keyLengths;
+
+    public FractionalIndexService(MeterRegistry meterRegistry) {
+        this.keyLengths = DistributionSummary.builder("editor.positions.key.length")
+                .description("Length of generated fractional positions")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     /**
      * Generate an index between two existing indices (i1 < i2).
      * This is a correct implementation of fractional indexing used in real CRDTs.
      */
     public String generateIndexBetween(String indexBefore, String indexAfter) {
+        String index = indexBetween(indexBefore, indexAfter);
+        keyLengths.record(index.length());
+        return index;
+    }
+
+    /**
+     * Generate count ordered indices between two existing indices (i1 < i2), for a run of
+     * characters inserted at one spot.
+     *
+     * Generating them one by one squeezes every key between the previous one and i2, so
+     * keys deepen every few characters. Instead the run gets a base index between the bounds
+     * (see {@link #generateRunBase}) followed by evenly spaced suffixes (see {@link #runPositions}).
+     */
+    public List<String> generateIndicesBetween(String indexBefore, String indexAfter, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        if (count == 1) {
+            return List.of(generateIndexBetween(indexBefore, indexAfter));
+        }
+
+        List<String> indices = runPositions(generateRunBase(indexBefore, indexAfter), count);
+        for (String index : indices) {
+            keyLengths.record(index.length());
+        }
+        return indices;
+    }
+
+    /**
+     * Generate the base index of a run between two existing indices (i1 < i2): an index
+     * strictly between them whose every extension still lies between them.
+     */
+    public String generateRunBase(String indexBefore, String indexAfter) {
+        String base = indexBetween(indexBefore, indexAfter);
+        // Extending a prefix of i2 could pass i2; move below it until the base is clear
+        String upper = indexAfter;
+        while (upper != null && upper.startsWith(base)) {
+            upper = base;
+            base = indexBetween(indexBefore, upper);
+        }
+        return base;
+    }
+
+    /**
+     * Positions of the characters of a run: the base followed by count evenly spaced
+     * fixed-width a-z suffixes, log_26(2 * count) characters long.
+     *
+     * Depends only on the base and the count, so an INSERT_RUN carries just its base position
+     * and every consumer derives the same per-character positions (editor-server-snapshot
+     * and the client mirror this).
+     */
+    public static List<String> runPositions(String base, int count) {
+        // At least two slots per key, so bumping a trailing 'a' never reaches the next key
+        int width = 1;
+        long slots = BASE;
+        while (slots < 2L * (count + 1)) {
+            slots *= BASE;
+            width++;
+        }
+
+        List<String> positions = new ArrayList<>(count);
+        char[] key = new char[base.length() + width];
+        base.getChars(0, base.length(), key, 0);
+        long step = slots / (count + 1);
+        long remainder = slots % (count + 1);
+
+        for (int i = 1; i <= count; i++) {
+            // floor(i * slots / (count + 1)) without overflowing
+            long value = step * i + remainder * i / (count + 1);
+            if (value % BASE == 0) {
+                // Keys never end in 'a', or nothing could be inserted right before them
+                value++;
+            }
+            for (int pos = key.length - 1; pos >= base.length(); pos--) {
+                key[pos] = (char) (MIN_CHAR + value % BASE);
+                value /= BASE;
+            }
+            positions.add(new String(key));
+        }
+        return positions;
+    }
+
+    private String indexBetween(String indexBefore, String indexAfter) {
         // Normalize boundaries
         String i1 = (indexBefore == null || indexBefore.isEmpty()) ? START_INDEX : indexBefore;
         String i2 = (indexAfter == null || indexAfter.isEmpty()) ? END_INDEX : indexAfter;
-        return generate(i1, i2, "");
+        return generate(i1, i2);
     }
 
     /**
-     * Recursive fractional index generator.
+     * Iterative fractional index generator.
      *
-     * prefix = the already-confirmed common prefix
-     * a = remaining part of i1
-     * b = remaining part of i2
+     * Walks both indices one position at a time, writing the confirmed prefix into a
+     * per-thread scratch buffer; the only allocation is the returned String.
+     * The result is at most one character longer than the longer input.
      */
-    private String generate(String a, String b, String prefix) {
-        char c1 = a.isEmpty() ? MIN_CHAR : a.charAt(0);
-        char c2 = b.isEmpty() ? MAX_CHAR : b.charAt(0);
-
-        int v1 = c1 - MIN_CHAR;
-        int v2 = c2 - MIN_CHAR;
-
-        // Case 1: Equal characters → continue deeper
-        if (v1 == v2) {
-            return generate(
-                    a.isEmpty() ? "" : a.substring(1),
-                    b.isEmpty() ? "" : b.substring(1),
-                    prefix + c1
-            );
-        }
+    private String generate(String a, String b) {
+        int aLength = a.length();
+        int bLength = b.length();
+        char[] out = scratchFor(Math.max(aLength, bLength) + 1);
+
+        int pos = 0;
+        // Once b has been dropped (Case 3) it stays an infinite upper bound
+        boolean bounded = true;
+
+        while (true) {
+            char c1 = pos < aLength ? a.charAt(pos) : MIN_CHAR;
+            char c2 = bounded && pos < bLength ? b.charAt(pos) : MAX_CHAR;
 
-        // Case 2: There is space between them
-        if (v1 + 1 < v2) {
-            int mid = (v1 + v2) / 2;  // midpoint
-            return prefix + (char) (MIN_CHAR + mid);
+            int v1 = c1 - MIN_CHAR;
+            int v2 = c2 - MIN_CHAR;
+
+            // Case 2: There is space between them
+            if (v1 != v2 && v1 + 1 < v2) {
+                int mid = (v1 + v2) / 2;  // midpoint
+                out[pos] = (char) (MIN_CHAR + mid);
+                return new String(out, 0, pos + 1);
+            }
+
+            // Case 1: Equal characters → continue deeper
+            // Case 3: NO SPACE → lock c1 into the prefix and continue with no upper bound
+            // Example: c1='b'(1), c2='c'(2) → no midpoint.
+            if (v1 != v2) {
+                bounded = false;
+            }
+            out[pos++] = c1;
         }
+    }
 
-        // Case 3: NO SPACE → must descend deeper
-        // Example: c1='b'(1), c2='c'(2) → no midpoint.
-        // We lock c1 into prefix and recurse.
-        return generate(
-                a.length() <= 1 ? "" : a.substring(1), // drop first char of a
-                "",                                    // b = infinite upper bound
-                prefix + c1
-        );
+    private static char[] scratchFor(int length) {
+        char[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+            SCRATCH.set(scratch);
+        }
+        return scratch;
     }
 
     /**
@@ -1,19 +1,28 @@
 package com.mmtext.editorservermain.service;
 
 import com.mmtext.editorservermain.model.CRDTOperation;
-import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.OperationLogWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Production-grade buffering service following real-time editor patterns.
@@ -24,139 +33,365 @@ import java.util.concurrent.locks.ReentrantLock;
  * - Adaptive: Reduces DB load by 95% while maintaining real-time feel
  *
  * This prevents excessive DB writes (one per keystroke) while keeping latency low.
+ *
+ * Producers (WebSocket handler threads) only append to the document's lock-free
+ * {@link OperationIngestRing}; all draining, persistence and publishing happens on one
+ * dedicated flusher thread, so a producer never waits on database I/O. A producer only
+ * waits when its document's ring is completely full, until the flusher has made room or
+ * editor.buffer.full-ring-timeout-ms has passed; then the operation fails.
+ *
+ * With editor.wal.enabled every operation is first appended to the local
+ * {@link OperationWriteAheadLog}, so buffered operations survive a crash: they are
+ * replayed into the buffers on startup and released from the log once persisted.
+ *
+ * The size and time thresholds come from {@link AdaptiveFlushController}, which with
+ * editor.buffer.adaptive.enabled tunes them from observed write latency and backlog.
+ *
+ * Buffers of idle documents are dropped through {@link #evict(String)}, so the flusher
+ * only walks documents that are still being written to.
  */
 @Service
 public class OperationBufferService {
 
     private static final Logger logger = LoggerFactory.getLogger(OperationBufferService.class);
 
-    private final CRDTOperationRepository operationRepository;
+    private static final long FULL_RING_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final OperationLogWriter operationLogWriter;
     private final RedisPublisherService redisPublisher;
+    private final RecentOperationsCache recentOperations;
+    private final OperationWriteAheadLog writeAheadLog;
+    private final AdaptiveFlushController flushController;
+    private final Counter fullRingWaits;
+    private final Counter fullRingRejections;
+    private final Counter failedFlushes;
 
-    @Value("${editor.buffer.max-buffer-size:50}")
-    private int maxBufferSize;
+    @Value("${editor.buffer.ring-capacity:4096}")
+    private int ringCapacity;
 
-    @Value("${editor.buffer.flush-interval-ms:500}")
-    private long flushIntervalMs;
+    @Value("${editor.buffer.full-ring-timeout-ms:5000}")
+    private long fullRingTimeoutMs;
 
     // Document-specific buffers for better concurrency
-    private final Map<String, List<CRDTOperation>> buffers = new ConcurrentHashMap<>();
-    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastFlushTime = new ConcurrentHashMap<>();
+    private final Map<String, DocumentBuffer> buffers = new ConcurrentHashMap<>();
+
+    // Evictions requested by DocumentLifecycleManager, carried out by the flusher
+    private final Queue<Eviction> evictions = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean wakeRequested = new AtomicBoolean();
+    private volatile boolean flushAllRequested;
+    private volatile boolean running;
+    private Thread flusherThread;
 
-    public OperationBufferService(CRDTOperationRepository operationRepository,
-                                  RedisPublisherService redisPublisher) {
-        this.operationRepository = operationRepository;
+    public OperationBufferService(OperationLogWriter operationLogWriter,
+                                  RedisPublisherService redisPublisher,
+                                  RecentOperationsCache recentOperations,
+                                  OperationWriteAheadLog writeAheadLog,
+                                  AdaptiveFlushController flushController,
+                                  MeterRegistry meterRegistry) {
+        this.operationLogWriter = operationLogWriter;
         this.redisPublisher = redisPublisher;
+        this.recentOperations = recentOperations;
+        this.writeAheadLog = writeAheadLog;
+        this.flushController = flushController;
+
+        this.fullRingWaits = Counter.builder("editor.buffer.ring.full")
+                .description("Times a producer found its document's ingest ring full and waited for the flusher")
+                .register(meterRegistry);
+        this.fullRingRejections = Counter.builder("editor.buffer.ring.rejected")
+                .description("Operations failed because their document's ingest ring stayed full too long")
+                .register(meterRegistry);
+        this.failedFlushes = Counter.builder("editor.buffer.flush.failures")
+                .description("Flushes whose database write failed; the operations are retried on the next flush")
+                .register(meterRegistry);
+        Gauge.builder("editor.buffer.pending", buffers, OperationBufferService::countPending)
+                .description("Operations buffered and not yet persisted, across all documents")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // Persist what a previous run logged but never flushed before accepting new operations
+        List<CRDTOperation> recovered = writeAheadLog.recover();
+        if (!recovered.isEmpty()) {
+            Map<String, List<CRDTOperation>> byDocument = new LinkedHashMap<>();
+            for (CRDTOperation operation : recovered) {
+                byDocument.computeIfAbsent(operation.getDocId(), k -> new ArrayList<>()).add(operation);
+            }
+            byDocument.forEach((docId, operations) -> bufferFor(docId).retry = operations);
+            logger.info("Replaying {} operations from the write-ahead log", recovered.size());
+            flushDue(true);
+        }
+
+        running = true;
+        flusherThread = Thread.ofPlatform()
+                .name("operation-flusher")
+                .daemon(true)
+                .start(this::flushLoop);
+        logger.info("Operation flusher started - Max buffer size: {}, Flush interval: {}ms, Ring capacity: {}",
+                flushController.batchSize(), flushController.flushIntervalMs(0), ringCapacity);
     }
 
     /**
-     * Add operation to buffer. Will auto-flush if buffer size exceeds threshold.
+     * Add operation to buffer. The flusher is woken once the buffer exceeds the size threshold.
+     *
+     * @throws IllegalStateException if the document's ring stayed full; the operation was not buffered
      */
     public void addOperation(CRDTOperation operation) {
         String docId = operation.getDocId();
+        DocumentBuffer buffer = bufferFor(docId);
 
-        // Get or create lock for this document
-        ReentrantLock lock = locks.computeIfAbsent(docId, k -> new ReentrantLock());
+        enqueue(buffer, operation);
+        logger.debug("Added operation to buffer for doc: {}, buffer size: {}", docId, buffer.ring.size());
 
-        lock.lock();
+        // Size-based flush
+        if (buffer.ring.size() >= flushController.batchSize()) {
+            wakeFlusher();
+        }
+    }
+
+    /**
+     * Add a batch of operations for one document
+     *
+     * @throws IllegalStateException if the document's ring stayed full; the operations before
+     *         the failed one stay buffered
+     */
+    public void addOperations(String docId, List<CRDTOperation> operations) {
+        DocumentBuffer buffer = bufferFor(docId);
+
+        for (CRDTOperation operation : operations) {
+            enqueue(buffer, operation);
+        }
+        logger.debug("Added {} operations to buffer for doc: {}, buffer size: {}",
+                operations.size(), docId, buffer.ring.size());
+
+        // Size-based flush
+        if (buffer.ring.size() >= flushController.batchSize()) {
+            wakeFlusher();
+        }
+    }
+
+    private DocumentBuffer bufferFor(String docId) {
+        return buffers.computeIfAbsent(docId, k -> new DocumentBuffer(ringCapacity));
+    }
+
+    /**
+     * Claim the operation's place in the ring, log it, then hand it to the flusher. Claiming
+     * first means an operation that cannot be buffered is never logged either.
+     */
+    private void enqueue(DocumentBuffer buffer, CRDTOperation operation) {
+        long position = claimSlot(buffer, operation);
         try {
-            List<CRDTOperation> buffer = buffers.computeIfAbsent(docId, k -> new ArrayList<>());
-            buffer.add(operation);
+            writeAheadLog.append(operation);
+        } catch (RuntimeException e) {
+            buffer.ring.publish(position, null);
+            throw e;
+        }
+        buffer.ring.publish(position, operation);
+    }
 
-            logger.debug("Added operation to buffer for doc: {}, buffer size: {}", docId, buffer.size());
+    private long claimSlot(DocumentBuffer buffer, CRDTOperation operation) {
+        long position = buffer.ring.claim();
+        if (position >= 0) {
+            return position;
+        }
 
-            // Size-based flush
-            if (buffer.size() >= maxBufferSize) {
-                logger.info("Buffer size threshold reached for doc: {}. Flushing {} operations",
-                        docId, buffer.size());
-                flushBuffer(docId);
+        fullRingWaits.increment();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fullRingTimeoutMs);
+        while (true) {
+            wakeFlusher();
+            LockSupport.parkNanos(FULL_RING_BACKOFF_NANOS);
+            position = buffer.ring.claim();
+            if (position >= 0) {
+                return position;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                fullRingRejections.increment();
+                throw new IllegalStateException("Operation buffer for document " + operation.getDocId()
+                        + " stayed full for " + fullRingTimeoutMs + "ms");
             }
-        } finally {
-            lock.unlock();
+        }
+    }
+
+    private void wakeFlusher() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            LockSupport.unpark(flusherThread);
         }
     }
 
     /**
-     * Scheduled flush - runs every configured interval (default 500ms)
-     * This ensures operations are persisted even during low-activity periods
+     * Flusher thread: wakes on size-threshold signals and at least every tick for time-based flushes
      */
-    @Scheduled(fixedDelayString = "${editor.buffer.flush-interval-ms:500}")
-    public void scheduledFlush() {
-        for (String docId : buffers.keySet()) {
-            ReentrantLock lock = locks.get(docId);
-            if (lock != null && lock.tryLock()) {
-                try {
-                    List<CRDTOperation> buffer = buffers.get(docId);
-                    if (buffer != null && !buffer.isEmpty()) {
-                        long lastFlush = lastFlushTime.getOrDefault(docId, 0L);
-                        long now = System.currentTimeMillis();
-
-                        // Time-based flush
-                        if (now - lastFlush >= flushIntervalMs) {
-                            logger.info("Time-based flush for doc: {}, operations: {}",
-                                    docId, buffer.size());
-                            flushBuffer(docId);
-                        }
-                    }
-                } finally {
-                    lock.unlock();
-                }
+    private void flushLoop() {
+        while (running) {
+            if (!wakeRequested.get()) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(flushController.tickMs()));
+            }
+            wakeRequested.set(false);
+
+            boolean force = flushAllRequested;
+            if (force) {
+                flushAllRequested = false;
+            }
+
+            try {
+                flushDue(force);
+                processEvictions();
+                flushController.maybeAdjust(System.currentTimeMillis(), () -> (long) countPending(buffers));
+            } catch (Exception e) {
+                logger.error("Error in operation flusher", e);
+            }
+        }
+    }
+
+    private void flushDue(boolean force) {
+        long now = System.currentTimeMillis();
+        int batchSize = flushController.batchSize();
+
+        for (Map.Entry<String, DocumentBuffer> entry : buffers.entrySet()) {
+            DocumentBuffer buffer = entry.getValue();
+            int pending = buffer.pendingCount();
+            if (pending == 0) {
+                continue;
+            }
+
+            if (force) {
+                flushBuffer(entry.getKey(), buffer, now);
+            } else if (pending >= batchSize) {
+                // Size-based flush
+                logger.info("Buffer size threshold reached for doc: {}. Flushing {} operations",
+                        entry.getKey(), pending);
+                flushBuffer(entry.getKey(), buffer, now);
+            } else if (now - buffer.lastFlushTime >= flushController.flushIntervalMs(buffer.arrivalRate)) {
+                // Time-based flush
+                logger.info("Time-based flush for doc: {}, operations: {}", entry.getKey(), pending);
+                flushBuffer(entry.getKey(), buffer, now);
             }
         }
     }
 
     /**
-     * Flush buffer for a specific document
+     * Flush buffer for a specific document. Runs on the flusher thread only.
      * This is the critical path where we:
      * 1. Save to primary DB
      * 2. Publish to Redis
      */
-    @Transactional
-    protected void flushBuffer(String docId) {
-        List<CRDTOperation> buffer = buffers.get(docId);
-        if (buffer == null || buffer.isEmpty()) {
+    private void flushBuffer(String docId, DocumentBuffer buffer, long now) {
+        // Operations from a failed flush go first, so they keep their place ahead of newer ones
+        int retried = buffer.retry.size();
+        List<CRDTOperation> toFlush = new ArrayList<>(retried + buffer.ring.size());
+        toFlush.addAll(buffer.retry);
+        buffer.retry = List.of();
+        buffer.ring.drainTo(toFlush);
+        buffer.arrivalRate = flushController.updateArrivalRate(buffer.arrivalRate,
+                toFlush.size() - retried, now - buffer.lastFlushTime);
+        buffer.lastFlushTime = now;
+
+        if (toFlush.isEmpty()) {
             return;
         }
 
+        List<CRDTOperation> saved;
+        long writeStart = System.nanoTime();
         try {
-            // Create a copy to avoid holding lock during I/O
-            List<CRDTOperation> toFlush = new ArrayList<>(buffer);
-            buffer.clear();
-            lastFlushTime.put(docId, System.currentTimeMillis());
-
-            // Batch save to database (uses Hibernate batch insert)
-            List<CRDTOperation> saved = operationRepository.saveAll(toFlush);
+            // Batch save to database (JPA or multi-row JDBC, see editor.persistence.writer)
+            saved = operationLogWriter.writeAll(toFlush);
+            flushController.recordWrite(System.nanoTime() - writeStart);
+        } catch (Exception e) {
+            flushController.recordWrite(System.nanoTime() - writeStart);
+            failedFlushes.increment();
+            logger.error("Error flushing buffer for doc: {} - retrying {} operations on the next flush",
+                    docId, toFlush.size(), e);
+            buffer.retry = toFlush;
+            return;
+        }
 
-            logger.info("Flushed {} operations to DB for doc: {}", saved.size(), docId);
+        logger.info("Flushed {} operations to DB for doc: {}", saved.size(), docId);
+        writeAheadLog.commit(toFlush);
 
-            // Publish each operation to Redis for real-time distribution
-            for (CRDTOperation op : saved) {
-                redisPublisher.publishOperation(op);
-            }
+        try {
+            // Make them available to SYNC_REQUEST before the Redis echo arrives
+            recentOperations.recordAll(saved);
 
+            // Publish the whole flush to Redis as one batch for real-time distribution
+            redisPublisher.publishOperations(docId, saved);
         } catch (Exception e) {
-            logger.error("Error flushing buffer for doc: {}", docId, e);
-            // Re-add operations to buffer on failure
-            buffers.computeIfAbsent(docId, k -> new ArrayList<>()).addAll(buffer);
-            throw e;
+            // Already persisted - clients pick these up through SYNC_REQUEST
+            logger.error("Error publishing flushed operations for doc: {}", docId, e);
+        }
+    }
+
+    /**
+     * Flush a document's buffer and drop it once empty. The caller must make sure no
+     * operations are added for the document meanwhile.
+     *
+     * Cancelling the returned future withdraws the request as long as the flusher has not
+     * started on it; once it has, cancel returns false and the future completes as usual.
+     *
+     * @return completes with true if the buffer is gone, false if it still holds operations
+     */
+    public CompletableFuture<Boolean> evict(String docId) {
+        Eviction eviction = new Eviction(docId);
+        evictions.add(eviction);
+        wakeFlusher();
+        if (!running) {
+            // No flusher left to pick it up
+            evictions.remove(eviction);
+            eviction.complete(false);
+        }
+        return eviction;
+    }
+
+    private void processEvictions() {
+        Eviction eviction;
+        while ((eviction = evictions.poll()) != null) {
+            // Withdrawn by a caller that stopped waiting; writers may be using the buffer again
+            if (!eviction.start()) {
+                continue;
+            }
+            DocumentBuffer buffer = buffers.get(eviction.docId);
+            if (buffer != null) {
+                flushBuffer(eviction.docId, buffer, System.currentTimeMillis());
+                if (buffer.pendingCount() > 0) {
+                    eviction.complete(false);
+                    continue;
+                }
+                buffers.remove(eviction.docId, buffer);
+            }
+            eviction.complete(true);
         }
     }
 
     /**
-     * Force flush all buffers - useful for shutdown or manual triggers
+     * Ask the flusher to flush every buffer on its next pass, regardless of size or age
      */
     public void flushAll() {
         logger.info("Force flushing all buffers");
-        for (String docId : buffers.keySet()) {
-            ReentrantLock lock = locks.get(docId);
-            if (lock != null) {
-                lock.lock();
-                try {
-                    flushBuffer(docId);
-                } finally {
-                    lock.unlock();
-                }
+        flushAllRequested = true;
+        wakeFlusher();
+    }
+
+    /**
+     * Stop the flusher and persist whatever is still buffered
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (flusherThread != null) {
+            LockSupport.unpark(flusherThread);
+            try {
+                flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // The flusher has exited, so this thread is now the only consumer
+        if (flusherThread == null || !flusherThread.isAlive()) {
+            flushDue(true);
+            Eviction eviction;
+            while ((eviction = evictions.poll()) != null) {
+                eviction.complete(false);
             }
         }
     }
@@ -165,7 +400,54 @@ public class OperationBufferService {
      * Get current buffer size for monitoring
      */
     public int getBufferSize(String docId) {
-        List<CRDTOperation> buffer = buffers.get(docId);
-        return buffer != null ? buffer.size() : 0;
+        DocumentBuffer buffer = buffers.get(docId);
+        return buffer != null ? buffer.pendingCount() : 0;
+    }
+
+    private static double countPending(Map<String, DocumentBuffer> buffers) {
+        long pending = 0;
+        for (DocumentBuffer buffer : buffers.values()) {
+            pending += buffer.pendingCount();
+        }
+        return pending;
+    }
+
+    /**
+     * Eviction request and its result. The flusher and a cancelling caller race for the
+     * started flag, so a withdrawn request is never carried out.
+     */
+    private static class Eviction extends CompletableFuture<Boolean> {
+        private final String docId;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        Eviction(String docId) {
+            this.docId = docId;
+        }
+
+        boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return start() && super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    private static class DocumentBuffer {
+        private final OperationIngestRing<CRDTOperation> ring;
+
+        // Flusher-thread state; volatile only so monitoring reads see recent values
+        private volatile List<CRDTOperation> retry = List.of();
+        private volatile long lastFlushTime;
+        private volatile double arrivalRate;
+
+        DocumentBuffer(int capacity) {
+            this.ring = new OperationIngestRing<>(capacity);
+        }
+
+        int pendingCount() {
+            return ring.size() + retry.size();
+        }
     }
-}
\ No newline at end of file
+}
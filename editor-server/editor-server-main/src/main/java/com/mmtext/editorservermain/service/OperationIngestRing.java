@@ -0,0 +1,136 @@
+package com.mmtext.editorservermain.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer / single-consumer ring.
+ *
+ * Each slot carries a sequence number (Vyukov's bounded queue): a producer claims a slot with one
+ * CAS on the tail and publishes it by advancing the slot's sequence, so producers never wait on
+ * each other beyond a retried CAS. Only one thread may call {@link #poll()} / {@link #drainTo}.
+ *
+ * {@link #claim()} and {@link #publish} split {@link #offer} for producers that must do work
+ * between reserving their place and handing the element over. The consumer stops at a claimed
+ * slot until it is published, so every claim must be published, if need be with null.
+ *
+ * @param <E> element type
+ */
+public final class OperationIngestRing<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Written by the consumer only; volatile so size() is meaningful on producer threads
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public OperationIngestRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    public boolean offer(E element) {
+        long position = claim();
+        if (position < 0) {
+            return false;
+        }
+        publish(position, element);
+        return true;
+    }
+
+    /**
+     * Reserve the next slot; elements come out in the order their slots were claimed
+     *
+     * @return the claimed position, or -1 if the ring is full
+     */
+    public long claim() {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (difference < 0) {
+                return -1;
+            }
+            // Otherwise another producer claimed the slot first - retry with the new tail
+        }
+    }
+
+    /**
+     * Hand over the element of a claimed slot; null gives the slot up and the consumer skips it
+     */
+    public void publish(long position, E element) {
+        int index = (int) (position & mask);
+        slots.lazySet(index, element);
+        sequences.lazySet(index, position + 1);
+    }
+
+    /**
+     * Consumer only
+     *
+     * @return the oldest published element, or null if none is available yet
+     */
+    public E poll() {
+        while (true) {
+            long position = head;
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                return null;
+            }
+
+            E element = slots.get(index);
+            slots.lazySet(index, null);
+            sequences.lazySet(index, position + mask + 1);
+            head = position + 1;
+            if (element != null) {
+                return element;
+            }
+            // A claim that was given up
+        }
+    }
+
+    /**
+     * Consumer only: move every published element into the target collection
+     *
+     * @return the number of elements moved
+     */
+    public int drainTo(Collection<? super E> target) {
+        int drained = 0;
+        E element;
+        while ((element = poll()) != null) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Approximate number of queued elements, including slots claimed but not yet published
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
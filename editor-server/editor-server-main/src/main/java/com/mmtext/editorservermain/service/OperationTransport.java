@@ -0,0 +1,26 @@
+package com.mmtext.editorservermain.service;
+
+/**
+ * Cross-server transport for persisted operations.
+ *
+ * Implementations deliver every payload published for a document to
+ * {@link RedisSubscriberService#onOperation} on each server that subscribed to it.
+ * Selected with editor.transport.type: "pubsub" (default) or "streams".
+ */
+public interface OperationTransport {
+
+    /**
+     * Publish a serialized operation for a document
+     */
+    void publish(String docId, String payload);
+
+    /**
+     * Start receiving a document's operations on this server
+     */
+    void subscribe(String docId);
+
+    /**
+     * Stop receiving a document's operations on this server
+     */
+    void unsubscribe(String docId);
+}
@@ -0,0 +1,426 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead log for operations that are buffered but not yet persisted.
+ *
+ * Every operation is appended before it is buffered (and so before the client is acked), into
+ * fixed-size memory-mapped segment files: wal-{id}.log, records [int length][int crc32][json]
+ * padded to 8 bytes. Writers do not lock: each one claims its record's space with a single
+ * atomic add on the segment position and copies the record in parallel with the others, so
+ * appends do not serialize the lock-free ingest path behind one monitor.
+ *
+ * Concurrent writers mean a crash can leave an unfinished record in front of finished ones.
+ * A record's header is written before its payload, so an unfinished record is either all zeros
+ * or fails its checksum; recovery steps over both and keeps reading to the end of the segment.
+ *
+ * Each operation remembers its segment; once every record of a full (sealed) segment has been
+ * committed to PostgreSQL the segment file is deleted. On startup all remaining segments are
+ * read back, records already present in crdt_operations are dropped, and the rest are handed
+ * to the buffer for flushing.
+ *
+ * Without fsync the log survives a JVM crash (the mapped pages belong to the OS page cache),
+ * not a host crash; editor.wal.fsync forces every append to disk at the cost of append latency.
+ */
+@Component
+public class OperationWriteAheadLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(OperationWriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_ALIGNMENT = 8;
+
+    private final ObjectMapper objectMapper;
+    private final CRDTOperationRepository operationRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.wal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${editor.wal.directory:./data/wal}")
+    private String directory;
+
+    @Value("${editor.wal.segment-size-bytes:67108864}")
+    private int segmentSizeBytes;
+
+    @Value("${editor.wal.fsync:false}")
+    private boolean fsync;
+
+    // segmentId -> segment, for every segment that still holds uncommitted records
+    private final Map<Long, Segment> segments = new ConcurrentHashMap<>();
+
+    private Path walDirectory;
+    private volatile Segment active;
+    private long nextSegmentId;
+    private Timer appendTimer;
+
+    public OperationWriteAheadLog(ObjectMapper objectMapper,
+                                  CRDTOperationRepository operationRepository,
+                                  MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.operationRepository = operationRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Read back the operations left in the log by a previous run and open a fresh segment.
+     * Must be called once, before the first append.
+     *
+     * @return operations not yet in crdt_operations, in log order, each tagged with its segment
+     */
+    public synchronized List<CRDTOperation> recover() {
+        if (!enabled) {
+            return List.of();
+        }
+
+        appendTimer = Timer.builder("editor.wal.append.time")
+                .description("Time to append one operation to the write-ahead log")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("editor.wal.segments", segments, Map::size)
+                .description("Write-ahead log segments holding uncommitted operations")
+                .register(meterRegistry);
+
+        List<CRDTOperation> recovered = new ArrayList<>();
+        int recoveredSegments;
+        try {
+            walDirectory = Paths.get(directory);
+            Files.createDirectories(walDirectory);
+
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(walDirectory)) {
+                files = listing.filter(path -> segmentIdOf(path) >= 0)
+                        .sorted((a, b) -> Long.compare(segmentIdOf(a), segmentIdOf(b)))
+                        .toList();
+            }
+
+            for (Path file : files) {
+                long segmentId = segmentIdOf(file);
+                nextSegmentId = Math.max(nextSegmentId, segmentId + 1);
+
+                List<CRDTOperation> records = readSegment(file);
+                for (CRDTOperation operation : records) {
+                    operation.setWalSegmentId(segmentId);
+                }
+
+                Segment segment = Segment.recovered(segmentId, file, records.size());
+                segments.put(segmentId, segment);
+                recovered.addAll(records);
+            }
+
+            recoveredSegments = files.size();
+            active = openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open write-ahead log in " + directory, e);
+        }
+
+        List<CRDTOperation> pending = dropPersisted(recovered);
+        logger.info("Write-ahead log opened - Directory: {}, Segments recovered: {}, Records: {}, Unpersisted: {}",
+                walDirectory.toAbsolutePath(), recoveredSegments, recovered.size(), pending.size());
+        return pending;
+    }
+
+    /**
+     * Append an operation; returns once its record is in the mapped segment (and on disk with fsync)
+     */
+    public void append(CRDTOperation operation) {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(operation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode operation for the write-ahead log", e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        int recordLength = recordLength(payload.length);
+        if (recordLength > segmentSizeBytes) {
+            throw new IllegalStateException("Operation of " + payload.length + " bytes exceeds the WAL segment size");
+        }
+
+        while (true) {
+            Segment segment = active;
+            int offset = segment.write(payload, (int) crc.getValue());
+            if (offset >= 0) {
+                if (fsync) {
+                    segment.buffer.force(offset, recordLength);
+                }
+                operation.setWalSegmentId(segment.id);
+                break;
+            }
+            rollOver(segment);
+        }
+
+        appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Mark operations as persisted, deleting every sealed segment that has nothing left uncommitted
+     */
+    public void commit(List<CRDTOperation> operations) {
+        if (!enabled) {
+            return;
+        }
+
+        Map<Long, Integer> perSegment = new HashMap<>();
+        for (CRDTOperation operation : operations) {
+            if (operation.getWalSegmentId() >= 0) {
+                perSegment.merge(operation.getWalSegmentId(), 1, Integer::sum);
+            }
+        }
+
+        perSegment.forEach((segmentId, count) -> {
+            Segment segment = segments.get(segmentId);
+            if (segment != null) {
+                segment.committed.addAndGet(count);
+                deleteIfDone(segment);
+            }
+        });
+    }
+
+    private synchronized void rollOver(Segment full) {
+        if (active == full) {
+            try {
+                full.seal();
+                active = openSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open a new write-ahead log segment", e);
+            }
+        }
+        // Also after losing the race: a commit may have skipped the segment while this writer was in it
+        deleteIfDone(full);
+    }
+
+    private Segment openSegment() throws IOException {
+        long segmentId = nextSegmentId++;
+        Path file = walDirectory.resolve(SEGMENT_PREFIX + segmentId + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeBytes);
+            Segment segment = new Segment(segmentId, file, buffer);
+            segments.put(segmentId, segment);
+            return segment;
+        }
+    }
+
+    private void deleteIfDone(Segment segment) {
+        if (!segment.isDone()) {
+            return;
+        }
+        if (segments.remove(segment.id) == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(segment.file);
+            logger.debug("Deleted committed write-ahead log segment {}", segment.id);
+        } catch (IOException e) {
+            logger.warn("Could not delete write-ahead log segment {}", segment.file, e);
+        }
+    }
+
+    private List<CRDTOperation> readSegment(Path file) throws IOException {
+        List<CRDTOperation> records = new ArrayList<>();
+        byte[] content = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+
+        int offset = 0;
+        while (content.length - offset >= HEADER_BYTES) {
+            int length = buffer.getInt(offset);
+            if (length == 0) {
+                // Unused space, or a record whose writer never got to its header
+                offset += RECORD_ALIGNMENT;
+                continue;
+            }
+            if (length < 0 || length > content.length - offset - HEADER_BYTES) {
+                logger.warn("Write-ahead log segment {} is cut off at offset {}", file, offset);
+                break;
+            }
+
+            int checksum = buffer.getInt(offset + 4);
+            byte[] payload = new byte[length];
+            buffer.get(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() == checksum) {
+                records.add(objectMapper.readValue(payload, CRDTOperation.class));
+            } else {
+                // Torn by the crash; its writer never returned, so the operation was never acked
+                logger.warn("Skipping torn record in write-ahead log segment {} at offset {}", file, offset);
+            }
+            offset += recordLength(length);
+        }
+        return records;
+    }
+
+    /**
+     * Drop recovered operations whose (docId, serverId, serverSeqNum) is already in crdt_operations,
+     * committing them in the log right away
+     */
+    private List<CRDTOperation> dropPersisted(List<CRDTOperation> recovered) {
+        Map<String, List<CRDTOperation>> byOrigin = new HashMap<>();
+        for (CRDTOperation operation : recovered) {
+            byOrigin.computeIfAbsent(operation.getDocId() + '\u0000' + operation.getServerId(), k -> new ArrayList<>())
+                    .add(operation);
+        }
+
+        Set<CRDTOperation> persisted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<CRDTOperation> group : byOrigin.values()) {
+            CRDTOperation first = group.get(0);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (CRDTOperation operation : group) {
+                min = Math.min(min, operation.getServerSeqNum());
+                max = Math.max(max, operation.getServerSeqNum());
+            }
+
+            Set<Long> stored = new HashSet<>();
+            for (CRDTOperation existing : operationRepository.findByDocIdAndServerIdAndServerSeqNumBetweenOrderByServerSeqNum(
+                    first.getDocId(), first.getServerId(), min, max)) {
+                stored.add(existing.getServerSeqNum());
+            }
+
+            for (CRDTOperation operation : group) {
+                if (stored.contains(operation.getServerSeqNum())) {
+                    persisted.add(operation);
+                }
+            }
+        }
+
+        commit(new ArrayList<>(persisted));
+
+        // Keep log order, which is the order the operations were originally buffered in
+        List<CRDTOperation> pending = new ArrayList<>(recovered.size() - persisted.size());
+        for (CRDTOperation operation : recovered) {
+            if (!persisted.contains(operation)) {
+                pending.add(operation);
+            }
+        }
+        return pending;
+    }
+
+    private static int recordLength(int payloadLength) {
+        int length = HEADER_BYTES + payloadLength;
+        return (length + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+    }
+
+    private static long segmentIdOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final AtomicInteger position = new AtomicInteger();
+        private final AtomicInteger writers = new AtomicInteger();
+        private final AtomicInteger appended = new AtomicInteger();
+        private final AtomicInteger committed = new AtomicInteger();
+        private volatile boolean sealed;
+
+        Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment recovered(long id, Path file, int records) {
+            Segment segment = new Segment(id, file, null);
+            segment.appended.set(records);
+            segment.sealed = true;
+            return segment;
+        }
+
+        void seal() {
+            sealed = true;
+        }
+
+        /**
+         * Sealed, no writer still copying into it, and every record committed.
+         * A writer registers before claiming space, and space can only be claimed before the
+         * claim that overflowed and sealed the segment, so no writer is missed here.
+         */
+        boolean isDone() {
+            return sealed && writers.get() == 0 && committed.get() >= appended.get();
+        }
+
+        /**
+         * Claim space for one record and copy it in. Header first: an unfinished record is
+         * either still all zeros or fails its checksum.
+         *
+         * @return the record's offset, or -1 if the segment is full
+         */
+        int write(byte[] payload, int checksum) {
+            writers.incrementAndGet();
+            try {
+                int length = recordLength(payload.length);
+                if (sealed) {
+                    return -1;
+                }
+                int offset = position.getAndAdd(length);
+                if (offset > buffer.capacity() - length) {
+                    return -1;
+                }
+                buffer.putInt(offset, payload.length);
+                buffer.putInt(offset + 4, checksum);
+                buffer.put(offset + HEADER_BYTES, payload);
+                appended.incrementAndGet();
+                return offset;
+            } finally {
+                writers.decrementAndGet();
+            }
+        }
+    }
+}
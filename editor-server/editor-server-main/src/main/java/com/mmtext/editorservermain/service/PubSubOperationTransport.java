@@ -0,0 +1,52 @@
+package com.mmtext.editorservermain.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Redis pub/sub transport: fire-and-forget PUBLISH on editor:doc:{docId}.
+ * Operations published while a subscriber connection is down are lost for that server.
+ *
+ * The listener container and adapter are resolved lazily: the adapter depends on the
+ * WebSocket handler, which depends on this transport.
+ */
+@Component
+@ConditionalOnProperty(name = "editor.transport.type", havingValue = "pubsub", matchIfMissing = true)
+public class PubSubOperationTransport implements OperationTransport {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+    private final ObjectProvider<MessageListenerAdapter> listenerAdapter;
+
+    public PubSubOperationTransport(RedisTemplate<String, String> redisTemplate,
+                                    ObjectProvider<RedisMessageListenerContainer> listenerContainer,
+                                    ObjectProvider<MessageListenerAdapter> listenerAdapter) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.listenerAdapter = listenerAdapter;
+    }
+
+    @Override
+    public void publish(String docId, String payload) {
+        redisTemplate.convertAndSend(RedisPublisherService.CHANNEL_PREFIX + docId, payload);
+    }
+
+    @Override
+    public void subscribe(String docId) {
+        listenerContainer.getObject().addMessageListener(listenerAdapter.getObject(), topicOf(docId));
+    }
+
+    @Override
+    public void unsubscribe(String docId) {
+        listenerContainer.getObject().removeMessageListener(listenerAdapter.getObject(), topicOf(docId));
+    }
+
+    private static ChannelTopic topicOf(String docId) {
+        return new ChannelTopic(RedisPublisherService.CHANNEL_PREFIX + docId);
+    }
+}
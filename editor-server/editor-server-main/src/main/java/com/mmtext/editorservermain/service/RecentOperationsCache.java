@@ -0,0 +1,226 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.dto.SequenceRange;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory ring of the most recent operations per document and origin server.
+ *
+ * Fed by local buffer flushes and by the Redis feed, so SYNC_REQUEST can be answered
+ * from memory; only the part of a gap the ring no longer holds goes to the database.
+ *
+ * Each ring holds a contiguous run of sequence numbers [low, high]. Anything below low
+ * (overrun, or committed before this server started watching the document) must be read
+ * from crdt_operations. A document is "seeded" once the highest persisted sequence number
+ * of every origin server is known - until then a server without a ring cannot be told
+ * apart from a server this node has simply not heard from yet.
+ *
+ * Documents are tracked while they have local subscribers and released afterwards.
+ */
+@Component
+public class RecentOperationsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentOperationsCache.class);
+
+    private static final Comparator<CRDTOperation> BY_SERVER_AND_SEQ =
+            Comparator.comparing(CRDTOperation::getServerId)
+                    .thenComparing(CRDTOperation::getServerSeqNum);
+
+    @Value("${editor.sync.ring-capacity:1024}")
+    private int capacity;
+
+    private final Map<String, DocumentRings> documents = new ConcurrentHashMap<>();
+
+    /**
+     * Start recording operations for a document
+     */
+    public void track(String docId) {
+        documents.computeIfAbsent(docId, k -> new DocumentRings());
+    }
+
+    /**
+     * Stop recording operations for a document and drop everything held for it
+     */
+    public void release(String docId) {
+        if (documents.remove(docId) != null) {
+            logger.debug("Released recent operations ring for doc: {}", docId);
+        }
+    }
+
+    public boolean isTracked(String docId) {
+        return documents.containsKey(docId);
+    }
+
+    public boolean isSeeded(String docId) {
+        DocumentRings rings = documents.get(docId);
+        return rings != null && rings.seeded;
+    }
+
+    /**
+     * Record the highest persisted sequence number per origin server.
+     * Rings that already exist are kept: whatever they are missing below low is fetched from the database.
+     * Does nothing for a document that is not tracked (any more).
+     */
+    public void seed(String docId, Map<String, Long> persistedMaxSeqs) {
+        DocumentRings rings = documents.get(docId);
+        if (rings == null) {
+            return;
+        }
+        persistedMaxSeqs.forEach((serverId, maxSeq) ->
+                rings.servers.computeIfAbsent(serverId, k -> new ServerRing(capacity, maxSeq + 1, maxSeq)));
+        rings.seeded = true;
+
+        logger.info("Seeded recent operations ring for doc: {}, servers: {}", docId, persistedMaxSeqs);
+    }
+
+    /**
+     * Record a persisted operation. Duplicates (a local flush followed by its Redis echo) are ignored.
+     */
+    public void record(CRDTOperation operation) {
+        DocumentRings rings = documents.get(operation.getDocId());
+        if (rings == null || operation.getServerSeqNum() == null) {
+            return;
+        }
+        rings.servers
+                .computeIfAbsent(operation.getServerId(),
+                        k -> new ServerRing(capacity, operation.getServerSeqNum(), operation.getServerSeqNum() - 1))
+                .append(operation);
+    }
+
+    /**
+     * Record a flushed batch. Sequence numbers are reserved before buffering, so a batch
+     * may hold them slightly out of order - sort first to keep the rings contiguous.
+     */
+    public void recordAll(List<CRDTOperation> operations) {
+        List<CRDTOperation> sorted = new ArrayList<>(operations);
+        sorted.sort(BY_SERVER_AND_SEQ);
+        for (CRDTOperation operation : sorted) {
+            record(operation);
+        }
+    }
+
+    /**
+     * Split what a client with the given version vector is missing into operations held in memory
+     * and sequence ranges that have to be read from the database.
+     * The document must be seeded.
+     */
+    public CatchUp collect(String docId, Map<String, Long> clientVector) {
+        CatchUp catchUp = new CatchUp();
+        DocumentRings rings = documents.get(docId);
+        if (rings == null) {
+            return catchUp;
+        }
+
+        Set<String> serverIds = new HashSet<>(rings.servers.keySet());
+        serverIds.addAll(clientVector.keySet());
+
+        for (String serverId : serverIds) {
+            ServerRing ring = rings.servers.get(serverId);
+            if (ring == null) {
+                // Seeded and never heard from since: nothing persisted for this server
+                continue;
+            }
+
+            long clientSeq = clientVector.getOrDefault(serverId, 0L);
+            List<CRDTOperation> operations = new ArrayList<>();
+            long databaseUpTo = ring.collect(clientSeq, operations);
+
+            if (databaseUpTo > clientSeq) {
+                catchUp.databaseRanges.add(new SequenceRange(serverId, clientSeq + 1, databaseUpTo));
+            }
+            if (!operations.isEmpty()) {
+                catchUp.fromMemory.put(serverId, operations);
+            }
+        }
+        return catchUp;
+    }
+
+    public int getTrackedDocumentCount() {
+        return documents.size();
+    }
+
+    /**
+     * Result of {@link #collect}: ring contents per server plus the ranges the ring no longer covers
+     */
+    public static class CatchUp {
+        private final Map<String, List<CRDTOperation>> fromMemory = new HashMap<>();
+        private final List<SequenceRange> databaseRanges = new ArrayList<>();
+
+        public Map<String, List<CRDTOperation>> getFromMemory() {
+            return fromMemory;
+        }
+
+        public List<SequenceRange> getDatabaseRanges() {
+            return databaseRanges;
+        }
+    }
+
+    private static class DocumentRings {
+        private final Map<String, ServerRing> servers = new ConcurrentHashMap<>();
+        private volatile boolean seeded;
+    }
+
+    /**
+     * Fixed-size ring indexed by sequence number. Holds the contiguous run [low, high];
+     * the ring is empty while high < low.
+     */
+    private static class ServerRing {
+        private final CRDTOperation[] slots;
+        private long low;
+        private long high;
+
+        ServerRing(int capacity, long low, long high) {
+            this.slots = new CRDTOperation[capacity];
+            this.low = low;
+            this.high = high;
+        }
+
+        synchronized void append(CRDTOperation operation) {
+            long seq = operation.getServerSeqNum();
+            if (seq <= high) {
+                return;
+            }
+            if (seq != high + 1) {
+                // Gap in the feed - only what follows it is contiguous
+                low = seq;
+            }
+
+            slots[slotOf(seq)] = operation;
+            high = seq;
+
+            if (high - low + 1 > slots.length) {
+                low = high - slots.length + 1;
+            }
+        }
+
+        /**
+         * Copy every held operation after clientSeq into out.
+         *
+         * @return the highest sequence number the caller must read from the database,
+         *         or a value not above clientSeq if the ring covers the whole gap
+         */
+        synchronized long collect(long clientSeq, List<CRDTOperation> out) {
+            for (long seq = Math.max(clientSeq + 1, low); seq <= high; seq++) {
+                out.add(slots[slotOf(seq)]);
+            }
+            return Math.min(low - 1, high);
+        }
+
+        private int slotOf(long seq) {
+            return (int) (seq % slots.length);
+        }
+    }
+}
@@ -1,45 +1,92 @@
 package com.mmtext.editorservermain.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.dto.OperationBatchEnvelope;
 import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 
 
 @Service
 public class RedisPublisherService {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisPublisherService.class);
-    private static final String CHANNEL_PREFIX = "editor:doc:";
+    public static final String CHANNEL_PREFIX = "editor:doc:";
 
-    private final RedisTemplate<String, String> redisTemplate;
+    private final OperationTransport transport;
     private final ObjectMapper objectMapper;
+    private final Timer publishTimer;
 
-    public RedisPublisherService(RedisTemplate<String, String> redisTemplate,
-                                 ObjectMapper objectMapper) {
-        this.redisTemplate = redisTemplate;
+    public RedisPublisherService(OperationTransport transport,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.transport = transport;
         this.objectMapper = objectMapper;
+        this.publishTimer = Timer.builder("editor.redis.publish.time")
+                .description("Time to serialize and publish one flush worth of operations")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish every operation of one flush as a single batch envelope:
+     * one serialization and one round trip instead of one per operation
+     */
+    public void publishOperations(String docId, List<CRDTOperation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (operations.size() == 1) {
+            publishOperation(operations.get(0));
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<CRDTOperation> ordered = new ArrayList<>(operations);
+            ordered.sort(Comparator.comparing(CRDTOperation::getServerSeqNum));
+
+            OperationBatchEnvelope envelope = new OperationBatchEnvelope(
+                    docId, ordered.get(0).getServerId(), ordered);
+            transport.publish(docId, objectMapper.writeValueAsString(envelope));
+
+            logger.debug("Published operation batch to Redis for doc: {}, seq: {}-{}, count: {}",
+                    docId, envelope.getFromSeq(), envelope.getToSeq(), ordered.size());
+        } catch (Exception e) {
+            logger.error("Error publishing operation batch to Redis", e);
+            throw new RuntimeException("Failed to publish operation batch", e);
+        } finally {
+            publishTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
     /**
-     * Publish operation to Redis pub/sub channel
-     * Channel format: editor:doc:{docId}
+     * Publish operation through the configured transport
+     * Pub/sub channel format: editor:doc:{docId}, stream format: editor:stream:{docId}
      */
     public void publishOperation(CRDTOperation operation) {
+        long start = System.nanoTime();
         try {
-            String channel = CHANNEL_PREFIX + operation.getDocId();
             String message = objectMapper.writeValueAsString(operation);
 
-            redisTemplate.convertAndSend(channel, message);
+            transport.publish(operation.getDocId(), message);
 
-            logger.debug("Published operation to Redis channel: {}, seq: {}",
-                    channel, operation.getServerSeqNum());
+            logger.debug("Published operation to Redis for doc: {}, seq: {}",
+                    operation.getDocId(), operation.getServerSeqNum());
         } catch (Exception e) {
             logger.error("Error publishing operation to Redis", e);
             throw new RuntimeException("Failed to publish operation", e);
+        } finally {
+            publishTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 }
@@ -1,13 +1,21 @@
 package com.mmtext.editorservermain.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.dto.OperationBatchEnvelope;
 import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Service
 public class RedisSubscriberService implements MessageListener {
 
@@ -15,11 +23,32 @@ public class RedisSubscriberService implements MessageListener {
 
     private final ObjectMapper objectMapper;
     private final WebSocketMessageService webSocketService;
+    private final RecentOperationsCache recentOperations;
+    private final DocumentChannelSubscriptions channelSubscriptions;
+    private final DocumentLaneExecutor documentLanes;
+    private final Timer receiveTimer;
+
+    @Value("${editor.server.id}")
+    private String serverId;
+
+    @Value("${editor.delivery.local-first:false}")
+    private boolean localFirst;
 
     public RedisSubscriberService(ObjectMapper objectMapper,
-                                  WebSocketMessageService webSocketService) {
+                                  WebSocketMessageService webSocketService,
+                                  RecentOperationsCache recentOperations,
+                                  DocumentChannelSubscriptions channelSubscriptions,
+                                  DocumentLaneExecutor documentLanes,
+                                  MeterRegistry meterRegistry) {
         this.objectMapper = objectMapper;
         this.webSocketService = webSocketService;
+        this.recentOperations = recentOperations;
+        this.channelSubscriptions = channelSubscriptions;
+        this.documentLanes = documentLanes;
+        this.receiveTimer = Timer.builder("editor.redis.receive.time")
+                .description("Time to decode, record and fan out one received Redis message")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     @Override
@@ -30,13 +59,89 @@ public class RedisSubscriberService implements MessageListener {
 
             logger.info("Received message from Redis channel: {}", channel);
 
-            CRDTOperation operation = objectMapper.readValue(body, CRDTOperation.class);
+            String docId = channel.startsWith(RedisPublisherService.CHANNEL_PREFIX)
+                    ? channel.substring(RedisPublisherService.CHANNEL_PREFIX.length())
+                    : null;
+            onOperation(docId, body, false);
+
+        } catch (Exception e) {
+            logger.error("Error processing Redis message", e);
+        }
+    }
+
+    /**
+     * Handle a single operation or a batch envelope delivered by the configured transport.
+     * Handed off to the document's lane: per-document order is kept while the transport's
+     * thread moves on to the next message.
+     *
+     * @param replay true for history read back on subscribe: only fills the recent operations ring
+     */
+    public void onOperation(String docId, String body, boolean replay) {
+        documentLanes.execute(docId, () -> process(docId, body, replay));
+    }
+
+    private void process(String docId, String body, boolean replay) {
+        long start = System.nanoTime();
+        try {
+            // Messages can still arrive briefly after a channel was dropped - skip them before decoding
+            if (docId != null && !channelSubscriptions.isInterested(docId)) {
+                logger.debug("Dropping message for document without local sessions: {}", docId);
+                return;
+            }
+
+            JsonNode message = objectMapper.readTree(body);
+            if (message.has("operations")) {
+                onBatch(objectMapper.treeToValue(message, OperationBatchEnvelope.class), replay);
+                return;
+            }
+
+            CRDTOperation operation = objectMapper.treeToValue(message, CRDTOperation.class);
+
+            // Keep the recent operations ring current for SYNC_REQUEST catch-up
+            recentOperations.record(operation);
+
+            if (replay) {
+                return;
+            }
+
+            // Local-first: this server already delivered its own operations to local subscribers
+            if (localFirst && serverId.equals(operation.getServerId())) {
+                logger.debug("Suppressing Redis echo of local operation - Doc: {}, Seq: {}",
+                        operation.getDocId(), operation.getServerSeqNum());
+                return;
+            }
 
             // Forward to WebSocket clients subscribed to this document
             webSocketService.broadcastOperation(operation);
 
         } catch (Exception e) {
-            logger.error("Error processing Redis message", e);
+            logger.error("Error processing operation for doc: {}", docId, e);
+        } finally {
+            if (!replay) {
+                receiveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void onBatch(OperationBatchEnvelope envelope, boolean replay) {
+        List<CRDTOperation> operations = envelope.getOperations();
+        if (operations == null || operations.isEmpty()) {
+            return;
         }
+
+        recentOperations.recordAll(operations);
+
+        if (replay) {
+            return;
+        }
+
+        if (localFirst && serverId.equals(envelope.getServerId())) {
+            logger.debug("Suppressing Redis echo of local operation batch - Doc: {}, Seq: {}-{}",
+                    envelope.getDocId(), envelope.getFromSeq(), envelope.getToSeq());
+            return;
+        }
+
+        // Forward as one batched frame per recipient
+        webSocketService.broadcastOperations(envelope.getDocId(), operations);
     }
 }
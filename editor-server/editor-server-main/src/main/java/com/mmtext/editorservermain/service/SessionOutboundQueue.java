@@ -0,0 +1,315 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free outbound queue for a single WebSocket session.
+ *
+ * Producers (inbound handler threads, the Redis listener) only enqueue pre-encoded frames.
+ * A single writer task per session drains the queue on the shared writer executor, so a
+ * slow client only ever delays its own queue - never the thread that produced the frame.
+ *
+ * The byte limit applies to the frames queued ahead of a new one, so a single frame larger
+ * than the limit (a big SYNC_RESPONSE or batch) is still delivered instead of forcing a
+ * resync that would only produce it again.
+ *
+ * When the per-session message or byte limit is exceeded the configured overflow policy applies:
+ * - DROP_SESSION: discard the backlog and close the session
+ * - COALESCE: evict queued frames that are safe to lose (presence, pongs), falling back to RESYNC
+ * - RESYNC: discard the backlog and tell the client to catch up with a SYNC_REQUEST
+ */
+public class SessionOutboundQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutboundQueue.class);
+
+    public enum OverflowPolicy {
+        DROP_SESSION,
+        COALESCE,
+        RESYNC
+    }
+
+    private final WebSocketSession session;
+    private final Executor writerExecutor;
+    private final int maxMessages;
+    private final long maxBytes;
+    private final OverflowPolicy overflowPolicy;
+    private final WebSocketMessage<?> resyncFrame;
+
+    private final AtomicLong serverPendingMessages;
+    private final DistributionSummary depthSummary;
+    private final Timer timeInQueue;
+    private final Counter overflowCounter;
+
+    private final ConcurrentLinkedQueue<QueuedFrame> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingMessages = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final Object sendMonitor = new Object();
+    private volatile Runnable backlogDiscardHook;
+    private volatile boolean closed;
+
+    SessionOutboundQueue(WebSocketSession session,
+                         Executor writerExecutor,
+                         int maxMessages,
+                         long maxBytes,
+                         OverflowPolicy overflowPolicy,
+                         WebSocketMessage<?> resyncFrame,
+                         AtomicLong serverPendingMessages,
+                         DistributionSummary depthSummary,
+                         Timer timeInQueue,
+                         Counter overflowCounter) {
+        this.session = session;
+        this.writerExecutor = writerExecutor;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.resyncFrame = resyncFrame;
+        this.serverPendingMessages = serverPendingMessages;
+        this.depthSummary = depthSummary;
+        this.timeInQueue = timeInQueue;
+        this.overflowCounter = overflowCounter;
+    }
+
+    /**
+     * Enqueue a frame for delivery. Never blocks.
+     *
+     * @param droppable true if the frame may be evicted under the COALESCE policy
+     * @return false if the frame was not accepted (session closed or dropped on overflow)
+     */
+    public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+        if (closed || !session.isOpen()) {
+            return false;
+        }
+
+        QueuedFrame queued = new QueuedFrame(frame, droppable, System.nanoTime());
+
+        if (!reserve(queued)) {
+            if (!handleOverflow(queued)) {
+                return false;
+            }
+        }
+
+        queue.offer(queued);
+        depthSummary.record(pendingMessages.get());
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * Stop accepting frames and release everything still queued.
+     */
+    public void close() {
+        closed = true;
+        clear();
+    }
+
+    public int getPendingMessages() {
+        return pendingMessages.get();
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * Monitor held by producers whose frames depend on earlier frames (binary id definitions).
+     * The backlog is only ever discarded while holding it.
+     */
+    public Object getSendMonitor() {
+        return sendMonitor;
+    }
+
+    /**
+     * Runs whenever queued frames are discarded for a resync, while holding the send monitor
+     */
+    public void setBacklogDiscardHook(Runnable backlogDiscardHook) {
+        this.backlogDiscardHook = backlogDiscardHook;
+    }
+
+    private boolean reserve(QueuedFrame queued) {
+        int messages = pendingMessages.incrementAndGet();
+        long bytesAhead = pendingBytes.getAndAdd(queued.size());
+        if (messages > maxMessages || bytesAhead >= maxBytes) {
+            pendingMessages.decrementAndGet();
+            pendingBytes.addAndGet(-queued.size());
+            return false;
+        }
+        serverPendingMessages.incrementAndGet();
+        return true;
+    }
+
+    private void forceReserve(QueuedFrame queued) {
+        pendingMessages.incrementAndGet();
+        pendingBytes.addAndGet(queued.size());
+        serverPendingMessages.incrementAndGet();
+    }
+
+    private void release(QueuedFrame queued) {
+        pendingMessages.decrementAndGet();
+        pendingBytes.addAndGet(-queued.size());
+        serverPendingMessages.decrementAndGet();
+    }
+
+    /**
+     * @return true if the frame has been reserved and should still be queued
+     */
+    private boolean handleOverflow(QueuedFrame queued) {
+        overflowCounter.increment();
+
+        switch (overflowPolicy) {
+            case DROP_SESSION:
+                logger.warn("Outbound queue overflow - closing session: {}, pending: {} msgs / {} bytes",
+                        session.getId(), pendingMessages.get(), pendingBytes.get());
+                closed = true;
+                clear();
+                writerExecutor.execute(() -> {
+                    try {
+                        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+                    } catch (Exception e) {
+                        logger.debug("Error closing overflowed session: {}", session.getId(), e);
+                    }
+                });
+                return false;
+
+            case COALESCE:
+                if (evictDroppable() && reserve(queued)) {
+                    logger.debug("Outbound queue overflow - coalesced droppable frames for session: {}",
+                            session.getId());
+                    return true;
+                }
+                // Nothing left to coalesce - the client has to catch up
+                requestResync();
+                return false;
+
+            case RESYNC:
+            default:
+                requestResync();
+                return false;
+        }
+    }
+
+    private boolean evictDroppable() {
+        boolean evicted = false;
+        for (QueuedFrame queued : queue) {
+            if (queued.isDroppable() && queue.remove(queued)) {
+                release(queued);
+                evicted = true;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Replace the whole backlog with a single RESYNC_REQUIRED frame.
+     * The client answers with a SYNC_REQUEST carrying its version vector.
+     */
+    private void requestResync() {
+        logger.warn("Outbound queue overflow - forcing resync for session: {}, pending: {} msgs / {} bytes",
+                session.getId(), pendingMessages.get(), pendingBytes.get());
+
+        synchronized (sendMonitor) {
+            clear();
+
+            Runnable hook = backlogDiscardHook;
+            if (hook != null) {
+                hook.run();
+            }
+
+            QueuedFrame resync = new QueuedFrame(resyncFrame, false, System.nanoTime());
+            forceReserve(resync);
+            queue.offer(resync);
+        }
+        scheduleDrain();
+    }
+
+    private void clear() {
+        QueuedFrame queued;
+        while ((queued = queue.poll()) != null) {
+            release(queued);
+        }
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            writerExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Single writer: only one drain task per session runs at a time,
+     * so the underlying session never sees concurrent sends.
+     */
+    private void drain() {
+        try {
+            QueuedFrame queued;
+            while ((queued = queue.poll()) != null) {
+                release(queued);
+                timeInQueue.record(System.nanoTime() - queued.getEnqueuedAtNanos(), TimeUnit.NANOSECONDS);
+
+                if (!session.isOpen()) {
+                    clear();
+                    return;
+                }
+
+                try {
+                    session.sendMessage(queued.getFrame());
+                } catch (Exception e) {
+                    logger.error("Error writing to session: {}", session.getId(), e);
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+
+        // A producer may have enqueued between the last poll and clearing the flag
+        if (!queue.isEmpty() && !closed) {
+            scheduleDrain();
+        }
+    }
+
+    private static class QueuedFrame {
+        private final WebSocketMessage<?> frame;
+        private final boolean droppable;
+        private final long enqueuedAtNanos;
+
+        QueuedFrame(WebSocketMessage<?> frame, boolean droppable, long enqueuedAtNanos) {
+            this.frame = frame;
+            this.droppable = droppable;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        WebSocketMessage<?> getFrame() {
+            return frame;
+        }
+
+        boolean isDroppable() {
+            return droppable;
+        }
+
+        long getEnqueuedAtNanos() {
+            return enqueuedAtNanos;
+        }
+
+        int size() {
+            return frame.getPayloadLength();
+        }
+    }
+}
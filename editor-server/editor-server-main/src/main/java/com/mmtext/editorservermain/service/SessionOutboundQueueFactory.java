@@ -0,0 +1,117 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates per-session outbound queues sharing one writer executor and one set of
+ * server-level metrics.
+ *
+ * Writers run on virtual threads: a session stuck on a slow socket parks its own
+ * virtual thread and nothing else.
+ */
+@Component
+public class SessionOutboundQueueFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionOutboundQueueFactory.class);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.server.id}")
+    private String serverId;
+
+    @Value("${editor.websocket.outbound.max-messages:1000}")
+    private int maxMessages;
+
+    @Value("${editor.websocket.outbound.max-bytes:1048576}")
+    private long maxBytes;
+
+    @Value("${editor.websocket.outbound.overflow-policy:RESYNC}")
+    private SessionOutboundQueue.OverflowPolicy overflowPolicy;
+
+    private final ExecutorService writerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong serverPendingMessages = new AtomicLong();
+
+    private DistributionSummary depthSummary;
+    private Timer timeInQueue;
+    private Counter overflowCounter;
+    private TextMessage resyncFrame;
+
+    public SessionOutboundQueueFactory(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() throws Exception {
+        Gauge.builder("editor.websocket.outbound.pending", serverPendingMessages, AtomicLong::get)
+                .description("Frames queued for delivery across all sessions")
+                .tag("server", serverId)
+                .register(meterRegistry);
+
+        depthSummary = DistributionSummary.builder("editor.websocket.outbound.queue.depth")
+                .description("Per-session outbound queue depth observed at enqueue")
+                .tag("server", serverId)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        timeInQueue = Timer.builder("editor.websocket.outbound.queue.time")
+                .description("Time a frame waits in a session outbound queue before being written")
+                .tag("server", serverId)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        overflowCounter = Counter.builder("editor.websocket.outbound.overflow")
+                .description("Outbound queue overflows handled by the overflow policy")
+                .tag("server", serverId)
+                .tag("policy", overflowPolicy.name())
+                .register(meterRegistry);
+
+        resyncFrame = new TextMessage(objectMapper.writeValueAsBytes(Map.of(
+                "type", "RESYNC_REQUIRED",
+                "serverId", serverId,
+                "message", "Outbound queue overflow - send SYNC_REQUEST to catch up"
+        )));
+
+        logger.info("Outbound queues configured - Max messages: {}, Max bytes: {}, Overflow policy: {}",
+                maxMessages, maxBytes, overflowPolicy);
+    }
+
+    public SessionOutboundQueue create(WebSocketSession session) {
+        return new SessionOutboundQueue(
+                session,
+                writerExecutor,
+                maxMessages,
+                maxBytes,
+                overflowPolicy,
+                resyncFrame,
+                serverPendingMessages,
+                depthSummary,
+                timeInQueue,
+                overflowCounter
+        );
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writerExecutor.shutdown();
+    }
+}
@@ -0,0 +1,249 @@
+package com.mmtext.editorservermain.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the WebSocket sessions connected to this server.
+ *
+ * - sessionId -> {@link SessionEntry}: O(1) lookup for every per-session question
+ *   (is it local, which document, which user, which outbound queue)
+ * - docId -> SessionEntry[]: the document's subscribers as a compact array, replaced
+ *   copy-on-write on subscribe/unsubscribe. Broadcasts read one volatile array and
+ *   iterate it without locking or allocating, independently of how many documents are open.
+ */
+@Component
+public class SessionRegistry {
+
+    private static final SessionEntry[] NO_SESSIONS = new SessionEntry[0];
+
+    public enum State {
+        CONNECTED,
+        SUBSCRIBED
+    }
+
+    private final Map<String, SessionEntry> sessions = new ConcurrentHashMap<>();
+    private final Map<String, SessionEntry[]> documentIndex = new ConcurrentHashMap<>();
+
+    /**
+     * Register a newly connected session
+     */
+    public SessionEntry register(WebSocketSession session, SessionOutboundQueue outboundQueue) {
+        SessionEntry entry = new SessionEntry(session, outboundQueue);
+        sessions.put(session.getId(), entry);
+        return entry;
+    }
+
+    /**
+     * Subscribe a session to a document, leaving the document it was subscribed to before
+     *
+     * @return the entry, or null if the session is not registered
+     */
+    public SessionEntry subscribe(String sessionId, String docId, String userId) {
+        SessionEntry entry = sessions.get(sessionId);
+        if (entry == null) {
+            return null;
+        }
+
+        synchronized (entry) {
+            if (entry.closed) {
+                // Removed while this subscribe was looking it up
+                return null;
+            }
+            Subscription previous = entry.subscription;
+            if (previous != null) {
+                if (previous.docId.equals(docId)) {
+                    entry.subscription = new Subscription(docId, userId, previous.subscribedAt);
+                    return entry;
+                }
+                removeFromIndex(previous.docId, entry);
+            }
+
+            entry.subscription = new Subscription(docId, userId, System.currentTimeMillis());
+            documentIndex.compute(docId, (k, current) -> append(current, entry));
+        }
+        return entry;
+    }
+
+    /**
+     * Unsubscribe a session from its document; the connection stays registered
+     *
+     * @return the document the session left, or null if it was not subscribed
+     */
+    public String unsubscribe(String sessionId) {
+        SessionEntry entry = sessions.get(sessionId);
+        return entry != null ? detach(entry) : null;
+    }
+
+    /**
+     * Forget a closed session entirely
+     *
+     * @return the removed entry (still carrying its last subscription), or null if unknown
+     */
+    public SessionEntry remove(String sessionId) {
+        SessionEntry entry = sessions.remove(sessionId);
+        if (entry != null) {
+            synchronized (entry) {
+                // A subscribe that already holds the entry must not put it back in the index
+                entry.closed = true;
+                Subscription subscription = entry.subscription;
+                if (subscription != null) {
+                    removeFromIndex(subscription.docId, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    public SessionEntry get(String sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    public boolean contains(String sessionId) {
+        return sessions.containsKey(sessionId);
+    }
+
+    /**
+     * Current subscribers of a document. The returned array is never modified - do not modify it.
+     */
+    public SessionEntry[] sessionsOf(String docId) {
+        SessionEntry[] subscribers = documentIndex.get(docId);
+        return subscribers != null ? subscribers : NO_SESSIONS;
+    }
+
+    public boolean hasSubscribers(String docId) {
+        return documentIndex.containsKey(docId);
+    }
+
+    public int getActiveSessionCount(String docId) {
+        return sessionsOf(docId).length;
+    }
+
+    public Set<String> getActiveDocuments() {
+        return documentIndex.keySet();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private String detach(SessionEntry entry) {
+        synchronized (entry) {
+            Subscription subscription = entry.subscription;
+            if (subscription == null) {
+                return null;
+            }
+            entry.subscription = null;
+            removeFromIndex(subscription.docId, entry);
+            return subscription.docId;
+        }
+    }
+
+    private void removeFromIndex(String docId, SessionEntry entry) {
+        documentIndex.computeIfPresent(docId, (k, current) -> without(current, entry));
+    }
+
+    private static SessionEntry[] append(SessionEntry[] current, SessionEntry entry) {
+        if (current == null) {
+            return new SessionEntry[] {entry};
+        }
+        SessionEntry[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = entry;
+        return next;
+    }
+
+    /**
+     * @return the array without the entry, or null (removing the mapping) if it becomes empty
+     */
+    private static SessionEntry[] without(SessionEntry[] current, SessionEntry entry) {
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == entry) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return current;
+        }
+        if (current.length == 1) {
+            return null;
+        }
+
+        SessionEntry[] next = new SessionEntry[current.length - 1];
+        System.arraycopy(current, 0, next, 0, index);
+        System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+        return next;
+    }
+
+    /**
+     * One connected session: its socket, its outbound queue and its current subscription
+     */
+    public static class SessionEntry {
+        private final WebSocketSession session;
+        private final SessionOutboundQueue outboundQueue;
+        private final long connectedAt;
+        private volatile Subscription subscription;
+
+        // Set by remove; guarded by the entry's monitor
+        private boolean closed;
+
+        SessionEntry(WebSocketSession session, SessionOutboundQueue outboundQueue) {
+            this.session = session;
+            this.outboundQueue = outboundQueue;
+            this.connectedAt = System.currentTimeMillis();
+        }
+
+        public String getSessionId() {
+            return session.getId();
+        }
+
+        public WebSocketSession getSession() {
+            return session;
+        }
+
+        public SessionOutboundQueue getOutboundQueue() {
+            return outboundQueue;
+        }
+
+        public long getConnectedAt() {
+            return connectedAt;
+        }
+
+        public State getState() {
+            return subscription != null ? State.SUBSCRIBED : State.CONNECTED;
+        }
+
+        public String getDocId() {
+            Subscription current = subscription;
+            return current != null ? current.docId : null;
+        }
+
+        public String getUserId() {
+            Subscription current = subscription;
+            return current != null ? current.userId : null;
+        }
+
+        public long getSubscribedAt() {
+            Subscription current = subscription;
+            return current != null ? current.subscribedAt : 0L;
+        }
+    }
+
+    private static class Subscription {
+        private final String docId;
+        private final String userId;
+        private final long subscribedAt;
+
+        Subscription(String docId, String userId, long subscribedAt) {
+            this.docId = docId;
+            this.userId = userId;
+            this.subscribedAt = subscribedAt;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams the current document state from the snapshot database to a subscribing client.
+ *
+ * Frames, in order:
+ *   STATE_CHUNK     {docId, chunk, positions[], characters[]} - up to chunk-size characters in document order
+ *   STATE_COMPLETE  {docId, totalCharacters, versionVector}   - the vector the streamed state corresponds to
+ *
+ * The whole stream reads from one REPEATABLE READ transaction, so the chunks and the version vector
+ * describe the same snapshot even while the snapshot consumer keeps applying operations.
+ * Live OPERATION_BROADCAST frames may interleave with the chunks; clients buffer them until
+ * STATE_COMPLETE and then apply them on top of the streamed state.
+ *
+ * Each chunk is only produced once the session's outbound queue has drained below
+ * max-pending-bytes, so a slow client throttles the read instead of overflowing its queue.
+ *
+ * The snapshot database is reached through a private pool rather than a DataSource bean,
+ * which would replace the auto-configured primary datasource used by JPA.
+ */
+@Component
+public class SnapshotStateStreamer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStateStreamer.class);
+
+    private static final String CHUNK_QUERY =
+            "SELECT id, fractional_position, character FROM document_snapshots " +
+            "WHERE doc_id = ? AND active = TRUE AND (fractional_position, id) > (?, ?) " +
+            "ORDER BY fractional_position, id LIMIT ?";
+
+    private static final String VERSION_VECTOR_QUERY =
+            "SELECT server_id, sequence_number FROM version_vectors WHERE doc_id = ?";
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${editor.snapshot.datasource.url}")
+    private String url;
+
+    @Value("${editor.snapshot.datasource.username}")
+    private String username;
+
+    @Value("${editor.snapshot.datasource.password}")
+    private String password;
+
+    @Value("${editor.snapshot.stream.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${editor.snapshot.stream.max-pending-bytes:262144}")
+    private long maxPendingBytes;
+
+    @Value("${editor.snapshot.stream.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${editor.snapshot.stream.pool-size:4}")
+    private int poolSize;
+
+    private final ExecutorService streamExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    public SnapshotStateStreamer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("snapshot-state-stream");
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setMaximumPoolSize(poolSize);
+        config.setReadOnly(true);
+        // Do not fail startup if the snapshot database is not reachable yet
+        config.setInitializationFailTimeout(-1);
+
+        dataSource = new HikariDataSource(config);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        transactionTemplate.setReadOnly(true);
+
+        logger.info("Snapshot state streaming configured - Chunk size: {}, Max pending bytes: {}",
+                chunkSize, maxPendingBytes);
+    }
+
+    /**
+     * Start streaming a document's state to a session on a virtual thread.
+     *
+     * @param onComplete invoked with the streamed version vector after STATE_COMPLETE was queued,
+     *                   so the caller can send the operations applied since the snapshot
+     */
+    public void stream(WebSocketSession session, SessionOutboundQueue outboundQueue, String docId,
+                       BiConsumer<WebSocketSession, Map<String, Long>> onComplete) {
+        streamExecutor.execute(() -> {
+            try {
+                Map<String, Long> versionVector = transactionTemplate.execute(
+                        status -> streamInTransaction(session, outboundQueue, docId));
+                if (versionVector != null) {
+                    onComplete.accept(session, versionVector);
+                }
+            } catch (Exception e) {
+                logger.error("Error streaming document state - Session: {}, Doc: {}", session.getId(), docId, e);
+                enqueue(outboundQueue, Map.of(
+                        "type", "ERROR",
+                        "message", "Failed to stream document state: " + e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                ));
+            }
+        });
+    }
+
+    /**
+     * @return the streamed version vector, or null if the stream was abandoned
+     */
+    private Map<String, Long> streamInTransaction(WebSocketSession session, SessionOutboundQueue outboundQueue,
+                                                  String docId) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        String lastPosition = "";
+        long[] lastId = {0L};
+        int chunkIndex = 0;
+        long totalCharacters = 0;
+
+        while (true) {
+            if (!awaitCapacity(session, outboundQueue, deadline)) {
+                logger.warn("Abandoned document state stream - Session: {}, Doc: {}, Chunks sent: {}",
+                        session.getId(), docId, chunkIndex);
+                return null;
+            }
+
+            List<String> positions = new ArrayList<>(chunkSize);
+            List<String> characters = new ArrayList<>(chunkSize);
+            jdbcTemplate.query(CHUNK_QUERY, rs -> {
+                lastId[0] = rs.getLong(1);
+                positions.add(rs.getString(2));
+                characters.add(rs.getString(3));
+            }, docId, lastPosition, lastId[0], chunkSize);
+
+            if (positions.isEmpty()) {
+                break;
+            }
+
+            Map<String, Object> chunk = new HashMap<>();
+            chunk.put("type", "STATE_CHUNK");
+            chunk.put("docId", docId);
+            chunk.put("chunk", chunkIndex++);
+            chunk.put("positions", positions);
+            chunk.put("characters", characters);
+            if (!enqueue(outboundQueue, chunk)) {
+                return null;
+            }
+
+            totalCharacters += positions.size();
+            lastPosition = positions.get(positions.size() - 1);
+
+            if (positions.size() < chunkSize) {
+                break;
+            }
+        }
+
+        Map<String, Long> versionVector = new HashMap<>();
+        jdbcTemplate.query(VERSION_VECTOR_QUERY,
+                rs -> { versionVector.put(rs.getString(1), rs.getLong(2)); }, docId);
+
+        if (!enqueue(outboundQueue, Map.of(
+                "type", "STATE_COMPLETE",
+                "docId", docId,
+                "totalCharacters", totalCharacters,
+                "versionVector", versionVector
+        ))) {
+            return null;
+        }
+
+        logger.info("Streamed document state - Session: {}, Doc: {}, Characters: {}, Chunks: {}",
+                session.getId(), docId, totalCharacters, chunkIndex);
+        return versionVector;
+    }
+
+    /**
+     * Park the streaming virtual thread until the session's queue has room for another chunk
+     */
+    private boolean awaitCapacity(WebSocketSession session, SessionOutboundQueue outboundQueue, long deadline) {
+        while (outboundQueue.getPendingBytes() > maxPendingBytes) {
+            if (!session.isOpen() || System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return session.isOpen();
+    }
+
+    private boolean enqueue(SessionOutboundQueue outboundQueue, Map<String, Object> message) {
+        try {
+            return outboundQueue.enqueue(new TextMessage(objectMapper.writeValueAsBytes(message)), false);
+        } catch (IOException e) {
+            logger.error("Error encoding state frame", e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamExecutor.shutdownNow();
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
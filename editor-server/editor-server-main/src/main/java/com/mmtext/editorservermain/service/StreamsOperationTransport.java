@@ -0,0 +1,189 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis Streams transport: one stream per document (editor:stream:{docId}), trimmed with
+ * XADD MAXLEN ~ max-length.
+ *
+ * A single reader thread XREADs all subscribed streams, each from the last entry id this
+ * server has seen. When the connection blips the reader simply retries from those ids, so
+ * nothing published in the meantime is lost as long as it has not been trimmed.
+ *
+ * On subscribe the most recent replay-count entries are read back and replayed into the
+ * recent operations ring (without broadcasting), so catch-up for a newly watched document
+ * can be served from memory.
+ */
+@Component
+@ConditionalOnProperty(name = "editor.transport.type", havingValue = "streams")
+public class StreamsOperationTransport implements OperationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamsOperationTransport.class);
+
+    public static final String STREAM_PREFIX = "editor:stream:";
+    private static final String PAYLOAD_FIELD = "op";
+    private static final String STREAM_START = "0-0";
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ObjectProvider<RedisSubscriberService> subscriber;
+    private final Counter readErrors;
+
+    @Value("${editor.transport.streams.max-length:10000}")
+    private long maxLength;
+
+    @Value("${editor.transport.streams.block-ms:1000}")
+    private long blockMs;
+
+    @Value("${editor.transport.streams.batch-size:500}")
+    private long batchSize;
+
+    @Value("${editor.transport.streams.replay-count:1024}")
+    private long replayCount;
+
+    // docId -> id of the last stream entry delivered on this server
+    private final Map<String, String> lastSeenIds = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread readerThread;
+
+    public StreamsOperationTransport(RedisTemplate<String, String> redisTemplate,
+                                     ObjectProvider<RedisSubscriberService> subscriber,
+                                     MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.subscriber = subscriber;
+        this.readErrors = Counter.builder("editor.transport.streams.read.errors")
+                .description("Failed XREAD calls; the reader resumes from the last seen ids")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        readerThread = Thread.ofVirtual().name("operation-stream-reader").start(this::readLoop);
+        logger.info("Redis Streams transport started - Max length: {}, Block: {}ms, Batch: {}",
+                maxLength, blockMs, batchSize);
+    }
+
+    @Override
+    public void publish(String docId, String payload) {
+        redisTemplate.opsForStream().add(
+                StreamRecords.string(Map.of(PAYLOAD_FIELD, payload)).withStreamKey(STREAM_PREFIX + docId),
+                XAddOptions.maxlen(maxLength).approximateTrimming(true));
+    }
+
+    @Override
+    public void subscribe(String docId) {
+        if (lastSeenIds.containsKey(docId)) {
+            return;
+        }
+
+        // Replay the tail of the stream into the ring; live reading continues after it
+        List<MapRecord<String, Object, Object>> tail = redisTemplate.opsForStream()
+                .reverseRange(STREAM_PREFIX + docId, Range.unbounded(), Limit.limit().count((int) replayCount));
+
+        String lastId = STREAM_START;
+        if (tail != null && !tail.isEmpty()) {
+            lastId = tail.get(0).getId().getValue();
+            RedisSubscriberService sink = subscriber.getObject();
+            for (int i = tail.size() - 1; i >= 0; i--) {
+                sink.onOperation(docId, payloadOf(tail.get(i)), true);
+            }
+        }
+
+        lastSeenIds.putIfAbsent(docId, lastId);
+        logger.info("Subscribed to operation stream for doc: {}, replayed: {}, resuming after: {}",
+                docId, tail != null ? tail.size() : 0, lastId);
+    }
+
+    @Override
+    public void unsubscribe(String docId) {
+        lastSeenIds.remove(docId);
+        logger.info("Unsubscribed from operation stream for doc: {}", docId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readLoop() {
+        while (running) {
+            if (lastSeenIds.isEmpty()) {
+                sleep(blockMs);
+                continue;
+            }
+
+            List<StreamOffset<String>> offsets = new ArrayList<>(lastSeenIds.size());
+            lastSeenIds.forEach((docId, lastId) ->
+                    offsets.add(StreamOffset.create(STREAM_PREFIX + docId, ReadOffset.from(lastId))));
+
+            try {
+                List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                        StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs)),
+                        offsets.toArray(new StreamOffset[0]));
+
+                if (records == null) {
+                    continue;
+                }
+
+                RedisSubscriberService sink = subscriber.getObject();
+                for (MapRecord<String, Object, Object> record : records) {
+                    String docId = record.getStream().substring(STREAM_PREFIX.length());
+
+                    // Skip documents unsubscribed while the read was blocked
+                    if (lastSeenIds.replace(docId, record.getId().getValue()) == null) {
+                        continue;
+                    }
+                    sink.onOperation(docId, payloadOf(record), false);
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                readErrors.increment();
+                logger.error("Error reading operation streams - resuming from last seen ids", e);
+                sleep(blockMs);
+            }
+        }
+    }
+
+    private static String payloadOf(MapRecord<String, Object, Object> record) {
+        return String.valueOf(record.getValue().get(PAYLOAD_FIELD));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * Service to handle WebSocket message broadcasting
  * Decouples Redis subscriber from WebSocket handler
@@ -54,6 +56,21 @@ public class WebSocketMessageService {
         }
     }
 
+    /**
+     * Broadcast a batch of operations for one document as a single frame per client.
+     * Each client is left out of the operations it originated itself.
+     */
+    public void broadcastOperations(String docId, List<CRDTOperation> operations) {
+        try {
+            if (webSocketHandler.getActiveSessionCount(docId) > 0) {
+                webSocketHandler.broadcastBatchToDocument(docId, operations);
+                logger.debug("Broadcasted operation batch - Doc: {}, Count: {}", docId, operations.size());
+            }
+        } catch (Exception e) {
+            logger.error("Error broadcasting operation batch via WebSocket", e);
+        }
+    }
+
     /**
      * Check if a session exists on this server
      */
@@ -0,0 +1,13 @@
+-- ========================================
+-- V3__create_sequence_leases.sql
+-- ========================================
+-- Highest sequence number leased per (document, server).
+-- A server hands out sequence numbers from its current block in memory and only
+-- comes back here for the next one; blocks are aligned to the lease block size.
+CREATE TABLE IF NOT EXISTS sequence_leases (
+    doc_id VARCHAR(255) NOT NULL,
+    server_id VARCHAR(255) NOT NULL,
+    leased_up_to BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (doc_id, server_id)
+    );
@@ -0,0 +1,11 @@
+-- ========================================
+-- V4__create_document_position_schemes.sql
+-- ========================================
+-- Fractional position key scheme of each document (LEGACY or DENSE).
+-- Fixed on the first write: keys of different schemes do not interleave correctly,
+-- so documents with operations from before this table existed stay LEGACY.
+CREATE TABLE IF NOT EXISTS document_position_schemes (
+    doc_id VARCHAR(255) PRIMARY KEY,
+    scheme VARCHAR(16) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
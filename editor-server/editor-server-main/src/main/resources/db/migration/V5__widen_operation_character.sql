@@ -0,0 +1,6 @@
+-- ========================================
+-- V5__widen_operation_character.sql
+-- ========================================
+-- INSERT_RUN operations carry a whole typed word or paste in "character",
+-- so it can no longer be limited to a single (possibly multi-unit) character.
+ALTER TABLE crdt_operations ALTER COLUMN "character" TYPE TEXT;
@@ -0,0 +1,6 @@
+-- ========================================
+-- V6__add_operation_end_position.sql
+-- ========================================
+-- Inclusive upper bound of a DELETE_RANGE operation (fractional_position is the lower bound).
+-- Picked up by the outbox trigger's row_to_json like every other column.
+ALTER TABLE crdt_operations ADD COLUMN IF NOT EXISTS end_position VARCHAR(500);
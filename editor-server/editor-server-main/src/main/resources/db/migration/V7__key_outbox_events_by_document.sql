@@ -0,0 +1,40 @@
+-- ========================================
+-- V7__key_outbox_events_by_document.sql
+-- ========================================
+-- Document an outbox event belongs to. The Debezium connector uses it as the Kafka message key
+-- (message.key.columns), so all of a document's events land on one partition in commit order.
+-- Keyed by the event's random id they were spread over partitions, and a delete could reach
+-- the snapshot consumer before the insert it removes.
+ALTER TABLE crdt_operation_outbox_events ADD COLUMN IF NOT EXISTS aggregate_id VARCHAR(255);
+
+CREATE OR REPLACE FUNCTION public.handle_crdt_operation_outbox_event()
+RETURNS TRIGGER AS $$
+DECLARE
+event_type TEXT;
+event_payload JSONB;
+event_doc_id VARCHAR(255);
+BEGIN
+CASE TG_OP
+        WHEN 'INSERT' THEN
+            event_type := 'CREATED';
+            event_payload := row_to_json(NEW)::jsonb;
+            event_doc_id := NEW.doc_id;
+WHEN 'UPDATE' THEN
+            event_type := 'UPDATED';
+            event_payload := row_to_json(NEW)::jsonb;
+            event_doc_id := NEW.doc_id;
+WHEN 'DELETE' THEN
+            event_type := 'DELETED';
+            event_payload := row_to_json(OLD)::jsonb;
+            event_doc_id := OLD.doc_id;
+END CASE;
+
+INSERT INTO public.crdt_operation_outbox_events (
+    id, aggregate_type, aggregate_id, type, payload, created_at
+) VALUES (
+             gen_random_uuid(), 'crdt_operation', event_doc_id, event_type,
+             event_payload, CURRENT_TIMESTAMP
+         );
+RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,7 @@
+-- ========================================
+-- V8__drop_document_position_schemes.sql
+-- ========================================
+-- Every document uses a-z (LEGACY) positions again. The DENSE scheme was never the default:
+-- under alternating inserts its keys grew faster than LEGACY ones, so per-document schemes
+-- are gone. The rows only ever recorded LEGACY.
+DROP TABLE IF EXISTS document_position_schemes;
@@ -0,0 +1,8 @@
+-- ========================================
+-- V9__add_operation_lease_start.sql
+-- ========================================
+-- Marks the first operation of a sequence lease that does not follow on from the server's
+-- previous lease (restart or idle eviction). Consumers only excuse a jump in a server's
+-- sequence numbers at such an operation; any other jump is a real gap.
+-- Picked up by the outbox trigger's row_to_json like every other column.
+ALTER TABLE crdt_operations ADD COLUMN IF NOT EXISTS lease_start BOOLEAN NOT NULL DEFAULT FALSE;
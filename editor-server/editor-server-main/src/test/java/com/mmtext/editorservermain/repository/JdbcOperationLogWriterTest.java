@@ -0,0 +1,68 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JdbcOperationLogWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final JdbcOperationLogWriter writer = new JdbcOperationLogWriter(jdbcTemplate);
+
+    @Test
+    void deleteRangeEndPositionIsWritten() {
+        ReflectionTestUtils.setField(writer, "rowsPerStatement", 500);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(2))).thenReturn(List.of(11L, 12L));
+        CRDTOperation insert = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT", "x", "m", 1L);
+        CRDTOperation range = new CRDTOperation("doc-1", "user-1", "server-1", "DELETE_RANGE", null, "m", 2L);
+        range.setEndPosition("p");
+
+        writer.writeAll(List.of(insert, range));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(sql.capture(), args.capture());
+        assertThat(sql.getValue()).contains("fractional_position, end_position, server_seq_num");
+
+        // Columns 7 and 8 of each row: fractional_position, end_position
+        Object[] values = args.getValue();
+        assertThat(values).hasSize(24);
+        assertThat(values[6]).isEqualTo("m");
+        assertThat(values[7]).isNull();
+        assertThat(values[12]).isEqualTo(12L);
+        assertThat(values[18]).isEqualTo("m");
+        assertThat(values[19]).isEqualTo("p");
+    }
+
+    @Test
+    void leaseStartIsWritten() {
+        ReflectionTestUtils.setField(writer, "rowsPerStatement", 500);
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(2))).thenReturn(List.of(11L, 12L));
+        CRDTOperation first = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT", "x", "m", 1001L);
+        first.setLeaseStart(true);
+        CRDTOperation next = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT", "y", "n", 1002L);
+
+        writer.writeAll(List.of(first, next));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(sql.capture(), args.capture());
+        assertThat(sql.getValue()).contains("server_seq_num, lease_start");
+
+        // Column 10 of each row
+        Object[] values = args.getValue();
+        assertThat(values[9]).isEqualTo(true);
+        assertThat(values[21]).isEqualTo(false);
+    }
+}
@@ -0,0 +1,156 @@
+package com.mmtext.editorservermain.repository;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.service.FractionalIndexService;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flush throughput of the two operation log writers against PostgreSQL, outbox trigger
+ * included, at 50, 500 and 5,000 operations per flush. Each flush is one transaction, as it is
+ * in OperationBufferService. Needs a PostgreSQL database, by default the docker-compose
+ * editor_db on localhost:5432 (-Dbenchmark.postgres.url, -Dbenchmark.postgres.user,
+ * -Dbenchmark.postgres.password to point elsewhere). The schema is set up as the application
+ * sets it up; crdt_operations and the outbox are emptied before and after.
+ * Run with: mvn test -Pbenchmark -Dtest=OperationLogWriterBenchmarkTest
+ */
+@Tag("benchmark")
+class OperationLogWriterBenchmarkTest {
+
+    private static final int[] FLUSH_SIZES = {50, 500, 5000};
+    private static final int OPERATIONS_PER_RUN = 50_000;
+    private static final int TYPING_RUN = 1000;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    private static SingleConnectionDataSource dataSource;
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private static JdbcTemplate jdbcTemplate;
+    private static String[] positions;
+    private static long nextSeq;
+
+    @BeforeAll
+    static void connect() {
+        // One connection kept open, as a pool would hand out
+        dataSource = new SingleConnectionDataSource(
+                System.getProperty("benchmark.postgres.url", "jdbc:postgresql://localhost:5432/editor_db"),
+                System.getProperty("benchmark.postgres.user", "admin"),
+                System.getProperty("benchmark.postgres.password", "admin"),
+                true);
+        // Hibernate configured the way Spring Boot configures it. crdt_operations comes from its
+        // schema update, the trigger and later columns from the application's Flyway scripts.
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.mmtext.editorservermain.model");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.hbm2ddl.auto", "update"));
+        entityManagerFactory.afterPropertiesSet();
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        truncate();
+
+        FractionalIndexService indexService = new FractionalIndexService(new CompositeMeterRegistry());
+        positions = new String[TYPING_RUN];
+        String previous = null;
+        for (int i = 0; i < TYPING_RUN; i++) {
+            previous = indexService.generateIndexBetween(previous, null);
+            positions[i] = previous;
+        }
+    }
+
+    @AfterAll
+    static void disconnect() {
+        truncate();
+        entityManagerFactory.destroy();
+        dataSource.destroy();
+    }
+
+    @Test
+    void flushThroughput() {
+        EntityManagerFactory emf = entityManagerFactory.getObject();
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(emf);
+        CRDTOperationRepository repository = new JpaRepositoryFactory(entityManager).getRepository(
+                CRDTOperationRepository.class,
+                RepositoryComposition.RepositoryFragments.just(new CRDTOperationRepositoryImpl()));
+        OperationLogWriter jpa = new JpaOperationLogWriter(repository);
+        TransactionTemplate jpaTransactions = new TransactionTemplate(new JpaTransactionManager(emf));
+
+        JdbcOperationLogWriter jdbc = new JdbcOperationLogWriter(jdbcTemplate);
+        ReflectionTestUtils.setField(jdbc, "rowsPerStatement", 500);
+        TransactionTemplate jdbcTransactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        for (int flushSize : FLUSH_SIZES) {
+            // First pass warms up, second is reported
+            for (int pass = 0; pass < 2; pass++) {
+                double jpaRate = run(jpa, jpaTransactions, flushSize);
+                double jdbcRate = run(jdbc, jdbcTransactions, flushSize);
+                if (pass == 1) {
+                    System.out.printf("%,5d ops per flush: jpa %,8.0f ops/s, jdbc %,8.0f ops/s (%.1fx)%n",
+                            flushSize, jpaRate, jdbcRate, jdbcRate / jpaRate);
+                }
+                truncate();
+            }
+        }
+    }
+
+    /**
+     * Writes OPERATIONS_PER_RUN operations in flushes of flushSize and returns operations per second
+     */
+    private static double run(OperationLogWriter writer, TransactionTemplate transactions, int flushSize) {
+        long elapsed = 0;
+        for (int flushed = 0; flushed < OPERATIONS_PER_RUN; flushed += flushSize) {
+            List<CRDTOperation> flush = flush(flushSize);
+            long start = System.nanoTime();
+            transactions.executeWithoutResult(status -> writer.writeAll(flush));
+            elapsed += System.nanoTime() - start;
+        }
+        return OPERATIONS_PER_RUN / (elapsed / 1e9);
+    }
+
+    /**
+     * The next flushSize keystrokes of someone typing forward, as the buffer hands them over
+     */
+    private static List<CRDTOperation> flush(int flushSize) {
+        List<CRDTOperation> flush = new ArrayList<>(flushSize);
+        for (int i = 0; i < flushSize; i++) {
+            long seq = ++nextSeq;
+            flush.add(new CRDTOperation(DOC, USER, "server-1", "INSERT",
+                    String.valueOf((char) ('a' + seq % 26)), positions[(int) (seq % TYPING_RUN)], seq));
+        }
+        return flush;
+    }
+
+    private static void truncate() {
+        jdbcTemplate.execute("TRUNCATE crdt_operations, crdt_operation_outbox_events");
+    }
+}
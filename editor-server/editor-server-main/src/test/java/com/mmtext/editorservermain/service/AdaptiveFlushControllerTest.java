@@ -0,0 +1,112 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class AdaptiveFlushControllerTest {
+
+    private static final long PERIOD_MS = 1000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void disabledControllerHandsOutStaticSettings() {
+        AdaptiveFlushController controller = controller(false);
+
+        controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(500));
+        controller.maybeAdjust(PERIOD_MS, () -> 1_000_000);
+
+        assertThat(controller.batchSize()).isEqualTo(50);
+        assertThat(controller.flushIntervalMs(0.0)).isEqualTo(500);
+        assertThat(controller.tickMs()).isEqualTo(100);
+    }
+
+    @Test
+    void slowWritesGrowBatchAndIntervalUpToTheirLimits() {
+        AdaptiveFlushController controller = controller(true);
+
+        for (int period = 1; period <= 10; period++) {
+            controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(400));
+            controller.maybeAdjust(period * PERIOD_MS, () -> 0);
+        }
+
+        assertThat(controller.batchSize()).isEqualTo(1000);
+        assertThat(controller.flushIntervalMs(100.0)).isEqualTo(1000);
+        assertThat(meterRegistry.get("editor.buffer.adaptive.adjustments").tag("reason", "db_slow").counter().count())
+                .isPositive();
+    }
+
+    @Test
+    void backlogGrowsOnlyTheBatch() {
+        AdaptiveFlushController controller = controller(true);
+
+        controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(30));
+        controller.maybeAdjust(PERIOD_MS, () -> 50L * 4 + 1);
+
+        assertThat(controller.batchSize()).isEqualTo(100);
+        assertThat(controller.flushIntervalMs(100.0)).isEqualTo(500);
+    }
+
+    @Test
+    void fastWritesShrinkBatchAndIntervalDownToTheirLimits() {
+        AdaptiveFlushController controller = controller(true);
+
+        for (int period = 1; period <= 50; period++) {
+            controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(1));
+            controller.maybeAdjust(period * PERIOD_MS, () -> 0);
+        }
+
+        assertThat(controller.batchSize()).isEqualTo(10);
+        assertThat(controller.flushIntervalMs(100.0)).isEqualTo(20);
+    }
+
+    @Test
+    void noAdjustmentWithinOnePeriod() {
+        AdaptiveFlushController controller = controller(true);
+
+        controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(400));
+        controller.maybeAdjust(PERIOD_MS, () -> 0);
+        controller.recordWrite(TimeUnit.MILLISECONDS.toNanos(400));
+        controller.maybeAdjust(PERIOD_MS + PERIOD_MS / 2, () -> 0);
+
+        assertThat(controller.batchSize()).isEqualTo(100);
+    }
+
+    @Test
+    void sparseDocumentsAreFlushedAfterTheMinimumInterval() {
+        AdaptiveFlushController controller = controller(true);
+
+        // Under two operations per 500ms interval
+        assertThat(controller.flushIntervalMs(0.001)).isEqualTo(20);
+        assertThat(controller.flushIntervalMs(1.0)).isEqualTo(500);
+    }
+
+    @Test
+    void arrivalRateIsSmoothed() {
+        AdaptiveFlushController controller = controller(true);
+
+        assertThat(controller.updateArrivalRate(0.0, 10, 100)).isCloseTo(0.03, offset(1e-9));
+        assertThat(controller.updateArrivalRate(0.5, 10, 0)).isEqualTo(0.5);
+    }
+
+    private AdaptiveFlushController controller(boolean adaptive) {
+        AdaptiveFlushController controller = new AdaptiveFlushController(meterRegistry);
+        ReflectionTestUtils.setField(controller, "staticBatchSize", 50);
+        ReflectionTestUtils.setField(controller, "staticFlushIntervalMs", 500L);
+        ReflectionTestUtils.setField(controller, "enabled", adaptive);
+        ReflectionTestUtils.setField(controller, "minBatchSize", 10);
+        ReflectionTestUtils.setField(controller, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(controller, "minFlushIntervalMs", 20L);
+        ReflectionTestUtils.setField(controller, "maxFlushIntervalMs", 1000L);
+        ReflectionTestUtils.setField(controller, "targetWriteLatencyMs", 50L);
+        ReflectionTestUtils.setField(controller, "adjustPeriodMs", PERIOD_MS);
+        controller.init();
+        return controller;
+    }
+}
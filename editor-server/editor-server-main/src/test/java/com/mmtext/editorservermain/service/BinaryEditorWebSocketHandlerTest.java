@@ -0,0 +1,67 @@
+package com.mmtext.editorservermain.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BinaryEditorWebSocketHandlerTest {
+
+    private final EditorWebSocketHandler editorHandler = mock(EditorWebSocketHandler.class);
+    private final BinaryOperationCodec codec = new BinaryOperationCodec();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final BinaryEditorWebSocketHandler handler = new BinaryEditorWebSocketHandler(editorHandler, codec);
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.getAttributes()).thenReturn(attributes);
+        ReflectionTestUtils.setField(codec, "maxInboundIds", 2);
+        codec.initSession(session);
+    }
+
+    @Test
+    void sessionDefiningTooManyIdsIsClosed() throws Exception {
+        handler.handleBinaryMessage(session, deleteDefining("doc-1"));
+        handler.handleBinaryMessage(session, deleteDefining("doc-2"));
+        verify(session, never()).close(any());
+
+        handler.handleBinaryMessage(session, deleteDefining("doc-3"));
+
+        verify(session).close(argThat(status -> status.getCode() == CloseStatus.POLICY_VIOLATION.getCode()));
+        verify(editorHandler, times(2)).dispatch(any(), any());
+    }
+
+    /**
+     * DELETE frame that defines a new document id
+     */
+    private static BinaryMessage deleteDefining(String docId) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(BinaryOperationCodec.VERSION);
+        frame.write(BinaryOperationCodec.FRAME_DELETE);
+        frame.write(0);
+        byte[] id = docId.getBytes(StandardCharsets.UTF_8);
+        frame.write(id.length + 1);
+        frame.writeBytes(id);
+        frame.write(2);
+        frame.write('m');
+        return new BinaryMessage(frame.toByteArray());
+    }
+}
@@ -0,0 +1,211 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.dto.ClientMessage;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BinaryOperationCodecTest {
+
+    private static final int MAX_INBOUND_IDS = 4;
+
+    private final BinaryOperationCodec codec = new BinaryOperationCodec();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(attributes);
+        ReflectionTestUtils.setField(codec, "maxInboundIds", MAX_INBOUND_IDS);
+        codec.initSession(session);
+    }
+
+    @Test
+    void decodesInsertRunWithMultiByteText() {
+        ClientMessage message = codec.decode(session, new Frame(BinaryOperationCodec.FRAME_INSERT_RUN)
+                .defineId("doc-1").position("m").position(null).string("héllo 👋").toBuffer());
+
+        assertThat(message.getType()).isEqualTo("OPERATION");
+        assertThat(message.getDocId()).isEqualTo("doc-1");
+        assertThat(message.getInsertAfterPosition()).isEqualTo("m");
+        assertThat(message.getInsertBeforePosition()).isNull();
+        assertThat(message.getOperation().getOperationType()).isEqualTo("INSERT_RUN");
+        assertThat(message.getOperation().getCharacter()).isEqualTo("héllo 👋");
+    }
+
+    @Test
+    void laterFramesReferenceInternedDocumentIds() {
+        codec.decode(session, new Frame(BinaryOperationCodec.FRAME_INSERT)
+                .defineId("doc-1").position(null).position(null).string("a").toBuffer());
+
+        ClientMessage message = codec.decode(session, new Frame(BinaryOperationCodec.FRAME_INSERT_RUN)
+                .id(1).position("m").position("n").string("bc").toBuffer());
+
+        assertThat(message.getDocId()).isEqualTo("doc-1");
+        assertThat(message.getInsertBeforePosition()).isEqualTo("n");
+    }
+
+    @Test
+    void encodesInsertRunBody() {
+        CRDTOperation run = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT_RUN", "hi", "m", 5L);
+        run.setTimestamp(Instant.ofEpochMilli(1000));
+
+        // opType, seq, timestamp (varint 1000), base position, text
+        assertThat(codec.encodeOperationBody(run))
+                .containsExactly(3, 5, 0xE8, 0x07, 2, 'm', 3, 'h', 'i');
+    }
+
+    @Test
+    void leaseStartIsFlaggedInTheOpType() {
+        CRDTOperation insert = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT", "a", "m", 1001L);
+        insert.setTimestamp(Instant.ofEpochMilli(1));
+        insert.setLeaseStart(true);
+
+        // opType INSERT | 0x80, seq (varint 1001), timestamp, position, character
+        assertThat(codec.encodeOperationBody(insert))
+                .containsExactly(0x81, 0xE9, 0x07, 1, 2, 'm', 2, 'a');
+    }
+
+    @Test
+    void decodesDeleteRange() {
+        ClientMessage message = codec.decode(session, new Frame(BinaryOperationCodec.FRAME_DELETE_RANGE)
+                .defineId("doc-1").position("m").position("p").toBuffer());
+
+        CRDTOperation operation = message.getOperation();
+        assertThat(operation.getOperationType()).isEqualTo("DELETE_RANGE");
+        assertThat(operation.getFractionalPosition()).isEqualTo("m");
+        assertThat(operation.getEndPosition()).isEqualTo("p");
+    }
+
+    @Test
+    void deleteRangeBodyEndsWithTheEndPosition() {
+        CRDTOperation range = new CRDTOperation("doc-1", "user-1", "server-1", "DELETE_RANGE", null, "m", 6L);
+        range.setEndPosition("pq");
+        range.setTimestamp(Instant.ofEpochMilli(1));
+
+        // opType, seq, timestamp, lower bound, no character, upper bound
+        assertThat(codec.encodeOperationBody(range))
+                .containsExactly(4, 6, 1, 2, 'm', 0, 3, 'p', 'q');
+    }
+
+    @Test
+    void otherBodiesCarryNoEndPosition() {
+        CRDTOperation delete = new CRDTOperation("doc-1", "user-1", "server-1", "DELETE", null, "m", 7L);
+        delete.setTimestamp(Instant.ofEpochMilli(1));
+
+        assertThat(codec.encodeOperationBody(delete)).containsExactly(2, 7, 1, 2, 'm', 0);
+    }
+
+    @Test
+    void operationFramesDefineIdsOnceAndReferenceThemAfterwards() {
+        CRDTOperation run = new CRDTOperation("doc-1", "user-1", "server-1", "INSERT_RUN", "hi", "m", 5L);
+        byte[] body = codec.encodeOperationBody(run);
+        BinaryOperationCodec.InternTable ids = codec.outboundIds(session);
+
+        byte[] first = codec.encodeOperationFrame(
+                BinaryOperationCodec.FRAME_OPERATION_BROADCAST, run, body, ids).getPayload().array();
+        byte[] second = codec.encodeOperationFrame(
+                BinaryOperationCodec.FRAME_OPERATION_BROADCAST, run, body, ids).getPayload().array();
+
+        assertThat(first).startsWith(new Frame(BinaryOperationCodec.FRAME_OPERATION_BROADCAST)
+                .defineId("doc-1").defineId("user-1").defineId("server-1").toByteArray());
+        assertThat(second).containsExactly(new Frame(BinaryOperationCodec.FRAME_OPERATION_BROADCAST)
+                .id(1).id(2).id(3).bytes(body).toByteArray());
+    }
+
+    @Test
+    void inboundIdsStopAtTheSessionLimit() {
+        for (int doc = 1; doc <= MAX_INBOUND_IDS; doc++) {
+            codec.decode(session, new Frame(BinaryOperationCodec.FRAME_DELETE)
+                    .defineId("doc-" + doc).position("m").toBuffer());
+        }
+
+        assertThatThrownBy(() -> codec.decode(session, new Frame(BinaryOperationCodec.FRAME_DELETE)
+                .defineId("doc-overflow").position("m").toBuffer()))
+                .isInstanceOf(BinaryOperationCodec.InternTableFullException.class);
+        // Ids defined before the limit still resolve
+        assertThat(codec.decode(session, new Frame(BinaryOperationCodec.FRAME_DELETE)
+                .id(MAX_INBOUND_IDS).position("m").toBuffer()).getDocId()).isEqualTo("doc-" + MAX_INBOUND_IDS);
+    }
+
+    @Test
+    void rejectsUnknownFramesAndReferences() {
+        assertThatThrownBy(() -> codec.decode(session, new Frame((byte) 0x7F).defineId("doc-1").toBuffer()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown binary frame type");
+        assertThatThrownBy(() -> codec.decode(session, new Frame(BinaryOperationCodec.FRAME_DELETE)
+                .id(9).position("m").toBuffer()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown interned id reference");
+    }
+
+    /**
+     * Builds frames the way the client does
+     */
+    private static final class Frame {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Frame(byte frameType) {
+            out.write(BinaryOperationCodec.VERSION);
+            out.write(frameType);
+        }
+
+        Frame varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Frame id(int reference) {
+            return varint(reference);
+        }
+
+        Frame defineId(String value) {
+            return varint(0).string(value);
+        }
+
+        Frame position(String position) {
+            return string(position);
+        }
+
+        Frame string(String value) {
+            if (value == null) {
+                return varint(0);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            return bytes(bytes);
+        }
+
+        Frame bytes(byte[] bytes) {
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(toByteArray());
+        }
+    }
+}
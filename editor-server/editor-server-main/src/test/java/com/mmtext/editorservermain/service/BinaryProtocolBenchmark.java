@@ -0,0 +1,251 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.dto.ClientMessage;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The binary sub-protocol against JSON on a typing trace: bytes per operation in both
+ * directions, client frame decode time and broadcast encode time.
+ * Run with: mvn test -Pbenchmark -Dtest=BinaryProtocolBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryProtocolBenchmark {
+
+    private static final int KEYSTROKES = 4096;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+    private static final String SERVER = "editor-server-1";
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final BinaryOperationCodec codec = new BinaryOperationCodec();
+    private final WebSocketSession binarySession = binarySession();
+    private Trace trace;
+    private BinaryOperationCodec.InternTable outboundIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void recordTrace() {
+        trace = new Trace(objectMapper);
+        ReflectionTestUtils.setField(codec, "maxInboundIds", 1024);
+        codec.initSession(binarySession);
+        outboundIds = codec.outboundIds(binarySession);
+        // Intern the ids the way the first frames of a session would
+        codec.decode(binarySession, ByteBuffer.wrap(trace.binaryDefinition));
+        codec.encodeOperationFrame(BinaryOperationCodec.FRAME_OPERATION_BROADCAST, trace.operations[0],
+                codec.encodeOperationBody(trace.operations[0]), outboundIds);
+    }
+
+    @Benchmark
+    public ClientMessage decodeJson() throws IOException {
+        return objectMapper.readValue(trace.jsonFrames[next++ & (KEYSTROKES - 1)], ClientMessage.class);
+    }
+
+    @Benchmark
+    public ClientMessage decodeBinary() {
+        return codec.decode(binarySession, ByteBuffer.wrap(trace.binaryFrames[next++ & (KEYSTROKES - 1)]));
+    }
+
+    @Benchmark
+    public byte[] encodeBroadcastJson() throws IOException {
+        return objectMapper.writeValueAsBytes(broadcast(trace.operations[next++ & (KEYSTROKES - 1)]));
+    }
+
+    @Benchmark
+    public Object encodeBroadcastBinary() {
+        CRDTOperation operation = trace.operations[next++ & (KEYSTROKES - 1)];
+        return codec.encodeOperationFrame(BinaryOperationCodec.FRAME_OPERATION_BROADCAST, operation,
+                codec.encodeOperationBody(operation), outboundIds);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void typingTrace() throws Exception {
+        Trace trace = new Trace(objectMapper);
+        BinaryOperationCodec.InternTable ids = new BinaryOperationCodec.InternTable(Integer.MAX_VALUE);
+        long jsonIn = 0;
+        long binaryIn = trace.binaryDefinition.length;
+        long jsonOut = 0;
+        long binaryOut = 0;
+        for (int i = 0; i < KEYSTROKES; i++) {
+            jsonIn += trace.jsonFrames[i].length;
+            binaryIn += trace.binaryFrames[i].length;
+            CRDTOperation operation = trace.operations[i];
+            jsonOut += objectMapper.writeValueAsBytes(broadcast(operation)).length;
+            binaryOut += codec.encodeOperationFrame(BinaryOperationCodec.FRAME_OPERATION_BROADCAST, operation,
+                    codec.encodeOperationBody(operation), ids).getPayloadLength();
+        }
+        System.out.printf("%,d keystrokes, bytes per operation: client->server JSON %.1f, binary %.1f; "
+                        + "broadcast JSON %.1f, binary %.1f%n", KEYSTROKES,
+                (double) jsonIn / KEYSTROKES, (double) binaryIn / KEYSTROKES,
+                (double) jsonOut / KEYSTROKES, (double) binaryOut / KEYSTROKES);
+
+        new Runner(new OptionsBuilder()
+                .include(BinaryProtocolBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    private static Map<String, Object> broadcast(CRDTOperation operation) {
+        return Map.of(
+                "type", "OPERATION_BROADCAST",
+                "operation", operation,
+                "serverId", SERVER
+        );
+    }
+
+    /**
+     * Binary session whose attributes hold its intern tables. A plain proxy rather than a
+     * Mockito mock, whose per-call recording would cost more than the decode being measured.
+     */
+    private static WebSocketSession binarySession() {
+        Map<String, Object> attributes = new HashMap<>();
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getAttributes" -> attributes;
+                    case "getAcceptedProtocol" -> BinaryOperationCodec.SUBPROTOCOL;
+                    case "isOpen" -> true;
+                    default -> null;
+                });
+    }
+
+    /**
+     * One user typing forward from a cursor that occasionally jumps, with a backspace now and
+     * then: each keystroke as the client sends it in either protocol, and as the server sequenced it
+     */
+    private static final class Trace {
+        private final byte[][] jsonFrames = new byte[KEYSTROKES][];
+        private final byte[][] binaryFrames = new byte[KEYSTROKES][];
+        private final CRDTOperation[] operations = new CRDTOperation[KEYSTROKES];
+        // Defines the document id; later frames reference it as id 1
+        private final byte[] binaryDefinition;
+
+        Trace(ObjectMapper objectMapper) {
+            FractionalIndexService positions = new FractionalIndexService(new CompositeMeterRegistry());
+            Random random = new Random(3);
+            List<String> document = new ArrayList<>();
+            int cursor = 0;
+
+            binaryDefinition = new Frame(BinaryOperationCodec.FRAME_INSERT)
+                    .varint(0).string(DOC).string(null).string(null).string("a").toByteArray();
+
+            for (int i = 0; i < KEYSTROKES; i++) {
+                if (random.nextInt(20) == 0) {
+                    cursor = random.nextInt(document.size() + 1);
+                }
+
+                Map<String, Object> operation = new LinkedHashMap<>();
+                operation.put("docId", DOC);
+                operation.put("userId", USER);
+                Map<String, Object> message = new LinkedHashMap<>();
+                message.put("type", "OPERATION");
+                message.put("docId", DOC);
+
+                CRDTOperation sequenced;
+                if (cursor > 0 && random.nextInt(10) == 0) {
+                    String position = document.remove(--cursor);
+                    operation.put("operationType", "DELETE");
+                    operation.put("fractionalPosition", position);
+                    binaryFrames[i] = new Frame(BinaryOperationCodec.FRAME_DELETE)
+                            .varint(1).string(position).toByteArray();
+                    sequenced = new CRDTOperation(DOC, USER, SERVER, "DELETE", null, position, i + 1L);
+                } else {
+                    String after = cursor == 0 ? null : document.get(cursor - 1);
+                    String before = cursor == document.size() ? null : document.get(cursor);
+                    String character = String.valueOf((char) ('a' + random.nextInt(26)));
+                    message.put("insertAfterPosition", after);
+                    message.put("insertBeforePosition", before);
+                    operation.put("operationType", "INSERT");
+                    operation.put("character", character);
+                    binaryFrames[i] = new Frame(BinaryOperationCodec.FRAME_INSERT)
+                            .varint(1).string(after).string(before).string(character).toByteArray();
+                    String position = positions.generateIndexBetween(after, before);
+                    document.add(cursor++, position);
+                    sequenced = new CRDTOperation(DOC, USER, SERVER, "INSERT", character, position, i + 1L);
+                }
+                message.put("operation", operation);
+                operations[i] = sequenced;
+
+                try {
+                    jsonFrames[i] = objectMapper.writeValueAsBytes(message);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Client frame builder; positions are ASCII, so they are written like strings
+     */
+    private static final class Frame {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Frame(byte frameType) {
+            out.write(BinaryOperationCodec.VERSION);
+            out.write(frameType);
+        }
+
+        Frame varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+            return this;
+        }
+
+        Frame string(String value) {
+            if (value == null) {
+                return varint(0);
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length + 1L);
+            out.writeBytes(bytes);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
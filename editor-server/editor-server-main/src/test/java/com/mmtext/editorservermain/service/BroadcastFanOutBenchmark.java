@@ -0,0 +1,151 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * One operation broadcast to every JSON subscriber of a document: the handler's encode-once
+ * fan-out against serializing the message again for each recipient, as broadcastToDocument
+ * did before. Outbound queues only take the frame, so no socket I/O is included.
+ * Run with: mvn test -Pbenchmark -Dtest=BroadcastFanOutBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BroadcastFanOutBenchmark {
+
+    private static final String DOC = "doc-1";
+
+    @Param({"1", "10", "100"})
+    public int recipients;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final BinaryOperationCodec binaryCodec = new BinaryOperationCodec();
+    private final SessionRegistry sessionRegistry = new SessionRegistry();
+    private EditorWebSocketHandler handler;
+    private CRDTOperation operation;
+
+    @Setup(Level.Trial)
+    public void subscribe() {
+        handler = new EditorWebSocketHandler(
+                mock(CRDTService.class),
+                mock(FractionalIndexService.class),
+                objectMapper,
+                mock(SessionOutboundQueueFactory.class),
+                binaryCodec,
+                mock(RecentOperationsCache.class),
+                mock(SnapshotStateStreamer.class),
+                sessionRegistry,
+                mock(DocumentChannelSubscriptions.class),
+                new CompositeMeterRegistry());
+        ReflectionTestUtils.setField(handler, "serverId", "server-1");
+        handler.initMetrics();
+
+        for (int i = 0; i < recipients; i++) {
+            WebSocketSession session = openJsonSession("session-" + i);
+            sessionRegistry.register(session, new AcceptingQueue(session));
+            sessionRegistry.subscribe("session-" + i, DOC, "user-" + i);
+        }
+
+        operation = new CRDTOperation(DOC, "user-0", "server-1", "INSERT", "x", "a0V", 1L);
+    }
+
+    @Benchmark
+    public void encodeOnce() {
+        handler.broadcastToDocument(DOC, operation);
+    }
+
+    /**
+     * The replaced path: writeValueAsString and a String-backed TextMessage per recipient,
+     * whose UTF-8 bytes the transport then encoded again for each socket
+     */
+    @Benchmark
+    public int encodePerRecipient() throws IOException {
+        int bytes = 0;
+        for (SessionRegistry.SessionEntry entry : sessionRegistry.sessionsOf(DOC)) {
+            if (binaryCodec.isBinarySession(entry.getSession())) {
+                continue;
+            }
+            TextMessage frame = new TextMessage(objectMapper.writeValueAsString(Map.of(
+                    "type", "OPERATION_BROADCAST",
+                    "operation", operation,
+                    "serverId", "server-1"
+            )));
+            bytes += frame.asBytes().length;
+            entry.getOutboundQueue().enqueue(frame, false);
+        }
+        return bytes;
+    }
+
+    @Test
+    @Tag("benchmark")
+    void fanOut() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastFanOutBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /**
+     * Open session without a sub-protocol. A plain proxy rather than a Mockito mock, whose
+     * per-call recording would cost more than the fan-out being measured.
+     */
+    private static WebSocketSession openJsonSession(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Outbound queue that accepts every frame without holding on to it
+     */
+    private static final class AcceptingQueue extends SessionOutboundQueue {
+        AcceptingQueue(WebSocketSession session) {
+            super(session, Runnable::run, Integer.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_SESSION,
+                    null, null, null, null, null);
+        }
+
+        @Override
+        public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+            return true;
+        }
+    }
+}
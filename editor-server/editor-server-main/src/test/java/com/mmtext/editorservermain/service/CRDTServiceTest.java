@@ -0,0 +1,208 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.dto.SequenceRange;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.SequenceLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CRDTServiceTest {
+
+    private static final String DOC = "doc-1";
+
+    private CRDTOperationRepository operationRepository;
+    private SequenceLeaseRepository leaseRepository;
+    private DocumentLifecycleManager documentLifecycle;
+    private RecentOperationsCache recentOperations;
+    private CRDTService crdtService;
+
+    // What sequence_leases.leased_up_to would hold
+    private final AtomicLong leasedUpTo = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        operationRepository = mock(CRDTOperationRepository.class);
+        leaseRepository = mock(SequenceLeaseRepository.class);
+        when(leaseRepository.lease(eq(DOC), eq("server-1"), anyLong(), anyInt())).thenAnswer(invocation ->
+                leasedUpTo.addAndGet(invocation.<Long>getArgument(2) * invocation.<Integer>getArgument(3)));
+        documentLifecycle = mock(DocumentLifecycleManager.class);
+        recentOperations = new RecentOperationsCache();
+        ReflectionTestUtils.setField(recentOperations, "capacity", 16);
+
+        crdtService = new CRDTService(
+                operationRepository,
+                leaseRepository,
+                mock(OperationBufferService.class),
+                mock(FractionalIndexService.class),
+                recentOperations,
+                documentLifecycle,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(crdtService, "serverId", "server-1");
+        ReflectionTestUtils.setField(crdtService, "leaseBlockSize", 1000L);
+    }
+
+    @Test
+    void sequenceNumbersComeFromOneLeasedBlockAtATime() {
+        for (long expected = 1; expected <= 1001; expected++) {
+            CRDTOperation processed = crdtService.processOperation(operation(null, 0L));
+            assertThat(processed.getServerSeqNum()).isEqualTo(expected);
+            // 1001 follows on from the first block, so consumers must still see 1000 before it
+            assertThat(processed.getLeaseStart()).isFalse();
+        }
+
+        verify(leaseRepository, times(2)).lease(DOC, "server-1", 1000L, 1);
+    }
+
+    @Test
+    void batchLargerThanABlockLeasesEnoughBlocksAtOnce() {
+        crdtService.processOperation(operation(null, 0L));
+
+        List<CRDTOperation> batch = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            batch.add(operation(null, 0L));
+        }
+        crdtService.processOperations(DOC, batch);
+
+        // Three blocks are leased in one round trip; they follow on, so nothing is skipped
+        assertThat(batch.get(0).getServerSeqNum()).isEqualTo(2L);
+        assertThat(batch.get(2499).getServerSeqNum()).isEqualTo(2501L);
+        assertThat(batch).extracting(CRDTOperation::getLeaseStart).containsOnly(false);
+        verify(leaseRepository).lease(DOC, "server-1", 1000L, 3);
+        assertThat(crdtService.processOperation(operation(null, 0L)).getServerSeqNum()).isEqualTo(2502L);
+        verify(leaseRepository, times(2)).lease(eq(DOC), eq("server-1"), anyLong(), anyInt());
+    }
+
+    @Test
+    void evictedDocumentSkipsToTheNextBlock() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<String>> evictionListener = ArgumentCaptor.forClass(Consumer.class);
+        verify(documentLifecycle).onEvict(evictionListener.capture());
+
+        crdtService.processOperation(operation(null, 0L));
+        crdtService.processOperation(operation(null, 0L));
+        evictionListener.getValue().accept(DOC);
+
+        // 3-1000 are abandoned with the old lease, which the next operation tells consumers
+        CRDTOperation afterEviction = crdtService.processOperation(operation(null, 0L));
+        assertThat(afterEviction.getServerSeqNum()).isEqualTo(1001L);
+        assertThat(afterEviction.getLeaseStart()).isTrue();
+        assertThat(crdtService.processOperation(operation(null, 0L)).getLeaseStart()).isFalse();
+    }
+
+    @Test
+    void restartedServerMarksTheFirstOperationOfItsNewLease() {
+        // Leased before the restart, partly handed out
+        leasedUpTo.set(2000L);
+
+        CRDTOperation first = crdtService.processOperation(operation(null, 0L));
+        assertThat(first.getServerSeqNum()).isEqualTo(2001L);
+        assertThat(first.getLeaseStart()).isTrue();
+    }
+
+    @Test
+    void concurrentWritersNeverShareASequenceNumber() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<List<Long>>> writers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                writers.add(executor.submit(() -> {
+                    List<Long> seqs = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        seqs.add(crdtService.processOperation(operation(null, 0L)).getServerSeqNum());
+                    }
+                    return seqs;
+                }));
+            }
+            Set<Long> all = new HashSet<>();
+            for (Future<List<Long>> writer : writers) {
+                all.addAll(writer.get());
+            }
+            assertThat(all).hasSize(threads * perThread);
+            assertThat(Collections.max(all)).isEqualTo((long) threads * perThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void syncForUnsubscribedDocumentReadsDatabaseWithoutTrackingIt() {
+        when(operationRepository.findMaxServerSeqNumsByDocId(DOC))
+                .thenReturn(List.<Object[]>of(new Object[]{"server-1", 5L}, new Object[]{"server-2", 3L}));
+        CRDTOperation missing = operation("server-1", 5L);
+        when(operationRepository.findByDocIdAndSequenceRanges(eq(DOC), anyList())).thenReturn(List.of(missing));
+
+        Map<String, List<CRDTOperation>> result =
+                crdtService.computeMissingOperations(DOC, Map.of("server-1", 4L, "server-2", 3L));
+
+        assertThat(result).containsExactly(Map.entry("server-1", List.of(missing)));
+        assertThat(recentOperations.isTracked(DOC)).isFalse();
+        assertThat(recentOperations.getTrackedDocumentCount()).isZero();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SequenceRange>> ranges = ArgumentCaptor.forClass(List.class);
+        verify(operationRepository).findByDocIdAndSequenceRanges(eq(DOC), ranges.capture());
+        assertThat(ranges.getValue()).singleElement().satisfies(range -> {
+            assertThat(range.getServerId()).isEqualTo("server-1");
+            assertThat(range.getFromSeq()).isEqualTo(5L);
+            assertThat(range.getToSeq()).isEqualTo(5L);
+        });
+    }
+
+    @Test
+    void syncForUpToDateUnsubscribedDocumentSkipsOperationQuery() {
+        when(operationRepository.findMaxServerSeqNumsByDocId(DOC))
+                .thenReturn(List.<Object[]>of(new Object[]{"server-1", 5L}));
+
+        assertThat(crdtService.computeMissingOperations(DOC, Map.of("server-1", 5L))).isEmpty();
+        verify(operationRepository, never()).findByDocIdAndSequenceRanges(any(), anyList());
+    }
+
+    @Test
+    void syncForSubscribedDocumentIsServedFromTheRing() {
+        when(operationRepository.findMaxServerSeqNumsByDocId(DOC))
+                .thenReturn(List.<Object[]>of(new Object[]{"server-1", 2L}));
+        recentOperations.track(DOC);
+        crdtService.computeMissingOperations(DOC, Map.of("server-1", 2L));
+
+        CRDTOperation third = operation("server-1", 3L);
+        recentOperations.record(third);
+
+        assertThat(crdtService.computeMissingOperations(DOC, Map.of("server-1", 2L)))
+                .containsExactly(Map.entry("server-1", List.of(third)));
+        verify(operationRepository, never()).findByDocIdAndSequenceRanges(any(), anyList());
+    }
+
+    private static CRDTOperation operation(String serverId, long seq) {
+        return new CRDTOperation(DOC, "user-1", serverId, "INSERT", "x", "m", seq);
+    }
+}
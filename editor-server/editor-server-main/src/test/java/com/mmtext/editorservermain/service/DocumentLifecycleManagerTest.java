@@ -0,0 +1,204 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.OperationLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentLifecycleManagerTest {
+
+    private static final String DOC = "doc-1";
+    private static final long IDLE_TIMEOUT_MS = 50;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> evicted = new CopyOnWriteArrayList<>();
+
+    private OperationBufferService bufferService;
+    private SessionRegistry sessionRegistry;
+    private DocumentLifecycleManager lifecycle;
+
+    @BeforeEach
+    void setUp() {
+        bufferService = mock(OperationBufferService.class);
+        when(bufferService.evict(DOC)).thenReturn(CompletableFuture.completedFuture(true));
+        sessionRegistry = new SessionRegistry();
+
+        lifecycle = new DocumentLifecycleManager(bufferService, sessionRegistry, meterRegistry);
+        ReflectionTestUtils.setField(lifecycle, "idleTimeoutMs", IDLE_TIMEOUT_MS);
+        ReflectionTestUtils.setField(lifecycle, "evictionTimeoutMs", 1000L);
+        lifecycle.onEvict(evicted::add);
+        lifecycle.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lifecycle.stop();
+    }
+
+    @Test
+    void idleDocumentIsFlushedThenEvicted() {
+        lifecycle.exit(lifecycle.enter(DOC));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> evicted.contains(DOC));
+        assertThat(lifecycle.getTrackedDocumentCount()).isZero();
+        verify(bufferService).evict(DOC);
+    }
+
+    @Test
+    void documentWithLocalSubscribersIsKept() throws InterruptedException {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        sessionRegistry.register(session, null);
+        sessionRegistry.subscribe("s1", DOC, "user-1");
+
+        lifecycle.exit(lifecycle.enter(DOC));
+        Thread.sleep(IDLE_TIMEOUT_MS * 4);
+
+        assertThat(evicted).isEmpty();
+        assertThat(lifecycle.getTrackedDocumentCount()).isEqualTo(1);
+        verify(bufferService, never()).evict(DOC);
+    }
+
+    @Test
+    void writerInFlightDefersEviction() throws InterruptedException {
+        DocumentLifecycleManager.DocumentActivity activity = lifecycle.enter(DOC);
+        Thread.sleep(IDLE_TIMEOUT_MS * 4);
+
+        assertThat(evicted).isEmpty();
+        verify(bufferService, never()).evict(DOC);
+
+        lifecycle.exit(activity);
+        await().atMost(Duration.ofSeconds(5)).until(() -> evicted.contains(DOC));
+    }
+
+    @Test
+    void failedFlushKeepsTheDocumentState() {
+        when(bufferService.evict(DOC)).thenReturn(CompletableFuture.completedFuture(false));
+
+        lifecycle.exit(lifecycle.enter(DOC));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                assertThat(meterRegistry.get("editor.documents.eviction.deferred").counter().count()).isPositive());
+        assertThat(evicted).isEmpty();
+        assertThat(lifecycle.getTrackedDocumentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void writerArrivingDuringEvictionWaitsForIt() throws Exception {
+        CompletableFuture<Boolean> flush = new CompletableFuture<>();
+        when(bufferService.evict(DOC)).thenReturn(flush);
+        lifecycle.exit(lifecycle.enter(DOC));
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> verify(bufferService, atLeastOnce()).evict(DOC));
+
+        CompletableFuture<DocumentLifecycleManager.DocumentActivity> writer =
+                CompletableFuture.supplyAsync(() -> lifecycle.enter(DOC));
+        Thread.sleep(IDLE_TIMEOUT_MS);
+        assertThat(writer).isNotDone();
+
+        flush.complete(true);
+
+        DocumentLifecycleManager.DocumentActivity activity = writer.get();
+        assertThat(evicted).containsExactly(DOC);
+        // The writer starts over on fresh state
+        assertThat(lifecycle.getTrackedDocumentCount()).isEqualTo(1);
+        lifecycle.exit(activity);
+    }
+
+    @Test
+    void timedOutEvictionIsWithdrawnBeforeWritersReturn() throws Exception {
+        CountDownLatch flusherStalled = new CountDownLatch(1);
+        CountDownLatch releaseFlusher = new CountDownLatch(1);
+        CountDownLatch writerHasBuffer = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        List<CRDTOperation> persisted = new CopyOnWriteArrayList<>();
+
+        OperationLogWriter logWriter = mock(OperationLogWriter.class);
+        when(logWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            List<CRDTOperation> operations = invocation.getArgument(0);
+            if (operations.get(0).getDocId().equals("doc-2")) {
+                flusherStalled.countDown();
+                releaseFlusher.await();
+            }
+            persisted.addAll(operations);
+            return operations;
+        });
+        // The writer has looked up the document's buffer and is logging its operation
+        OperationWriteAheadLog writeAheadLog = mock(OperationWriteAheadLog.class);
+        doAnswer(invocation -> {
+            writerHasBuffer.countDown();
+            releaseWriter.await();
+            return null;
+        }).when(writeAheadLog).append(argThat(operation -> operation.getDocId().equals(DOC)));
+
+        AdaptiveFlushController flushController = new AdaptiveFlushController(meterRegistry);
+        ReflectionTestUtils.setField(flushController, "staticBatchSize", 50);
+        ReflectionTestUtils.setField(flushController, "staticFlushIntervalMs", 50L);
+        flushController.init();
+        RecentOperationsCache recentOperations = new RecentOperationsCache();
+        ReflectionTestUtils.setField(recentOperations, "capacity", 16);
+        OperationBufferService buffers = new OperationBufferService(logWriter, mock(RedisPublisherService.class),
+                recentOperations, writeAheadLog, flushController, meterRegistry);
+        ReflectionTestUtils.setField(buffers, "ringCapacity", 16);
+        buffers.start();
+
+        SimpleMeterRegistry lifecycleMeters = new SimpleMeterRegistry();
+        DocumentLifecycleManager manager = new DocumentLifecycleManager(buffers, new SessionRegistry(), lifecycleMeters);
+        ReflectionTestUtils.setField(manager, "idleTimeoutMs", IDLE_TIMEOUT_MS);
+        ReflectionTestUtils.setField(manager, "evictionTimeoutMs", 100L);
+        manager.start();
+        try {
+            // Keep the flusher busy with another document so the eviction waits in its queue
+            buffers.addOperation(operation("doc-2", 1L));
+            assertThat(flusherStalled.await(5, TimeUnit.SECONDS)).isTrue();
+            manager.exit(manager.enter(DOC));
+            await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(
+                    lifecycleMeters.get("editor.documents.eviction.deferred").counter().count()).isPositive());
+
+            // The eviction timed out, so writers are back in while it is still queued
+            CRDTOperation late = operation(DOC, 1L);
+            CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+                DocumentLifecycleManager.DocumentActivity activity = manager.enter(DOC);
+                buffers.addOperation(late);
+                manager.exit(activity);
+            });
+            assertThat(writerHasBuffer.await(5, TimeUnit.SECONDS)).isTrue();
+            releaseFlusher.countDown();
+            Thread.sleep(IDLE_TIMEOUT_MS * 4);
+            releaseWriter.countDown();
+            writer.get(5, TimeUnit.SECONDS);
+
+            await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(persisted).contains(late));
+        } finally {
+            releaseFlusher.countDown();
+            releaseWriter.countDown();
+            manager.stop();
+            buffers.shutdown();
+        }
+    }
+
+    private static CRDTOperation operation(String docId, long seq) {
+        return new CRDTOperation(docId, "user-1", "server-1", "INSERT", "x", "m", seq);
+    }
+}
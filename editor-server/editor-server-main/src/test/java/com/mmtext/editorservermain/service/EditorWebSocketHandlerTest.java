@@ -0,0 +1,58 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class EditorWebSocketHandlerTest {
+
+    private EditorWebSocketHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new EditorWebSocketHandler(
+                mock(CRDTService.class),
+                mock(FractionalIndexService.class),
+                new ObjectMapper(),
+                mock(SessionOutboundQueueFactory.class),
+                new BinaryOperationCodec(),
+                mock(RecentOperationsCache.class),
+                mock(SnapshotStateStreamer.class),
+                new SessionRegistry(),
+                mock(DocumentChannelSubscriptions.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(handler, "maxBatchOperations", 4);
+    }
+
+    @Test
+    void runMustCarryText() {
+        assertThat(handler.validateRun(null)).isEqualTo("INSERT_RUN requires a non-empty character string");
+        assertThat(handler.validateRun("")).isEqualTo("INSERT_RUN requires a non-empty character string");
+        assertThat(handler.validateRun("a")).isNull();
+    }
+
+    @Test
+    void runLengthIsCountedInCodePoints() {
+        // Four code points, eight UTF-16 chars
+        assertThat(handler.validateRun("👋👋👋👋")).isNull();
+        assertThat(handler.validateRun("abcde")).isEqualTo("INSERT_RUN exceeds 4 characters");
+    }
+
+    @Test
+    void rangeNeedsOrderedBounds() {
+        assertThat(EditorWebSocketHandler.validateRange("m", "p")).isNull();
+        // Deleting one character
+        assertThat(EditorWebSocketHandler.validateRange("m", "m")).isNull();
+        assertThat(EditorWebSocketHandler.validateRange("p", "m"))
+                .isEqualTo("DELETE_RANGE fractionalPosition is after endPosition");
+        assertThat(EditorWebSocketHandler.validateRange(null, "m"))
+                .isEqualTo("DELETE_RANGE requires fractionalPosition and endPosition");
+        assertThat(EditorWebSocketHandler.validateRange("m", null))
+                .isEqualTo("DELETE_RANGE requires fractionalPosition and endPosition");
+    }
+}
@@ -0,0 +1,279 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.config.RedisConfig;
+import com.mmtext.editorservermain.dto.OperationBatchEnvelope;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * One flush of 50 typed operations sent on to the other servers: a PUBLISH per operation, as
+ * flushBuffer did before, against one batch envelope. Publish time is measured against a real
+ * Redis, by default the docker-compose one on localhost:6379 (-Dbenchmark.redis.host,
+ * -Dbenchmark.redis.port to point elsewhere). Subscriber CPU is the receiving server's decode,
+ * recent-ring update and fan-out to ten JSON sessions, run in-process on the calling thread.
+ * Run with: mvn test -Pbenchmark -Dtest=FlushPublishBenchmarkTest
+ */
+@Tag("benchmark")
+class FlushPublishBenchmarkTest {
+
+    private static final int FLUSH_SIZE = 50;
+    private static final int TYPING_RUN = 1000;
+    private static final int WARMUP_FLUSHES = 2000;
+    private static final int MEASURED_FLUSHES = 4000;
+    private static final int SUBSCRIBERS = 10;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+    private static ObjectMapper objectMapper;
+    private static String[] positions;
+
+    @BeforeAll
+    static void connect() {
+        // Both services log every message at INFO or DEBUG
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        RedisStandaloneConfiguration redis = new RedisStandaloneConfiguration(
+                System.getProperty("benchmark.redis.host", "localhost"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        connectionFactory = new LettuceConnectionFactory(redis);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        objectMapper = new JacksonConfig().objectMapper();
+
+        // Positions of someone typing forward, as the server assigns them
+        FractionalIndexService indexService = new FractionalIndexService(new CompositeMeterRegistry());
+        positions = new String[TYPING_RUN];
+        String previous = null;
+        for (int i = 0; i < TYPING_RUN; i++) {
+            previous = indexService.generateIndexBetween(previous, null);
+            positions[i] = previous;
+        }
+    }
+
+    @AfterAll
+    static void disconnect() {
+        redisTemplate.delete(StreamsOperationTransport.STREAM_PREFIX + DOC);
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void publishTimePerFlush() {
+        StreamsOperationTransport streams = new StreamsOperationTransport(redisTemplate,
+                new StaticListableBeanFactory().getBeanProvider(RedisSubscriberService.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(streams, "maxLength", 10_000L);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        OperationTransport[] transports = {
+                new PubSubOperationTransport(redisTemplate,
+                        beans.getBeanProvider(RedisMessageListenerContainer.class),
+                        beans.getBeanProvider(MessageListenerAdapter.class)),
+                streams
+        };
+
+        for (OperationTransport transport : transports) {
+            RedisPublisherService publisher = new RedisPublisherService(transport, objectMapper, new SimpleMeterRegistry());
+            for (boolean batched : new boolean[] {false, true}) {
+                long[] flushNanos = new long[MEASURED_FLUSHES];
+                for (int f = 0; f < WARMUP_FLUSHES + MEASURED_FLUSHES; f++) {
+                    List<CRDTOperation> flush = flush(f);
+                    long start = System.nanoTime();
+                    if (batched) {
+                        publisher.publishOperations(DOC, flush);
+                    } else {
+                        for (CRDTOperation operation : flush) {
+                            publisher.publishOperation(operation);
+                        }
+                    }
+                    if (f >= WARMUP_FLUSHES) {
+                        flushNanos[f - WARMUP_FLUSHES] = System.nanoTime() - start;
+                    }
+                }
+                Arrays.sort(flushNanos);
+                System.out.printf("%-10s %-9s publish per %d-op flush: mean %,d us, p50 %,d us, p99 %,d us%n",
+                        transport.getClass().getSimpleName().replace("OperationTransport", ""),
+                        batched ? "envelope" : "per-op", FLUSH_SIZE,
+                        TimeUnit.NANOSECONDS.toMicros(Arrays.stream(flushNanos).sum() / MEASURED_FLUSHES),
+                        TimeUnit.NANOSECONDS.toMicros(percentile(flushNanos, 0.50)),
+                        TimeUnit.NANOSECONDS.toMicros(percentile(flushNanos, 0.99)));
+            }
+        }
+    }
+
+    @Test
+    void subscriberCpuPerFlush() throws JsonProcessingException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (boolean batched : new boolean[] {false, true}) {
+            RedisSubscriberService subscriber = subscriber();
+
+            // The messages another server would have published for each flush
+            int flushes = WARMUP_FLUSHES + MEASURED_FLUSHES;
+            List<String[]> messages = new ArrayList<>(flushes);
+            long bytes = 0;
+            for (int f = 0; f < flushes; f++) {
+                List<CRDTOperation> flush = flush(f);
+                String[] published = batched
+                        ? new String[] {objectMapper.writeValueAsString(new OperationBatchEnvelope(DOC, "server-2", flush))}
+                        : flush.stream().map(FlushPublishBenchmarkTest::serialize).toArray(String[]::new);
+                if (f >= WARMUP_FLUSHES) {
+                    for (String message : published) {
+                        bytes += message.length();
+                    }
+                }
+                messages.add(published);
+            }
+
+            long cpuStart = 0;
+            for (int f = 0; f < flushes; f++) {
+                if (f == WARMUP_FLUSHES) {
+                    cpuStart = threads.getCurrentThreadCpuTime();
+                }
+                for (String message : messages.get(f)) {
+                    subscriber.onOperation(DOC, message, false);
+                }
+            }
+            long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+            System.out.printf("%-9s subscriber per %d-op flush: %,d messages / %,d bytes, %,d us CPU "
+                            + "(decode, recent ring, fan-out to %d sessions)%n",
+                    batched ? "envelope" : "per-op", FLUSH_SIZE, messages.get(WARMUP_FLUSHES).length,
+                    bytes / MEASURED_FLUSHES, TimeUnit.NANOSECONDS.toMicros(cpuNanos / MEASURED_FLUSHES), SUBSCRIBERS);
+        }
+    }
+
+    /**
+     * Flush f: the next 50 keystrokes of the typing run, sequenced after the previous flush
+     */
+    private static List<CRDTOperation> flush(int f) {
+        List<CRDTOperation> flush = new ArrayList<>(FLUSH_SIZE);
+        for (int i = 0; i < FLUSH_SIZE; i++) {
+            long seq = (long) f * FLUSH_SIZE + i + 1;
+            flush.add(new CRDTOperation(DOC, USER, "server-2", "INSERT",
+                    String.valueOf((char) ('a' + seq % 26)), positions[(int) (seq % TYPING_RUN)], seq));
+        }
+        return flush;
+    }
+
+    private static String serialize(CRDTOperation operation) {
+        try {
+            return objectMapper.writeValueAsString(operation);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Subscriber of a server other than the publisher, with ten local JSON sessions on the
+     * document and its lane running each message on the calling thread
+     */
+    private static RedisSubscriberService subscriber() {
+        CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+        SessionRegistry sessionRegistry = new SessionRegistry();
+        EditorWebSocketHandler handler = new EditorWebSocketHandler(
+                mock(CRDTService.class),
+                mock(FractionalIndexService.class),
+                objectMapper,
+                mock(SessionOutboundQueueFactory.class),
+                new BinaryOperationCodec(),
+                mock(RecentOperationsCache.class),
+                mock(SnapshotStateStreamer.class),
+                sessionRegistry,
+                mock(DocumentChannelSubscriptions.class),
+                meterRegistry);
+        ReflectionTestUtils.setField(handler, "serverId", "server-1");
+        handler.initMetrics();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            WebSocketSession session = openJsonSession("session-" + i);
+            sessionRegistry.register(session, new AcceptingQueue(session));
+            sessionRegistry.subscribe("session-" + i, DOC, "user-" + i);
+        }
+
+        RecentOperationsCache recentOperations = new RecentOperationsCache();
+        ReflectionTestUtils.setField(recentOperations, "capacity", 1024);
+        DocumentChannelSubscriptions channelSubscriptions =
+                mock(DocumentChannelSubscriptions.class, withSettings().stubOnly());
+        when(channelSubscriptions.isInterested(anyString())).thenReturn(true);
+
+        RedisSubscriberService subscriber = new RedisSubscriberService(objectMapper,
+                new WebSocketMessageService(handler), recentOperations, channelSubscriptions,
+                new InlineLanes(meterRegistry), meterRegistry);
+        ReflectionTestUtils.setField(subscriber, "serverId", "server-1");
+        return subscriber;
+    }
+
+    /**
+     * Lanes that run each task on the submitting thread, so its CPU time can be read there
+     */
+    private static final class InlineLanes extends DocumentLaneExecutor {
+        InlineLanes(CompositeMeterRegistry meterRegistry) {
+            super(meterRegistry);
+        }
+
+        @Override
+        public void execute(String docId, Runnable task) {
+            task.run();
+        }
+    }
+
+    private static WebSocketSession openJsonSession(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Outbound queue that accepts every frame without holding on to it
+     */
+    private static final class AcceptingQueue extends SessionOutboundQueue {
+        AcceptingQueue(WebSocketSession session) {
+            super(session, Runnable::run, Integer.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_SESSION,
+                    null, null, null, null, null);
+        }
+
+        @Override
+        public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+            return true;
+        }
+    }
+}
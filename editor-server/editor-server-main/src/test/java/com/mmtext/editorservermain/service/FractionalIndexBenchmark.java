@@ -0,0 +1,125 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and allocation of generateIndexBetween against the recursive generator it replaced,
+ * on the bounds a typing trace produces and on random bounds with long shared prefixes.
+ * Run with: mvn test -Pbenchmark -Dtest=FractionalIndexBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FractionalIndexBenchmark {
+
+    private static final int BOUNDS = 4096;
+
+    @Param({"typing", "random-bounds"})
+    public String workload;
+
+    // No registries attached, so the key length summary is a no-op
+    private final FractionalIndexService service = new FractionalIndexService(new CompositeMeterRegistry());
+    private String[] before;
+    private String[] after;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void recordBounds() {
+        before = new String[BOUNDS];
+        after = new String[BOUNDS];
+        Random random = new Random(19);
+        if (workload.equals("typing")) {
+            typingTrace(random);
+        } else {
+            randomBounds(random);
+        }
+    }
+
+    @Benchmark
+    public String iterative() {
+        int i = next++ & (BOUNDS - 1);
+        return service.generateIndexBetween(before[i], after[i]);
+    }
+
+    @Benchmark
+    public String recursive() {
+        int i = next++ & (BOUNDS - 1);
+        return RecursiveFractionalIndex.generateIndexBetween(before[i], after[i]);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void generate() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FractionalIndexBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /**
+     * Bounds of each insert while typing forward from a cursor that occasionally jumps
+     */
+    private void typingTrace(Random random) {
+        List<String> document = new ArrayList<>();
+        for (int i = 0; i < BOUNDS; i++) {
+            int at = random.nextInt(10) == 0 ? random.nextInt(document.size() + 1) : document.size();
+            before[i] = at == 0 ? null : document.get(at - 1);
+            after[i] = at == document.size() ? null : document.get(at);
+            document.add(at, service.generateIndexBetween(before[i], after[i]));
+        }
+    }
+
+    /**
+     * Ordered pairs of random keys; narrow alphabets make shared prefixes common
+     */
+    private void randomBounds(Random random) {
+        for (int i = 0; i < BOUNDS; i++) {
+            String a;
+            String b;
+            do {
+                a = randomKey(random);
+                b = randomKey(random);
+            } while (a.equals(b));
+            before[i] = a.compareTo(b) < 0 ? a : b;
+            after[i] = a.compareTo(b) < 0 ? b : a;
+        }
+    }
+
+    private static String randomKey(Random random) {
+        int length = 1 + random.nextInt(random.nextBoolean() ? 4 : 80);
+        StringBuilder key = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            key.append((char) ('a' + random.nextInt(random.nextBoolean() ? 3 : 26)));
+        }
+        if (key.charAt(length - 1) == 'a') {
+            key.setCharAt(length - 1, 'b');
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FractionalIndexServiceTest {
+
+    private final FractionalIndexService service = new FractionalIndexService(new SimpleMeterRegistry());
+
+    @Test
+    void iterativeGenerateMatchesRecursiveOnRandomBounds() {
+        Random random = new Random(19);
+        for (int i = 0; i < 20_000; i++) {
+            String a = randomKey(random);
+            String b = randomKey(random);
+            int order = a.compareTo(b);
+            if (order == 0) {
+                continue;
+            }
+            String lower = order < 0 ? a : b;
+            String upper = order < 0 ? b : a;
+
+            String index = service.generateIndexBetween(lower, upper);
+
+            assertThat(index).as("between %s and %s", lower, upper)
+                    .isEqualTo(RecursiveFractionalIndex.generateIndexBetween(lower, upper))
+                    .isGreaterThan(lower)
+                    .isLessThan(upper);
+        }
+    }
+
+    @Test
+    void iterativeGenerateMatchesRecursiveWhileEditing() {
+        Random random = new Random(20);
+        List<String> document = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            // Mostly typing forward from a cursor that occasionally jumps
+            int at = random.nextInt(10) == 0 ? random.nextInt(document.size() + 1) : document.size();
+            String before = at == 0 ? null : document.get(at - 1);
+            String after = at == document.size() ? null : document.get(at);
+
+            String index = service.generateIndexBetween(before, after);
+
+            assertThat(index).isEqualTo(RecursiveFractionalIndex.generateIndexBetween(before, after));
+            if (before != null) {
+                assertThat(index).isGreaterThan(before);
+            }
+            if (after != null) {
+                assertThat(index).isLessThan(after);
+            }
+            document.add(at, index);
+        }
+    }
+
+    @Test
+    void boundsAreNormalizedToDocumentStartAndEnd() {
+        assertThat(service.generateIndexBetween(null, null)).isEqualTo("m");
+        assertThat(service.generateIndexBetween("", "")).isEqualTo("m");
+        assertThat(service.generateIndexBetween("y", null)).isEqualTo("ym");
+    }
+
+    @Test
+    void runIndicesAreOrderedBetweenTheBounds() {
+        Random random = new Random(21);
+        List<String> document = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            int at = random.nextInt(document.size() + 1);
+            String before = at == 0 ? null : document.get(at - 1);
+            String after = at == document.size() ? null : document.get(at);
+            int count = 1 + random.nextInt(random.nextBoolean() ? 3 : 2000);
+
+            List<String> run = service.generateIndicesBetween(before, after, count);
+
+            assertThat(run).as("run of %d", count).hasSize(count).isSorted().doesNotHaveDuplicates();
+            if (before != null) {
+                assertThat(run.get(0)).isGreaterThan(before);
+            }
+            if (after != null) {
+                assertThat(run.get(count - 1)).isLessThan(after);
+            }
+            document.addAll(at, run);
+        }
+    }
+
+    @Test
+    void runBaseIsNotAPrefixOfTheUpperBound() {
+        // Plain midpoints between these are prefixes of the upper bound, so suffixes could pass it
+        assertThat(service.generateIndexBetween("m", "mc")).isEqualTo("mb");
+        String base = service.generateRunBase("m", "mc");
+
+        assertThat("mc").doesNotStartWith(base);
+        assertThat(FractionalIndexService.runPositions(base, 1000))
+                .allSatisfy(position -> assertThat(position).isGreaterThan("m").isLessThan("mc"));
+    }
+
+    @Test
+    void runKeysGrowWithTheLogOfTheRunLength() {
+        assertThat(service.generateIndicesBetween("m", "n", 0)).isEmpty();
+        assertThat(service.generateIndicesBetween("m", "n", 1)).containsExactly("mm");
+
+        // Base "mm", then log_26(2 * n) suffix characters
+        assertThat(service.generateIndicesBetween("m", "n", 10))
+                .allSatisfy(position -> assertThat(position).hasSize(3));
+        assertThat(service.generateIndicesBetween("m", "n", 1000))
+                .allSatisfy(position -> assertThat(position).hasSize(5));
+        assertThat(service.generateIndicesBetween("m", "n", 100_000))
+                .allSatisfy(position -> assertThat(position).hasSize(6));
+    }
+
+    @Test
+    void runPositionsNeverEndInTheLowestDigit() {
+        for (int count = 1; count <= 2000; count++) {
+            assertThat(FractionalIndexService.runPositions("m", count))
+                    .as("run of %d", count)
+                    .noneMatch(position -> position.endsWith("a"));
+        }
+    }
+
+    /**
+     * editor-server-snapshot's RunPositions and the client must derive the same positions
+     * from these inputs.
+     */
+    @Test
+    void runPositionsMatchTheSharedReferenceValues() {
+        assertThat(FractionalIndexService.runPositions("m", 3)).containsExactly("mg", "mn", "mt");
+        assertThat(FractionalIndexService.runPositions("b", 12))
+                .containsExactly("bc", "be", "bg", "bi", "bk", "bm", "bo", "bq", "bs", "bu", "bw", "by");
+        assertThat(FractionalIndexService.runPositions("zz", 13))
+                .containsExactly("zzbw", "zzds", "zzfo", "zzhl", "zzjh", "zzld", "zznb",
+                        "zzow", "zzqs", "zzso", "zzul", "zzwh", "zzyd");
+    }
+
+    /**
+     * Random a-z key that does not end in 'a' - no key can sort right before one that does.
+     */
+    private static String randomKey(Random random) {
+        int length = 1 + random.nextInt(random.nextBoolean() ? 4 : 80);
+        StringBuilder key = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Narrow alphabets make shared prefixes and adjacent characters common
+            key.append((char) ('a' + random.nextInt(random.nextBoolean() ? 3 : 26)));
+        }
+        if (key.charAt(length - 1) == 'a') {
+            key.setCharAt(length - 1, 'b');
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.OperationLogWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OperationBufferServiceTest {
+
+    private static final String DOC = "doc-1";
+    private static final int RING_CAPACITY = 16;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OperationWriteAheadLog writeAheadLog = mock(OperationWriteAheadLog.class);
+    private final List<CRDTOperation> persisted = new CopyOnWriteArrayList<>();
+
+    private OperationBufferService buffers;
+
+    @BeforeEach
+    void setUp() {
+        OperationLogWriter logWriter = mock(OperationLogWriter.class);
+        when(logWriter.writeAll(anyList())).thenAnswer(invocation -> {
+            List<CRDTOperation> operations = invocation.getArgument(0);
+            persisted.addAll(operations);
+            return operations;
+        });
+
+        AdaptiveFlushController flushController = new AdaptiveFlushController(meterRegistry);
+        ReflectionTestUtils.setField(flushController, "staticBatchSize", 8);
+        ReflectionTestUtils.setField(flushController, "staticFlushIntervalMs", 10L);
+        flushController.init();
+        RecentOperationsCache recentOperations = new RecentOperationsCache();
+        ReflectionTestUtils.setField(recentOperations, "capacity", 16);
+
+        buffers = new OperationBufferService(logWriter, mock(RedisPublisherService.class),
+                recentOperations, writeAheadLog, flushController, meterRegistry);
+        ReflectionTestUtils.setField(buffers, "ringCapacity", RING_CAPACITY);
+        ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 100L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        buffers.shutdown();
+    }
+
+    @Test
+    void fullRingFailsTheOperationWithoutLoggingIt() {
+        // No flusher yet, so nothing makes room
+        for (long seq = 1; seq <= RING_CAPACITY; seq++) {
+            buffers.addOperation(operation("user-1", seq));
+        }
+        CRDTOperation rejected = operation("user-1", RING_CAPACITY + 1L);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> buffers.addOperation(rejected))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(DOC);
+
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(meterRegistry.counter("editor.buffer.ring.full").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("editor.buffer.ring.rejected").count()).isEqualTo(1);
+        verify(writeAheadLog, times(RING_CAPACITY)).append(any());
+        assertThat(buffers.getBufferSize(DOC)).isEqualTo(RING_CAPACITY);
+
+        // Once the flusher runs, everything but the rejected operation is persisted
+        buffers.start();
+        buffers.flushAll();
+        await().atMost(Duration.ofSeconds(5)).until(() -> persisted.size() == RING_CAPACITY);
+        assertThat(persisted).doesNotContain(rejected);
+    }
+
+    @Test
+    void producerWaitsForTheFlusherToMakeRoom() throws Exception {
+        ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 10_000L);
+        for (long seq = 1; seq <= RING_CAPACITY; seq++) {
+            buffers.addOperation(operation("user-1", seq));
+        }
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(
+                () -> buffers.addOperation(operation("user-1", RING_CAPACITY + 1L)));
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+
+        buffers.start();
+        waiting.get(5, TimeUnit.SECONDS);
+        await().atMost(Duration.ofSeconds(5)).until(() -> persisted.size() == RING_CAPACITY + 1);
+        assertThat(persisted).extracting(CRDTOperation::getServerSeqNum)
+                .containsExactly(sequence(1, RING_CAPACITY + 1));
+    }
+
+    @Test
+    void concurrentProducersOnOneDocumentLoseNothingAndKeepTheirOrder() throws Exception {
+        int producers = 8;
+        int perProducer = 2_000;
+        ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 10_000L);
+        buffers.start();
+
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String userId = "user-" + p;
+            running.add(CompletableFuture.runAsync(() -> {
+                for (long seq = 1; seq <= perProducer; seq++) {
+                    buffers.addOperation(operation(userId, seq));
+                }
+            }, runnable -> Thread.ofPlatform().start(runnable)));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> persisted.size() >= producers * perProducer);
+        Map<String, List<Long>> byProducer = new HashMap<>();
+        for (CRDTOperation operation : persisted) {
+            byProducer.computeIfAbsent(operation.getUserId(), k -> new ArrayList<>()).add(operation.getServerSeqNum());
+        }
+        assertThat(persisted).hasSize(producers * perProducer);
+        assertThat(byProducer).hasSize(producers);
+        byProducer.forEach((userId, seqs) ->
+                assertThat(seqs).as(userId).containsExactly(sequence(1, perProducer)));
+        assertThat(meterRegistry.counter("editor.buffer.ring.rejected").count()).isZero();
+    }
+
+    private static Long[] sequence(int from, int to) {
+        Long[] seqs = new Long[to - from + 1];
+        for (int i = 0; i < seqs.length; i++) {
+            seqs[i] = (long) (from + i);
+        }
+        return seqs;
+    }
+
+    private static CRDTOperation operation(String userId, long seq) {
+        return new CRDTOperation(DOC, userId, "server-1", "INSERT", "x", "m", seq);
+    }
+}
@@ -0,0 +1,143 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Producers adding to one hot document's buffer while the flusher drains it: the
+ * OperationIngestRing against the ArrayList + ReentrantLock buffer it replaced (without the
+ * database I/O that used to run under that lock, so the lock is shown at its best).
+ * Run with: mvn test -Pbenchmark -Dtest=OperationIngestRingBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OperationIngestRingBenchmark {
+
+    private static final CRDTOperation OPERATION =
+            new CRDTOperation("doc-1", "user-1", "server-1", "INSERT", "x", "m", 1L);
+
+    @Param({"ring", "locked-list"})
+    public String buffer;
+
+    private Buffer target;
+    private Thread flusher;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void startFlusher() {
+        target = buffer.equals("ring") ? new RingBuffer() : new LockedListBuffer();
+        running = true;
+        flusher = Thread.ofPlatform().daemon(true).start(() -> {
+            List<CRDTOperation> drained = new ArrayList<>();
+            while (running) {
+                if (target.drainTo(drained) == 0) {
+                    Thread.yield();
+                }
+                drained.clear();
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void stopFlusher() throws InterruptedException {
+        running = false;
+        flusher.join();
+    }
+
+    @Benchmark
+    public void add() {
+        target.add(OPERATION);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void oneHotDocument() throws RunnerException {
+        for (int producers : new int[] {1, 8, 64}) {
+            new Runner(new OptionsBuilder()
+                    .include(OperationIngestRingBenchmark.class.getName() + ".add")
+                    .threads(producers)
+                    .build()).run();
+        }
+    }
+
+    private interface Buffer {
+        void add(CRDTOperation operation);
+
+        int drainTo(List<CRDTOperation> target);
+    }
+
+    private static final class RingBuffer implements Buffer {
+        private static final long FULL_RING_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+        private final OperationIngestRing<CRDTOperation> ring = new OperationIngestRing<>(4096);
+
+        @Override
+        public void add(CRDTOperation operation) {
+            // Parks like OperationBufferService: yielding producers on a full ring can starve each other
+            while (!ring.offer(operation)) {
+                LockSupport.parkNanos(FULL_RING_BACKOFF_NANOS);
+            }
+        }
+
+        @Override
+        public int drainTo(List<CRDTOperation> target) {
+            return ring.drainTo(target);
+        }
+    }
+
+    private static final class LockedListBuffer implements Buffer {
+        private final ReentrantLock lock = new ReentrantLock();
+        private List<CRDTOperation> operations = new ArrayList<>();
+
+        @Override
+        public void add(CRDTOperation operation) {
+            lock.lock();
+            try {
+                operations.add(operation);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int drainTo(List<CRDTOperation> target) {
+            List<CRDTOperation> drained;
+            lock.lock();
+            try {
+                drained = operations;
+                operations = new ArrayList<>();
+            } finally {
+                lock.unlock();
+            }
+            target.addAll(drained);
+            return drained.size();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mmtext.editorservermain.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OperationIngestRingTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new OperationIngestRing<>(3).capacity()).isEqualTo(4);
+        assertThat(new OperationIngestRing<>(16).capacity()).isEqualTo(16);
+        assertThat(new OperationIngestRing<>(17).capacity()).isEqualTo(32);
+    }
+
+    @Test
+    void fullRingRefusesUntilTheConsumerMakesRoom() {
+        OperationIngestRing<Integer> ring = new OperationIngestRing<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(ring.offer(i)).isTrue();
+        }
+
+        assertThat(ring.offer(4)).isFalse();
+        assertThat(ring.claim()).isEqualTo(-1);
+        assertThat(ring.size()).isEqualTo(4);
+
+        assertThat(ring.poll()).isZero();
+        assertThat(ring.offer(4)).isTrue();
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(ring.drainTo(drained)).isEqualTo(4);
+        assertThat(drained).containsExactly(1, 2, 3, 4);
+        assertThat(ring.poll()).isNull();
+    }
+
+    @Test
+    void consumerWaitsAtAClaimedSlotAndSkipsAGivenUpOne() {
+        OperationIngestRing<String> ring = new OperationIngestRing<>(8);
+        long first = ring.claim();
+        long second = ring.claim();
+        ring.offer("third");
+
+        // Nothing passes a claim that is still being filled
+        assertThat(ring.poll()).isNull();
+
+        ring.publish(second, "second");
+        ring.publish(first, null);
+
+        List<String> drained = new ArrayList<>();
+        ring.drainTo(drained);
+        assertThat(drained).containsExactly("second", "third");
+        assertThat(ring.size()).isZero();
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 8;
+        int perProducer = 50_000;
+        // Small enough that producers keep finding it full
+        OperationIngestRing<long[]> ring = new OperationIngestRing<>(64);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<CompletableFuture<Void>> running = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            running.add(CompletableFuture.runAsync(() -> {
+                awaitQuietly(start);
+                for (long seq = 0; seq < perProducer; seq++) {
+                    long[] element = {producer, seq};
+                    while (!ring.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+            }, runnable -> Thread.ofPlatform().start(runnable)));
+        }
+
+        long[] nextSeq = new long[producers];
+        int received = 0;
+        start.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (received < producers * perProducer && System.nanoTime() < deadline) {
+            long[] element = ring.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            int producer = (int) element[0];
+            assertThat(element[1]).as("producer %d", producer).isEqualTo(nextSeq[producer]);
+            nextSeq[producer]++;
+            received++;
+        }
+
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(received).isEqualTo(producers * perProducer);
+        assertThat(ring.poll()).isNull();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.config.RedisConfig;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Publish throughput and delivery latency of the pub/sub and the Redis Streams transport,
+ * one server publishing a document's operations and the same process receiving them.
+ * Needs a Redis server, by default the docker-compose one on localhost:6379
+ * (-Dbenchmark.redis.host, -Dbenchmark.redis.port to point elsewhere).
+ * Run with: mvn test -Pbenchmark -Dtest=OperationTransportBenchmarkTest
+ *
+ * Received operations are only counted, so the numbers cover the transport and not the
+ * decoding and fan-out behind RedisSubscriberService.
+ */
+@Tag("benchmark")
+class OperationTransportBenchmarkTest {
+
+    private static final String PROBE = "probe";
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, String> redisTemplate;
+    private static ObjectMapper objectMapper;
+
+    @BeforeAll
+    static void connect() {
+        // RedisSubscriberService.onMessage logs every message at INFO
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        RedisStandaloneConfiguration redis = new RedisStandaloneConfiguration(
+                System.getProperty("benchmark.redis.host", "localhost"),
+                Integer.getInteger("benchmark.redis.port", 6379));
+        connectionFactory = new LettuceConnectionFactory(redis);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        redisTemplate.afterPropertiesSet();
+        objectMapper = new JacksonConfig().objectMapper();
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void burstThroughput() {
+        int operations = 20_000;
+        for (Kind kind : Kind.values()) {
+            String docId = "benchmark-burst-" + kind;
+            try (Run run = new Run(kind, docId, operations)) {
+                long start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    run.publish(i);
+                }
+                double publishSeconds = (System.nanoTime() - start) / 1e9;
+                run.awaitReceived(operations);
+                double deliverSeconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-7s burst of %,d: published at %,.0f ops/s, all delivered after %.2fs = %,.0f ops/s%n",
+                        kind, operations, operations / publishSeconds, deliverSeconds, operations / deliverSeconds);
+            }
+        }
+    }
+
+    @Test
+    void latencyAtSteadyRate() {
+        int perSecond = 2_000;
+        int operations = perSecond * 5;
+        for (Kind kind : Kind.values()) {
+            String docId = "benchmark-steady-" + kind;
+            try (Run run = new Run(kind, docId, operations)) {
+                long start = System.nanoTime();
+                for (int i = 0; i < operations; i++) {
+                    LockSupport.parkNanos(start + TimeUnit.SECONDS.toNanos(1) * i / perSecond - System.nanoTime());
+                    run.publish(i);
+                }
+                run.awaitReceived(operations);
+
+                long[] latencies = run.latenciesMicros();
+                System.out.printf("%-7s at %,d ops/s: latency p50 %,d us, p99 %,d us, max %,d us%n",
+                        kind, perSecond, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                        latencies[latencies.length - 1]);
+            }
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    private enum Kind {
+        PUBSUB,
+        STREAMS
+    }
+
+    /**
+     * One transport, configured the way the application configures it, subscribed to one document
+     */
+    private static final class Run implements AutoCloseable {
+        private final String docId;
+        private final String[] payloads;
+        private final long[] sentNanos;
+        private final long[] receivedNanos;
+        private final CountingSubscriber subscriber;
+        private final OperationTransport transport;
+        private RedisMessageListenerContainer listenerContainer;
+
+        Run(Kind kind, String docId, int operations) {
+            this.docId = docId;
+            this.payloads = payloads(docId, operations);
+            this.sentNanos = new long[operations];
+            this.receivedNanos = new long[operations];
+            this.subscriber = new CountingSubscriber(receivedNanos);
+            redisTemplate.delete(StreamsOperationTransport.STREAM_PREFIX + docId);
+
+            StaticListableBeanFactory beans = new StaticListableBeanFactory();
+            if (kind == Kind.STREAMS) {
+                beans.addBean("subscriber", subscriber);
+                StreamsOperationTransport streams = new StreamsOperationTransport(
+                        redisTemplate, beans.getBeanProvider(RedisSubscriberService.class), new SimpleMeterRegistry());
+                ReflectionTestUtils.setField(streams, "maxLength", 10_000L);
+                ReflectionTestUtils.setField(streams, "blockMs", 1000L);
+                ReflectionTestUtils.setField(streams, "batchSize", 500L);
+                ReflectionTestUtils.setField(streams, "replayCount", 1024L);
+                streams.start();
+                transport = streams;
+            } else {
+                listenerContainer = new RedisConfig().redisMessageListenerContainer(connectionFactory);
+                listenerContainer.afterPropertiesSet();
+                listenerContainer.start();
+                beans.addBean("listenerContainer", listenerContainer);
+                beans.addBean("listenerAdapter", new MessageListenerAdapter(subscriber));
+                transport = new PubSubOperationTransport(redisTemplate,
+                        beans.getBeanProvider(RedisMessageListenerContainer.class),
+                        beans.getBeanProvider(MessageListenerAdapter.class));
+            }
+            transport.subscribe(docId);
+
+            // A pub/sub subscription is only in place once something published after it arrives
+            await().atMost(Duration.ofSeconds(10)).pollInterval(Duration.ofMillis(50)).until(() -> {
+                transport.publish(docId, PROBE);
+                return subscriber.ready;
+            });
+        }
+
+        void publish(int i) {
+            sentNanos[i] = System.nanoTime();
+            transport.publish(docId, payloads[i]);
+        }
+
+        void awaitReceived(int operations) {
+            await().atMost(Duration.ofMinutes(2)).pollInterval(Duration.ofMillis(10))
+                    .until(() -> subscriber.received.get() >= operations);
+        }
+
+        long[] latenciesMicros() {
+            long[] latencies = new long[sentNanos.length];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = TimeUnit.NANOSECONDS.toMicros(receivedNanos[i] - sentNanos[i]);
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        }
+
+        @Override
+        public void close() {
+            transport.unsubscribe(docId);
+            if (transport instanceof StreamsOperationTransport streams) {
+                streams.shutdown();
+            }
+            if (listenerContainer != null) {
+                listenerContainer.stop();
+            }
+            redisTemplate.delete(StreamsOperationTransport.STREAM_PREFIX + docId);
+        }
+    }
+
+    /**
+     * Operations as RedisPublisherService serializes them; operation i has sequence number i + 1
+     */
+    private static String[] payloads(String docId, int operations) {
+        String[] payloads = new String[operations];
+        for (int i = 0; i < operations; i++) {
+            try {
+                payloads[i] = objectMapper.writeValueAsString(new CRDTOperation(
+                        docId, "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8", "server-1", "INSERT", "x", "a0V", i + 1L));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return payloads;
+    }
+
+    /**
+     * Records when each operation arrived, by its sequence number, ignoring the probes sent while subscribing
+     */
+    private static final class CountingSubscriber extends RedisSubscriberService {
+        private static final String SEQ_FIELD = "\"serverSeqNum\":";
+
+        private final long[] receivedNanos;
+        private final AtomicInteger received = new AtomicInteger();
+        private volatile boolean ready;
+
+        CountingSubscriber(long[] receivedNanos) {
+            super(null, null, null, null, null, new SimpleMeterRegistry());
+            this.receivedNanos = receivedNanos;
+        }
+
+        @Override
+        public void onOperation(String docId, String body, boolean replay) {
+            if (body.equals(PROBE)) {
+                ready = true;
+                return;
+            }
+            long now = System.nanoTime();
+            // The pub/sub listener container hands each message to its own thread, so arrival order is not send order
+            int seqStart = body.indexOf(SEQ_FIELD) + SEQ_FIELD.length();
+            int seqEnd = seqStart;
+            while (Character.isDigit(body.charAt(seqEnd))) {
+                seqEnd++;
+            }
+            receivedNanos[Integer.parseInt(body, seqStart, seqEnd, 10) - 1] = now;
+            received.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OperationWriteAheadLogTest {
+
+    private static final String DOC = "doc-1";
+    private static final String SERVER = "server-1";
+
+    @TempDir
+    Path directory;
+
+    private CRDTOperationRepository operationRepository;
+    private final List<CRDTOperation> persisted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        operationRepository = mock(CRDTOperationRepository.class);
+        when(operationRepository.findByDocIdAndServerIdAndServerSeqNumBetweenOrderByServerSeqNum(
+                anyString(), anyString(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> List.copyOf(persisted));
+    }
+
+    @Test
+    void recoveryReplaysOnlyUnpersistedRecords() {
+        OperationWriteAheadLog log = open(1 << 20);
+        for (long seq = 1; seq <= 5; seq++) {
+            log.append(operation(seq));
+        }
+
+        // Crash after the first two reached PostgreSQL but before the log heard about it
+        persisted.add(operation(1));
+        persisted.add(operation(2));
+
+        assertThat(restart(1 << 20))
+                .extracting(CRDTOperation::getServerSeqNum)
+                .containsExactly(3L, 4L, 5L);
+    }
+
+    @Test
+    void recoveryStopsAtTruncatedSegmentWithoutLosingEarlierRecords() throws IOException {
+        OperationWriteAheadLog log = open(1 << 20);
+        for (long seq = 1; seq <= 3; seq++) {
+            log.append(operation(seq));
+        }
+        Path segment = singleSegment();
+
+        // Cut the file in the middle of the last record
+        int lastRecord = recordOffsets(segment).get(2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(lastRecord + 12);
+        }
+
+        assertThat(restart(1 << 20))
+                .extracting(CRDTOperation::getServerSeqNum)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void recoverySkipsTornAndUnstartedRecordsLeftByConcurrentWriters() throws IOException {
+        OperationWriteAheadLog log = open(1 << 20);
+        for (long seq = 1; seq <= 4; seq++) {
+            log.append(operation(seq));
+        }
+        Path segment = singleSegment();
+        List<Integer> offsets = recordOffsets(segment);
+
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // Record 2: header written, payload not finished
+            channel.write(ByteBuffer.wrap(new byte[] {'#', '#', '#'}), offsets.get(1) + 8);
+            // Record 3: writer claimed the space but never wrote anything
+            channel.write(ByteBuffer.allocate(offsets.get(3) - offsets.get(2)), offsets.get(2));
+        }
+
+        assertThat(restart(1 << 20))
+                .extracting(CRDTOperation::getServerSeqNum)
+                .containsExactly(1L, 4L);
+    }
+
+    @Test
+    void committedSealedSegmentsAreDeleted() throws IOException {
+        OperationWriteAheadLog log = open(1024);
+        List<CRDTOperation> appended = new ArrayList<>();
+        for (long seq = 1; seq <= 20; seq++) {
+            CRDTOperation operation = operation(seq);
+            log.append(operation);
+            appended.add(operation);
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThan(2);
+
+        log.commit(appended);
+
+        // Only the active segment is left
+        assertThat(segmentFiles()).hasSize(1);
+    }
+
+    @Test
+    void concurrentAppendsAreAllRecovered() throws Exception {
+        OperationWriteAheadLog log = open(4096);
+        int threads = 8;
+        int perThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                long base = (long) t * perThread;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 1; i <= perThread; i++) {
+                        log.append(operation(base + i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(restart(4096))
+                .extracting(CRDTOperation::getServerSeqNum)
+                .hasSize(threads * perThread)
+                .doesNotHaveDuplicates();
+    }
+
+    private OperationWriteAheadLog open(int segmentSizeBytes) {
+        OperationWriteAheadLog log = newLog(segmentSizeBytes);
+        assertThat(log.recover()).isEmpty();
+        return log;
+    }
+
+    /**
+     * Open the log again as a restarted server would
+     *
+     * @return the operations handed back for flushing
+     */
+    private List<CRDTOperation> restart(int segmentSizeBytes) {
+        return newLog(segmentSizeBytes).recover();
+    }
+
+    private OperationWriteAheadLog newLog(int segmentSizeBytes) {
+        OperationWriteAheadLog log = new OperationWriteAheadLog(
+                new JacksonConfig().objectMapper(), operationRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(log, "enabled", true);
+        ReflectionTestUtils.setField(log, "directory", directory.toString());
+        ReflectionTestUtils.setField(log, "segmentSizeBytes", segmentSizeBytes);
+        ReflectionTestUtils.setField(log, "fsync", false);
+        return log;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("wal-")).toList();
+        }
+    }
+
+    private Path singleSegment() throws IOException {
+        assertThat(segmentFiles()).hasSize(1);
+        return segmentFiles().get(0);
+    }
+
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(segment));
+        List<Integer> offsets = new ArrayList<>();
+        int offset = 0;
+        while (offset + 8 <= content.capacity() && content.getInt(offset) > 0) {
+            offsets.add(offset);
+            offset += (8 + content.getInt(offset) + 7) / 8 * 8;
+        }
+        offsets.add(offset);
+        return offsets;
+    }
+
+    private static CRDTOperation operation(long seq) {
+        return new CRDTOperation(DOC, "user-1", SERVER, "INSERT", "x", "m" + seq, seq);
+    }
+}
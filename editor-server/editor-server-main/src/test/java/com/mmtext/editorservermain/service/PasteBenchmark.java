@@ -0,0 +1,267 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.SequenceLeaseRepository;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A 5,000 character paste from one client, from its JSON frames arriving to the acks being
+ * queued: one OPERATION per character against a single OPERATION_BATCH. Sequencing, buffering
+ * and the flusher are real; the flusher's database writer and Redis publisher are stubs, and
+ * the sequence lease is answered from memory.
+ * Run with: mvn test -Pbenchmark -Dtest=PasteBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PasteBenchmark {
+
+    private static final int PASTE_LENGTH = 5000;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    @Param({"per-character", "batch"})
+    public String message;
+
+    private Pipeline pipeline;
+    private TextMessage[] frames;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        pipeline = new Pipeline();
+        frames = pasteFrames(message, pipeline.objectMapper);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        pipeline.close();
+    }
+
+    @Benchmark
+    public void paste() throws Exception {
+        for (TextMessage frame : frames) {
+            pipeline.handler.handleTextMessage(pipeline.session, frame);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void paste5000Characters() throws Exception {
+        for (String message : new String[] {"per-character", "batch"}) {
+            try (Pipeline pipeline = new Pipeline()) {
+                TextMessage[] frames = pasteFrames(message, pipeline.objectMapper);
+                long inbound = 0;
+                for (TextMessage frame : frames) {
+                    inbound += frame.getPayloadLength();
+                    pipeline.handler.handleTextMessage(pipeline.session, frame);
+                }
+                System.out.printf("%-13s %,d frames / %,d bytes in, %,d frames / %,d bytes of acks out%n",
+                        message, frames.length, inbound, pipeline.queue.frames, pipeline.queue.bytes);
+            }
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(PasteBenchmark.class.getName())
+                .build()).run();
+    }
+
+    /**
+     * The paste as the client sends it. Each per-character OPERATION names the position the
+     * server gave the previous character; a batch chains its entries with afterPrevious instead.
+     */
+    private static TextMessage[] pasteFrames(String message, ObjectMapper objectMapper) throws IOException {
+        if (message.equals("batch")) {
+            List<Map<String, Object>> entries = new ArrayList<>(PASTE_LENGTH);
+            for (int i = 0; i < PASTE_LENGTH; i++) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("operationType", "INSERT");
+                entry.put("character", character(i));
+                if (i > 0) {
+                    entry.put("afterPrevious", true);
+                }
+                entries.add(entry);
+            }
+            Map<String, Object> batch = new LinkedHashMap<>();
+            batch.put("type", "OPERATION_BATCH");
+            batch.put("docId", DOC);
+            batch.put("operations", entries);
+            return new TextMessage[] {new TextMessage(objectMapper.writeValueAsString(batch))};
+        }
+
+        // Positions only depend on the bounds, so they can be worked out ahead of time
+        FractionalIndexService positions = new FractionalIndexService(new CompositeMeterRegistry());
+        TextMessage[] frames = new TextMessage[PASTE_LENGTH];
+        String previous = null;
+        for (int i = 0; i < PASTE_LENGTH; i++) {
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("docId", DOC);
+            operation.put("userId", USER);
+            operation.put("operationType", "INSERT");
+            operation.put("character", character(i));
+            Map<String, Object> single = new LinkedHashMap<>();
+            single.put("type", "OPERATION");
+            single.put("docId", DOC);
+            single.put("insertAfterPosition", previous);
+            single.put("operation", operation);
+            frames[i] = new TextMessage(objectMapper.writeValueAsString(single));
+            previous = positions.generateIndexBetween(previous, null);
+        }
+        return frames;
+    }
+
+    private static String character(int i) {
+        return String.valueOf((char) ('a' + i % 26));
+    }
+
+    /**
+     * Handler, CRDT service and operation buffer wired the way the application wires them,
+     * with one session subscribed to the document
+     */
+    private static final class Pipeline implements AutoCloseable {
+        private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        private final CountingQueue queue;
+        private final WebSocketSession session;
+        private final OperationBufferService buffers;
+        private final EditorWebSocketHandler handler;
+
+        Pipeline() {
+            // Per-operation INFO logging would otherwise be the bulk of the per-character cost
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                    .setLevel(ch.qos.logback.classic.Level.WARN);
+
+            CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+            RecentOperationsCache recentOperations = new RecentOperationsCache();
+            ReflectionTestUtils.setField(recentOperations, "capacity", 1024);
+            AdaptiveFlushController flushController = new AdaptiveFlushController(meterRegistry);
+            ReflectionTestUtils.setField(flushController, "staticBatchSize", 50);
+            ReflectionTestUtils.setField(flushController, "staticFlushIntervalMs", 500L);
+            flushController.init();
+
+            // WAL disabled, as by default
+            OperationWriteAheadLog writeAheadLog = new OperationWriteAheadLog(
+                    objectMapper, mock(CRDTOperationRepository.class), meterRegistry);
+            // Stub-only: a recording mock would keep every published flush reachable
+            buffers = new OperationBufferService(operations -> operations,
+                    mock(RedisPublisherService.class, withSettings().stubOnly()),
+                    recentOperations, writeAheadLog, flushController, meterRegistry);
+            ReflectionTestUtils.setField(buffers, "ringCapacity", 4096);
+            ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 5000L);
+            buffers.start();
+
+            SessionRegistry sessionRegistry = new SessionRegistry();
+            SequenceLeaseRepository leaseRepository = mock(SequenceLeaseRepository.class, withSettings().stubOnly());
+            long[] leasedUpTo = {0};
+            when(leaseRepository.lease(anyString(), anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                    leasedUpTo[0] += invocation.<Long>getArgument(2) * invocation.<Integer>getArgument(3));
+            CRDTService crdtService = new CRDTService(mock(CRDTOperationRepository.class), leaseRepository,
+                    buffers, new FractionalIndexService(meterRegistry), recentOperations,
+                    new DocumentLifecycleManager(buffers, sessionRegistry, meterRegistry), meterRegistry);
+            ReflectionTestUtils.setField(crdtService, "serverId", "server-1");
+            ReflectionTestUtils.setField(crdtService, "leaseBlockSize", 1000L);
+
+            handler = new EditorWebSocketHandler(
+                    crdtService,
+                    new FractionalIndexService(meterRegistry),
+                    objectMapper,
+                    mock(SessionOutboundQueueFactory.class),
+                    new BinaryOperationCodec(),
+                    recentOperations,
+                    mock(SnapshotStateStreamer.class),
+                    sessionRegistry,
+                    mock(DocumentChannelSubscriptions.class),
+                    meterRegistry);
+            ReflectionTestUtils.setField(handler, "serverId", "server-1");
+            ReflectionTestUtils.setField(handler, "maxBatchOperations", 10_000);
+            handler.initMetrics();
+
+            session = openSession("session-1");
+            queue = new CountingQueue(session);
+            sessionRegistry.register(session, queue);
+            sessionRegistry.subscribe("session-1", DOC, USER);
+        }
+
+        @Override
+        public void close() {
+            buffers.shutdown();
+        }
+    }
+
+    /**
+     * Open JSON session. A plain proxy rather than a Mockito mock, whose per-call recording
+     * would add to every character of the per-character paste.
+     */
+    private static WebSocketSession openSession(String id) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "getAttributes" -> attributes;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Outbound queue that counts what the client would receive and drops it
+     */
+    private static final class CountingQueue extends SessionOutboundQueue {
+        private long frames;
+        private long bytes;
+
+        CountingQueue(WebSocketSession session) {
+            super(session, Runnable::run, Integer.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_SESSION,
+                    null, null, null, null, null);
+        }
+
+        @Override
+        public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+            frames++;
+            bytes += frame.getPayloadLength();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.model.CRDTOperation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecentOperationsCacheTest {
+
+    private static final String DOC = "doc-1";
+
+    private RecentOperationsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecentOperationsCache();
+        ReflectionTestUtils.setField(cache, "capacity", 4);
+    }
+
+    @Test
+    void seedingAnUntrackedDocumentDoesNotCreateRings() {
+        cache.seed(DOC, Map.of("server-1", 10L));
+
+        assertThat(cache.isTracked(DOC)).isFalse();
+        assertThat(cache.isSeeded(DOC)).isFalse();
+        assertThat(cache.getTrackedDocumentCount()).isZero();
+    }
+
+    @Test
+    void recordingAnUntrackedDocumentIsIgnored() {
+        cache.record(operation(1L));
+
+        assertThat(cache.getTrackedDocumentCount()).isZero();
+    }
+
+    @Test
+    void overrunRingReportsTheDatabaseRange() {
+        cache.track(DOC);
+        cache.seed(DOC, Map.of("server-1", 0L));
+        for (long seq = 1; seq <= 6; seq++) {
+            cache.record(operation(seq));
+        }
+
+        RecentOperationsCache.CatchUp catchUp = cache.collect(DOC, Map.of("server-1", 0L));
+
+        assertThat(catchUp.getFromMemory().get("server-1"))
+                .extracting(CRDTOperation::getServerSeqNum)
+                .containsExactly(3L, 4L, 5L, 6L);
+        assertThat(catchUp.getDatabaseRanges()).singleElement().satisfies(range -> {
+            assertThat(range.getFromSeq()).isEqualTo(1L);
+            assertThat(range.getToSeq()).isEqualTo(2L);
+        });
+    }
+
+    @Test
+    void releaseDropsTheDocument() {
+        cache.track(DOC);
+        cache.release(DOC);
+
+        assertThat(cache.isTracked(DOC)).isFalse();
+    }
+
+    private static CRDTOperation operation(long seq) {
+        return new CRDTOperation(DOC, "user-1", "server-1", "INSERT", "x", "m", seq);
+    }
+}
@@ -0,0 +1,44 @@
+package com.mmtext.editorservermain.service;
+
+/**
+ * The recursive generator FractionalIndexService used before generate() became iterative;
+ * the reference its results and cost are compared against.
+ */
+final class RecursiveFractionalIndex {
+
+    private RecursiveFractionalIndex() {
+    }
+
+    static String generateIndexBetween(String indexBefore, String indexAfter) {
+        String i1 = (indexBefore == null || indexBefore.isEmpty()) ? "a" : indexBefore;
+        String i2 = (indexAfter == null || indexAfter.isEmpty()) ? "z" : indexAfter;
+        return generate(i1, i2, "");
+    }
+
+    private static String generate(String a, String b, String prefix) {
+        char c1 = a.isEmpty() ? 'a' : a.charAt(0);
+        char c2 = b.isEmpty() ? 'z' : b.charAt(0);
+
+        int v1 = c1 - 'a';
+        int v2 = c2 - 'a';
+
+        if (v1 == v2) {
+            return generate(
+                    a.isEmpty() ? "" : a.substring(1),
+                    b.isEmpty() ? "" : b.substring(1),
+                    prefix + c1
+            );
+        }
+
+        if (v1 + 1 < v2) {
+            int mid = (v1 + v2) / 2;
+            return prefix + (char) ('a' + mid);
+        }
+
+        return generate(
+                a.length() <= 1 ? "" : a.substring(1),
+                "",
+                prefix + c1
+        );
+    }
+}
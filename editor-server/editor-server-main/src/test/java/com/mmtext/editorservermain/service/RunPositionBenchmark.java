@@ -0,0 +1,93 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positions for a paste of N characters between two neighbouring characters of a document:
+ * generateIndicesBetween against one generateIndexBetween per character, each squeezed
+ * between the previous new key and the character after the paste. The test prints the key
+ * lengths of both before running the timings.
+ * Run with: mvn test -Pbenchmark -Dtest=RunPositionBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RunPositionBenchmark {
+
+    // Two adjacent characters in the middle of a typed document
+    private static final String BEFORE = "mg";
+    private static final String AFTER = "mi";
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int characters;
+
+    // No registries attached, so the key length summary is a no-op
+    private final FractionalIndexService service = new FractionalIndexService(new CompositeMeterRegistry());
+
+    @Benchmark
+    public List<String> bulk() {
+        return service.generateIndicesBetween(BEFORE, AFTER, characters);
+    }
+
+    @Benchmark
+    public String oneByOne() {
+        String previous = BEFORE;
+        for (int i = 0; i < characters; i++) {
+            previous = service.generateIndexBetween(previous, AFTER);
+        }
+        return previous;
+    }
+
+    @Test
+    @Tag("benchmark")
+    void pastePositions() throws RunnerException {
+        for (int characters : new int[] {10, 100, 1000, 10_000, 100_000}) {
+            long bulkTotal = 0;
+            int bulkMax = 0;
+            for (String key : service.generateIndicesBetween(BEFORE, AFTER, characters)) {
+                bulkTotal += key.length();
+                bulkMax = Math.max(bulkMax, key.length());
+            }
+
+            long singleTotal = 0;
+            int singleMax = 0;
+            String previous = BEFORE;
+            for (int i = 0; i < characters; i++) {
+                previous = service.generateIndexBetween(previous, AFTER);
+                singleTotal += previous.length();
+                singleMax = Math.max(singleMax, previous.length());
+            }
+
+            System.out.printf("%,7d characters: key length bulk mean %.1f / max %d, one by one mean %.1f / max %d%n",
+                    characters, (double) bulkTotal / characters, bulkMax,
+                    (double) singleTotal / characters, singleMax);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(RunPositionBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
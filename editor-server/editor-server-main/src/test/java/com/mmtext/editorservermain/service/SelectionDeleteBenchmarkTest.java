@@ -0,0 +1,239 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.SequenceLeaseRepository;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A 10,000 character selection deleted by one client while a second client on the same
+ * server watches: one DELETE per character against one DELETE_RANGE. Counts frames and bytes
+ * on each hop (client to server, ack, local broadcast, Redis) and the operations and flushes
+ * handed to the log writer, each operation being one crdt_operations row and one outbox row.
+ * Sequencing, buffering and the flusher are real; the log writer and the Redis transport only
+ * count, and the sequence lease is answered from memory. The snapshot side is measured by
+ * editor-server-snapshot's SnapshotDeleteBenchmarkTest.
+ * Run with: mvn test -Pbenchmark -Dtest=SelectionDeleteBenchmarkTest
+ */
+@Tag("benchmark")
+class SelectionDeleteBenchmarkTest {
+
+    private static final int SELECTION = 10_000;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    @Test
+    void delete10000Characters() throws Exception {
+        ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        // The selection: characters of a pasted run, as the document holds them
+        List<String> positions = FractionalIndexService.runPositions(
+                new FractionalIndexService(new CompositeMeterRegistry()).generateRunBase(null, null), SELECTION);
+
+        for (boolean range : new boolean[] {false, true}) {
+            List<TextMessage> frames = new ArrayList<>();
+            if (range) {
+                frames.add(delete(objectMapper, "DELETE_RANGE", positions.get(0), positions.get(SELECTION - 1)));
+            } else {
+                for (String position : positions) {
+                    frames.add(delete(objectMapper, "DELETE", position, null));
+                }
+            }
+
+            Pipeline pipeline = new Pipeline(objectMapper);
+            long inbound = 0;
+            long start = System.nanoTime();
+            try {
+                for (TextMessage frame : frames) {
+                    inbound += frame.getPayloadLength();
+                    pipeline.handler.handleTextMessage(pipeline.deleting, frame);
+                }
+            } finally {
+                // Flushes whatever is still buffered
+                pipeline.buffers.shutdown();
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+
+            System.out.printf("%-12s client->server %,d frames / %,d bytes; ack %,d frames / %,d bytes; "
+                            + "local broadcast %,d frames / %,d bytes; Redis %,d messages / %,d bytes%n",
+                    range ? "DELETE_RANGE" : "DELETE", frames.size(), inbound,
+                    pipeline.deletingQueue.frames, pipeline.deletingQueue.bytes,
+                    pipeline.watchingQueue.frames, pipeline.watchingQueue.bytes,
+                    pipeline.transport.messages, pipeline.transport.bytes);
+            System.out.printf("%-12s %,d operations in %,d flushes to crdt_operations and the outbox; %.1f ms%n",
+                    "", pipeline.written, pipeline.flushes, millis);
+        }
+    }
+
+    private static TextMessage delete(ObjectMapper objectMapper, String type, String position, String endPosition)
+            throws IOException {
+        Map<String, Object> operation = new LinkedHashMap<>();
+        operation.put("docId", DOC);
+        operation.put("userId", USER);
+        operation.put("operationType", type);
+        operation.put("fractionalPosition", position);
+        if (endPosition != null) {
+            operation.put("endPosition", endPosition);
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "OPERATION");
+        message.put("docId", DOC);
+        message.put("operation", operation);
+        return new TextMessage(objectMapper.writeValueAsString(message));
+    }
+
+    /**
+     * Handler, CRDT service and operation buffer wired the way the application wires them in
+     * local-first mode, with a deleting and a watching session subscribed to the document
+     */
+    private static final class Pipeline {
+        private final CountingQueue deletingQueue;
+        private final CountingQueue watchingQueue;
+        private final CountingTransport transport = new CountingTransport();
+        private final WebSocketSession deleting;
+        private final OperationBufferService buffers;
+        private final EditorWebSocketHandler handler;
+        private long written;
+        private long flushes;
+
+        Pipeline(ObjectMapper objectMapper) {
+            // Per-operation INFO logging would otherwise be the bulk of the per-character cost
+            ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                    .setLevel(ch.qos.logback.classic.Level.WARN);
+
+            CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+            RecentOperationsCache recentOperations = new RecentOperationsCache();
+            ReflectionTestUtils.setField(recentOperations, "capacity", 1024);
+            AdaptiveFlushController flushController = new AdaptiveFlushController(meterRegistry);
+            ReflectionTestUtils.setField(flushController, "staticBatchSize", 50);
+            ReflectionTestUtils.setField(flushController, "staticFlushIntervalMs", 500L);
+            flushController.init();
+
+            // WAL disabled, as by default
+            OperationWriteAheadLog writeAheadLog = new OperationWriteAheadLog(
+                    objectMapper, mock(CRDTOperationRepository.class), meterRegistry);
+            buffers = new OperationBufferService(operations -> {
+                        written += operations.size();
+                        flushes++;
+                        return operations;
+                    },
+                    new RedisPublisherService(transport, objectMapper, meterRegistry),
+                    recentOperations, writeAheadLog, flushController, meterRegistry);
+            ReflectionTestUtils.setField(buffers, "ringCapacity", 4096);
+            ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 5000L);
+            buffers.start();
+
+            SessionRegistry sessionRegistry = new SessionRegistry();
+            SequenceLeaseRepository leaseRepository = mock(SequenceLeaseRepository.class, withSettings().stubOnly());
+            long[] leasedUpTo = {0};
+            when(leaseRepository.lease(anyString(), anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                    leasedUpTo[0] += invocation.<Long>getArgument(2) * invocation.<Integer>getArgument(3));
+            CRDTService crdtService = new CRDTService(mock(CRDTOperationRepository.class), leaseRepository,
+                    buffers, new FractionalIndexService(meterRegistry), recentOperations,
+                    new DocumentLifecycleManager(buffers, sessionRegistry, meterRegistry), meterRegistry);
+            ReflectionTestUtils.setField(crdtService, "serverId", "server-1");
+            ReflectionTestUtils.setField(crdtService, "leaseBlockSize", 1000L);
+
+            handler = new EditorWebSocketHandler(
+                    crdtService,
+                    new FractionalIndexService(meterRegistry),
+                    objectMapper,
+                    mock(SessionOutboundQueueFactory.class),
+                    new BinaryOperationCodec(),
+                    recentOperations,
+                    mock(SnapshotStateStreamer.class),
+                    sessionRegistry,
+                    mock(DocumentChannelSubscriptions.class),
+                    meterRegistry);
+            ReflectionTestUtils.setField(handler, "serverId", "server-1");
+            ReflectionTestUtils.setField(handler, "localFirst", true);
+            handler.initMetrics();
+
+            deleting = openSession("session-1");
+            deletingQueue = new CountingQueue(deleting);
+            sessionRegistry.register(deleting, deletingQueue);
+            sessionRegistry.subscribe("session-1", DOC, USER);
+
+            WebSocketSession watching = openSession("session-2");
+            watchingQueue = new CountingQueue(watching);
+            sessionRegistry.register(watching, watchingQueue);
+            sessionRegistry.subscribe("session-2", DOC, "user-2");
+        }
+    }
+
+    private static WebSocketSession openSession(String id) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "getAttributes" -> attributes;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Outbound queue that counts what the client would receive and drops it
+     */
+    private static final class CountingQueue extends SessionOutboundQueue {
+        private long frames;
+        private long bytes;
+
+        CountingQueue(WebSocketSession session) {
+            super(session, Runnable::run, Integer.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_SESSION,
+                    null, null, null, null, null);
+        }
+
+        @Override
+        public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+            frames++;
+            bytes += frame.getPayloadLength();
+            return true;
+        }
+    }
+
+    /**
+     * Transport that counts what would be published to the other servers
+     */
+    private static final class CountingTransport implements OperationTransport {
+        private long messages;
+        private long bytes;
+
+        @Override
+        public void publish(String docId, String payload) {
+            messages++;
+            bytes += payload.length();
+        }
+
+        @Override
+        public void subscribe(String docId) {
+        }
+
+        @Override
+        public void unsubscribe(String docId) {
+        }
+    }
+}
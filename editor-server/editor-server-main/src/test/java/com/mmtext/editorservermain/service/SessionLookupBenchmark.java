@@ -0,0 +1,126 @@
+package com.mmtext.editorservermain.service;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session bookkeeping of a broadcast that arrived through Redis: the local-session check on the
+ * originating session (a remote one, so nothing matches) and the walk over the document's
+ * subscribers. SessionRegistry against the per-document session maps with a linear hasSession
+ * scan that it replaced. Frame encoding and queuing are left out.
+ * Run with: mvn test -Pbenchmark -Dtest=SessionLookupBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionLookupBenchmark {
+
+    private static final int SESSIONS_PER_DOCUMENT = 2;
+    private static final String REMOTE_SESSION = "remote-session";
+
+    @Param({"1", "100", "10000"})
+    public int documents;
+
+    private final SessionRegistry registry = new SessionRegistry();
+    private final Map<String, Map<String, WebSocketSession>> documentSessions = new ConcurrentHashMap<>();
+    private String[] docIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void openDocuments() {
+        docIds = new String[documents];
+        for (int d = 0; d < documents; d++) {
+            String docId = "doc-" + d;
+            docIds[d] = docId;
+            for (int s = 0; s < SESSIONS_PER_DOCUMENT; s++) {
+                String sessionId = docId + "-session-" + s;
+                WebSocketSession session = session(sessionId);
+                registry.register(session, null);
+                registry.subscribe(sessionId, docId, "user-" + s);
+                documentSessions.computeIfAbsent(docId, k -> new ConcurrentHashMap<>()).put(sessionId, session);
+            }
+        }
+    }
+
+    @Benchmark
+    public int registry() {
+        String docId = docIds[next++ % documents];
+        String excludeSessionId = registry.contains(REMOTE_SESSION) ? REMOTE_SESSION : null;
+        int recipients = 0;
+        for (SessionRegistry.SessionEntry entry : registry.sessionsOf(docId)) {
+            if (!entry.getSessionId().equals(excludeSessionId)) {
+                recipients++;
+            }
+        }
+        return recipients;
+    }
+
+    @Benchmark
+    public int documentMaps() {
+        String docId = docIds[next++ % documents];
+        String excludeSessionId = hasSession(REMOTE_SESSION) ? REMOTE_SESSION : null;
+        int recipients = 0;
+        for (Map.Entry<String, WebSocketSession> entry : documentSessions.get(docId).entrySet()) {
+            if (!entry.getKey().equals(excludeSessionId)) {
+                recipients++;
+            }
+        }
+        return recipients;
+    }
+
+    @Test
+    @Tag("benchmark")
+    void openDocumentCount() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SessionLookupBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    /**
+     * The hasSession scan SessionRegistry replaced
+     */
+    private boolean hasSession(String sessionId) {
+        for (Map<String, WebSocketSession> sessions : documentSessions.values()) {
+            if (sessions.containsKey(sessionId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static WebSocketSession session(String id) {
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    default -> null;
+                });
+    }
+}
@@ -0,0 +1,108 @@
+package com.mmtext.editorservermain.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionOutboundQueueTest {
+
+    private static final int MAX_MESSAGES = 4;
+    private static final long MAX_BYTES = 100;
+    private static final TextMessage RESYNC = new TextMessage("{\"type\":\"RESYNC_REQUIRED\"}");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Writer tasks run only when the test says so, so frames stay queued until then
+    private final List<Runnable> writerTasks = new ArrayList<>();
+    private final List<WebSocketMessage<?>> sent = new ArrayList<>();
+
+    private SessionOutboundQueue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> sent.add(invocation.getArgument(0))).when(session).sendMessage(any());
+
+        queue = new SessionOutboundQueue(
+                session,
+                writerTasks::add,
+                MAX_MESSAGES,
+                MAX_BYTES,
+                SessionOutboundQueue.OverflowPolicy.RESYNC,
+                RESYNC,
+                new AtomicLong(),
+                meterRegistry.summary("depth"),
+                meterRegistry.timer("time"),
+                meterRegistry.counter("overflow"));
+    }
+
+    @Test
+    void frameLargerThanTheByteLimitIsDeliveredFromAnEmptyQueue() {
+        TextMessage syncResponse = frame(10 * (int) MAX_BYTES);
+
+        assertThat(queue.enqueue(syncResponse, false)).isTrue();
+        drain();
+
+        assertThat(sent).containsExactly(syncResponse);
+        assertThat(meterRegistry.counter("overflow").count()).isZero();
+    }
+
+    @Test
+    void frameLargerThanTheByteLimitIsQueuedBehindASmallBacklog() {
+        TextMessage presence = frame(10);
+        TextMessage batch = frame(5 * (int) MAX_BYTES);
+
+        assertThat(queue.enqueue(presence, true)).isTrue();
+        assertThat(queue.enqueue(batch, false)).isTrue();
+        drain();
+
+        assertThat(sent).containsExactly(presence, batch);
+    }
+
+    @Test
+    void framesBehindAFullQueueForceAResync() {
+        queue.enqueue(frame(5 * (int) MAX_BYTES), false);
+
+        assertThat(queue.enqueue(frame(10), false)).isFalse();
+        drain();
+
+        assertThat(sent).containsExactly(RESYNC);
+        assertThat(meterRegistry.counter("overflow").count()).isEqualTo(1);
+    }
+
+    @Test
+    void messageLimitStillApplies() {
+        for (int i = 0; i < MAX_MESSAGES; i++) {
+            assertThat(queue.enqueue(frame(1), false)).isTrue();
+        }
+
+        assertThat(queue.enqueue(frame(1), false)).isFalse();
+        drain();
+
+        assertThat(sent).containsExactly(RESYNC);
+    }
+
+    private void drain() {
+        while (!writerTasks.isEmpty()) {
+            writerTasks.remove(0).run();
+        }
+    }
+
+    private static TextMessage frame(int length) {
+        return new TextMessage("x".repeat(length));
+    }
+}
@@ -0,0 +1,76 @@
+package com.mmtext.editorservermain.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionRegistryTest {
+
+    private final SessionRegistry registry = new SessionRegistry();
+
+    @Test
+    void subscribeMovesSessionBetweenDocuments() {
+        registry.register(session("s1"), null);
+
+        registry.subscribe("s1", "doc-a", "user-1");
+        registry.subscribe("s1", "doc-b", "user-1");
+
+        assertThat(registry.hasSubscribers("doc-a")).isFalse();
+        assertThat(registry.sessionsOf("doc-b")).extracting(SessionRegistry.SessionEntry::getSessionId)
+                .containsExactly("s1");
+    }
+
+    @Test
+    void removeDropsSessionFromItsDocument() {
+        registry.register(session("s1"), null);
+        registry.register(session("s2"), null);
+        registry.subscribe("s1", "doc-a", "user-1");
+        registry.subscribe("s2", "doc-a", "user-2");
+
+        SessionRegistry.SessionEntry removed = registry.remove("s1");
+
+        assertThat(removed.getDocId()).isEqualTo("doc-a");
+        assertThat(registry.sessionsOf("doc-a")).extracting(SessionRegistry.SessionEntry::getSessionId)
+                .containsExactly("s2");
+        assertThat(registry.subscribe("s1", "doc-a", "user-1")).isNull();
+    }
+
+    @Test
+    void subscribeRacingRemoveNeverLeavesDeadSessionIndexed() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            String sessionId = "s" + i;
+            registry.register(session(sessionId), null);
+            SessionRegistry.SessionEntry entry = registry.get(sessionId);
+
+            // Both calls have looked the entry up and wait for its monitor; either may get it first
+            Thread subscriber;
+            Thread remover;
+            synchronized (entry) {
+                subscriber = Thread.ofPlatform().start(() -> registry.subscribe(sessionId, "doc-a", "user-1"));
+                awaitBlocked(subscriber);
+                remover = Thread.ofPlatform().start(() -> registry.remove(sessionId));
+                awaitBlocked(remover);
+            }
+            subscriber.join();
+            remover.join();
+
+            assertThat(registry.hasSubscribers("doc-a")).as("iteration %d", i).isFalse();
+        }
+        assertThat(registry.getSessionCount()).isZero();
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.BLOCKED) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static WebSocketSession session(String id) {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        return session;
+    }
+}
@@ -0,0 +1,352 @@
+package com.mmtext.editorservermain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import com.mmtext.editorservermain.repository.JdbcOperationLogWriter;
+import com.mmtext.editorservermain.repository.SequenceLeaseRepository;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A writing session replayed through the handler into PostgreSQL, with its pastes sent one
+ * OPERATION per character against one INSERT_RUN each: frames and bytes on the wire,
+ * operations written, crdt_operations and outbox rows and their on-disk size, and characters
+ * per second from the first frame to the last flush. Sequencing, buffering and the JDBC
+ * writer are real; the Redis publisher is a stub and the sequence lease is answered from memory.
+ * Needs a PostgreSQL database, by default the docker-compose editor_db on localhost:5432
+ * (-Dbenchmark.postgres.url, -Dbenchmark.postgres.user, -Dbenchmark.postgres.password to
+ * point elsewhere); crdt_operations and the outbox are emptied before each replay.
+ * Run with: mvn test -Pbenchmark -Dtest=TypingTraceBenchmarkTest
+ */
+@Tag("benchmark")
+class TypingTraceBenchmarkTest {
+
+    private static final int KEYSTROKES = 20_000;
+    // Pasted one character at a time, longer pastes make positions longer than
+    // fractional_position's 500 characters in this trace, and their flushes fail
+    private static final int[] PASTE_LENGTHS = {40, 100, 300, 800};
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    private static SingleConnectionDataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void connect() {
+        // Per-operation INFO logging would otherwise be the bulk of the replay
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        dataSource = new SingleConnectionDataSource(
+                System.getProperty("benchmark.postgres.url", "jdbc:postgresql://localhost:5432/editor_db"),
+                System.getProperty("benchmark.postgres.user", "admin"),
+                System.getProperty("benchmark.postgres.password", "admin"),
+                true);
+
+        // crdt_operations comes from Hibernate's schema update, the trigger and later columns from Flyway
+        LocalContainerEntityManagerFactoryBean schema = new LocalContainerEntityManagerFactoryBean();
+        schema.setDataSource(dataSource);
+        schema.setPackagesToScan("com.mmtext.editorservermain.model");
+        schema.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        schema.setJpaPropertyMap(Map.of(
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.hbm2ddl.auto", "update"));
+        schema.afterPropertiesSet();
+        schema.destroy();
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        truncate();
+        dataSource.destroy();
+    }
+
+    @Test
+    void replayWritingSession() throws Exception {
+        for (boolean runs : new boolean[] {false, true}) {
+            truncate();
+            Trace trace = new Trace(runs);
+            long inbound = 0;
+            long start;
+            Pipeline pipeline = new Pipeline();
+            try {
+                start = System.nanoTime();
+                for (TextMessage frame : trace.frames) {
+                    inbound += frame.getPayloadLength();
+                    pipeline.handler.handleTextMessage(pipeline.session, frame);
+                }
+            } finally {
+                // Flushes whatever is still buffered
+                pipeline.buffers.shutdown();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-13s %,d characters typed, %,d pasted in %d pastes, %,d deleted; "
+                            + "longest position %d characters%n", runs ? "insert-run" : "per-character",
+                    trace.typed, trace.pasted, trace.pastes, trace.deleted, trace.longestPosition);
+            System.out.printf("%-13s wire: %,d frames / %,d bytes in, %,d acks / %,d bytes out%n", "",
+                    trace.frames.size(), inbound, pipeline.queue.frames, pipeline.queue.bytes);
+            System.out.printf("%-13s storage: %,d operations written, %,d crdt_operations rows / %,d KiB, "
+                            + "%,d outbox rows / %,d KiB%n", "",
+                    pipeline.written, count("crdt_operations"), sizeKiB("crdt_operations"),
+                    count("crdt_operation_outbox_events"), sizeKiB("crdt_operation_outbox_events"));
+            System.out.printf("%-13s throughput: %.2fs = %,.0f characters/s%n", "",
+                    seconds, (trace.typed + trace.pasted + trace.deleted) / seconds);
+        }
+    }
+
+    private static long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table, Long.class);
+    }
+
+    private static long sizeKiB(String table) {
+        return jdbcTemplate.queryForObject("SELECT pg_total_relation_size(?::regclass)", Long.class, table) / 1024;
+    }
+
+    private static void truncate() {
+        jdbcTemplate.execute("TRUNCATE crdt_operations, crdt_operation_outbox_events");
+    }
+
+    /**
+     * One user typing forward from a cursor that occasionally jumps, with a backspace now and
+     * then and a paste every thousand keystrokes or so. Each frame names the positions the server
+     * gave its neighbours, worked out ahead of time since they only depend on the bounds.
+     */
+    private static final class Trace {
+        private final List<TextMessage> frames = new ArrayList<>();
+        private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        private final FractionalIndexService positions = new FractionalIndexService(new CompositeMeterRegistry());
+        private int typed;
+        private int pasted;
+        private int pastes;
+        private int deleted;
+        private int longestPosition;
+
+        Trace(boolean runs) throws IOException {
+            Random random = new Random(11);
+            List<String> document = new ArrayList<>();
+            int cursor = 0;
+
+            for (int i = 0; i < KEYSTROKES; i++) {
+                if (random.nextInt(20) == 0) {
+                    cursor = random.nextInt(document.size() + 1);
+                }
+                String after = cursor == 0 ? null : document.get(cursor - 1);
+                String before = cursor == document.size() ? null : document.get(cursor);
+
+                if (random.nextInt(1000) == 0) {
+                    String text = text(random, PASTE_LENGTHS[random.nextInt(PASTE_LENGTHS.length)]);
+                    List<String> pastedPositions;
+                    if (runs) {
+                        frames.add(insert("INSERT_RUN", text, after, before));
+                        pastedPositions = FractionalIndexService.runPositions(positions.generateRunBase(after, before), text.length());
+                    } else {
+                        pastedPositions = new ArrayList<>(text.length());
+                        String previous = after;
+                        for (int c = 0; c < text.length(); c++) {
+                            frames.add(insert("INSERT", text.substring(c, c + 1), previous, before));
+                            previous = positions.generateIndexBetween(previous, before);
+                            pastedPositions.add(previous);
+                        }
+                    }
+                    for (String position : pastedPositions) {
+                        longestPosition = Math.max(longestPosition, position.length());
+                    }
+                    document.addAll(cursor, pastedPositions);
+                    cursor += text.length();
+                    pasted += text.length();
+                    pastes++;
+                } else if (cursor > 0 && random.nextInt(10) == 0) {
+                    frames.add(delete(document.remove(--cursor)));
+                    deleted++;
+                } else {
+                    frames.add(insert("INSERT", text(random, 1), after, before));
+                    String position = positions.generateIndexBetween(after, before);
+                    longestPosition = Math.max(longestPosition, position.length());
+                    document.add(cursor++, position);
+                    typed++;
+                }
+            }
+        }
+
+        private TextMessage insert(String type, String text, String after, String before) throws IOException {
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("docId", DOC);
+            operation.put("userId", USER);
+            operation.put("operationType", type);
+            operation.put("character", text);
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "OPERATION");
+            message.put("docId", DOC);
+            message.put("insertAfterPosition", after);
+            message.put("insertBeforePosition", before);
+            message.put("operation", operation);
+            return new TextMessage(objectMapper.writeValueAsString(message));
+        }
+
+        private TextMessage delete(String position) throws IOException {
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("docId", DOC);
+            operation.put("userId", USER);
+            operation.put("operationType", "DELETE");
+            operation.put("fractionalPosition", position);
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "OPERATION");
+            message.put("docId", DOC);
+            message.put("operation", operation);
+            return new TextMessage(objectMapper.writeValueAsString(message));
+        }
+
+        private static String text(Random random, int length) {
+            StringBuilder text = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                text.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Handler, CRDT service and operation buffer wired the way the application wires them,
+     * flushing through the JDBC writer, with one session subscribed to the document
+     */
+    private static final class Pipeline {
+        private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        private final CountingQueue queue;
+        private final WebSocketSession session;
+        private final OperationBufferService buffers;
+        private final EditorWebSocketHandler handler;
+        private long written;
+
+        Pipeline() {
+            CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+            RecentOperationsCache recentOperations = new RecentOperationsCache();
+            ReflectionTestUtils.setField(recentOperations, "capacity", 1024);
+            AdaptiveFlushController flushController = new AdaptiveFlushController(meterRegistry);
+            ReflectionTestUtils.setField(flushController, "staticBatchSize", 50);
+            ReflectionTestUtils.setField(flushController, "staticFlushIntervalMs", 500L);
+            flushController.init();
+
+            JdbcOperationLogWriter writer = new JdbcOperationLogWriter(jdbcTemplate);
+            ReflectionTestUtils.setField(writer, "rowsPerStatement", 500);
+            TransactionTemplate transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+            // WAL disabled, as by default
+            OperationWriteAheadLog writeAheadLog = new OperationWriteAheadLog(
+                    objectMapper, mock(CRDTOperationRepository.class), meterRegistry);
+            buffers = new OperationBufferService(operations -> {
+                        written += operations.size();
+                        return transactions.execute(status -> writer.writeAll(operations));
+                    },
+                    mock(RedisPublisherService.class, withSettings().stubOnly()),
+                    recentOperations, writeAheadLog, flushController, meterRegistry);
+            ReflectionTestUtils.setField(buffers, "ringCapacity", 4096);
+            ReflectionTestUtils.setField(buffers, "fullRingTimeoutMs", 5000L);
+            buffers.start();
+
+            SessionRegistry sessionRegistry = new SessionRegistry();
+            SequenceLeaseRepository leaseRepository = mock(SequenceLeaseRepository.class, withSettings().stubOnly());
+            long[] leasedUpTo = {0};
+            when(leaseRepository.lease(anyString(), anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                    leasedUpTo[0] += invocation.<Long>getArgument(2) * invocation.<Integer>getArgument(3));
+            CRDTService crdtService = new CRDTService(mock(CRDTOperationRepository.class), leaseRepository,
+                    buffers, new FractionalIndexService(meterRegistry), recentOperations,
+                    new DocumentLifecycleManager(buffers, sessionRegistry, meterRegistry), meterRegistry);
+            ReflectionTestUtils.setField(crdtService, "serverId", "server-1");
+            ReflectionTestUtils.setField(crdtService, "leaseBlockSize", 1000L);
+
+            handler = new EditorWebSocketHandler(
+                    crdtService,
+                    new FractionalIndexService(meterRegistry),
+                    objectMapper,
+                    mock(SessionOutboundQueueFactory.class),
+                    new BinaryOperationCodec(),
+                    recentOperations,
+                    mock(SnapshotStateStreamer.class),
+                    sessionRegistry,
+                    mock(DocumentChannelSubscriptions.class),
+                    meterRegistry);
+            ReflectionTestUtils.setField(handler, "serverId", "server-1");
+            ReflectionTestUtils.setField(handler, "maxBatchOperations", 10_000);
+            handler.initMetrics();
+
+            session = openSession("session-1");
+            queue = new CountingQueue(session);
+            sessionRegistry.register(session, queue);
+            sessionRegistry.subscribe("session-1", DOC, USER);
+        }
+    }
+
+    private static WebSocketSession openSession(String id) {
+        Map<String, Object> attributes = new HashMap<>();
+        return (WebSocketSession) Proxy.newProxyInstance(WebSocketSession.class.getClassLoader(),
+                new Class<?>[] {WebSocketSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getId" -> id;
+                    case "isOpen" -> true;
+                    case "getAttributes" -> attributes;
+                    default -> null;
+                });
+    }
+
+    /**
+     * Outbound queue that counts what the client would receive and drops it
+     */
+    private static final class CountingQueue extends SessionOutboundQueue {
+        private long frames;
+        private long bytes;
+
+        CountingQueue(WebSocketSession session) {
+            super(session, Runnable::run, Integer.MAX_VALUE, Long.MAX_VALUE, OverflowPolicy.DROP_SESSION,
+                    null, null, null, null, null);
+        }
+
+        @Override
+        public boolean enqueue(WebSocketMessage<?> frame, boolean droppable) {
+            frames++;
+            bytes += frame.getPayloadLength();
+            return true;
+        }
+    }
+}
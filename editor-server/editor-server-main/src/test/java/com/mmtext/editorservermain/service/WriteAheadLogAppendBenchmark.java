@@ -0,0 +1,115 @@
+package com.mmtext.editorservermain.service;
+
+import com.mmtext.editorservermain.config.JacksonConfig;
+import com.mmtext.editorservermain.model.CRDTOperation;
+import com.mmtext.editorservermain.repository.CRDTOperationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Latency of one write-ahead log append, the time an operation waits before it can be acked,
+ * with and without forcing the record to disk. Appends go to a temporary directory in 64 MiB
+ * segments; every 1,024 appends are committed as one flush would, so segments are deleted
+ * as they fill, and that cost is spread over the appends.
+ * Run with: mvn test -Pbenchmark -Dtest=WriteAheadLogAppendBenchmark (B/op is gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteAheadLogAppendBenchmark {
+
+    private static final int FLUSH_SIZE = 1024;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+
+    @Param({"false", "true"})
+    public boolean fsync;
+
+    private Path directory;
+    private OperationWriteAheadLog writeAheadLog;
+    private CRDTOperation[] operations;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        writeAheadLog = new OperationWriteAheadLog(new JacksonConfig().objectMapper(),
+                mock(CRDTOperationRepository.class, withSettings().stubOnly()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeAheadLog, "enabled", true);
+        ReflectionTestUtils.setField(writeAheadLog, "directory", directory.toString());
+        ReflectionTestUtils.setField(writeAheadLog, "segmentSizeBytes", 64 * 1024 * 1024);
+        ReflectionTestUtils.setField(writeAheadLog, "fsync", fsync);
+        writeAheadLog.recover();
+
+        // Keystrokes of someone typing, with the positions the server hands out
+        FractionalIndexService positions = new FractionalIndexService(new SimpleMeterRegistry());
+        operations = new CRDTOperation[FLUSH_SIZE];
+        String previous = null;
+        for (int i = 0; i < FLUSH_SIZE; i++) {
+            previous = positions.generateIndexBetween(previous, null);
+            operations[i] = new CRDTOperation(DOC, USER, "server-1", "INSERT",
+                    String.valueOf((char) ('a' + i % 26)), previous, i + 1L);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void append() {
+        writeAheadLog.append(operations[next++]);
+        if (next == FLUSH_SIZE) {
+            writeAheadLog.commit(Arrays.asList(operations));
+            next = 0;
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void appendLatency() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(WriteAheadLogAppendBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -9,7 +9,10 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
 import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -27,6 +30,18 @@ public class KafkaConfig {
     @Value("${debezium.consumer.group:editor-server-snapshot-cdc-consumer}")
     private String consumerGroupId;
 
+    @Value("${editor.snapshot.cdc.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+
+    @Value("${editor.snapshot.cdc.batch.concurrency:1}")
+    private int batchConcurrency;
+
+    @Value("${editor.snapshot.cdc.retry.interval-ms:1000}")
+    private long retryIntervalMs;
+
+    @Value("${editor.snapshot.cdc.retry.attempts:3}")
+    private long retryAttempts;
+
     /**
      * Consumer factory for single message processing
      */
@@ -60,7 +75,8 @@ public class KafkaConfig {
      * Container factory for single message processing
      */
     @Bean(name = "singleKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, String> singleKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, String> singleKafkaListenerContainerFactory(
+            ConsumerRecordRecoverer deadLetterRecoverer) {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
 
@@ -79,7 +95,7 @@ public class KafkaConfig {
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
 
         // Error handling
-        factory.setCommonErrorHandler(new org.springframework.kafka.listener.DefaultErrorHandler());
+        factory.setCommonErrorHandler(cdcErrorHandler(deadLetterRecoverer));
 
         // Idle event interval
         factory.getContainerProperties().setIdleEventInterval(30000L);
@@ -91,22 +107,32 @@ public class KafkaConfig {
     }
 
     /**
-     * Consumer factory for batch processing (if needed in the future)
+     * Consumer factory for batch processing.
+     * Shares the group id of the single-message consumer so switching between them keeps offsets.
      */
     @Bean
     public ConsumerFactory<String, String> batchConsumerFactory() {
         Map<String, Object> props = new HashMap<>();
 
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId + "-batch");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, consumerGroupId);
         props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
 
         // Batch processing configuration
-        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);  // Process up to 100 records at a time
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
+        // Tuning for reliability
+        props.put(ConsumerConfig.SESSION_TIMEOUT_MS_CONFIG, 30000);
+        props.put(ConsumerConfig.HEARTBEAT_INTERVAL_MS_CONFIG, 10000);
+        props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);
+
+        // Fetch settings - wait briefly for a fuller batch
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 500);
+
         return new DefaultKafkaConsumerFactory<>(props);
     }
 
@@ -114,7 +140,8 @@ public class KafkaConfig {
      * Container factory for batch processing
      */
     @Bean(name = "batchKafkaListenerContainerFactory")
-    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory() {
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerRecordRecoverer deadLetterRecoverer) {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
 
@@ -123,12 +150,30 @@ public class KafkaConfig {
         // Enable batch processing
         factory.setBatchListener(true);
 
-        // Concurrency
-        factory.setConcurrency(3);
+        // Concurrency - each consumer owns whole partitions, so per-partition order holds
+        factory.setConcurrency(batchConcurrency);
 
-        // Acknowledgment mode for batch
+        // Acknowledgment mode for batch - the listener acknowledges once the whole batch is applied
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL_IMMEDIATE);
 
+        // Error handling - a failed batch is redelivered from its first record; applying is idempotent
+        factory.setCommonErrorHandler(cdcErrorHandler(deadLetterRecoverer));
+
+        // Observation (for metrics)
+        factory.getContainerProperties().setObservationEnabled(true);
+
         return factory;
     }
+
+    /**
+     * Retry a failed record or batch, then hand every record to the dead letter recoverer.
+     * Records are only skipped once the recoverer has published them; if it cannot, the
+     * records are redelivered instead.
+     */
+    DefaultErrorHandler cdcErrorHandler(ConsumerRecordRecoverer deadLetterRecoverer) {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(
+                deadLetterRecoverer, new FixedBackOff(retryIntervalMs, retryAttempts));
+        errorHandler.setCommitRecovered(true);
+        return errorHandler;
+    }
 }
\ No newline at end of file
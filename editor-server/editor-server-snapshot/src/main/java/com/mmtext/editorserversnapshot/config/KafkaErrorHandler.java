@@ -2,6 +2,7 @@ package com.mmtext.editorserversnapshot.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.kafka.KafkaException;
 import org.springframework.kafka.listener.ConsumerRecordRecoverer;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.core.KafkaTemplate;
@@ -15,6 +16,9 @@ import org.springframework.kafka.core.ProducerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Kafka error handling configuration
@@ -24,8 +28,12 @@ public class KafkaErrorHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaErrorHandler.class);
 
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
     /**
-     * Dead letter publishing recoverer
+     * Dead letter publishing recoverer.
+     * Waits for the send: if the record cannot be published the recoverer throws, and the
+     * error handler redelivers it instead of skipping it.
      */
     @Bean
     public ConsumerRecordRecoverer deadLetterRecoverer(KafkaTemplate<String, String> kafkaTemplate) {
@@ -38,10 +46,12 @@ public class KafkaErrorHandler {
                 deadLetterTopic, key, exception.getMessage(), exception);
 
             try {
-                kafkaTemplate.send(deadLetterTopic, key, value);
-            } catch (Exception e) {
-                logger.error("Failed to send record to dead letter topic", e);
-                // Could implement fallback here like writing to file or database
+                kafkaTemplate.send(deadLetterTopic, key, value).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KafkaException("Interrupted sending record to dead letter topic " + deadLetterTopic, e);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new KafkaException("Failed to send record to dead letter topic " + deadLetterTopic, e);
             }
         };
     }
@@ -8,10 +8,12 @@ public class CRDTOperation {
     private String docId;
     private String userId;
     private String serverId;
-    private String operationType; // "INSERT" or "DELETE"
+    private String operationType; // "INSERT", "INSERT_RUN", "DELETE" or "DELETE_RANGE"
     private String character;
     private String fractionalPosition;
+    private String endPosition; // Inclusive upper bound of a DELETE_RANGE
     private Long serverSeqNum;
+    private Boolean leaseStart = false; // First operation of a lease that skipped ahead; the jump is no gap
     private Instant timestamp;
     private Boolean processed = false;
 
@@ -92,6 +94,14 @@ public class CRDTOperation {
         this.fractionalPosition = fractionalPosition;
     }
 
+    public String getEndPosition() {
+        return endPosition;
+    }
+
+    public void setEndPosition(String endPosition) {
+        this.endPosition = endPosition;
+    }
+
     public Long getServerSeqNum() {
         return serverSeqNum;
     }
@@ -100,6 +110,14 @@ public class CRDTOperation {
         this.serverSeqNum = serverSeqNum;
     }
 
+    public Boolean getLeaseStart() {
+        return leaseStart;
+    }
+
+    public void setLeaseStart(Boolean leaseStart) {
+        this.leaseStart = leaseStart;
+    }
+
     public Instant getTimestamp() {
         return timestamp;
     }
@@ -11,8 +11,9 @@ import java.time.Instant;
            @Index(name = "idx_doc_server_seq", columnList = "docId,serverId,serverSeqNum")
        },
        uniqueConstraints = {
+           // The characters of an INSERT_RUN share its sequence number
            @UniqueConstraint(name = "uk_doc_server_seq",
-                           columnNames = {"docId", "serverId", "serverSeqNum"})
+                           columnNames = {"docId", "serverId", "serverSeqNum", "fractionalPosition"})
        }
 )
 public class DocumentSnapshot {
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,6 +24,18 @@ public interface DocumentSnapshotRepository extends JpaRepository<DocumentSnapsh
     @Query("UPDATE DocumentSnapshot s SET s.active = false WHERE s.docId = :docId AND s.fractionalPosition = :position")
     void deactivateByDocIdAndPosition(@Param("docId") String docId, @Param("position") String position);
 
+    @Modifying
+    @Query("UPDATE DocumentSnapshot s SET s.active = false WHERE s.docId = :docId AND s.fractionalPosition IN :positions")
+    int deactivateByDocIdAndPositions(@Param("docId") String docId, @Param("positions") Collection<String> positions);
+
+    // One range scan on idx_doc_position for a whole selection
+    @Modifying
+    @Query("UPDATE DocumentSnapshot s SET s.active = false WHERE s.docId = :docId " +
+           "AND s.fractionalPosition BETWEEN :fromPosition AND :toPosition AND s.active = true")
+    int deactivateByDocIdAndPositionRange(@Param("docId") String docId,
+                                          @Param("fromPosition") String fromPosition,
+                                          @Param("toPosition") String toPosition);
+
     // Method for gap detection
     @Query("SELECT ds FROM DocumentSnapshot ds WHERE ds.docId = :docId AND ds.serverId = :serverId ORDER BY ds.serverSeqNum")
     List<DocumentSnapshot> findByDocIdAndServerIdOrderByServerSeqNum(@Param("docId") String docId,
@@ -30,4 +43,9 @@ public interface DocumentSnapshotRepository extends JpaRepository<DocumentSnapsh
 
     // Check for duplicate operations
     boolean existsByDocIdAndServerIdAndServerSeqNum(String docId, String serverId, Long serverSeqNum);
+
+    // Duplicate check for a whole batch: (serverId, serverSeqNum) pairs already applied
+    @Query("SELECT DISTINCT s.serverId, s.serverSeqNum FROM DocumentSnapshot s " +
+           "WHERE s.docId = :docId AND s.serverSeqNum IN :seqNums")
+    List<Object[]> findAppliedSequences(@Param("docId") String docId, @Param("seqNums") Collection<Long> seqNums);
 }
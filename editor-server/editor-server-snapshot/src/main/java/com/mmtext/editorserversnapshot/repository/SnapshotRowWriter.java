@@ -0,0 +1,77 @@
+package com.mmtext.editorserversnapshot.repository;
+
+import com.mmtext.editorserversnapshot.model.DocumentSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Inserts document_snapshots rows with multi-row INSERT statements.
+ *
+ * The entity uses IDENTITY ids, which keeps Hibernate from batching inserts; a run of
+ * characters would otherwise cost one statement per character.
+ */
+@Repository
+public class SnapshotRowWriter {
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO document_snapshots (doc_id, fractional_position, \"character\", server_id, " +
+            "server_seq_num, created_at, active) VALUES ";
+
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 7;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // Keeps each statement well below PostgreSQL's 65535 bind parameter limit
+    @Value("${editor.snapshot.jdbc.rows-per-statement:500}")
+    private int rowsPerStatement;
+
+    public SnapshotRowWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Insert rows in the caller's transaction
+     *
+     * @return the number of statements executed
+     */
+    public int insertAll(List<DocumentSnapshot> rows) {
+        int statements = 0;
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            int to = Math.min(from + rowsPerStatement, rows.size());
+            insertRows(rows.subList(from, to));
+            statements++;
+        }
+        return statements;
+    }
+
+    private void insertRows(List<DocumentSnapshot> rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows.size() * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+
+        Object[] args = new Object[rows.size() * COLUMNS];
+        int arg = 0;
+
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+
+            DocumentSnapshot row = rows.get(i);
+            args[arg++] = row.getDocId();
+            args[arg++] = row.getFractionalPosition();
+            args[arg++] = row.getCharacter();
+            args[arg++] = row.getServerId();
+            args[arg++] = row.getServerSeqNum();
+            args[arg++] = Timestamp.from(row.getCreatedAt());
+            args[arg++] = row.getActive() != null ? row.getActive() : Boolean.TRUE;
+        }
+
+        jdbcTemplate.update(sql.toString(), args);
+    }
+}
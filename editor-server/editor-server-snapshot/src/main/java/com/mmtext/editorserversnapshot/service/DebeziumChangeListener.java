@@ -1,6 +1,7 @@
 package com.mmtext.editorserversnapshot.service;
 
 import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -12,8 +13,12 @@ import org.springframework.stereotype.Service;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Listens to Debezium CDC events from Kafka
@@ -34,23 +39,28 @@ public class DebeziumChangeListener {
     private static final Logger logger = LoggerFactory.getLogger(DebeziumChangeListener.class);
 
     private final SnapshotService snapshotService;
+    private final SnapshotApplyLanes applyLanes;
     private final ObjectMapper objectMapper;
 
     // Track processed operations for idempotency
     private final java.util.concurrent.ConcurrentMap<String, Long> lastProcessedSeq =
         new java.util.concurrent.ConcurrentHashMap<>();
 
-    public DebeziumChangeListener(SnapshotService snapshotService, ObjectMapper objectMapper) {
+    public DebeziumChangeListener(SnapshotService snapshotService,
+                                  SnapshotApplyLanes applyLanes,
+                                  ObjectMapper objectMapper) {
         this.snapshotService = snapshotService;
+        this.applyLanes = applyLanes;
         this.objectMapper = objectMapper;
     }
 
     /**
-     * Listen to Debezium CDC events - single message version
+     * Listen to Debezium CDC events - single message version, used when batch consumption is off
      */
     @KafkaListener(
             topics = "${debezium.topic.name:editor-server-main.public.crdt_operation_outbox_events}",
-            groupId = "${debezium.consumer.group:editor-server-snapshot-cdc-consumer}"
+            groupId = "${debezium.consumer.group:editor-server-snapshot-cdc-consumer}",
+            autoStartup = "#{!${editor.snapshot.cdc.batch.enabled:true}}"
     )
     public void handleCDCEvent(@Payload String message,
                               @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
@@ -59,55 +69,35 @@ public class DebeziumChangeListener {
         logger.debug("Received CDC event from topic: {}, partition: {}, offset: {}", topic, partition, offset);
 
         try {
-            // Log raw message for debugging
-            logger.trace("Raw CDC message: {}", message);
-
-            JsonNode event = objectMapper.readTree(message);
-
-            // Debezium event structure
-            String operation = event.path("op").asText(); // c=create, u=update, d=delete
-
-            if (!operation.isEmpty()) {
-                logger.debug("CDC operation type: {}", operation);
-
-                if ("c".equals(operation) || "r".equals(operation)) { // INSERT or READ (snapshot) operation
-                    JsonNode after = event.path("after");
-                    if (after.isMissingNode() || after.isNull()) {
-                        // For initial snapshot (r operation), data might be at the root
-                        after = event;
-                    }
-
-                    CRDTOperation crdtOp = parseCRDTOperation(after);
-
-                    if (crdtOp != null) {
-                        // Check if already processed (idempotency)
-                        String operationKey = crdtOp.getDocId() + ":" + crdtOp.getServerId();
-                        Long lastSeq = lastProcessedSeq.get(operationKey);
-
-                        if (lastSeq != null && lastSeq >= crdtOp.getServerSeqNum()) {
-                            logger.debug("Skipping already processed operation - Doc: {}, Server: {}, Seq: {}",
-                                crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum());
-                            return;
-                        }
-
-                        logger.info("Processing CRDT operation - Doc: {}, Server: {}, Seq: {}, Type: {}",
-                            crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum(),
-                            crdtOp.getOperationType());
-
-                        if (!crdtOp.getProcessed()) {
-                            // Apply to snapshot using two-phase commit
-                            snapshotService.applyOperationToSnapshot(crdtOp);
-
-                            // Update last processed sequence
-                            lastProcessedSeq.put(operationKey, crdtOp.getServerSeqNum());
-
-                            logger.info("Successfully applied operation to snapshot - Doc: {}, Server: {}, Seq: {}",
-                                crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum());
-                        }
-                    } else {
-                        logger.warn("Failed to parse CRDT operation from CDC event");
-                    }
-                }
+            ChangeEvent event = decode(message);
+            if (event == null) {
+                return;
+            }
+            CRDTOperation crdtOp = event.operation();
+
+            // Check if already processed (idempotency)
+            String operationKey = crdtOp.getDocId() + ":" + crdtOp.getServerId();
+            Long lastSeq = lastProcessedSeq.get(operationKey);
+
+            if (lastSeq != null && lastSeq >= crdtOp.getServerSeqNum()) {
+                logger.debug("Skipping already processed operation - Doc: {}, Server: {}, Seq: {}",
+                    crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum());
+                return;
+            }
+
+            logger.info("Processing CRDT operation - Doc: {}, Server: {}, Seq: {}, Type: {}",
+                crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum(),
+                crdtOp.getOperationType());
+
+            if (!crdtOp.getProcessed()) {
+                // Apply to snapshot using two-phase commit
+                snapshotService.applyOperationToSnapshot(crdtOp);
+
+                // Update last processed sequence
+                lastProcessedSeq.put(operationKey, crdtOp.getServerSeqNum());
+
+                logger.info("Successfully applied operation to snapshot - Doc: {}, Server: {}, Seq: {}",
+                    crdtOp.getDocId(), crdtOp.getServerId(), crdtOp.getServerSeqNum());
             }
 
         } catch (Exception e) {
@@ -118,28 +108,114 @@ public class DebeziumChangeListener {
     }
 
     /**
-     * Batch version for handling multiple messages
+     * Listen to Debezium CDC events - batch version.
+     *
+     * A poll of up to max-poll-records events is decoded and grouped by document. Outbox events
+     * are keyed by document, so a document's events come from one partition in commit order;
+     * each group is additionally put in primary WAL (LSN) order, which also orders events
+     * published before that key was introduced, as long as they meet in one poll.
+     * Every document group is applied in one transaction on its document's apply lane, so
+     * documents are applied in parallel. Offsets are committed once, after every lane has
+     * committed its groups of the batch. If any group fails the batch is redelivered and
+     * applied again: inserts that an earlier delivery already committed are found by their
+     * sequence number and skipped, and deletes only mark rows inactive again.
      */
-    public void handleBatchCDCEvents(List<String> messages) {
-        AtomicInteger successCount = new AtomicInteger(0);
-        AtomicInteger failureCount = new AtomicInteger(0);
+    @KafkaListener(
+            topics = "${debezium.topic.name:editor-server-main.public.crdt_operation_outbox_events}",
+            groupId = "${debezium.consumer.group:editor-server-snapshot-cdc-consumer}",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${editor.snapshot.cdc.batch.enabled:true}"
+    )
+    public void handleBatchCDCEvents(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) {
+        long start = System.nanoTime();
+        Map<String, List<ChangeEvent>> byDocument = new LinkedHashMap<>();
 
-        logger.info("Processing batch of {} CDC events", messages.size());
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                ChangeEvent event = decode(record.value());
+                if (event != null && !event.operation().getProcessed()) {
+                    byDocument.computeIfAbsent(event.operation().getDocId(), k -> new ArrayList<>()).add(event);
+                }
+            } catch (Exception e) {
+                // Same policy as the single path: an undecodable event is logged and skipped
+                logger.error("Error decoding CDC event - Partition: {}, Offset: {}, Message: {}",
+                        record.partition(), record.offset(), record.value(), e);
+            }
+        }
 
-        for (String message : messages) {
+        Map<String, CompletableFuture<Integer>> results = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ChangeEvent>> group : byDocument.entrySet()) {
+            results.put(group.getKey(), applyLanes.submit(group.getKey(), inCommitOrder(group.getValue())));
+        }
+
+        // Wait for every lane, even after a failure, so a redelivery never overlaps this batch
+        int applied = 0;
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Integer>> result : results.entrySet()) {
             try {
-                // Process each message individually
-                handleCDCEvent(message, "", 0, 0L);
-                successCount.incrementAndGet();
+                applied += result.getValue().join();
             } catch (Exception e) {
-                failureCount.incrementAndGet();
-                logger.error("Failed to process message in batch. Success: {}, Failures: {}",
-                    successCount.get(), failureCount.get(), e);
+                // Logged by the lane
+                failed.add(result.getKey());
             }
         }
 
-        logger.info("Batch processing complete. Success: {}, Failures: {}",
-            successCount.get(), failureCount.get());
+        if (!failed.isEmpty()) {
+            // Not acknowledged: the container's error handler redelivers the batch
+            throw new IllegalStateException("Snapshot update failed for documents: " + failed);
+        }
+
+        acknowledgment.acknowledge();
+
+        logger.info("Applied CDC batch - Records: {}, Documents: {}, Operations applied: {}, Time: {}ms",
+                records.size(), byDocument.size(), applied, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * A document's operations in the order the primary wrote them. A delete is only ever
+     * written after the insert it removes has committed, so this puts it after that insert
+     * even when the two were polled the other way round. Poll order is kept when an event
+     * carries no LSN.
+     */
+    private static List<CRDTOperation> inCommitOrder(List<ChangeEvent> events) {
+        List<ChangeEvent> ordered = events;
+        if (events.stream().allMatch(event -> event.lsn() >= 0)) {
+            ordered = new ArrayList<>(events);
+            ordered.sort(Comparator.comparingLong(ChangeEvent::lsn));
+        }
+        return ordered.stream().map(ChangeEvent::operation).toList();
+    }
+
+    /**
+     * Decode a Debezium event into the CRDT operation it carries,
+     * or null for anything but a create / snapshot read
+     */
+    private ChangeEvent decode(String message) {
+        // Log raw message for debugging
+        logger.trace("Raw CDC message: {}", message);
+
+        JsonNode event = objectMapper.readTree(message);
+
+        // Debezium event structure
+        String operation = event.path("op").asString(); // c=create, u=update, d=delete
+        if (!"c".equals(operation) && !"r".equals(operation)) { // INSERT or READ (snapshot) operation
+            return null;
+        }
+
+        JsonNode after = event.path("after");
+        if (after.isMissingNode() || after.isNull()) {
+            // For initial snapshot (r operation), data might be at the root
+            after = event;
+        }
+
+        CRDTOperation crdtOp = parseCRDTOperation(after);
+        if (crdtOp == null) {
+            logger.warn("Failed to parse CRDT operation from CDC event");
+            return null;
+        }
+
+        JsonNode lsn = event.path("source").path("lsn");
+        return new ChangeEvent(crdtOp, lsn.isNumber() ? lsn.asLong() : -1);
     }
 
     /**
@@ -151,8 +227,8 @@ public class DebeziumChangeListener {
             JsonNode payloadNode = node.path("payload");
 
             // If payload is a string, parse it as JSON
-            if (payloadNode.isTextual()) {
-                payloadNode = objectMapper.readTree(payloadNode.asText());
+            if (payloadNode.isString()) {
+                payloadNode = objectMapper.readTree(payloadNode.asString());
             }
 
             // If no payload node, try to parse directly from the current node
@@ -164,27 +240,32 @@ public class DebeziumChangeListener {
 
             // Parse id as String (UUID) or Long
             JsonNode idNode = payloadNode.path("id");
-            if (idNode.isTextual()) {
+            if (idNode.isString()) {
                 // It's a UUID string, set to null as we don't need the ID
                 op.setId(null);
             } else {
                 op.setId(idNode.asLong());
             }
 
-            op.setDocId(payloadNode.path("doc_id").asText());
-            op.setUserId(payloadNode.path("user_id").asText());
-            op.setServerId(payloadNode.path("server_id").asText());
-            op.setOperationType(payloadNode.path("operation_type").asText());
-            op.setCharacter(payloadNode.path("character").asText());
-            op.setFractionalPosition(payloadNode.path("fractional_position").asText());
+            op.setDocId(payloadNode.path("doc_id").asString());
+            op.setUserId(payloadNode.path("user_id").asString());
+            op.setServerId(payloadNode.path("server_id").asString());
+            op.setOperationType(payloadNode.path("operation_type").asString());
+            op.setCharacter(payloadNode.path("character").asString());
+            op.setFractionalPosition(payloadNode.path("fractional_position").asString());
+            JsonNode endPositionNode = payloadNode.path("end_position");
+            if (!endPositionNode.isMissingNode() && !endPositionNode.isNull()) {
+                op.setEndPosition(endPositionNode.asString());
+            }
             op.setServerSeqNum(payloadNode.path("server_seq_num").asLong());
+            op.setLeaseStart(payloadNode.path("lease_start").asBoolean(false));
             op.setProcessed(payloadNode.path("processed").asBoolean(false));
 
             // Parse timestamp - could be ISO string or epoch millis
             JsonNode timestampNode = payloadNode.path("timestamp");
-            if (timestampNode.isTextual()) {
+            if (timestampNode.isString()) {
                 // ISO timestamp string
-                op.setTimestamp(java.time.Instant.parse(timestampNode.asText()));
+                op.setTimestamp(java.time.Instant.parse(timestampNode.asString()));
             } else {
                 // Epoch millis
                 op.setTimestamp(java.time.Instant.ofEpochMilli(timestampNode.asLong()));
@@ -197,4 +278,10 @@ public class DebeziumChangeListener {
             return null;
         }
     }
+
+    /**
+     * A decoded operation and the primary WAL position it was written at, -1 if unknown
+     */
+    private record ChangeEvent(CRDTOperation operation, long lsn) {
+    }
 }
\ No newline at end of file
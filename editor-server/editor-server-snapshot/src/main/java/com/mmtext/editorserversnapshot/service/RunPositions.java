@@ -0,0 +1,49 @@
+package com.mmtext.editorserversnapshot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-character positions of an INSERT_RUN.
+ *
+ * Must stay identical to FractionalIndexService.runPositions on editor-server-main: the run
+ * only carries its base position, and every consumer derives the same positions from it.
+ * Character i of an n-character run sits at the base followed by a fixed-width a-z suffix,
+ * the i-th of n evenly spaced values; no suffix ends in 'a'.
+ */
+final class RunPositions {
+
+    private static final char MIN_CHAR = 'a';
+    private static final int BASE = 26;
+
+    private RunPositions() {
+    }
+
+    static List<String> of(String base, int count) {
+        int width = 1;
+        long slots = BASE;
+        while (slots < 2L * (count + 1)) {
+            slots *= BASE;
+            width++;
+        }
+
+        List<String> positions = new ArrayList<>(count);
+        char[] key = new char[base.length() + width];
+        base.getChars(0, base.length(), key, 0);
+        long step = slots / (count + 1);
+        long remainder = slots % (count + 1);
+
+        for (int i = 1; i <= count; i++) {
+            long value = step * i + remainder * i / (count + 1);
+            if (value % BASE == 0) {
+                value++;
+            }
+            for (int pos = key.length - 1; pos >= base.length(); pos--) {
+                key[pos] = (char) (MIN_CHAR + value % BASE);
+                value /= BASE;
+            }
+            positions.add(new String(key));
+        }
+        return positions;
+    }
+}
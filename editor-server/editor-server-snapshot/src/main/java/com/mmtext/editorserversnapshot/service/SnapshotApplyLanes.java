@@ -0,0 +1,148 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies document batches to the snapshot on a fixed set of single-threaded lanes.
+ *
+ * A document always hashes to the same lane, and a lane runs its batches one at a time in
+ * submission order, so each document's operations are applied in the order they were
+ * submitted while different documents are applied in parallel. Parallelism is bounded by
+ * the lane count rather than by the number of Kafka partitions; every lane holds at most
+ * one database connection, so keep the count within the connection pool size.
+ *
+ * Callers get a future per batch and decide when it is safe to commit offsets.
+ */
+@Component
+public class SnapshotApplyLanes {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotApplyLanes.class);
+
+    private final SnapshotService snapshotService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${editor.snapshot.cdc.lanes.count:4}")
+    private int laneCount;
+
+    private Lane[] lanes;
+    private volatile boolean running;
+
+    public SnapshotApplyLanes(SnapshotService snapshotService, MeterRegistry meterRegistry) {
+        this.snapshotService = snapshotService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        lanes = new Lane[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+        }
+        logger.info("Snapshot apply lanes started - Lanes: {}", lanes.length);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+
+        // Nothing will apply what is still queued; let waiting callers fail instead of hanging
+        for (Lane lane : lanes) {
+            List<Task> abandoned = new ArrayList<>();
+            lane.queue.drainTo(abandoned);
+            for (Task task : abandoned) {
+                task.result.completeExceptionally(new IllegalStateException("Snapshot apply lanes stopped"));
+            }
+        }
+    }
+
+    /**
+     * Queue a batch of one document's operations on the document's lane
+     *
+     * @return completes with the number of operations applied once the batch is committed
+     */
+    public CompletableFuture<Integer> submit(String docId, List<CRDTOperation> operations) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Snapshot apply lanes stopped"));
+            return result;
+        }
+        lanes[Math.floorMod(docId.hashCode(), lanes.length)].queue.add(new Task(docId, operations, result));
+        return result;
+    }
+
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    private record Task(String docId, List<CRDTOperation> operations, CompletableFuture<Integer> result) {
+    }
+
+    /**
+     * One apply thread with its own queue and meters
+     */
+    private class Lane {
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        private final Timer applyTimer;
+        private final Thread thread;
+
+        Lane(int index) {
+            String tag = String.valueOf(index);
+            Gauge.builder("editor.snapshot.lanes.queue.depth", queue, BlockingQueue::size)
+                    .description("Document batches waiting on a snapshot apply lane")
+                    .tag("lane", tag)
+                    .register(meterRegistry);
+            applyTimer = Timer.builder("editor.snapshot.lanes.apply.time")
+                    .description("Time to apply one document batch to the snapshot")
+                    .tag("lane", tag)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            thread = Thread.ofPlatform()
+                    .name("snapshot-lane-" + index)
+                    .daemon(true)
+                    .start(this::applyLoop);
+        }
+
+        private void applyLoop() {
+            while (running) {
+                Task task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                long start = System.nanoTime();
+                try {
+                    task.result.complete(snapshotService.applyDocumentBatch(task.docId, task.operations));
+                } catch (Exception e) {
+                    logger.error("Error applying operation batch to snapshot - Doc: {}, Operations: {}",
+                            task.docId, task.operations.size(), e);
+                    task.result.completeExceptionally(e);
+                } finally {
+                    applyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+    }
+}
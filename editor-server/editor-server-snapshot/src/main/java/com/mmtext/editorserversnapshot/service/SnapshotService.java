@@ -4,6 +4,7 @@ import com.mmtext.editorserversnapshot.dto.CRDTOperation;
 import com.mmtext.editorserversnapshot.model.DocumentSnapshot;
 import com.mmtext.editorserversnapshot.model.VersionVector;
 import com.mmtext.editorserversnapshot.repository.DocumentSnapshotRepository;
+import com.mmtext.editorserversnapshot.repository.SnapshotRowWriter;
 import com.mmtext.editorserversnapshot.repository.VersionVectorRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,11 +29,14 @@ public class SnapshotService {
 
     private final DocumentSnapshotRepository snapshotRepository;
     private final VersionVectorRepository versionVectorRepository;
+    private final SnapshotRowWriter rowWriter;
 
     public SnapshotService(DocumentSnapshotRepository snapshotRepository,
-                           VersionVectorRepository versionVectorRepository) {
+                           VersionVectorRepository versionVectorRepository,
+                           SnapshotRowWriter rowWriter) {
         this.snapshotRepository = snapshotRepository;
         this.versionVectorRepository = versionVectorRepository;
+        this.rowWriter = rowWriter;
     }
 
     /**
@@ -50,7 +54,7 @@ public class SnapshotService {
 
         try {
             // Check for gaps in sequence numbers
-            if (!isValidSequence(docId, serverId, seqNum)) {
+            if (!isValidSequence(operation)) {
                 logger.warn("Sequence gap detected - Doc: {}, Server: {}, Seq: {}. Requesting missing operations.",
                     docId, serverId, seqNum);
                 // TODO: Implement mechanism to request missing operations
@@ -59,8 +63,12 @@ public class SnapshotService {
             // PHASE 1: Prepare - Update document snapshot
             if ("INSERT".equals(operation.getOperationType())) {
                 handleInsert(operation);
+            } else if ("INSERT_RUN".equals(operation.getOperationType())) {
+                handleInsertRun(operation);
             } else if ("DELETE".equals(operation.getOperationType())) {
                 handleDelete(docId, position);
+            } else if ("DELETE_RANGE".equals(operation.getOperationType())) {
+                handleDeleteRange(docId, position, operation.getEndPosition());
             } else {
                 logger.warn("Unknown operation type: {}", operation.getOperationType());
                 return;
@@ -81,16 +89,176 @@ public class SnapshotService {
     }
 
     /**
-     * Check if sequence number is valid (no gaps)
+     * Apply a batch of operations for one document in a single transaction, in the given order.
+     *
+     * Operations of one origin server may arrive out of sequence order (redelivered batches,
+     * events published before outbox events were keyed by document), so the version vector
+     * cannot tell whether an operation was applied. Inserts whose (server, sequence) already
+     * has snapshot rows are skipped instead; deletes leave no row and are simply applied
+     * again, which only re-deactivates the same positions. A batch redelivered after a partial
+     * failure therefore ends in the same state.
+     *
+     * Consecutive inserts become multi-row INSERTs and consecutive deletes one UPDATE; an
+     * insert and a delete are never reordered relative to each other. The version vector is
+     * written once per origin server and only ever moves forward.
+     *
+     * @return the number of operations applied
      */
-    private boolean isValidSequence(String docId, String serverId, Long seqNum) {
+    @Transactional
+    public int applyDocumentBatch(String docId, List<CRDTOperation> operations) {
+        Map<String, VersionVector> vectors = new HashMap<>();
+        for (VersionVector vector : versionVectorRepository.findByDocId(docId)) {
+            vectors.put(vector.getServerId(), vector);
+        }
+
+        Set<String> applied = new HashSet<>();
+        List<Long> seqNums = operations.stream().map(CRDTOperation::getServerSeqNum).distinct().toList();
+        for (Object[] row : snapshotRepository.findAppliedSequences(docId, seqNums)) {
+            applied.add(row[0] + ":" + row[1]);
+        }
+
+        Set<String> seen = new HashSet<>();
+        Map<String, Long> highestSeqs = new HashMap<>();
+        List<DocumentSnapshot> pendingRows = new ArrayList<>();
+        List<String> pendingDeletes = new ArrayList<>();
+        int count = 0;
+
+        for (CRDTOperation operation : operations) {
+            String serverId = operation.getServerId();
+            Long seqNum = operation.getServerSeqNum();
+            String key = serverId + ":" + seqNum;
+            VersionVector vector = vectors.get(serverId);
+
+            // A duplicate within this batch, or an insert committed by an earlier delivery
+            boolean insert = "INSERT".equals(operation.getOperationType())
+                    || "INSERT_RUN".equals(operation.getOperationType());
+            if (!seen.add(key) || (insert && applied.contains(key))) {
+                logger.debug("Skipping already applied operation - Doc: {}, Server: {}, Seq: {}",
+                        docId, serverId, seqNum);
+                continue;
+            }
+
+            long known = Math.max(vector != null ? vector.getSequenceNumber() : 0L,
+                    highestSeqs.getOrDefault(serverId, 0L));
+            if (known > 0 && seqNum > known + 1 && !Boolean.TRUE.equals(operation.getLeaseStart())) {
+                logger.warn("Sequence gap detected - Doc: {}, Server: {}, Seq: {} after {}",
+                        docId, serverId, seqNum, known);
+            }
+
+            switch (operation.getOperationType()) {
+                case "INSERT", "INSERT_RUN" -> {
+                    flushDeletes(docId, pendingDeletes);
+                    addRows(operation, pendingRows);
+                }
+                case "DELETE" -> {
+                    flushRows(pendingRows);
+                    pendingDeletes.add(operation.getFractionalPosition());
+                }
+                case "DELETE_RANGE" -> {
+                    flushRows(pendingRows);
+                    flushDeletes(docId, pendingDeletes);
+                    handleDeleteRange(docId, operation.getFractionalPosition(), operation.getEndPosition());
+                }
+                default -> {
+                    logger.warn("Unknown operation type: {}", operation.getOperationType());
+                    continue;
+                }
+            }
+
+            highestSeqs.merge(serverId, seqNum, Math::max);
+            count++;
+        }
+
+        flushRows(pendingRows);
+        flushDeletes(docId, pendingDeletes);
+
+        List<VersionVector> changed = new ArrayList<>(highestSeqs.size());
+        highestSeqs.forEach((serverId, seqNum) -> {
+            VersionVector vector = vectors.get(serverId);
+            if (vector == null) {
+                vector = new VersionVector(docId, serverId, seqNum);
+            } else if (seqNum > vector.getSequenceNumber()) {
+                vector.setSequenceNumber(seqNum);
+                vector.setUpdatedAt(java.time.Instant.now());
+            } else {
+                return;
+            }
+            changed.add(vector);
+        });
+        versionVectorRepository.saveAll(changed);
+
+        logger.debug("Applied operation batch to snapshot - Doc: {}, Applied: {}, Received: {}",
+                docId, count, operations.size());
+        return count;
+    }
+
+    /**
+     * Snapshot rows of an INSERT or INSERT_RUN; a run gets one row per code point
+     */
+    private void addRows(CRDTOperation operation, List<DocumentSnapshot> rows) {
+        if (!"INSERT_RUN".equals(operation.getOperationType())) {
+            rows.add(new DocumentSnapshot(
+                    operation.getDocId(),
+                    operation.getFractionalPosition(),
+                    operation.getCharacter(),
+                    operation.getServerId(),
+                    operation.getServerSeqNum()
+            ));
+            return;
+        }
+
+        String text = operation.getCharacter() != null ? operation.getCharacter() : "";
+        int[] codePoints = text.codePoints().toArray();
+        List<String> positions = RunPositions.of(operation.getFractionalPosition(), codePoints.length);
+        for (int i = 0; i < codePoints.length; i++) {
+            rows.add(new DocumentSnapshot(
+                    operation.getDocId(),
+                    positions.get(i),
+                    new String(codePoints, i, 1),
+                    operation.getServerId(),
+                    operation.getServerSeqNum()
+            ));
+        }
+    }
+
+    private void flushRows(List<DocumentSnapshot> rows) {
+        if (!rows.isEmpty()) {
+            rowWriter.insertAll(rows);
+            rows.clear();
+        }
+    }
+
+    private void flushDeletes(String docId, List<String> positions) {
+        if (!positions.isEmpty()) {
+            snapshotRepository.deactivateByDocIdAndPositions(docId, positions);
+            positions.clear();
+        }
+    }
+
+    /**
+     * Check if sequence number is valid (no gaps).
+     * A jump to an operation marked as a lease start is not a gap: the rest of the server's
+     * previous lease was abandoned (restart or idle eviction) and never handed out.
+     */
+    private boolean isValidSequence(CRDTOperation operation) {
+        String docId = operation.getDocId();
+        String serverId = operation.getServerId();
+        Long seqNum = operation.getServerSeqNum();
         Optional<VersionVector> existing = versionVectorRepository
             .findByDocIdAndServerId(docId, serverId);
 
         if (existing.isPresent()) {
             Long lastSeq = existing.get().getSequenceNumber();
             // Allow same sequence (idempotent) or next sequence
-            return seqNum <= lastSeq + 1;
+            if (seqNum <= lastSeq + 1) {
+                return true;
+            }
+            if (Boolean.TRUE.equals(operation.getLeaseStart())) {
+                logger.debug("Skipped abandoned sequence lease - Doc: {}, Server: {}, Seq: {}-{}",
+                        docId, serverId, lastSeq + 1, seqNum - 1);
+                return true;
+            }
+            return false;
         }
 
         // New server, any sequence is valid (should start from 1)
@@ -124,6 +292,28 @@ public class SnapshotService {
                 operation.getCharacter(), operation.getFractionalPosition());
     }
 
+    /**
+     * Handle INSERT_RUN operation: one row per character, all sharing the run's sequence
+     * number, written with multi-row INSERTs. Positions are derived from the base position.
+     */
+    private void handleInsertRun(CRDTOperation operation) {
+        if (snapshotRepository.existsByDocIdAndServerIdAndServerSeqNum(
+                operation.getDocId(),
+                operation.getServerId(),
+                operation.getServerSeqNum())) {
+            logger.debug("Insert run already exists - Doc: {}, Server: {}, Seq: {}",
+                operation.getDocId(), operation.getServerId(), operation.getServerSeqNum());
+            return;
+        }
+
+        List<DocumentSnapshot> rows = new ArrayList<>();
+        addRows(operation, rows);
+
+        int statements = rowWriter.insertAll(rows);
+        logger.debug("Inserted run of {} characters at base position {} in {} statements",
+                rows.size(), operation.getFractionalPosition(), statements);
+    }
+
     /**
      * Handle DELETE operation (logical delete by marking inactive)
      */
@@ -132,6 +322,18 @@ public class SnapshotService {
         logger.debug("Deleted character at position {}", position);
     }
 
+    /**
+     * Handle DELETE_RANGE operation: every character from one position to another, both
+     * inclusive, deactivated in a single UPDATE
+     */
+    private void handleDeleteRange(String docId, String fromPosition, String toPosition) {
+        if (toPosition == null) {
+            throw new IllegalArgumentException("DELETE_RANGE without endPosition at " + fromPosition);
+        }
+        int deleted = snapshotRepository.deactivateByDocIdAndPositionRange(docId, fromPosition, toPosition);
+        logger.debug("Deleted {} characters from position {} to {}", deleted, fromPosition, toPosition);
+    }
+
     /**
      * Update version vector (Phase 2 of 2PC)
      */
@@ -0,0 +1,58 @@
+package com.mmtext.editorserversnapshot.config;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class KafkaConfigTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("cdc", 0);
+
+    @Test
+    void failedBatchIsDeadLetteredAfterRetries() {
+        KafkaConfig config = new KafkaConfig();
+        ReflectionTestUtils.setField(config, "retryIntervalMs", 0L);
+        ReflectionTestUtils.setField(config, "retryAttempts", 2L);
+
+        List<ConsumerRecord<?, ?>> recovered = new ArrayList<>();
+        ConsumerRecordRecoverer recoverer = (record, exception) -> recovered.add(record);
+        DefaultErrorHandler errorHandler = config.cdcErrorHandler(recoverer);
+
+        List<ConsumerRecord<String, String>> records = List.of(
+                new ConsumerRecord<>("cdc", 0, 10L, "a", "event-a"),
+                new ConsumerRecord<>("cdc", 0, 11L, "b", "event-b"));
+        int[] attempts = {0};
+
+        @SuppressWarnings("unchecked")
+        Consumer<String, String> consumer = mock(Consumer.class);
+        when(consumer.poll(any())).thenReturn(ConsumerRecords.empty());
+        MessageListenerContainer container = mock(MessageListenerContainer.class);
+        when(container.isRunning()).thenReturn(true);
+
+        errorHandler.handleBatch(new IllegalStateException("apply failed"),
+                new ConsumerRecords<>(Map.of(PARTITION, records), Map.<TopicPartition, OffsetAndMetadata>of()),
+                consumer, container, () -> {
+                    attempts[0]++;
+                    throw new IllegalStateException("apply failed");
+                });
+
+        assertThat(attempts[0]).isEqualTo(2);
+        assertThat(recovered).containsExactlyElementsOf(records);
+    }
+}
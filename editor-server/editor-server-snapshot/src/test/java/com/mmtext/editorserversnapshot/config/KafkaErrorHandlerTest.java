@@ -0,0 +1,45 @@
+package com.mmtext.editorserversnapshot.config;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KafkaErrorHandlerTest {
+
+    private static final String TOPIC = "editor-server-main.public.crdt_operation_outbox_events";
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+    private final ConsumerRecordRecoverer recoverer = new KafkaErrorHandler().deadLetterRecoverer(kafkaTemplate);
+
+    @Test
+    void failedRecordIsPublishedToTheDeadLetterTopic() {
+        when(kafkaTemplate.send(TOPIC + ".dead", "key", "event"))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+
+        recoverer.accept(new ConsumerRecord<>(TOPIC, 0, 7L, "key", "event"), new IllegalStateException("failed"));
+
+        verify(kafkaTemplate).send(TOPIC + ".dead", "key", "event");
+    }
+
+    @Test
+    void recordIsNotDroppedWhenTheDeadLetterTopicIsUnreachable() {
+        when(kafkaTemplate.send(TOPIC + ".dead", "key", "event"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker down")));
+
+        assertThatThrownBy(() -> recoverer.accept(
+                new ConsumerRecord<>(TOPIC, 0, 7L, "key", "event"), new IllegalStateException("failed")))
+                .isInstanceOf(KafkaException.class)
+                .hasMessageContaining(TOPIC + ".dead");
+    }
+}
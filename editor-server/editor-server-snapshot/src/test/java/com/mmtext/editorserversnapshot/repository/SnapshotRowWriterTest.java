@@ -0,0 +1,50 @@
+package com.mmtext.editorserversnapshot.repository;
+
+import com.mmtext.editorserversnapshot.model.DocumentSnapshot;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class SnapshotRowWriterTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SnapshotRowWriter writer = new SnapshotRowWriter(jdbcTemplate);
+
+    @Test
+    void rowsAreSplitIntoMultiRowStatements() {
+        ReflectionTestUtils.setField(writer, "rowsPerStatement", 2);
+        List<DocumentSnapshot> rows = new ArrayList<>();
+        for (long seq = 1; seq <= 5; seq++) {
+            rows.add(new DocumentSnapshot("doc-1", "m" + seq, "x", "server-1", seq));
+        }
+
+        assertThat(writer.insertAll(rows)).isEqualTo(3);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(3)).update(sql.capture(), args.capture());
+
+        assertThat(sql.getAllValues().get(0)).endsWith("VALUES (?, ?, ?, ?, ?, ?, ?), (?, ?, ?, ?, ?, ?, ?)");
+        assertThat(sql.getAllValues().get(2)).endsWith("VALUES (?, ?, ?, ?, ?, ?, ?)");
+        assertThat(args.getAllValues().get(0)).hasSize(14);
+        assertThat(args.getAllValues().get(2))
+                .startsWith("doc-1", "m5", "x", "server-1", 5L)
+                .endsWith(true);
+    }
+
+    @Test
+    void noRowsNoStatements() {
+        ReflectionTestUtils.setField(writer, "rowsPerStatement", 500);
+
+        assertThat(writer.insertAll(List.of())).isZero();
+    }
+}
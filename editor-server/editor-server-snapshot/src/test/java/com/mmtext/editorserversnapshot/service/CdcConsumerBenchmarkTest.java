@@ -0,0 +1,243 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.config.KafkaConfig;
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.AcknowledgingMessageListener;
+import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Snapshot lag and throughput of the single-record and the batch CDC consumer, against an
+ * embedded Kafka broker. Run with: mvn test -Pbenchmark -Dtest=CdcConsumerBenchmarkTest
+ *
+ * The snapshot database is a stand-in: every transaction costs a commit round trip and
+ * every operation a little on top, so the numbers compare transaction counts, polling and
+ * lane parallelism rather than PostgreSQL itself.
+ */
+@Tag("benchmark")
+class CdcConsumerBenchmarkTest {
+
+    private static final int PARTITIONS = 4;
+    private static final int DOCUMENTS = 100;
+    private static final long TRANSACTION_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long OPERATION_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private static EmbeddedKafkaKraftBroker broker;
+    private static KafkaProducer<String, String> producer;
+
+    @BeforeAll
+    static void startBroker() {
+        // Topics are created up front: sends racing a new topic's leader election can be lost
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, topics());
+        broker.afterPropertiesSet();
+        producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.LINGER_MS_CONFIG, 1));
+    }
+
+    @AfterAll
+    static void stopBroker() {
+        producer.close();
+        broker.destroy();
+    }
+
+    @Test
+    void catchUpThroughput() {
+        int events = 10_000;
+        for (Mode mode : Mode.values()) {
+            String topic = "catch-up-" + mode;
+            produce(topic, events, 0);
+
+            try (Run run = new Run(mode, topic)) {
+                long start = System.nanoTime();
+                run.awaitApplied(events);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-6s catch-up: %,d events in %.2fs = %,.0f ops/s, %,d transactions%n",
+                        mode, events, seconds, events / seconds, run.snapshot.transactions.get());
+            }
+        }
+    }
+
+    @Test
+    void lagAtSteadyRate() {
+        int perSecond = 2_000;
+        int events = perSecond * 5;
+        for (Mode mode : Mode.values()) {
+            String topic = "steady-" + mode;
+
+            try (Run run = new Run(mode, topic)) {
+                produce(topic, events, perSecond);
+                run.awaitApplied(events);
+
+                List<Long> lags = new ArrayList<>(run.snapshot.lagsMs);
+                Collections.sort(lags);
+                System.out.printf("%-6s at %,d ops/s: lag p50 %,d ms, p99 %,d ms, max %,d ms%n",
+                        mode, perSecond, percentile(lags, 0.50), percentile(lags, 0.99), lags.get(lags.size() - 1));
+            }
+        }
+    }
+
+    private static String[] topics() {
+        List<String> topics = new ArrayList<>();
+        for (Mode mode : Mode.values()) {
+            topics.add("catch-up-" + mode);
+            topics.add("steady-" + mode);
+        }
+        return topics.toArray(String[]::new);
+    }
+
+    /**
+     * Send events for DOCUMENTS documents, keyed by document; perSecond 0 sends them all at once
+     */
+    private static void produce(String topic, int events, int perSecond) {
+        long[] seqs = new long[DOCUMENTS];
+        List<Future<RecordMetadata>> sends = new ArrayList<>(events);
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            if (perSecond > 0) {
+                long due = start + TimeUnit.SECONDS.toNanos(1) * i / perSecond;
+                LockSupport.parkNanos(due - System.nanoTime());
+            }
+            int doc = i % DOCUMENTS;
+            String docId = "doc-" + doc;
+            sends.add(producer.send(new ProducerRecord<>(topic, docId, event(docId, ++seqs[doc]))));
+        }
+        producer.flush();
+        for (Future<RecordMetadata> send : sends) {
+            try {
+                send.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Benchmark event was not sent", e);
+            }
+        }
+    }
+
+    /**
+     * Debezium create event for an outbox row; the operation's timestamp is its send time
+     */
+    private static String event(String docId, long seq) {
+        String payload = "{\"id\":" + seq + ",\"doc_id\":\"" + docId + "\",\"user_id\":\"user-1\","
+                + "\"server_id\":\"server-1\",\"operation_type\":\"INSERT\",\"character\":\"x\","
+                + "\"fractional_position\":\"m\",\"end_position\":null,\"server_seq_num\":" + seq + ","
+                + "\"timestamp\":" + System.currentTimeMillis() + ",\"processed\":false}";
+        return "{\"op\":\"c\",\"after\":{\"payload\":\"" + payload.replace("\"", "\\\"") + "\"}}";
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+    }
+
+    private enum Mode {
+        SINGLE,
+        BATCH
+    }
+
+    /**
+     * One consumer on the topic, configured the way KafkaConfig configures production
+     */
+    private static final class Run implements AutoCloseable {
+        private final StandInSnapshotService snapshot = new StandInSnapshotService();
+        private final SnapshotApplyLanes lanes = new SnapshotApplyLanes(snapshot, new SimpleMeterRegistry());
+        private final ConcurrentMessageListenerContainer<String, String> container;
+
+        Run(Mode mode, String topic) {
+            ReflectionTestUtils.setField(lanes, "laneCount", 4);
+            lanes.start();
+            DebeziumChangeListener listener = new DebeziumChangeListener(snapshot, lanes, new ObjectMapper());
+
+            KafkaConfig config = new KafkaConfig();
+            ReflectionTestUtils.setField(config, "bootstrapServers", broker.getBrokersAsString());
+            ReflectionTestUtils.setField(config, "consumerGroupId", "benchmark-" + topic);
+            ReflectionTestUtils.setField(config, "batchMaxPollRecords", 500);
+            ReflectionTestUtils.setField(config, "batchConcurrency", 1);
+            ConsumerRecordRecoverer recoverer = (record, exception) -> {
+                throw new IllegalStateException("Benchmark event failed", exception);
+            };
+
+            if (mode == Mode.BATCH) {
+                container = config.batchKafkaListenerContainerFactory(recoverer).createContainer(topic);
+                container.setupMessageListener((BatchAcknowledgingMessageListener<String, String>)
+                        listener::handleBatchCDCEvents);
+            } else {
+                container = config.singleKafkaListenerContainerFactory(recoverer).createContainer(topic);
+                container.setupMessageListener((AcknowledgingMessageListener<String, String>) (record, ack) -> {
+                    listener.handleCDCEvent(record.value(), record.topic(), record.partition(), record.offset());
+                    ack.acknowledge();
+                });
+            }
+            container.start();
+        }
+
+        void awaitApplied(int events) {
+            await().atMost(Duration.ofMinutes(5)).pollInterval(Duration.ofMillis(10))
+                    .until(() -> snapshot.applied.get() >= events);
+        }
+
+        @Override
+        public void close() {
+            container.stop();
+            lanes.stop();
+        }
+    }
+
+    private static final class StandInSnapshotService extends SnapshotService {
+        private final AtomicInteger applied = new AtomicInteger();
+        private final AtomicInteger transactions = new AtomicInteger();
+        private final ConcurrentLinkedQueue<Long> lagsMs = new ConcurrentLinkedQueue<>();
+
+        StandInSnapshotService() {
+            super(null, null, null);
+        }
+
+        @Override
+        public void applyOperationToSnapshot(CRDTOperation operation) {
+            commit(List.of(operation));
+        }
+
+        @Override
+        public int applyDocumentBatch(String docId, List<CRDTOperation> operations) {
+            commit(operations);
+            return operations.size();
+        }
+
+        private void commit(List<CRDTOperation> operations) {
+            LockSupport.parkNanos(TRANSACTION_NANOS + OPERATION_NANOS * operations.size());
+            transactions.incrementAndGet();
+            long now = System.currentTimeMillis();
+            for (CRDTOperation operation : operations) {
+                lagsMs.add(now - operation.getTimestamp().toEpochMilli());
+            }
+            applied.addAndGet(operations.size());
+        }
+    }
+}
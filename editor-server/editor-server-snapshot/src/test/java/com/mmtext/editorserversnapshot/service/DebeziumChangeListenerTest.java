@@ -0,0 +1,133 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.support.Acknowledgment;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DebeziumChangeListenerTest {
+
+    private static final String TOPIC = "editor-server-main.public.crdt_operation_outbox_events";
+
+    private SnapshotService snapshotService;
+    private SnapshotApplyLanes applyLanes;
+    private DebeziumChangeListener listener;
+
+    @BeforeEach
+    void setUp() {
+        snapshotService = mock(SnapshotService.class);
+        applyLanes = mock(SnapshotApplyLanes.class);
+        when(applyLanes.submit(anyString(), anyList()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.<List<?>>getArgument(1).size()));
+        listener = new DebeziumChangeListener(snapshotService, applyLanes, new ObjectMapper());
+    }
+
+    @Test
+    void deleteRangeCarriesItsEndPosition() {
+        listener.handleCDCEvent(event(
+                "{\"id\":\"4b1c\",\"doc_id\":\"doc-1\",\"user_id\":\"user-1\",\"server_id\":\"server-1\","
+                        + "\"operation_type\":\"DELETE_RANGE\",\"character\":null,"
+                        + "\"fractional_position\":\"m\",\"end_position\":\"p\",\"server_seq_num\":4,"
+                        + "\"timestamp\":\"2026-01-01T00:00:00Z\",\"processed\":false}"), "topic", 0, 0);
+
+        CRDTOperation operation = applied();
+        assertThat(operation.getOperationType()).isEqualTo("DELETE_RANGE");
+        assertThat(operation.getFractionalPosition()).isEqualTo("m");
+        assertThat(operation.getEndPosition()).isEqualTo("p");
+        assertThat(operation.getServerSeqNum()).isEqualTo(4L);
+    }
+
+    @Test
+    void otherOperationsHaveNoEndPosition() {
+        listener.handleCDCEvent(event(
+                "{\"id\":\"4b1c\",\"doc_id\":\"doc-1\",\"user_id\":\"user-1\",\"server_id\":\"server-1\","
+                        + "\"operation_type\":\"DELETE\",\"character\":null,"
+                        + "\"fractional_position\":\"m\",\"end_position\":null,\"server_seq_num\":5,"
+                        + "\"timestamp\":0,\"processed\":false}"), "topic", 0, 1);
+
+        CRDTOperation operation = applied();
+        assertThat(operation.getEndPosition()).isNull();
+        assertThat(operation.getLeaseStart()).isFalse();
+    }
+
+    @Test
+    void leaseStartIsCarriedOver() {
+        listener.handleCDCEvent(event(
+                "{\"id\":\"4b1c\",\"doc_id\":\"doc-1\",\"user_id\":\"user-1\",\"server_id\":\"server-1\","
+                        + "\"operation_type\":\"INSERT\",\"character\":\"a\",\"fractional_position\":\"m\","
+                        + "\"end_position\":null,\"server_seq_num\":1001,\"lease_start\":true,"
+                        + "\"timestamp\":0,\"processed\":false}"), "topic", 0, 2);
+
+        CRDTOperation operation = applied();
+        assertThat(operation.getServerSeqNum()).isEqualTo(1001L);
+        assertThat(operation.getLeaseStart()).isTrue();
+    }
+
+    @Test
+    void deletePolledBeforeItsInsertIsAppliedAfterIt() {
+        // Published before outbox events were keyed by document: the two sit on different partitions
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        listener.handleBatchCDCEvents(List.of(
+                new ConsumerRecord<>(TOPIC, 1, 0L, "{\"id\":\"b\"}", event(operation("server-2", "DELETE", 7), 2000)),
+                new ConsumerRecord<>(TOPIC, 0, 0L, "{\"id\":\"a\"}", event(operation("server-1", "INSERT", 3), 1000))),
+                acknowledgment);
+
+        assertThat(submitted()).extracting(CRDTOperation::getOperationType).containsExactly("INSERT", "DELETE");
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void pollOrderIsKeptWithoutLsns() {
+        listener.handleBatchCDCEvents(List.of(
+                new ConsumerRecord<>(TOPIC, 0, 0L, "doc-1", event(operation("server-1", "INSERT", 3))),
+                new ConsumerRecord<>(TOPIC, 0, 1L, "doc-1", event(operation("server-1", "DELETE", 4)))),
+                mock(Acknowledgment.class));
+
+        assertThat(submitted()).extracting(CRDTOperation::getServerSeqNum).containsExactly(3L, 4L);
+    }
+
+    private List<CRDTOperation> submitted() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<CRDTOperation>> operations = ArgumentCaptor.forClass(List.class);
+        verify(applyLanes).submit(eq("doc-1"), operations.capture());
+        return operations.getValue();
+    }
+
+    private static String operation(String serverId, String type, long seq) {
+        return "{\"id\":" + seq + ",\"doc_id\":\"doc-1\",\"user_id\":\"user-1\",\"server_id\":\"" + serverId + "\","
+                + "\"operation_type\":\"" + type + "\",\"character\":\"x\",\"fractional_position\":\"m\","
+                + "\"end_position\":null,\"server_seq_num\":" + seq + ",\"timestamp\":0,\"processed\":false}";
+    }
+
+    private CRDTOperation applied() {
+        ArgumentCaptor<CRDTOperation> operation = ArgumentCaptor.forClass(CRDTOperation.class);
+        verify(snapshotService).applyOperationToSnapshot(operation.capture());
+        return operation.getValue();
+    }
+
+    /**
+     * Debezium create event for an outbox row; payload is the crdt_operations row as the trigger's row_to_json writes it
+     */
+    private static String event(String payload) {
+        return "{\"op\":\"c\",\"after\":{\"payload\":\"" + payload.replace("\"", "\\\"") + "\"}}";
+    }
+
+    private static String event(String payload, long lsn) {
+        return "{\"op\":\"c\",\"source\":{\"lsn\":" + lsn + "},\"after\":{\"payload\":\""
+                + payload.replace("\"", "\\\"") + "\"}}";
+    }
+}
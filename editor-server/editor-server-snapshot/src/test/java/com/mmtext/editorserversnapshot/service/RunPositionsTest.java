@@ -0,0 +1,33 @@
+package com.mmtext.editorserversnapshot.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunPositionsTest {
+
+    /**
+     * The same reference values editor-server-main checks FractionalIndexService.runPositions against
+     */
+    @Test
+    void matchesTheSharedReferenceValues() {
+        assertThat(RunPositions.of("m", 3)).containsExactly("mg", "mn", "mt");
+        assertThat(RunPositions.of("b", 12))
+                .containsExactly("bc", "be", "bg", "bi", "bk", "bm", "bo", "bq", "bs", "bu", "bw", "by");
+        assertThat(RunPositions.of("zz", 13))
+                .containsExactly("zzbw", "zzds", "zzfo", "zzhl", "zzjh", "zzld", "zznb",
+                        "zzow", "zzqs", "zzso", "zzul", "zzwh", "zzyd");
+    }
+
+    @Test
+    void positionsAreOrderedAndNeverEndInA() {
+        for (int count = 1; count <= 2000; count++) {
+            assertThat(RunPositions.of("m", count))
+                    .as("run of %d", count)
+                    .hasSize(count)
+                    .isSorted()
+                    .doesNotHaveDuplicates()
+                    .allSatisfy(position -> assertThat(position).startsWith("m").doesNotEndWith("a"));
+        }
+    }
+}
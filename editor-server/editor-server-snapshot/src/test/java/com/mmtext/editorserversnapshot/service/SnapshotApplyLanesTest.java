@@ -0,0 +1,158 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SnapshotApplyLanesTest {
+
+    private static final int LANES = 4;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, List<Long>> appliedSeqs = new ConcurrentHashMap<>();
+
+    private SnapshotService snapshotService;
+    private SnapshotApplyLanes lanes;
+
+    @BeforeEach
+    void setUp() {
+        snapshotService = mock(SnapshotService.class);
+        when(snapshotService.applyDocumentBatch(anyString(), anyList())).thenAnswer(invocation -> {
+            List<CRDTOperation> operations = invocation.getArgument(1);
+            List<Long> seqs = appliedSeqs.computeIfAbsent(invocation.getArgument(0), docId -> new CopyOnWriteArrayList<>());
+            operations.forEach(operation -> seqs.add(operation.getServerSeqNum()));
+            return operations.size();
+        });
+
+        lanes = new SnapshotApplyLanes(snapshotService, meterRegistry);
+        ReflectionTestUtils.setField(lanes, "laneCount", LANES);
+        lanes.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        lanes.stop();
+    }
+
+    @Test
+    void eachDocumentIsAppliedInSubmissionOrder() throws Exception {
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (long seq = 1; seq <= 200; seq++) {
+            for (int doc = 0; doc < 10; doc++) {
+                results.add(lanes.submit("doc-" + doc, List.of(operation("doc-" + doc, seq))));
+            }
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertThat(appliedSeqs).hasSize(10);
+        assertThat(appliedSeqs.values()).allSatisfy(seqs -> assertThat(seqs).hasSize(200).isSorted());
+    }
+
+    @Test
+    void documentsOnDifferentLanesAreAppliedInParallel() throws Exception {
+        String blocked = "doc-0";
+        String other = docOnAnotherLane(blocked);
+        CountDownLatch release = new CountDownLatch(1);
+        when(snapshotService.applyDocumentBatch(eq(blocked), anyList())).thenAnswer(invocation -> {
+            release.await();
+            return 1;
+        });
+
+        CompletableFuture<Integer> slow = lanes.submit(blocked, List.of(operation(blocked, 1L)));
+        CompletableFuture<Integer> fast = lanes.submit(other, List.of(operation(other, 1L)));
+
+        assertThat(fast.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(slow).isNotDone();
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    void failedBatchFailsItsFutureAndTheLaneCarriesOn() throws Exception {
+        IllegalStateException failure = new IllegalStateException("apply failed");
+        when(snapshotService.applyDocumentBatch(eq("doc-1"), anyList())).thenThrow(failure);
+
+        CompletableFuture<Integer> failed = lanes.submit("doc-1", List.of(operation("doc-1", 1L)));
+        CompletableFuture<Integer> next = lanes.submit("doc-1", List.of(operation("doc-1", 2L)));
+
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCause(failure);
+        assertThatThrownBy(() -> next.get(5, TimeUnit.SECONDS)).hasCause(failure);
+
+        CompletableFuture<Integer> otherDoc = lanes.submit("doc-2", List.of(operation("doc-2", 1L)));
+        assertThat(otherDoc.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    void lanesAreMeteredSeparately() throws Exception {
+        lanes.submit("doc-1", List.of(operation("doc-1", 1L))).get(5, TimeUnit.SECONDS);
+        String lane = String.valueOf(Math.floorMod("doc-1".hashCode(), LANES));
+
+        assertThat(meterRegistry.get("editor.snapshot.lanes.queue.depth").gauges()).hasSize(LANES);
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> assertThat(
+                meterRegistry.get("editor.snapshot.lanes.apply.time").tag("lane", lane).timer().count())
+                .isEqualTo(1));
+        assertThat(meterRegistry.get("editor.snapshot.lanes.apply.time").timers())
+                .filteredOn(timer -> !lane.equals(timer.getId().getTag("lane")))
+                .allSatisfy(timer -> assertThat(timer.count()).isZero());
+    }
+
+    @Test
+    void stoppingFailsQueuedAndLaterBatches() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(snapshotService.applyDocumentBatch(eq("doc-1"), anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return 1;
+        });
+        lanes.submit("doc-1", List.of(operation("doc-1", 1L)));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Integer> queued = lanes.submit("doc-1", List.of(operation("doc-1", 2L)));
+
+        lanes.stop();
+
+        assertThatThrownBy(() -> queued.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(lanes.submit("doc-1", List.of(operation("doc-1", 3L))))
+                .isCompletedExceptionally();
+    }
+
+    private static String docOnAnotherLane(String docId) {
+        int lane = Math.floorMod(docId.hashCode(), LANES);
+        for (int i = 1; ; i++) {
+            String candidate = "doc-" + i;
+            if (Math.floorMod(candidate.hashCode(), LANES) != lane) {
+                return candidate;
+            }
+        }
+    }
+
+    private static CRDTOperation operation(String docId, long seq) {
+        return new CRDTOperation(docId, "user-1", "server-1", "INSERT", "x", "m", seq);
+    }
+}
@@ -0,0 +1,181 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import com.mmtext.editorserversnapshot.repository.DocumentSnapshotRepository;
+import com.mmtext.editorserversnapshot.repository.SnapshotRowWriter;
+import com.mmtext.editorserversnapshot.repository.VersionVectorRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A 10,000 character selection deleted from a snapshot: one DELETE per character against one
+ * DELETE_RANGE, applied by the single-record consumer (a transaction per event) and by the
+ * batch consumer (500 events per poll). Counts the SQL statements and transactions sent to
+ * PostgreSQL and times them. The selection is a pasted run, inserted beforehand.
+ * Needs a PostgreSQL database, by default the docker-compose snapshot_db on localhost:5432
+ * (-Dbenchmark.postgres.url, -Dbenchmark.postgres.user, -Dbenchmark.postgres.password to
+ * point elsewhere); the schema comes from the entities, and document_snapshots and
+ * version_vectors are emptied before each run.
+ * Run with: mvn test -Pbenchmark -Dtest=SnapshotDeleteBenchmarkTest
+ */
+@Tag("benchmark")
+class SnapshotDeleteBenchmarkTest {
+
+    private static final int SELECTION = 10_000;
+    private static final int POLL_RECORDS = 500;
+    private static final String DOC = "2f6c1e0a-7b4d-4c38-9a51-d0e3b8f4a612";
+    private static final String USER = "8d9e2b71-3c5a-4f06-b1e7-5a2c9d04f3b8";
+    private static final String BASE = "n";
+
+    private static final long[] statements = new long[1];
+    private static final long[] commits = new long[1];
+
+    private static SingleConnectionDataSource dataSource;
+    private static LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private static JdbcTemplate jdbcTemplate;
+    private static SnapshotService snapshotService;
+    private static TransactionTemplate transactions;
+
+    @BeforeAll
+    static void connect() throws SQLException {
+        // Every applied operation is logged at INFO
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.mmtext"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        Connection connection = DriverManager.getConnection(
+                System.getProperty("benchmark.postgres.url", "jdbc:postgresql://localhost:5432/snapshot_db"),
+                System.getProperty("benchmark.postgres.user", "admin"),
+                System.getProperty("benchmark.postgres.password", "admin"));
+        dataSource = new SingleConnectionDataSource(counting(connection), true);
+
+        // Hibernate configured the way the application configures it, creating the schema
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.mmtext.editorserversnapshot.model");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.hbm2ddl.auto", "update",
+                "hibernate.jdbc.batch_size", "20",
+                "hibernate.order_inserts", "true",
+                "hibernate.order_updates", "true"));
+        entityManagerFactory.afterPropertiesSet();
+
+        EntityManagerFactory emf = entityManagerFactory.getObject();
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(emf);
+        JpaRepositoryFactory repositories = new JpaRepositoryFactory(entityManager);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SnapshotRowWriter rowWriter = new SnapshotRowWriter(jdbcTemplate);
+        ReflectionTestUtils.setField(rowWriter, "rowsPerStatement", 500);
+        snapshotService = new SnapshotService(repositories.getRepository(DocumentSnapshotRepository.class),
+                repositories.getRepository(VersionVectorRepository.class), rowWriter);
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(emf);
+        transactionManager.setDataSource(dataSource);
+        transactions = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        truncate();
+        entityManagerFactory.destroy();
+        dataSource.destroy();
+    }
+
+    @Test
+    void delete10000Characters() {
+        List<String> positions = RunPositions.of(BASE, SELECTION);
+
+        for (boolean batchConsumer : new boolean[] {false, true}) {
+            for (boolean range : new boolean[] {false, true}) {
+                truncate();
+                CRDTOperation paste = new CRDTOperation(DOC, USER, "server-1", "INSERT_RUN",
+                        "x".repeat(SELECTION), BASE, 1L);
+                transactions.executeWithoutResult(status -> snapshotService.applyDocumentBatch(DOC, List.of(paste)));
+
+                List<CRDTOperation> deletes = new ArrayList<>();
+                if (range) {
+                    CRDTOperation deleteRange = new CRDTOperation(DOC, USER, "server-1", "DELETE_RANGE",
+                            null, positions.get(0), 2L);
+                    deleteRange.setEndPosition(positions.get(SELECTION - 1));
+                    deletes.add(deleteRange);
+                } else {
+                    for (int i = 0; i < SELECTION; i++) {
+                        deletes.add(new CRDTOperation(DOC, USER, "server-1", "DELETE", null, positions.get(i), i + 2L));
+                    }
+                }
+
+                statements[0] = 0;
+                commits[0] = 0;
+                long start = System.nanoTime();
+                if (batchConsumer) {
+                    for (int from = 0; from < deletes.size(); from += POLL_RECORDS) {
+                        List<CRDTOperation> poll = deletes.subList(from, Math.min(from + POLL_RECORDS, deletes.size()));
+                        transactions.executeWithoutResult(status -> snapshotService.applyDocumentBatch(DOC, poll));
+                    }
+                } else {
+                    for (CRDTOperation delete : deletes) {
+                        transactions.executeWithoutResult(status -> snapshotService.applyOperationToSnapshot(delete));
+                    }
+                }
+                double millis = (System.nanoTime() - start) / 1e6;
+
+                long active = jdbcTemplate.queryForObject(
+                        "SELECT count(*) FROM document_snapshots WHERE doc_id = ? AND active", Long.class, DOC);
+                System.out.printf("%-13s consumer, %-12s %,6d events: %,6d statements in %,6d transactions, "
+                                + "%,8.1f ms, %d characters left%n",
+                        batchConsumer ? "batch" : "single-record", range ? "DELETE_RANGE" : "DELETE",
+                        deletes.size(), statements[0], commits[0], millis, active);
+            }
+        }
+    }
+
+    private static void truncate() {
+        jdbcTemplate.execute("TRUNCATE document_snapshots, version_vectors");
+    }
+
+    /**
+     * Connection that counts the statements prepared or created on it and the commits
+     */
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement", "createStatement", "prepareCall" -> statements[0]++;
+                        case "commit" -> commits[0]++;
+                        default -> {
+                        }
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
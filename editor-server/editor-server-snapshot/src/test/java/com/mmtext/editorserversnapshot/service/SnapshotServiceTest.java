@@ -0,0 +1,171 @@
+package com.mmtext.editorserversnapshot.service;
+
+import com.mmtext.editorserversnapshot.dto.CRDTOperation;
+import com.mmtext.editorserversnapshot.model.DocumentSnapshot;
+import com.mmtext.editorserversnapshot.model.VersionVector;
+import com.mmtext.editorserversnapshot.repository.DocumentSnapshotRepository;
+import com.mmtext.editorserversnapshot.repository.SnapshotRowWriter;
+import com.mmtext.editorserversnapshot.repository.VersionVectorRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SnapshotServiceTest {
+
+    private static final String DOC = "doc-1";
+
+    private DocumentSnapshotRepository snapshotRepository;
+    private VersionVectorRepository versionVectorRepository;
+    private SnapshotRowWriter rowWriter;
+    private SnapshotService snapshotService;
+
+    // Batches reuse their pending lists, so copy what each call saw
+    private final List<DocumentSnapshot> inserted = new ArrayList<>();
+    private final List<String> deactivated = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        snapshotRepository = mock(DocumentSnapshotRepository.class);
+        versionVectorRepository = mock(VersionVectorRepository.class);
+        rowWriter = mock(SnapshotRowWriter.class);
+        when(rowWriter.insertAll(anyList())).thenAnswer(invocation -> {
+            List<DocumentSnapshot> rows = invocation.getArgument(0);
+            inserted.addAll(rows);
+            return rows.size();
+        });
+        when(snapshotRepository.deactivateByDocIdAndPositions(anyString(), anyCollection())).thenAnswer(invocation -> {
+            Collection<String> positions = invocation.getArgument(1);
+            deactivated.addAll(positions);
+            return positions.size();
+        });
+        snapshotService = new SnapshotService(snapshotRepository, versionVectorRepository, rowWriter);
+    }
+
+    @Test
+    void insertRunBecomesOneRowPerCodePoint() {
+        snapshotService.applyOperationToSnapshot(operation("INSERT_RUN", "a👋b", "m", 1L));
+
+        List<DocumentSnapshot> rows = insertedRows();
+        assertThat(rows).extracting(DocumentSnapshot::getCharacter).containsExactly("a", "👋", "b");
+        assertThat(rows).extracting(DocumentSnapshot::getFractionalPosition)
+                .containsExactlyElementsOf(RunPositions.of("m", 3));
+        assertThat(rows).extracting(DocumentSnapshot::getServerSeqNum).containsOnly(1L);
+    }
+
+    @Test
+    void redeliveredInsertRunIsNotInsertedTwice() {
+        when(snapshotRepository.existsByDocIdAndServerIdAndServerSeqNum(DOC, "server-1", 1L)).thenReturn(true);
+
+        snapshotService.applyOperationToSnapshot(operation("INSERT_RUN", "abc", "m", 1L));
+
+        verify(rowWriter, never()).insertAll(anyList());
+    }
+
+    @Test
+    void deleteRangeDeactivatesTheWholeRangeInOneUpdate() {
+        CRDTOperation range = operation("DELETE_RANGE", null, "m", 2L);
+        range.setEndPosition("p");
+
+        snapshotService.applyOperationToSnapshot(range);
+
+        verify(snapshotRepository).deactivateByDocIdAndPositionRange(DOC, "m", "p");
+        verify(snapshotRepository, never()).deactivateByDocIdAndPosition(anyString(), anyString());
+    }
+
+    @Test
+    void deleteRangeWithoutEndPositionFails() {
+        assertThatThrownBy(() -> snapshotService.applyOperationToSnapshot(operation("DELETE_RANGE", null, "m", 2L)))
+                .hasRootCauseInstanceOf(IllegalArgumentException.class);
+        verify(versionVectorRepository, never()).save(any());
+    }
+
+    @Test
+    void batchAppliesOperationsBelowTheVersionVector() {
+        // Seq 6 was committed by an earlier batch; 5 arrives only now
+        when(versionVectorRepository.findByDocId(DOC)).thenReturn(List.of(new VersionVector(DOC, "server-1", 6L)));
+
+        int applied = snapshotService.applyDocumentBatch(DOC, List.of(operation("INSERT", "x", "m", 5L)));
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(insertedRows()).extracting(DocumentSnapshot::getServerSeqNum).containsExactly(5L);
+        assertThat(savedVectors()).isEmpty();
+    }
+
+    @Test
+    void batchSkipsInsertsThatAlreadyHaveRows() {
+        when(snapshotRepository.findAppliedSequences(DOC, List.of(3L, 4L)))
+                .thenReturn(List.<Object[]>of(new Object[]{"server-1", 3L}));
+
+        int applied = snapshotService.applyDocumentBatch(DOC, List.of(
+                operation("INSERT", "a", "m", 3L),
+                operation("INSERT", "b", "n", 4L)));
+
+        assertThat(applied).isEqualTo(1);
+        assertThat(insertedRows()).extracting(DocumentSnapshot::getCharacter).containsExactly("b");
+        assertThat(savedVectors()).singleElement().satisfies(vector -> {
+            assertThat(vector.getServerId()).isEqualTo("server-1");
+            assertThat(vector.getSequenceNumber()).isEqualTo(4L);
+        });
+    }
+
+    @Test
+    void batchAppliesLateDeletes() {
+        when(versionVectorRepository.findByDocId(DOC)).thenReturn(List.of(new VersionVector(DOC, "server-1", 10L)));
+        CRDTOperation range = operation("DELETE_RANGE", null, "p", 8L);
+        range.setEndPosition("q");
+
+        int applied = snapshotService.applyDocumentBatch(DOC, List.of(operation("DELETE", null, "m", 7L), range));
+
+        assertThat(applied).isEqualTo(2);
+        assertThat(deactivated).containsExactly("m");
+        verify(snapshotRepository).deactivateByDocIdAndPositionRange(DOC, "p", "q");
+    }
+
+    @Test
+    void batchAppliesOutOfOrderOperationsOnceAndAdvancesTheVector() {
+        when(versionVectorRepository.findByDocId(DOC)).thenReturn(List.of(new VersionVector(DOC, "server-1", 2L)));
+
+        int applied = snapshotService.applyDocumentBatch(DOC, List.of(
+                operation("INSERT", "c", "o", 5L),
+                operation("INSERT", "a", "m", 3L),
+                operation("INSERT", "c", "o", 5L),
+                operation("INSERT", "b", "n", 4L)));
+
+        assertThat(applied).isEqualTo(3);
+        assertThat(insertedRows()).extracting(DocumentSnapshot::getServerSeqNum).containsExactly(5L, 3L, 4L);
+        assertThat(savedVectors()).singleElement()
+                .satisfies(vector -> assertThat(vector.getSequenceNumber()).isEqualTo(5L));
+    }
+
+    private List<VersionVector> savedVectors() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<VersionVector>> vectors = ArgumentCaptor.forClass(List.class);
+        verify(versionVectorRepository).saveAll(vectors.capture());
+        return vectors.getValue();
+    }
+
+    private List<DocumentSnapshot> insertedRows() {
+        verify(rowWriter, atLeastOnce()).insertAll(anyList());
+        return inserted;
+    }
+
+    private static CRDTOperation operation(String type, String character, String position, long seq) {
+        return new CRDTOperation(DOC, "user-1", "server-1", type, character, position, seq);
+    }
+}